@@ -0,0 +1,204 @@
+package org.jlab.detector.base;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.jlab.detector.calib.utils.DatabaseConstantProvider;
+import org.jlab.geom.base.ConstantProvider;
+
+/**
+ * Read only copy of the geometry constants loaded by GeometryFactory,
+ * without a database connection, so one instance can be shared by all
+ * the engines (and threads) of a process. The values are kept as the
+ * strings read from the database so getDouble and getInteger give the
+ * same results as DatabaseConstantProvider. Can be written to a local
+ * file, layout (big endian):
+ * <pre>
+ *   int magic, int version, int run, str variation, int ncolumns,
+ *   ncolumns x { str name, int nrows, nrows x str value }
+ *   long crc32 (of all preceding bytes)
+ * </pre>
+ * where str is a short length followed by UTF-8 bytes.
+ */
+public class GeometryConstants implements ConstantProvider {
+
+    public static final int CACHE_MAGIC   = 0x47454f43;
+    public static final int CACHE_VERSION = 1;
+
+    private final int    runNumber;
+    private final String variation;
+    private final Map<String,String[]> constantContainer;
+
+    public GeometryConstants(int run, String variation, Map<String,String[]> constants){
+        Map<String,String[]> copy = new TreeMap<String,String[]>();
+        for(Map.Entry<String,String[]> entry : constants.entrySet()){
+            copy.put(entry.getKey(), entry.getValue().clone());
+        }
+        this.runNumber = run;
+        this.variation = variation;
+        this.constantContainer = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * copies all the columns loaded in a database provider.
+     * @param run run number the provider was created for
+     * @param variation database variation the provider was created for
+     * @param provider database provider
+     * @return the copy
+     */
+    public static GeometryConstants copyOf(int run, String variation, DatabaseConstantProvider provider){
+        Map<String,String[]> constants = new TreeMap<String,String[]>();
+        for(String name : provider.getEntrySet()){
+            constants.put(name, provider.getStringValues(name));
+        }
+        return new GeometryConstants(run, variation, constants);
+    }
+
+    public int getRun(){ return this.runNumber;}
+
+    public String getVariation(){ return this.variation;}
+
+    public Set<String> getEntrySet(){ return this.constantContainer.keySet();}
+
+    @Override
+    public boolean hasConstant(String name) {
+        return constantContainer.containsKey(name);
+    }
+
+    @Override
+    public int length(String name) {
+        String[] values = constantContainer.get(name);
+        if(values==null) return 0;
+        return values.length;
+    }
+
+    @Override
+    public double getDouble(String name, int row) {
+        String[] values = constantContainer.get(name);
+        if(values!=null && row < values.length) return Double.parseDouble(values[row]);
+        return 0.0;
+    }
+
+    @Override
+    public int getInteger(String name, int row) {
+        String[] values = constantContainer.get(name);
+        if(values!=null && row < values.length) return Integer.parseInt(values[row]);
+        return 0;
+    }
+
+    /**
+     * approximate heap used by the constants (strings and arrays).
+     * @return size in bytes
+     */
+    public long getMemorySize(){
+        long size = 0;
+        for(Map.Entry<String,String[]> entry : constantContainer.entrySet()){
+            size += 64 + 2*entry.getKey().length() + 16 + 4*entry.getValue().length;
+            for(String value : entry.getValue()) size += 40 + 2*value.length();
+        }
+        return size;
+    }
+
+    /**
+     * writes the constants to a file, through a temporary file so that
+     * jobs reading the cache never see a partial file.
+     * @param filename output file name
+     * @throws IOException
+     */
+    public void save(String filename) throws IOException {
+        File file = new File(filename);
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            CRC32 crc = new CRC32();
+            try (FileOutputStream fileStream = new FileOutputStream(temp)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(fileStream, crc)));
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(runNumber);
+                writeString(out, variation);
+                out.writeInt(constantContainer.size());
+                for(Map.Entry<String,String[]> entry : constantContainer.entrySet()){
+                    writeString(out, entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    for(String value : entry.getValue()) writeString(out, value);
+                }
+                out.flush();
+                DataOutputStream tail = new DataOutputStream(fileStream);
+                tail.writeLong(crc.getValue());
+                tail.flush();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getShort()&0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * reads constants written by save.
+     * @param filename file name
+     * @return the constants, or null if the file can not be read or is corrupted
+     */
+    public static GeometryConstants read(String filename){
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            int length = (int) channel.size();
+            if(length<20) return null;
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while(buffer.hasRemaining() && channel.read(buffer)>=0);
+            buffer.flip();
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, length-8);
+            if(crc.getValue()!=buffer.getLong(length-8)){
+                System.out.println("[GeometryConstants] ---> checksum error in file : " + filename);
+                return null;
+            }
+            if(buffer.getInt()!=CACHE_MAGIC||buffer.getInt()!=CACHE_VERSION){
+                System.out.println("[GeometryConstants] ---> not a geometry cache file (or wrong version) : " + filename);
+                return null;
+            }
+
+            int    run       = buffer.getInt();
+            String variation = readString(buffer);
+            int    ncolumns  = buffer.getInt();
+            Map<String,String[]> constants = new TreeMap<String,String[]>();
+            for(int c = 0; c < ncolumns; c++){
+                String name = readString(buffer);
+                String[] values = new String[buffer.getInt()];
+                for(int r = 0; r < values.length; r++) values[r] = readString(buffer);
+                constants.put(name, values);
+            }
+            return new GeometryConstants(run, variation, constants);
+        } catch (Exception e) {
+            System.out.println("[GeometryConstants] ---> error reading file : " + filename + " (" + e.getMessage() + ")");
+        }
+        return null;
+    }
+}
@@ -126,6 +126,16 @@ public class GeometryFactory {
      */
     public static Detector getDetector(DetectorType type, int run, String variation){
         ConstantProvider  provider = GeometryFactory.getConstants(type, run, variation);
+        return GeometryFactory.getDetector(type, provider);
+    }
+    
+    /**
+     * Build a detector in CLAS coordinate system from constants already loaded
+     * @param type detector type
+     * @param provider constants loaded with getConstants (or GeometryRegistry)
+     * @return 
+     */
+    public static Detector getDetector(DetectorType type, ConstantProvider provider){
         if(type==DetectorType.DC){
             DCFactory factory = new DCFactory();
             Detector dc = factory.createDetectorCLAS(provider);
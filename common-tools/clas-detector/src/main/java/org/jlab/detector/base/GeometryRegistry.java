@@ -0,0 +1,288 @@
+package org.jlab.detector.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jlab.detector.calib.utils.DatabaseConstantProvider;
+import org.jlab.geom.base.ConstantProvider;
+import org.jlab.geom.base.Detector;
+
+/**
+ * Process wide registry of detector geometry, keyed by detector, name,
+ * run and variation. Each item (the constants of a detector, or a
+ * geometry built from them) is built once, by the first thread asking
+ * for it, and the same instance is returned to every engine after that.
+ * The items are shared and must be treated as read only.
+ * <p>
+ * The geometry constants can also be kept in a local cache directory
+ * (set with setCacheDirectory, the system property or the environment
+ * variable CLAS12_GEOMETRY_CACHE), so that the database is not used at
+ * startup when the files are there. The cache is keyed by detector, run
+ * and variation only and has to be cleared when the geometry in the
+ * database changes. The built geometry itself (Geant4 volumes, surfaces)
+ * is not serializable and is rebuilt from the cached constants.
+ */
+public class GeometryRegistry {
+
+    /**
+     * builds a geometry item from the constants of its detector.
+     * @param <T> geometry type
+     */
+    public interface Builder<T> {
+        T build(ConstantProvider provider);
+    }
+
+    private static final String CONSTANTS = "constants";
+
+    private static final ConcurrentHashMap<String,RegistryEntry> REGISTRY = new ConcurrentHashMap<String,RegistryEntry>();
+
+    private static volatile String cacheDirectory = getDefaultCacheDirectory();
+
+    private static String getDefaultCacheDirectory(){
+        String directory = System.getProperty("CLAS12_GEOMETRY_CACHE");
+        if(directory==null) directory = System.getenv("CLAS12_GEOMETRY_CACHE");
+        return directory;
+    }
+
+    /**
+     * sets the directory where the geometry constants are cached,
+     * null or empty to always read them from the database.
+     * @param directory cache directory
+     */
+    public static void setCacheDirectory(String directory){
+        cacheDirectory = directory;
+    }
+
+    public static String getCacheDirectory(){
+        return cacheDirectory;
+    }
+
+    private static String getKey(DetectorType type, String name, int run, String variation){
+        return type.getName() + "/" + name + "/" + run + "/" + variation;
+    }
+
+    /**
+     * returns the item with the given key, building it if it is not in the
+     * registry yet. Threads asking for an item that is being built wait for
+     * the first build to finish.
+     * @param <T> item type
+     * @param type detector type
+     * @param name name of the item, different for each kind of geometry built for the detector
+     * @param run run number
+     * @param variation database variation
+     * @param builder builds the item
+     * @return the shared item
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(DetectorType type, String name, int run, String variation, Callable<T> builder){
+        String key = getKey(type, name, run, variation);
+        RegistryEntry entry = REGISTRY.get(key);
+        if(entry==null){
+            RegistryEntry created = new RegistryEntry(key, (Callable<Object>) builder);
+            entry = REGISTRY.putIfAbsent(key, created);
+            if(entry==null){
+                entry = created;
+                entry.build();
+            }
+        }
+        entry.requests.incrementAndGet();
+        try {
+            return (T) entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("[GeometryRegistry] ---> interrupted while building : " + key, e);
+        } catch (ExecutionException e) {
+            REGISTRY.remove(key, entry);
+            throw new IllegalStateException("[GeometryRegistry] ---> error building : " + key, e.getCause());
+        }
+    }
+
+    /**
+     * returns the geometry built from the constants of a detector.
+     * @param <T> geometry type
+     * @param type detector type
+     * @param name name of the geometry, for example the class name of the factory
+     * @param run run number
+     * @param variation database variation
+     * @param builder builds the geometry from the constants
+     * @return the shared geometry
+     */
+    public static <T> T getGeometry(final DetectorType type, String name, final int run, final String variation,
+            final Builder<T> builder){
+        return get(type, name, run, variation, new Callable<T>(){
+            @Override
+            public T call(){
+                return builder.build(getConstants(type, run, variation));
+            }
+        });
+    }
+
+    /**
+     * returns the geometry constants of a detector, from the cache directory
+     * if the file is there, from the database otherwise.
+     * @param type detector type
+     * @param run run number
+     * @param variation database variation
+     * @return the shared constants
+     */
+    public static GeometryConstants getConstants(final DetectorType type, final int run, final String variation){
+        return get(type, CONSTANTS, run, variation, new Callable<GeometryConstants>(){
+            @Override
+            public GeometryConstants call(){
+                return loadConstants(type, run, variation);
+            }
+        });
+    }
+
+    /**
+     * returns the detector in CLAS coordinate system, same as
+     * GeometryFactory.getDetector but built only once.
+     * @param type detector type
+     * @param run run number
+     * @param variation database variation
+     * @return the shared detector
+     */
+    public static Detector getDetector(final DetectorType type, int run, String variation){
+        return getGeometry(type, "detector", run, variation, new Builder<Detector>(){
+            @Override
+            public Detector build(ConstantProvider provider){
+                return GeometryFactory.getDetector(type, provider);
+            }
+        });
+    }
+
+    private static GeometryConstants loadConstants(DetectorType type, int run, String variation){
+        String directory = cacheDirectory;
+        String filename  = null;
+        if(directory!=null && directory.isEmpty()==false){
+            filename = directory + File.separator + "geometry-" + type.getName()
+                    + "-" + run + "-" + variation + ".dat";
+            if(new File(filename).exists()){
+                GeometryConstants constants = GeometryConstants.read(filename);
+                if(constants!=null && constants.getRun()==run
+                        && constants.getVariation().equals(variation)){
+                    System.out.println("[GeometryRegistry] ---> constants read from cache : " + filename);
+                    return constants;
+                }
+            }
+        }
+        DatabaseConstantProvider provider = (DatabaseConstantProvider) GeometryFactory.getConstants(type, run, variation);
+        GeometryConstants constants = GeometryConstants.copyOf(run, variation, provider);
+        if(filename!=null){
+            try {
+                new File(directory).mkdirs();
+                constants.save(filename);
+            } catch (IOException e) {
+                System.out.println("[GeometryRegistry] ---> constants cache not written : " + filename + " (" + e.getMessage() + ")");
+            }
+        }
+        return constants;
+    }
+
+    public static boolean contains(DetectorType type, String name, int run, String variation){
+        RegistryEntry entry = REGISTRY.get(getKey(type, name, run, variation));
+        return entry!=null && entry.task.isDone();
+    }
+
+    /**
+     * @return keys of the items in the registry, in the form detector/name/run/variation
+     */
+    public static List<String> getKeys(){
+        return new ArrayList<String>(REGISTRY.keySet());
+    }
+
+    /**
+     * @param key key in the form detector/name/run/variation
+     * @return time spent building the item in milliseconds, -1 if it was not built yet
+     */
+    public static double getBuildTime(String key){
+        RegistryEntry entry = REGISTRY.get(key);
+        if(entry==null||entry.buildTime<0) return -1;
+        return entry.buildTime*1e-6;
+    }
+
+    /**
+     * heap used before and after building an item, the value is approximate:
+     * it includes garbage and whatever other threads allocate at the same time.
+     * For constants the size of the strings is returned.
+     * @param key key in the form detector/name/run/variation
+     * @return memory in bytes, -1 if the item was not built yet
+     */
+    public static long getMemory(String key){
+        RegistryEntry entry = REGISTRY.get(key);
+        if(entry==null) return -1;
+        return entry.memory;
+    }
+
+    /**
+     * @param key key in the form detector/name/run/variation
+     * @return number of times the item was asked for
+     */
+    public static int getRequestCount(String key){
+        RegistryEntry entry = REGISTRY.get(key);
+        if(entry==null) return 0;
+        return entry.requests.get();
+    }
+
+    /**
+     * removes all the items, engines keep the instances they already have.
+     */
+    public static void clear(){
+        REGISTRY.clear();
+    }
+
+    public static void show(){
+        System.out.println(getStatistics());
+    }
+
+    public static String getStatistics(){
+        StringBuilder str = new StringBuilder();
+        str.append(String.format("%-48s %12s %12s %8s\n", "[GeometryRegistry] item", "time (ms)", "memory (kB)", "requests"));
+        double totalTime   = 0;
+        long   totalMemory = 0;
+        for(RegistryEntry entry : REGISTRY.values()){
+            if(entry.task.isDone()==false) continue;
+            str.append(String.format("%-48s %12.2f %12d %8d\n", entry.key,
+                    entry.buildTime*1e-6, entry.memory/1024, entry.requests.get()));
+            totalTime   += entry.buildTime*1e-6;
+            totalMemory += entry.memory;
+        }
+        str.append(String.format("%-48s %12.2f %12d\n", "total", totalTime, totalMemory/1024));
+        return str.toString();
+    }
+
+    private static class RegistryEntry {
+
+        private final String key;
+        private final FutureTask<Object> task;
+        private volatile long buildTime = -1;
+        private volatile long memory    = -1;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        RegistryEntry(String key, Callable<Object> builder){
+            this.key  = key;
+            this.task = new FutureTask<Object>(builder);
+        }
+
+        void build(){
+            Runtime runtime = Runtime.getRuntime();
+            long heap  = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            task.run();
+            buildTime = System.nanoTime() - start;
+            memory    = Math.max(0, runtime.totalMemory() - runtime.freeMemory() - heap);
+            try {
+                Object item = task.get();
+                if(item instanceof GeometryConstants) memory = ((GeometryConstants) item).getMemorySize();
+            } catch (Exception e) {
+                // reported to the caller by get
+            }
+        }
+    }
+}
@@ -12,6 +12,14 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 import org.jlab.utils.groups.IndexedTable;
 
 /**
@@ -21,10 +29,17 @@ import org.jlab.utils.groups.IndexedTable;
 public class ConstantsManager {
     
     private DatabaseConstantsDescriptor  defaultDescriptor = new DatabaseConstantsDescriptor();
-    private volatile Map<Integer,DatabaseConstantsDescriptor>  runConstants = new LinkedHashMap<Integer,DatabaseConstantsDescriptor>();
+    private final Map<Integer,RunConstants>  runConstants = new ConcurrentHashMap<Integer,RunConstants>();
+    private final AtomicLong accessCounter     = new AtomicLong();
+    private final Object     loadLock          = new Object();
+    private volatile int     maxRuns           = 0;
     private String   databaseVariation = "default";
     private String   timeStamp         = "";
     
+    private static volatile ExecutorService  prefetchService = null;
+    private static volatile ConstantsSnapshot snapshot        = null;
+    private static volatile String            snapshotFile    = null;
+    
     public ConstantsManager(){
         
     }
@@ -56,11 +71,76 @@ public class ConstantsManager {
         
     }
     
-    public IndexedTable  getConstants(int run, String table){
-        if(this.runConstants.containsKey(run)==false){
-            this.loadConstantsForRun(run);
+    /**
+     * Sets a local snapshot file (see ConstantsSnapshot) used by all
+     * constants managers in the process. Tables found in the snapshot for
+     * the requested run, variation and time stamp are taken from the file,
+     * the others are read from the database. If the file can not be read
+     * or its checksum is wrong, all tables are read from the database.
+     * The file can also be given with the system property
+     * CLAS12_CONSTANTS_SNAPSHOT or the environment variable of the same name.
+     * @param filename snapshot file name, null to disable
+     */
+    public static synchronized void setSnapshotFile(String filename){
+        snapshotFile = filename;
+        snapshot     = null;
+        if(filename!=null) snapshot = ConstantsSnapshot.read(filename);
+    }
+    
+    /**
+     * @return snapshot used by the constants managers, null if there is no
+     * snapshot file or it could not be read
+     */
+    static ConstantsSnapshot getSnapshot(){
+        if(snapshotFile==null){
+            synchronized(ConstantsManager.class){
+                if(snapshotFile==null){
+                    String filename = System.getProperty("CLAS12_CONSTANTS_SNAPSHOT");
+                    if(filename==null) filename = System.getenv("CLAS12_CONSTANTS_SNAPSHOT");
+                    if(filename!=null) setSnapshotFile(filename);
+                    else snapshotFile = "";
+                }
+            }
         }
-        DatabaseConstantsDescriptor  descriptor = this.runConstants.get(run);
+        return snapshot;
+    }
+    
+    /**
+     * @return names of the database tables required by this manager
+     */
+    public List<String> getTableNames(){
+        return new ArrayList<String>(this.defaultDescriptor.getTableNames());
+    }
+    
+    /**
+     * Sets the maximum number of runs kept in memory, when a new run
+     * is loaded the least recently used run is removed from the cache.
+     * By default all the runs are kept.
+     * @param runs maximum number of cached runs, 0 for no limit
+     */
+    public void setMaxRuns(int runs){
+        this.maxRuns = Math.max(0, runs);
+        this.evictRuns();
+    }
+    
+    /**
+     * @return maximum number of cached runs, 0 for no limit
+     */
+    public int getMaxRuns(){
+        return this.maxRuns;
+    }
+    
+    /**
+     * @param run run number
+     * @return true if all tables for the run are loaded
+     */
+    public boolean hasRun(int run){
+        RunConstants entry = this.runConstants.get(run);
+        return entry!=null&&entry.task.isDone();
+    }
+    
+    public IndexedTable  getConstants(int run, String table){
+        DatabaseConstantsDescriptor  descriptor = this.getDescriptor(run);
         if(descriptor.getMap().containsKey(table)==false){
             System.out.println("[getConstants] error ( run = " + run + " ) "
                     + " table not found with name : " + table);
@@ -68,47 +148,161 @@ public class ConstantsManager {
         return descriptor.getMap().get(table);
     }
     
-    private synchronized void loadConstantsForRun(int run){
-
+    /**
+     * Starts loading the tables for the given run in a background thread,
+     * so a later getConstants call for that run does not have to wait for
+     * the database. Does nothing if the run is already loaded or loading.
+     * @param run run number
+     */
+    public void prefetch(int run){
         if(this.runConstants.containsKey(run)==true) return;
+        RunConstants entry = new RunConstants(run);
+        if(this.runConstants.putIfAbsent(run, entry)==null){
+            System.out.println("[ConstantsManager] --->  prefetching tables for run = " + run);
+            getPrefetchService().execute(entry.task);
+            this.evictRuns();
+        }
+    }
+    
+    private DatabaseConstantsDescriptor getDescriptor(int run){
+        RunConstants entry = this.runConstants.get(run);
+        if(entry==null){
+            RunConstants created = new RunConstants(run);
+            entry = this.runConstants.putIfAbsent(run, created);
+            if(entry==null){
+                entry = created;
+                entry.task.run();
+                this.evictRuns();
+            }
+        }
+        entry.lastAccess = accessCounter.incrementAndGet();
+        // a prefetched run may still wait behind another run in the prefetch
+        // thread, load it here, this does nothing if it is running or done
+        entry.task.run();
+        try {
+            return entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("[ConstantsManager] interrupted while loading run " + run, e);
+        } catch (ExecutionException e) {
+            this.runConstants.remove(run, entry);
+            throw new RuntimeException("[ConstantsManager] failed to load run " + run, e.getCause());
+        }
+    }
+    
+    /**
+     * removes least recently used runs until the cache fits in maxRuns,
+     * runs which are still loading are never removed.
+     */
+    private synchronized void evictRuns(){
+        if(this.maxRuns<=0) return;
+        while(this.runConstants.size()>this.maxRuns){
+            Integer oldest = null;
+            long    oldestAccess = Long.MAX_VALUE;
+            for(Map.Entry<Integer,RunConstants> entry : this.runConstants.entrySet()){
+                RunConstants rc = entry.getValue();
+                if(rc.task.isDone()==true&&rc.lastAccess<oldestAccess){
+                    oldest = entry.getKey();
+                    oldestAccess = rc.lastAccess;
+                }
+            }
+            if(oldest==null) return;
+            System.out.println("[ConstantsManager] --->  removing tables for run = " + oldest);
+            this.runConstants.remove(oldest);
+        }
+    }
+    
+    private static ExecutorService getPrefetchService(){
+        if(prefetchService==null){
+            synchronized(ConstantsManager.class){
+                if(prefetchService==null){
+                    prefetchService = Executors.newSingleThreadExecutor(new ThreadFactory(){
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "ConstantsManager-prefetch");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return prefetchService;
+    }
+    
+    private DatabaseConstantsDescriptor loadConstantsForRun(int run){
         
-        System.out.println("[ConstantsManager] --->  loading table for run = " + run);
-        DatabaseConstantsDescriptor desc = defaultDescriptor.getCopy(run);
-        DatabaseConstantProvider provider = new DatabaseConstantProvider(run,
-                this.databaseVariation, this.timeStamp);
-        
-        
-        List<String>   tn = new ArrayList<String>(desc.getTableNames());
-        List<String>   tk = new ArrayList<String>(desc.getTableKeys());
+        synchronized(loadLock){
+            System.out.println("[ConstantsManager] --->  loading table for run = " + run);
+            DatabaseConstantsDescriptor desc = defaultDescriptor.getCopy(run);
+            DatabaseConstantProvider provider = null;
+            ConstantsSnapshot        local    = getSnapshot();
+            
+            List<String>   tn = new ArrayList<String>(desc.getTableNames());
+            List<String>   tk = new ArrayList<String>(desc.getTableKeys());
+            
+            //for(String tableName : desc.getTableNames())
+            
+            for(int i = 0; i < desc.getTableNames().size(); i++){                
+                String tableName = tn.get(i);
+                if(local!=null){
+                    IndexedTable  table = local.getTable(run, this.databaseVariation, this.timeStamp, tableName);
+                    if(table!=null){
+                        desc.getMap().put(tk.get(i), table);
+                        System.out.println(String.format("***** >>> adding : %14s / table = %s (snapshot)", tk.get(i),tableName));
+                        continue;
+                    }
+                }
+                try {
+                    if(provider==null){
+                        provider = new DatabaseConstantProvider(run,
+                                this.databaseVariation, this.timeStamp);
+                    }
+                    IndexedTable  table = provider.readTable(tableName);
+                    desc.getMap().put(tk.get(i), table);
+                    System.out.println(String.format("***** >>> adding : %14s / table = %s", tk.get(i),tableName));
+                    //System.out.println("***** >>> adding : table " + tableName 
+                    //        + "  key = " + tk.get(i));
+                } catch (Exception e) {
+                    System.out.println("[ConstantsManager] ---> error reading table : "
+                            + tableName);
+                }
+            }
+            if(provider!=null) provider.disconnect();
+            desc.setRunNumber(run);
+            //System.out.println(this.toString());
+            return desc;
+        }
+    }
+    
+    /**
+     * Cache entry holding the (possibly still loading) constants of one run.
+     */
+    private class RunConstants {
         
-        //for(String tableName : desc.getTableNames())
+        final FutureTask<DatabaseConstantsDescriptor>  task;
+        volatile long  lastAccess;
         
-        for(int i = 0; i < desc.getTableNames().size(); i++){                
-            String tableName = tn.get(i);
-            try {
-                IndexedTable  table = provider.readTable(tableName);
-                desc.getMap().put(tk.get(i), table);
-                System.out.println(String.format("***** >>> adding : %14s / table = %s", tk.get(i),tableName));
-                //System.out.println("***** >>> adding : table " + tableName 
-                //        + "  key = " + tk.get(i));
-            } catch (Exception e) {
-                System.out.println("[ConstantsManager] ---> error reading table : "
-                        + tableName);
-            }
+        RunConstants(final int run){
+            this.lastAccess = accessCounter.incrementAndGet();
+            this.task = new FutureTask<DatabaseConstantsDescriptor>(new Callable<DatabaseConstantsDescriptor>(){
+                @Override
+                public DatabaseConstantsDescriptor call() {
+                    return loadConstantsForRun(run);
+                }
+            });
         }
-        provider.disconnect();
-        this.runConstants.put(run, desc);
-        //System.out.println(this.toString());
     }
     
     @Override
     public String toString(){
         StringBuilder str = new StringBuilder();
-        for(Map.Entry<Integer,DatabaseConstantsDescriptor> entry : runConstants.entrySet()){
+        for(Map.Entry<Integer,RunConstants> entry : runConstants.entrySet()){
+            if(entry.getValue().task.isDone()==false) continue;
             str.append("CONSTANTS SET FOR RUN = ");
             str.append(entry.getKey());
             str.append("\n");
-            DatabaseConstantsDescriptor desc = entry.getValue();
+            DatabaseConstantsDescriptor desc = this.getDescriptor(entry.getKey());
             for(Map.Entry<String,IndexedTable>  tables : desc.getMap().entrySet()){
                 str.append(String.format("TABLE : %s\n", tables.getKey()));
             }
@@ -0,0 +1,348 @@
+package org.jlab.detector.calib.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.jlab.utils.groups.IndexedList;
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * Local binary copy of database tables for a set of runs, used by
+ * ConstantsManager instead of opening a database connection.
+ * The file is memory mapped when read and verified with a CRC32
+ * checksum stored at the end of the file. Layout (big endian):
+ * <pre>
+ *   int  magic, int version, int nruns
+ *   nruns x { int run, str variation, str timestamp, int ntables,
+ *             ntables x { str name, int nindex, nindex x str index name,
+ *                         int ncolumns, ncolumns x { str name, byte type },
+ *                         int nrows, nrows x { nindex x int, ncolumns x (double|int) } } }
+ *   long crc32 (of all preceding bytes)
+ * </pre>
+ * where str is a short length followed by UTF-8 bytes. Reading a file only
+ * walks the run headers, the tables of a run are decoded from the mapped
+ * file by the first getTable call for that run.
+ */
+public class ConstantsSnapshot {
+
+    public static final int SNAPSHOT_MAGIC   = 0x43434442;
+    public static final int SNAPSHOT_VERSION = 1;
+
+    private final Map<String,Map<String,IndexedTable>>  runTables = new LinkedHashMap<String,Map<String,IndexedTable>>();
+    private final List<Integer>  runNumbers = new ArrayList<Integer>();
+    private final List<String>   runVariations = new ArrayList<String>();
+    private final List<String>   runTimeStamps = new ArrayList<String>();
+    // mapped file and position of the table count of the runs not decoded yet
+    private ByteBuffer                mappedBuffer  = null;
+    private final Map<String,Integer> runPositions  = new LinkedHashMap<String,Integer>();
+
+    public ConstantsSnapshot(){
+
+    }
+
+    private static String getKey(int run, String variation, String timestamp){
+        return run + "/" + variation + "/" + timestamp;
+    }
+
+    /**
+     * adds tables for one run to the snapshot.
+     * @param run run number
+     * @param variation database variation
+     * @param timestamp database time stamp (empty for current)
+     * @param tables tables keyed by table name
+     */
+    public void addTables(int run, String variation, String timestamp, Map<String,IndexedTable> tables){
+        String key = getKey(run, variation, timestamp);
+        if(runTables.containsKey(key)==false){
+            runTables.put(key, new LinkedHashMap<String,IndexedTable>());
+            runNumbers.add(run);
+            runVariations.add(variation);
+            runTimeStamps.add(timestamp);
+        }
+        runTables.get(key).putAll(tables);
+    }
+
+    public synchronized boolean hasRun(int run, String variation, String timestamp){
+        return runTables.containsKey(getKey(run, variation, timestamp));
+    }
+
+    public List<Integer> getRuns(){
+        return this.runNumbers;
+    }
+
+    /**
+     * @param run run number
+     * @param variation database variation
+     * @param timestamp database time stamp
+     * @param table table name
+     * @return the table, or null if it is not in the snapshot
+     */
+    public synchronized IndexedTable getTable(int run, String variation, String timestamp, String table){
+        Map<String,IndexedTable> tables = this.getTables(getKey(run, variation, timestamp));
+        if(tables==null) return null;
+        return tables.get(table);
+    }
+
+    /*
+     * tables of a run, decoded from the mapped file the first time.
+     */
+    private Map<String,IndexedTable> getTables(String key){
+        Map<String,IndexedTable> tables = runTables.get(key);
+        Integer position = runPositions.remove(key);
+        if(tables!=null&&position!=null){
+            ByteBuffer buffer = mappedBuffer.duplicate();
+            buffer.position(position);
+            int ntables = buffer.getInt();
+            for(int t = 0; t < ntables; t++){
+                String name = readString(buffer);
+                tables.put(name, readTable(buffer));
+            }
+            if(runPositions.isEmpty()) mappedBuffer = null;
+        }
+        return tables;
+    }
+
+    /**
+     * writes the snapshot to a file.
+     * @param filename output file name
+     * @throws IOException
+     */
+    public synchronized void save(String filename) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fileStream = new FileOutputStream(filename)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(fileStream, crc)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(runNumbers.size());
+            for(int r = 0; r < runNumbers.size(); r++){
+                Map<String,IndexedTable> tables = this.getTables(getKey(runNumbers.get(r),
+                        runVariations.get(r), runTimeStamps.get(r)));
+                out.writeInt(runNumbers.get(r));
+                writeString(out, runVariations.get(r));
+                writeString(out, runTimeStamps.get(r));
+                out.writeInt(tables.size());
+                for(Map.Entry<String,IndexedTable> entry : tables.entrySet()){
+                    writeString(out, entry.getKey());
+                    writeTable(out, entry.getValue());
+                }
+            }
+            out.flush();
+            DataOutputStream tail = new DataOutputStream(fileStream);
+            tail.writeLong(crc.getValue());
+            tail.flush();
+        }
+    }
+
+    private static void writeTable(DataOutputStream out, IndexedTable table) throws IOException {
+        int nindex   = table.getIndexCount();
+        int ncolumns = table.getEntryCount();
+        boolean[] isDouble = new boolean[ncolumns];
+        out.writeInt(nindex);
+        for(int i = 0; i < nindex; i++) writeString(out, table.getIndexName(i));
+        out.writeInt(ncolumns);
+        for(int i = 0; i < ncolumns; i++){
+            isDouble[i] = "D".equals(table.getEntryType(i));
+            writeString(out, table.getEntryName(i));
+            out.writeByte(isDouble[i] ? 'D' : 'I');
+        }
+        Map<Long,Object> rows = table.getList().getMap();
+        out.writeInt(rows.size());
+        for(Map.Entry<Long,Object> row : rows.entrySet()){
+            for(int i = 0; i < nindex; i++){
+                out.writeInt(IndexedList.IndexGenerator.getIndex(row.getKey(), i));
+            }
+            IndexedTable.IndexedEntry values = (IndexedTable.IndexedEntry) row.getValue();
+            for(int i = 0; i < ncolumns; i++){
+                if(isDouble[i]==true){
+                    out.writeDouble(values.getValue(i).doubleValue());
+                } else {
+                    out.writeInt(values.getValue(i).intValue());
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getShort()&0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * reads a snapshot file, the file is memory mapped and the checksum
+     * is verified, the tables are decoded when they are first requested.
+     * @param filename snapshot file name
+     * @return snapshot or null if the file can not be read or is corrupted
+     */
+    public static ConstantsSnapshot read(String filename){
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            if(size<20){
+                System.out.println("[ConstantsSnapshot] ---> file is too short : " + filename);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            ByteBuffer content = buffer.duplicate();
+            content.limit((int) (size-8));
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if(crc.getValue()!=buffer.getLong((int) (size-8))){
+                System.out.println("[ConstantsSnapshot] ---> checksum error in file : " + filename);
+                return null;
+            }
+
+            // the tables must end where the checksum starts
+            buffer.limit((int) (size-8));
+            if(buffer.getInt()!=SNAPSHOT_MAGIC||buffer.getInt()!=SNAPSHOT_VERSION){
+                System.out.println("[ConstantsSnapshot] ---> not a snapshot file (or wrong version) : " + filename);
+                return null;
+            }
+
+            ConstantsSnapshot snapshot = new ConstantsSnapshot();
+            snapshot.mappedBuffer = buffer;
+            int nruns = buffer.getInt();
+            for(int r = 0; r < nruns; r++){
+                int    run       = buffer.getInt();
+                String variation = readString(buffer);
+                String timestamp = readString(buffer);
+                snapshot.addTables(run, variation, timestamp, new LinkedHashMap<String,IndexedTable>());
+                snapshot.runPositions.put(getKey(run, variation, timestamp), buffer.position());
+                int    ntables   = buffer.getInt();
+                for(int t = 0; t < ntables; t++){
+                    readString(buffer);
+                    skipTable(buffer);
+                }
+            }
+            if(buffer.hasRemaining()){
+                System.out.println("[ConstantsSnapshot] ---> inconsistent table sizes in file : " + filename);
+                return null;
+            }
+            if(snapshot.runPositions.isEmpty()) snapshot.mappedBuffer = null;
+            System.out.println("[ConstantsSnapshot] ---> loaded " + nruns + " runs from : " + filename);
+            return snapshot;
+        } catch (Exception e) {
+            System.out.println("[ConstantsSnapshot] ---> error reading file : " + filename + " (" + e.getMessage() + ")");
+        }
+        return null;
+    }
+
+    /*
+     * moves the buffer past a table, reading only its layout.
+     */
+    private static void skipTable(ByteBuffer buffer){
+        int nindex = buffer.getInt();
+        for(int i = 0; i < nindex; i++) readString(buffer);
+        int ncolumns = buffer.getInt();
+        int rowSize  = 4*nindex;
+        for(int i = 0; i < ncolumns; i++){
+            readString(buffer);
+            rowSize += buffer.get()=='D' ? 8 : 4;
+        }
+        int nrows = buffer.getInt();
+        buffer.position(buffer.position() + nrows*rowSize);
+    }
+
+    private static IndexedTable readTable(ByteBuffer buffer){
+        int nindex = buffer.getInt();
+        String[] indexNames = new String[nindex];
+        for(int i = 0; i < nindex; i++) indexNames[i] = readString(buffer);
+        int ncolumns = buffer.getInt();
+        String[]  format   = new String[ncolumns];
+        boolean[] isDouble = new boolean[ncolumns];
+        for(int i = 0; i < ncolumns; i++){
+            String name = readString(buffer);
+            isDouble[i] = buffer.get()=='D';
+            format[i] = name + (isDouble[i] ? "/D" : "/I");
+        }
+        IndexedTable table = new IndexedTable(nindex, format);
+        for(int i = 0; i < nindex; i++) table.setIndexName(i, indexNames[i]);
+
+        int nrows = buffer.getInt();
+        int[] index = new int[nindex];
+        for(int r = 0; r < nrows; r++){
+            for(int i = 0; i < nindex; i++) index[i] = buffer.getInt();
+            table.addEntry(index);
+            IndexedTable.IndexedEntry values = (IndexedTable.IndexedEntry) table.getList().getItem(index);
+            for(int i = 0; i < ncolumns; i++){
+                if(isDouble[i]==true){
+                    values.setValue(i, buffer.getDouble());
+                } else {
+                    values.setValue(i, buffer.getInt());
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * reads the given tables from the database for each run and writes them
+     * to a snapshot file.
+     * @param filename output file name
+     * @param runs run numbers
+     * @param variation database variation
+     * @param timestamp database time stamp (empty for current)
+     * @param tables table names
+     * @throws IOException
+     */
+    public static void export(String filename, List<Integer> runs, String variation,
+            String timestamp, List<String> tables) throws IOException {
+        ConstantsSnapshot snapshot = new ConstantsSnapshot();
+        for(Integer run : runs){
+            DatabaseConstantProvider provider = new DatabaseConstantProvider(run, variation, timestamp);
+            Map<String,IndexedTable> runTables = new LinkedHashMap<String,IndexedTable>();
+            for(String table : tables){
+                try {
+                    runTables.put(table, provider.readTable(table));
+                } catch (Exception e) {
+                    System.out.println("[ConstantsSnapshot] ---> error reading table : " + table);
+                }
+            }
+            provider.disconnect();
+            snapshot.addTables(run, variation, timestamp, runTables);
+        }
+        snapshot.save(filename);
+        System.out.println("[ConstantsSnapshot] ---> saved " + runs.size() + " runs, "
+                + tables.size() + " tables to : " + filename);
+    }
+
+    /**
+     * parses a comma separated list of runs, ranges are given as first-last.
+     * @param runList list of runs, for example "4013,4014,5000-5010"
+     * @return run numbers
+     */
+    public static List<Integer> parseRuns(String runList){
+        List<Integer> runs = new ArrayList<Integer>();
+        for(String token : runList.split(",")){
+            String[] range = token.trim().split("-");
+            if(range.length==2){
+                int first = Integer.parseInt(range[0].trim());
+                int last  = Integer.parseInt(range[1].trim());
+                for(int run = first; run <= last; run++) runs.add(run);
+            } else if(token.trim().length()>0){
+                runs.add(Integer.parseInt(token.trim()));
+            }
+        }
+        return runs;
+    }
+}
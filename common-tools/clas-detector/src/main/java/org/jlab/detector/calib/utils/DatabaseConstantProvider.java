@@ -465,6 +465,18 @@ public class DatabaseConstantProvider implements ConstantProvider {
         }
         return 0;
     }
+
+    /**
+     * returns a copy of the values of a loaded column, as read from the database.
+     * @param name table name followed by the column name
+     * @return values, or null if the column is not loaded
+     */
+    public String[] getStringValues(String name){
+        if(this.hasConstant(name)==true){
+            return this.constantContainer.get(name).clone();
+        }
+        return null;
+    }
     
     
 
@@ -484,6 +484,9 @@ public class CLASDecoder {
         parser.addOption("-d", "0","debug mode, set >0 for more verbose output");
         parser.addOption("-m", "run","translation tables source (use -m devel for development tables)");
         parser.addOption("-b", "16","record buffer size in MB");
+        parser.addOption("-j", "1","number of decoding threads (1 decodes in the main thread)");
+        parser.addOption("-q", "0","maximum number of events being decoded with -j > 1 (0 means 4 per thread)");
+        parser.addOption("-report", "10","seconds between reports of events/s and queue occupancy with -j > 1");
         parser.addRequired("-o","output.hipo");
         
         
@@ -521,10 +524,7 @@ public class CLASDecoder {
             int compression = parser.getOption("-c").intValue();
             int  recordsize = parser.getOption("-b").intValue();
             int debug = parser.getOption("-d").intValue();            
-            
-            CLASDecoder decoder = new CLASDecoder(developmentMode);
-            
-            decoder.setDebugMode(debug);
+            int nthreads = parser.getOption("-j").intValue();
             
             //HipoDataSync writer = new HipoDataSync();
             System.out.println(" OUTPUT WRITER CHANGED TO JNP HIPO");
@@ -540,6 +540,22 @@ public class CLASDecoder {
             ProgressPrintout progress = new ProgressPrintout();
             System.out.println("INPUT LIST SIZE = " + inputList.size());
             int nevents = parser.getOption("-n").intValue();
+            
+            if(nthreads>1){
+                ParallelDecoder parallel = new ParallelDecoder(developmentMode, nthreads,
+                        parser.getOption("-q").intValue());
+                parallel.setDebugMode(debug);
+                parallel.setHeader(nrun, (float) torus, (float) solenoid);
+                parallel.setReportInterval(parser.getOption("-report").doubleValue());
+                parallel.process(inputList, writer, nevents);
+                writer.close();
+                return;
+            }
+            
+            CLASDecoder decoder = new CLASDecoder(developmentMode);
+            
+            decoder.setDebugMode(debug);
+            
             int counter = 0;
             
             if(nrun>0){
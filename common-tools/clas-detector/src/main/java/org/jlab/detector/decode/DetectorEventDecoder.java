@@ -9,6 +9,8 @@ package org.jlab.detector.decode;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
 import org.jlab.detector.base.DetectorType;
 import org.jlab.detector.calib.utils.ConstantsManager;
 import org.jlab.detector.decode.DetectorDataDgtz.ADCData;
@@ -38,6 +40,13 @@ public class DetectorEventDecoder {
     
     private  Boolean          useExtendedFitter   = false;
     
+    private  TranslationTable translationTable    = null;
+    private  PulseFitterTable fitterTable         = null;
+    
+    private  int              fitterChunkSize     = 0;
+    private  final int[]      fadcResult          = new int[ExtendedFADCFitter.RESULT_SIZE];
+    private  final double[]   mvtResult           = new double[MVTFitter.RESULT_SIZE];
+    
     
     
     public DetectorEventDecoder(boolean development){
@@ -115,130 +124,141 @@ public class DetectorEventDecoder {
     public void setUseExtendedFitter(boolean flag){
         this.useExtendedFitter = flag;
     }
+    /**
+     * Returns the translation tables of the current run compiled in one
+     * index, rebuilt when the run number changes.
+     * @return translation table of the current run
+     */
+    public TranslationTable getTranslationTable(){
+        TranslationTable table = this.translationTable;
+        if(table==null||table.getRunNumber()!=runNumber){
+            table = new TranslationTable(translationManager, runNumber, keysTrans);
+            this.translationTable = table;
+        }
+        return table;
+    }
+    
+    /**
+     * Returns the fitter tables of the current run compiled in one
+     * index, rebuilt when the run number changes.
+     * @return fitter table of the current run
+     */
+    public PulseFitterTable getFitterTable(){
+        PulseFitterTable table = this.fitterTable;
+        if(table==null||table.getRunNumber()!=runNumber){
+            table = new PulseFitterTable(fitterManager, runNumber, keysFitter);
+            this.fitterTable = table;
+        }
+        return table;
+    }
+    
+    /**
+     * Set the number of channels fitted by each task when the pulses of an
+     * event are fitted in parallel, events with more channels than that are
+     * split in chunks fitted concurrently. 0 (default) fits all the pulses
+     * in the calling thread.
+     * @param chunkSize channels per task, 0 to disable parallel fitting
+     */
+    public void setParallelFitting(int chunkSize){
+        this.fitterChunkSize = Math.max(0, chunkSize);
+    }
+    
     /**
      * applies translation table to the digitized data to translate
      * crate,slot channel to sector layer component.
      * @param detectorData 
      */
     public void translate(List<DetectorDataDgtz>  detectorData){
-        
+        TranslationTable table = this.getTranslationTable();
         for(DetectorDataDgtz data : detectorData){
-            
-            int crate    = data.getDescriptor().getCrate();
-            int slot     = data.getDescriptor().getSlot();
-            int channel  = data.getDescriptor().getChannel();
-            //if(crate==69){
-	    //System.out.println(" MVT " + crate + " " + slot + 
-	    //  "  " + channel);
-	// }
-            boolean hasBeenAssigned = false;
-            
-            for(String table : keysTrans){
-                IndexedTable  tt = translationManager.getConstants(runNumber, table);
-                DetectorType  type = DetectorType.getType(table);
-
-                if(tt.hasEntry(crate,slot,channel)==true){
-                    int sector    = tt.getIntValue("sector", crate,slot,channel);
-                    int layer     = tt.getIntValue("layer", crate,slot,channel);
-                    int component = tt.getIntValue("component", crate,slot,channel);
-                    int order     = tt.getIntValue("order", crate,slot,channel);
-                    
-                    /*if(crate>60&&crate<64){
-                        System.out.println(" SVT " + sector + " " + layer + 
-                                "  " + component);
-                    }*/
-                    data.getDescriptor().setSectorLayerComponent(sector, layer, component);
-                    data.getDescriptor().setOrder(order);
-                    data.getDescriptor().setType(type);
-                    for(int i = 0; i < data.getADCSize(); i++) {
-                        data.getADCData(i).setOrder(order);
-                    }
-                    for(int i = 0; i < data.getTDCSize(); i++) {
-                        data.getTDCData(i).setOrder(order);
-                    }
-                }
+            table.translate(data);
+        }
+    }
+    
+    /**
+     * fits the pulses of the digitized data with the fitter parameters of
+     * the current run: the MVT fitter for BMT, FMT and FTTRK channels and
+     * the extended FADC fitter for the channels in the FADC tables.
+     * @param detectorData 
+     */
+    public void fitPulses(List<DetectorDataDgtz>  detectorData){
+        this.fitPulses(this.getFitterTable(), detectorData);
+    }
+    
+    /**
+     * fits the pulses of the digitized data with the given fitter table.
+     * @param table fitter table
+     * @param detectorData 
+     */
+    void fitPulses(final PulseFitterTable table, List<DetectorDataDgtz>  detectorData){
+        final int chunk = this.fitterChunkSize;
+        final int size  = detectorData.size();
+        if(chunk<=0||size<=chunk||!(detectorData instanceof RandomAccess)){
+            for(DetectorDataDgtz data : detectorData){
+                fitPulse(table, data, fadcResult, mvtResult);
             }
+            return;
         }
-        //Collections.sort(detectorData);
+        int nchunks = (size+chunk-1)/chunk;
+        IntStream.range(0, nchunks).parallel().forEach(c -> {
+            int[]    fadc = new int[ExtendedFADCFitter.RESULT_SIZE];
+            double[] mvt  = new double[MVTFitter.RESULT_SIZE];
+            int last = Math.min(size, (c+1)*chunk);
+            for(int i = c*chunk; i < last; i++){
+                fitPulse(table, detectorData.get(i), fadc, mvt);
+            }
+        });
     }
     
-        public void fitPulses(List<DetectorDataDgtz>  detectorData){
-        for(DetectorDataDgtz data : detectorData){            
-            int crate    = data.getDescriptor().getCrate();
-            int slot     = data.getDescriptor().getSlot();
-            int channel  = data.getDescriptor().getChannel();
-            //System.out.println(" looking for " + crate + "  " 
-            //       + slot + " " + channel);
-            for(String table : keysFitter){
-                //custom MM fitter
-            	if( ( (table.equals("BMT"))&&(data.getDescriptor().getType().getName().equals("BMT")) ) 
-                 || ( (table.equals("FMT"))&&(data.getDescriptor().getType().getName().equals("FMT")) ) 
-                 || ( (table.equals("FTTRK"))&&(data.getDescriptor().getType().getName().equals("FTTRK")) ) ){
-                    IndexedTable daq = fitterManager.getConstants(runNumber, table);
-                    short adcOffset = (short) daq.getDoubleValue("adc_offset", 0, 0, 0);
-                    double fineTimeStampResolution = (byte) daq.getDoubleValue("dream_clock", 0, 0, 0);
-                    double samplingTime = (byte) daq.getDoubleValue("sampling_time", 0, 0, 0);
-                    int sparseSample = daq.getIntValue("sparse", 0, 0 ,0);
-                    if (data.getADCSize() > 0) {
-                        ADCData adc = data.getADCData(0);
-                        mvtFitter.fit(adcOffset, fineTimeStampResolution, samplingTime, adc.getPulseArray(), adc.getTimeStamp(), sparseSample);
-                        adc.setHeight((short) (mvtFitter.adcMax));
-                        adc.setTime((int) (mvtFitter.timeMax));
-                        adc.setIntegral((int) (mvtFitter.integral));
-                        adc.setTimeStamp(mvtFitter.timestamp);
-                    }
-                } else {
-                    IndexedTable  daq = fitterManager.getConstants(runNumber, table);
-                    DetectorType  type = DetectorType.getType(table);
-                    if(daq.hasEntry(crate,slot,channel)==true){                    
-                        //basicFitter.setPulse(0, 4).setPedestal(35, 70);
-                        //for(int i = 0; i < data.getADCSize(); i++){
-                        //    basicFitter.fit(data.getADCData(i));
-                        //}
-                        int nsa = daq.getIntValue("nsa", crate,slot,channel);
-                        int nsb = daq.getIntValue("nsb", crate,slot,channel);
-                        int tet = daq.getIntValue("tet", crate,slot,channel);
-                        int ped = 0;
-                        if(table.equals("RF")&&data.getDescriptor().getType().getName().equals("RF")) ped = daq.getIntValue("pedestal", crate,slot,channel);
-                        if(data.getADCSize()>0){
-                            for(int i = 0; i < data.getADCSize(); i++){
-                                ADCData adc = data.getADCData(i);
-                                if(adc.getPulseSize()>0){
-                                    //System.out.println("-----");
-                                    //System.out.println(" FITTING PULSE " + 
-                                    //        crate + " / " + slot + " / " + channel);
-                                    try {
-                                        extendedFitter.fit(nsa, nsb, tet, ped, adc.getPulseArray());
-                                    } catch (Exception e) {
-                                        System.out.println(">>>> error : fitting pulse "
-                                                            +  crate + " / " + slot + " / " + channel);
-                                    }
-                                    //System.out.println(" FIT RESULT = " + extendedFitter.adc + " / "
-                                    //        + this.extendedFitter.t0 + " / " + this.extendedFitter.ped);
-                                    int adc_corrected = extendedFitter.adc + extendedFitter.ped*(nsa+nsb);
-                                    adc.setHeight((short) this.extendedFitter.pulsePeakValue);
-                                    adc.setIntegral(adc_corrected);
-                                    adc.setTimeWord(this.extendedFitter.t0);
-                                    adc.setPedestal((short) this.extendedFitter.ped);  
-//                                    if(table.equals("RF")&&data.getDescriptor().getType().getName().equals("RF")) 
-//                                        System.out.println(" FITTING PULSE " + 
-//                                                        crate + " / " + slot + " / " + channel
-//                                                + " " + nsa + " " + nsb + " " + tet 
-//                                                + " " + extendedFitter.adc + " " + extendedFitter.ped*(nsa+nsb)
-//                                                + " " + adc.getPedestal() + " " + adc.getADC() + " " + adc.getTime()
-//                                    );
-                                }
-                            }
-                        }
-                        //System.out.println(" apply nsa nsb " + nsa + " " + nsb);
-                        if(data.getADCSize()>0){
-                            for(int i = 0; i < data.getADCSize(); i++){
-                                    data.getADCData(i).setADC(nsa, nsb);
-                            }
-                        }
+    private static void fitPulse(PulseFitterTable table, DetectorDataDgtz data, int[] fadcResult, double[] mvtResult){
+        if(data.getADCSize()==0) return;
+        int crate    = data.getDescriptor().getCrate();
+        int slot     = data.getDescriptor().getSlot();
+        int channel  = data.getDescriptor().getChannel();
+        DetectorType type = data.getDescriptor().getType();
+        int row = table.getRow(crate, slot, channel);
+        int mvt = table.getMVT(type);
+        // both fits are applied in the order of the tables, as the last one wins
+        if(mvt>=0&&(row<0||table.getMVTTableIndex(mvt)<table.getTableIndex(row))){
+            fitMVT(table, mvt, data, mvtResult);
+            mvt = -1;
+        }
+        if(row>=0){
+            int nsa = table.getNsa(row);
+            int nsb = table.getNsb(row);
+            int tet = table.getTet(row);
+            int ped = type==DetectorType.RF ? table.getPedestal(row) : 0;
+            for(int i = 0; i < data.getADCSize(); i++){
+                ADCData adc = data.getADCData(i);
+                if(adc.getPulseSize()>0){
+                    try {
+                        ExtendedFADCFitter.fit(nsa, nsb, tet, ped, adc.getPulseArray(), fadcResult);
+                    } catch (Exception e) {
+                        System.out.println(">>>> error : fitting pulse "
+                                            +  crate + " / " + slot + " / " + channel);
                     }
+                    int fitPed = fadcResult[ExtendedFADCFitter.PED];
+                    adc.setHeight((short) fadcResult[ExtendedFADCFitter.PEAK_VALUE]);
+                    adc.setIntegral(fadcResult[ExtendedFADCFitter.ADC] + fitPed*(nsa+nsb));
+                    adc.setTimeWord(fadcResult[ExtendedFADCFitter.T0]);
+                    adc.setPedestal((short) fitPed);
                 }
             }
+            for(int i = 0; i < data.getADCSize(); i++){
+                data.getADCData(i).setADC(nsa, nsb);
+            }
+        }
+        if(mvt>=0){
+            fitMVT(table, mvt, data, mvtResult);
         }
     }
+    
+    private static void fitMVT(PulseFitterTable table, int mvt, DetectorDataDgtz data, double[] mvtResult){
+        ADCData adc = data.getADCData(0);
+        MVTFitter.fit(table.getAdcOffset(mvt), table.getFineTimeStampResolution(mvt), table.getSamplingTime(mvt),
+                adc.getPulseArray(), adc.getTimeStamp(), table.getSparseSample(mvt), mvtResult);
+        adc.setHeight((short) (mvtResult[MVTFitter.ADC_MAX]));
+        adc.setTime((int) (mvtResult[MVTFitter.TIME_MAX]));
+        adc.setIntegral((int) (mvtResult[MVTFitter.INTEGRAL]));
+    }
 }
@@ -12,16 +12,35 @@ package org.jlab.detector.decode;
  */
 public class ExtendedFADCFitter implements IFADCFitter {
 
+    /**
+     * indices of the results of the static fit method
+     */
+    public static final int T0                 = 0;
+    public static final int ADC                = 1;
+    public static final int PED                = 2;
+    public static final int PEAK_VALUE         = 3;
+    public static final int PEAK_POSITION      = 4;
+    public static final int THRESHOLD_CROSSING = 5;
+    public static final int PULSE_WIDTH        = 6;
+    public static final int RESULT_SIZE        = 7;
+    
+    // pedestal samples (exclusive first, inclusive last) and first sample
+    // looked at for the threshold crossing when the pedestal is given
+    private static final int PED_FIRST       = 1;
+    private static final int PED_LAST        = 15;
+    private static final int FIRST_PULSE_BIN = 6;
+    
     private int pedistalMinBin = 1;
     private int pedistalMaxBin = 5;
     
-    int p1=1,p2=15;
+    int p1=PED_FIRST,p2=PED_LAST;
     int mmsum,summing_in_progress;
     
     public int     t0,adc,ped,pedsum;
     public int     thresholdCrossing,pulsePeakValue, pulsePeakPosition, pulseWidth;
     public double  baseline, rms;
     private int    tcourse, tfine;
+    private final int[] fitResult = new int[RESULT_SIZE];
     
     public ExtendedFADCFitter(){
         
@@ -48,33 +67,81 @@ public class ExtendedFADCFitter implements IFADCFitter {
         }
     }
         
+    /**
+     * fits a pulse, keeping the results in the public fields of the fitter.
+     * @param nsa number of samples after threshold crossing
+     * @param nsb number of samples before threshold crossing
+     * @param tet threshold above pedestal
+     * @param pedr pedestal, 0 to compute it from the first samples
+     * @param pulse samples
+     */
     public void fit(int nsa, int nsb, int tet, int pedr, short[] pulse) {
-            t0=0; adc=0; ped=0; pedsum=0; baseline=0; rms=0; 
-            thresholdCrossing=0; pulsePeakValue=0; pulsePeakPosition=0; pulseWidth=0;
-            tcourse=0; tfine=0;
-            double noise  = 0;
-            int    tstart = pedistalMaxBin+1;
+            int[] result = this.fitResult;
+            fit(nsa, nsb, tet, pedr, pulse, result);
+            t0                = result[T0];
+            adc               = result[ADC];
+            ped               = result[PED];
+            pulsePeakValue    = result[PEAK_VALUE];
+            pulsePeakPosition = result[PEAK_POSITION];
+            thresholdCrossing = result[THRESHOLD_CROSSING];
+            pulseWidth        = result[PULSE_WIDTH];
+            tcourse = t0 >> 6;
+            tfine   = t0 & 63;
+            // pedestal sum, baseline and noise
+            pedsum=0; baseline=0; rms=0;
+            if (pedr==0) {
+                if(pulse.length<p2+1) {
+                    for (int bin = 0; bin < pulse.length; bin++) pedsum += pulse[bin];
+                    return;
+                }
+                double noise = 0;
+                for (int bin = p1+1; bin < p2+1; bin++) {
+                    pedsum += pulse[bin];
+                    noise  += pulse[bin] * pulse[bin];
+                }
+                baseline = ((double) pedsum)/ (p2 - p1);
+                pedsum   = pedsum/(p2-p1);
+                rms = Math.sqrt(noise / (p2 - p1) - baseline * baseline);
+            }
+    }
+    
+    /**
+     * fits a pulse without using any state of a fitter object, so that
+     * pulses can be fitted concurrently.
+     * @param nsa number of samples after threshold crossing
+     * @param nsb number of samples before threshold crossing
+     * @param tet threshold above pedestal
+     * @param pedr pedestal, 0 to compute it from the first samples
+     * @param pulse samples
+     * @param result array of RESULT_SIZE filled with the results, indexed by
+     * T0, ADC, PED, PEAK_VALUE, PEAK_POSITION, THRESHOLD_CROSSING and PULSE_WIDTH
+     */
+    public static void fit(int nsa, int nsb, int tet, int pedr, short[] pulse, int[] result) {
+            int t0=0, adc=0, ped=0, pedsum=0;
+            int thresholdCrossing=0, pulsePeakValue=0, pulsePeakPosition=0, pulseWidth=0;
+            double baseline = 0;
+            int    tstart = FIRST_PULSE_BIN;
             int    tcross = 0; 
             int    pmax   = 0;
             int    ppos   = 0;
-            // calculate pedestal means and noise
+            setResult(result, 0, 0, 0, 0, 0, 0, 0);
+            // calculate pedestal means
             if (pedr!=0) ped=pedr;        // use default mode 7 pedestal range (1-4)
-            if(pulse.length<p2+1 && pedr==0) {
+            if(pulse.length<PED_LAST+1 && pedr==0) {
                 for (int bin = 0; bin < pulse.length; bin++) {
                     pedsum += pulse[bin];
                 }  
                 ped=pedsum/pulse.length;
+                setResult(result, t0, adc, ped, pulsePeakValue, pulsePeakPosition, thresholdCrossing, pulseWidth);
                 return;
             }
             if (pedr==0) {
-                tstart = p2+1;
-                for (int bin = p1+1; bin < p2+1; bin++) {
+                tstart = PED_LAST+1;
+                for (int bin = PED_FIRST+1; bin < PED_LAST+1; bin++) {
                     pedsum += pulse[bin];
-                    noise  += pulse[bin] * pulse[bin];
                 }
-                baseline = ((double) pedsum)/ (p2 - p1);
-                ped = pedsum=pedsum/(p2-p1);	//(int) baseline;
-                rms = Math.sqrt(noise / (p2 - p1) - baseline * baseline);
+                baseline = ((double) pedsum)/ (PED_LAST - PED_FIRST);
+                ped = pedsum/(PED_LAST-PED_FIRST);	//(int) baseline;
             }
             // find threshold crossing
             for (int bin=tstart; bin<pulse.length; bin++) {
@@ -115,19 +182,27 @@ public class ExtendedFADCFitter implements IFADCFitter {
                     int a0 = pulse[s0];
                     int a1 = pulse[s0+1];
                     // set course time to be the sample before the 50% crossing
-                    tcourse = s0;
+                    int tcourse = s0;
                     // set the fine time from interpolation between the two samples before and after the 50% crossing (6 bits resolution)
-                    tfine   = ((int) ((halfMax - a0)/(a1-a0) * 64));
+                    int tfine   = ((int) ((halfMax - a0)/(a1-a0) * 64));
                     t0      = (tcourse << 6) + tfine;
                 }
                 if(s1>-1 && s0>-1) {
-                    int a0 = pulse[s1];
-                    int a1 = pulse[s1+1];
                     pulseWidth  = s1 - s0;
                 }
-//                System.out.println(ped + " " + pmax + " " + adc + " " + tcross + " " + ((float) tcourse+tfine/64.) + " " + ppos);
             }
-
+            setResult(result, t0, adc, ped, pulsePeakValue, pulsePeakPosition, thresholdCrossing, pulseWidth);
+    }
+    
+    private static void setResult(int[] result, int t0, int adc, int ped, int peakValue, int peakPosition,
+            int thresholdCrossing, int pulseWidth){
+        result[T0]                 = t0;
+        result[ADC]                = adc;
+        result[PED]                = ped;
+        result[PEAK_VALUE]         = peakValue;
+        result[PEAK_POSITION]      = peakPosition;
+        result[THRESHOLD_CROSSING] = thresholdCrossing;
+        result[PULSE_WIDTH]        = pulseWidth;
     }
 
     private double findPedestal(DetectorDataDgtz.ADCData data){
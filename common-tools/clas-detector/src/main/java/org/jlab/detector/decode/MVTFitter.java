@@ -14,9 +14,18 @@ public class MVTFitter {
 	public double integral; //Sum of ADCs over the pulse (not fitted)
 	public long timestamp;
 	
-	private short[] pulseArrayCorr; //Pulse after offset correction
-	private int binNumber;  //Number of bins in one pulse
-	
+	/**
+	 * indices of the results of the static fit method
+	 */
+	public static final int ADC_MAX     = 0;
+	public static final int TIME_MAX    = 1;
+	public static final int INTEGRAL    = 2;
+	public static final int BIN_MAX     = 3;
+	public static final int BIN_OFFSET  = 4;
+	public static final int RESULT_SIZE = 5;
+
+	private final double[] fitResult = new double[RESULT_SIZE];
+
 	/**
 	 * Fit takes an ADC pulse and DAQ parameters and compute interesting properties of the pulse
 	 * @param adcOffset : hardware offset used to avoid signal to be negative after (hardware) common mode node suppression 
@@ -26,44 +35,48 @@ public class MVTFitter {
 	 * @param timeStamp : timing informations (used to make fine corrections)
 	 */
     public void fit(short adcOffset, double fineTimeStampResolution, double samplingTime, short[] pulseArray, long timeStamp, int sparseSample) {
-    pulseCorrection(adcOffset, samplingTime, pulseArray, sparseSample);
-		fitParabolic(samplingTime);
-		fineTimeStampCorrection(timeStamp, fineTimeStampResolution);
+		fit(adcOffset, fineTimeStampResolution, samplingTime, pulseArray, timeStamp, sparseSample, fitResult);
+		adcMax    = fitResult[ADC_MAX];
+		timeMax   = fitResult[TIME_MAX];
+		integral  = fitResult[INTEGRAL];
+		binMax    = (int) fitResult[BIN_MAX];
+		binOffset = (int) fitResult[BIN_OFFSET];
+		timestamp = timeStamp;
 	}
-	
+
 	/**
-	 * This method subtract offset from ADCs, compute a first value for the max ADC, bin of max, time of max and integral of pulse
+	 * Same as the fit method but without using any state of a fitter object, so that
+	 * pulses can be fitted concurrently
 	 * @param adcOffset : hardware offset used to avoid signal to be negative after (hardware) common mode node suppression 
+	 * @param fineTimeStampResolution : precision of dream clock (usually 8)
 	 * @param samplingTime : time between 2 ADC bins
 	 * @param pulseArray : pulse = array containing the ADC values
+	 * @param timeStamp : timing informations (used to make fine corrections)
+	 * @param sparseSample : sparse readout factor
+	 * @param result : array of RESULT_SIZE filled with the results, indexed by ADC_MAX, TIME_MAX, INTEGRAL, BIN_MAX and BIN_OFFSET
 	 */
-    private void pulseCorrection(short adcOffset, double samplingTime, short[] pulseArray, int sparseSample) {
-		binNumber = pulseArray.length;
-		binMax = 0;
-		adcMax = (short) (pulseArray[0]-adcOffset);
-		integral = 0;
-		pulseArrayCorr = new short[binNumber];
+	public static void fit(short adcOffset, double fineTimeStampResolution, double samplingTime, short[] pulseArray, long timeStamp, int sparseSample, double[] result) {
+		// offset correction, first value for the max ADC, bin of max, time of max and integral of pulse
+		int binNumber = pulseArray.length;
+		int binMax = 0;
+		double adcMax = (short) (pulseArray[0]-adcOffset);
+		double integral = 0;
 		for (int bin = 0 ; bin < binNumber ; bin ++){
-			pulseArrayCorr[bin] = (short) (pulseArray[bin] - adcOffset);
-			integral = integral + pulseArrayCorr[bin];
-			if (pulseArrayCorr[bin]>adcMax){
-				adcMax = pulseArrayCorr[bin];
+			short adc = (short) (pulseArray[bin] - adcOffset);
+			integral = integral + adc;
+			if (adc>adcMax){
+				adcMax = adc;
 				binMax = bin;
 			}
 		}
-    binOffset = sparseSample * binMax;
-    timeMax = (binMax+binOffset) * samplingTime;
-	}
-	
-	/**
-	 * Fit the max of the pulse using parabolic fit, this method updates the timeMax and adcMax values
-	 * @param samplingTime : time between 2 ADC bins
-	 */
-	private void fitParabolic(double samplingTime) {
+		int binOffset = sparseSample * binMax;
+		double timeMax = (binMax+binOffset) * samplingTime;
+
+		// parabolic fit of the max
 		if (binMax < (binNumber-1) && binMax > 0) {
-			int y1 = pulseArrayCorr[binMax - 1];
-			int y2 = pulseArrayCorr[binMax];
-			int y3 = pulseArrayCorr[binMax + 1];
+			int y1 = (short) (pulseArray[binMax - 1] - adcOffset);
+			int y2 = (short) (pulseArray[binMax] - adcOffset);
+			int y3 = (short) (pulseArray[binMax + 1] - adcOffset);
 			int x1 = binMax - 1 + binOffset - 1;
 			int x2 = binMax + binOffset;
 			int x3 = binMax + 1 + binOffset + 1;
@@ -76,23 +89,19 @@ public class MVTFitter {
 			timeMax = xv * samplingTime;
 			adcMax = yv;
 		}
+
+		// fine timestamp correction: the last 3 bits of the timestamp, if its
+		// binary representation has at least 3 digits
+		if (timeStamp < 0 || timeStamp >= 4) {
+			long fineTimeStamp = timeStamp & 7;
+			timeMax += (double) ((fineTimeStamp+0.5) * fineTimeStampResolution); //fineTimeStampCorrection
+		}
+
+		result[ADC_MAX]    = adcMax;
+		result[TIME_MAX]   = timeMax;
+		result[INTEGRAL]   = integral;
+		result[BIN_MAX]    = binMax;
+		result[BIN_OFFSET] = binOffset;
 	}
 	
-	/**
-	 * Make fine timestamp correction (using dream (=electronic chip) clock)
-	 * @param timeStamp : timing informations (used to make fine corrections)
-	 * @param fineTimeStampResolution : precision of dream clock (usually 8)
-	 */
-	private void fineTimeStampCorrection (long timeStamp, double fineTimeStampResolution) {
-		this.timestamp = timeStamp;
-		String binaryTimeStamp = Long.toBinaryString(timeStamp); //get 64 bit timestamp in binary format
-            //byte fineTimeStamp = Byte.parseByte(binaryTimeStamp.substring(binaryTimeStamp.length()-3,binaryTimeStamp.length()),2); //fineTimeStamp : keep and convert last 3 bits of binary timestamp
-            //timeMax += (double) ((fineTimeStamp+0.5) * fineTimeStampResolution); //fineTimeStampCorrection
-            //added condition
-            if (binaryTimeStamp.length()>=3){
-                byte fineTimeStamp = Byte.parseByte(binaryTimeStamp.substring(binaryTimeStamp.length()-3,binaryTimeStamp.length()),2); //fineTimeStamp : keep and convert last 3 bits of binary timestamp
-                timeMax += (double) ((fineTimeStamp+0.5) * fineTimeStampResolution); //fineTimeStampCorrection
-            }
-        }
-	
 }
@@ -0,0 +1,288 @@
+package org.jlab.detector.decode;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.evio.EvioDataEvent;
+import org.jlab.io.evio.EvioSource;
+import org.jlab.io.hipo.HipoDataEvent;
+import org.jlab.jnp.hipo.io.HipoWriter;
+
+/**
+ * Decodes EVIO files to HIPO with several threads: the calling thread reads
+ * the raw events and hands them to a pool of decoding threads, each with its
+ * own CLASDecoder, which also create the header and trigger banks. A writer
+ * thread writes the decoded events in the order they were read. The output
+ * is the same as decoding with one CLASDecoder in the main of CLASDecoder.
+ *
+ * The number of events read and not written yet is limited by the capacity
+ * of the write queue. The events/s and the average occupancy of the decode
+ * queue (events waiting for a decoding thread) and of the write queue
+ * (events decoded or being decoded, waiting to be written) are printed
+ * periodically.
+ */
+public class ParallelDecoder {
+
+    private final boolean developmentMode;
+    private final int     nthreads;
+    private final int     capacity;
+
+    private int     debugMode        = 0;
+    private int     runNumber        = -1;
+    private float   torus            = -0.5f;
+    private float   solenoid         = 0.5f;
+    private double  reportInterval   = 10.0;
+
+    private final ThreadLocal<CLASDecoder> decoders = new ThreadLocal<CLASDecoder>(){
+        @Override
+        protected CLASDecoder initialValue(){
+            CLASDecoder decoder = new CLASDecoder(developmentMode);
+            decoder.setDebugMode(debugMode);
+            if(runNumber>0) decoder.setRunNumber(runNumber, true);
+            return decoder;
+        }
+    };
+
+    // marks the end of the events in the write queue
+    private final Future<HipoDataEvent> endOfData = new FutureTask<HipoDataEvent>(new Callable<HipoDataEvent>(){
+        @Override
+        public HipoDataEvent call(){ return null;}
+    });
+
+    /**
+     * @param development use the development translation tables
+     * @param nthreads number of decoding threads
+     * @param capacity maximum number of events read and not written yet,
+     * 0 for 4 events per thread
+     */
+    public ParallelDecoder(boolean development, int nthreads, int capacity){
+        this.developmentMode = development;
+        this.nthreads        = Math.max(1, nthreads);
+        this.capacity        = capacity>0 ? capacity : 4*this.nthreads;
+    }
+
+    public void setDebugMode(int mode){
+        this.debugMode = mode;
+    }
+
+    /**
+     * Sets the header bank values given in the main of CLASDecoder.
+     * @param run run number, -1 to use the CODA run number
+     * @param torus torus current
+     * @param solenoid solenoid current
+     */
+    public void setHeader(int run, float torus, float solenoid){
+        this.runNumber = run;
+        this.torus     = torus;
+        this.solenoid  = solenoid;
+    }
+
+    /**
+     * @param seconds time between reports, 0 to report only at the end
+     */
+    public void setReportInterval(double seconds){
+        this.reportInterval = seconds;
+    }
+
+    /**
+     * decodes the input files one after the other into the writer, which
+     * is left open.
+     * @param inputList EVIO files
+     * @param writer open HIPO writer
+     * @param nevents maximum number of events, -1 for all
+     * @return number of events written
+     */
+    public int process(List<String> inputList, HipoWriter writer, int nevents){
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(nthreads, nthreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        BlockingQueue<Future<HipoDataEvent>> writeQueue = new ArrayBlockingQueue<Future<HipoDataEvent>>(capacity);
+
+        OrderedWriter orderedWriter = new OrderedWriter(writer, writeQueue, pool);
+        Thread writerThread = new Thread(orderedWriter, "decoder-writer");
+        writerThread.start();
+
+        int counter = 0;
+        boolean finished = false;
+        try {
+            for(String inputFile : inputList){
+                EvioSource reader = openReader(inputFile);
+                try {
+                    while(reader.hasEvent()==true && orderedWriter.failure==null){
+                        if(nevents>0&&counter>=nevents) break;
+                        final EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
+                        final int eventNumber = counter;
+                        Future<HipoDataEvent> decoded = pool.submit(new Callable<HipoDataEvent>(){
+                            @Override
+                            public HipoDataEvent call(){
+                                return decode(event, eventNumber);
+                            }
+                        });
+                        if(!enqueue(writeQueue, decoded, writerThread)) break;
+                        counter++;
+                    }
+                } finally {
+                    reader.close();
+                }
+                if(nevents>0&&counter>=nevents) break;
+                if(orderedWriter.failure!=null) break;
+            }
+            enqueue(writeQueue, endOfData, writerThread);
+            writerThread.join();
+            finished = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // the reading failed or was interrupted: the writer would wait
+            // forever for the end of the data
+            if(!finished) stopWriter(writerThread);
+            pool.shutdownNow();
+        }
+        if(orderedWriter.failure!=null){
+            throw new RuntimeException("decoding failed", orderedWriter.failure);
+        }
+        orderedWriter.report();
+        return orderedWriter.written;
+    }
+
+    /**
+     * opens an input file.
+     * @param inputFile EVIO file
+     * @return reader of the file
+     */
+    EvioSource openReader(String inputFile){
+        EvioSource reader = new EvioSource();
+        reader.open(inputFile);
+        return reader;
+    }
+
+    /*
+     * interrupts the writer and waits for it to stop, keeping the interrupt
+     * status of the calling thread.
+     */
+    private static void stopWriter(Thread writerThread){
+        writerThread.interrupt();
+        boolean interrupted = false;
+        while(writerThread.isAlive()){
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /*
+     * waits for room in the write queue as long as the writer is running,
+     * returns false if the writer stopped.
+     */
+    private static boolean enqueue(BlockingQueue<Future<HipoDataEvent>> queue, Future<HipoDataEvent> event,
+            Thread writerThread) throws InterruptedException {
+        while(!queue.offer(event, 100, TimeUnit.MILLISECONDS)){
+            if(!writerThread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    private HipoDataEvent decode(EvioDataEvent event, int eventNumber){
+        CLASDecoder decoder = decoders.get();
+        DataEvent  decodedEvent = decoder.getDataEvent(event);
+        DataBank   header = decoder.createHeaderBank(decodedEvent, runNumber, eventNumber, torus, solenoid);
+        DataBank   trigger = decoder.createTriggerBank(decodedEvent);
+        decodedEvent.appendBanks(header);
+        decodedEvent.appendBanks(trigger);
+        return (HipoDataEvent) decodedEvent;
+    }
+
+    /**
+     * writes the decoded events in the order of the write queue, waiting
+     * for each one to be decoded, and keeps the statistics.
+     */
+    private class OrderedWriter implements Runnable {
+
+        private final HipoWriter                            writer;
+        private final BlockingQueue<Future<HipoDataEvent>>  queue;
+        private final ThreadPoolExecutor                    pool;
+
+        volatile Throwable failure = null;
+        int     written       = 0;
+
+        private final long startTime   = System.nanoTime();
+        private long       reportTime  = startTime;
+        private int        reportCount = 0;
+        private long       samples     = 0;
+        private long       decodeSum   = 0;
+        private long       writeSum    = 0;
+
+        OrderedWriter(HipoWriter writer, BlockingQueue<Future<HipoDataEvent>> queue, ThreadPoolExecutor pool){
+            this.writer = writer;
+            this.queue  = queue;
+            this.pool   = pool;
+        }
+
+        @Override
+        public void run(){
+            try {
+                Future<HipoDataEvent> next = queue.take();
+                while(next!=endOfData){
+                    if(failure==null){
+                        samples++;
+                        decodeSum += pool.getQueue().size();
+                        writeSum  += queue.size();
+                        write(next);
+                    }
+                    // after a failure the events are only taken, to unblock the reader
+                    next = queue.take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                // the reader stops when the writer is not running any more
+                if(failure==null) failure = t;
+            }
+        }
+
+        private void write(Future<HipoDataEvent> next) throws InterruptedException {
+            try {
+                HipoDataEvent event = next.get();
+                writer.writeEvent(event.getHipoEvent());
+                written++;
+                if(reportInterval>0&&(System.nanoTime()-reportTime)*1e-9>=reportInterval){
+                    report();
+                }
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        void report(){
+            long now = System.nanoTime();
+            double elapsed = (now-startTime)*1e-9;
+            double interval = (now-reportTime)*1e-9;
+            System.out.println(String.format(">>>>> decoder (%d threads) : %10d events, %8.1f events/s (%8.1f average)"
+                    + " : decode queue %6.1f, write queue %6.1f/%d", nthreads, written,
+                    interval>0 ? (written-reportCount)/interval : 0.0, elapsed>0 ? written/elapsed : 0.0,
+                    samples>0 ? (double) decodeSum/samples : 0.0, samples>0 ? (double) writeSum/samples : 0.0,
+                    capacity));
+            reportTime  = now;
+            reportCount = written;
+            samples     = 0;
+            decodeSum   = 0;
+            writeSum    = 0;
+        }
+    }
+}
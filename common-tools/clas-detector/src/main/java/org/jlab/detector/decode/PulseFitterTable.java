@@ -0,0 +1,195 @@
+package org.jlab.detector.decode;
+
+import java.util.List;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.utils.groups.IndexedList;
+import org.jlab.utils.groups.IndexedTable;
+import org.jlab.utils.groups.LongIntHashMap;
+
+/**
+ * Pulse fitter parameters of all the detectors for one run compiled in a
+ * single index: the packed (crate,slot,channel) key gives a row of primitive
+ * arrays holding nsa, nsb, tet and pedestal of the FADC channels. When a
+ * channel appears in more than one table the last table wins, as when the
+ * tables are applied one after the other.
+ *
+ * The BMT, FMT and FTTRK tables only hold the DAQ configuration of the
+ * detector at index (0,0,0), they are kept apart and applied to the channels
+ * of the corresponding detector type, they do not give FADC rows.
+ */
+public class PulseFitterTable {
+
+    private static final String[] MVT_TABLES = new String[]{"BMT","FMT","FTTRK"};
+
+    private final int              runNumber;
+    private final LongIntHashMap   rowIndex;
+    private final int[]            nsa;
+    private final int[]            nsb;
+    private final int[]            tet;
+    private final int[]            pedestal;
+    private final int[]            tableIndex;
+    private int                    rowCount = 0;
+
+    private final DetectorType[]   mvtTypes;
+    private final short[]          mvtAdcOffset;
+    private final double[]         mvtFineTimeStampResolution;
+    private final double[]         mvtSamplingTime;
+    private final int[]            mvtSparseSample;
+    private final int[]            mvtTableIndex;
+    private int                    mvtCount = 0;
+
+    /**
+     * compiles the fitter tables of a run.
+     * @param manager constants manager holding the fitter tables
+     * @param run run number
+     * @param keys names of the tables, also the names of the detector types
+     */
+    public PulseFitterTable(ConstantsManager manager, int run, List<String> keys){
+        this(run, keys, getTables(manager, run, keys));
+    }
+
+    /**
+     * compiles the given fitter tables.
+     * @param run run number
+     * @param keys names of the tables, also the names of the detector types
+     * @param tables fitter table of each key, null if missing
+     */
+    public PulseFitterTable(int run, List<String> keys, IndexedTable[] tables){
+        this.runNumber = run;
+
+        int nentries = 0;
+        for(IndexedTable tt : tables){
+            if(tt!=null) nentries += tt.getList().size();
+        }
+
+        rowIndex   = new LongIntHashMap(nentries);
+        nsa        = new int[nentries];
+        nsb        = new int[nentries];
+        tet        = new int[nentries];
+        pedestal   = new int[nentries];
+        tableIndex = new int[nentries];
+
+        mvtTypes                   = new DetectorType[MVT_TABLES.length];
+        mvtAdcOffset               = new short[MVT_TABLES.length];
+        mvtFineTimeStampResolution = new double[MVT_TABLES.length];
+        mvtSamplingTime            = new double[MVT_TABLES.length];
+        mvtSparseSample            = new int[MVT_TABLES.length];
+        mvtTableIndex              = new int[MVT_TABLES.length];
+
+        for(int i = 0; i < tables.length; i++){
+            IndexedTable tt = tables[i];
+            if(tt==null||tt.getIndexCount()!=3) continue;
+            String key = keys.get(i);
+            if(isMVT(key)){
+                int row = tt.getRowIndex(0, 0, 0);
+                mvtTypes[mvtCount]                   = DetectorType.getType(key);
+                mvtAdcOffset[mvtCount]               = (short) doubleValue(tt, tt.getColumnIndex("adc_offset"), row);
+                mvtFineTimeStampResolution[mvtCount] = (byte) doubleValue(tt, tt.getColumnIndex("dream_clock"), row);
+                mvtSamplingTime[mvtCount]            = (byte) doubleValue(tt, tt.getColumnIndex("sampling_time"), row);
+                mvtSparseSample[mvtCount]            = intValue(tt, tt.getColumnIndex("sparse"), row);
+                mvtTableIndex[mvtCount]              = i;
+                mvtCount++;
+                continue;
+            }
+            boolean rf = key.equals("RF");
+            int colNsa      = tt.getColumnIndex("nsa");
+            int colNsb      = tt.getColumnIndex("nsb");
+            int colTet      = tt.getColumnIndex("tet");
+            int colPedestal = rf ? tt.getColumnIndex("pedestal") : -1;
+            IndexedList list = tt.getList();
+            for(int pos = 0; pos < list.size(); pos++){
+                int crate   = list.getIndexAt(pos, 0);
+                int slot    = list.getIndexAt(pos, 1);
+                int channel = list.getIndexAt(pos, 2);
+                int tableRow = tt.getRowIndex(crate, slot, channel);
+                long hash = IndexedList.IndexGenerator.hashCode(crate, slot, channel);
+                int row = rowIndex.get(hash);
+                if(row<0){
+                    row = rowCount++;
+                    rowIndex.put(hash, row);
+                }
+                nsa[row]        = intValue(tt, colNsa, tableRow);
+                nsb[row]        = intValue(tt, colNsb, tableRow);
+                tet[row]        = intValue(tt, colTet, tableRow);
+                pedestal[row]   = intValue(tt, colPedestal, tableRow);
+                tableIndex[row] = i;
+            }
+        }
+    }
+
+    private static IndexedTable[] getTables(ConstantsManager manager, int run, List<String> keys){
+        IndexedTable[] tables = new IndexedTable[keys.size()];
+        for(int i = 0; i < tables.length; i++){
+            tables[i] = manager.getConstants(run, keys.get(i));
+        }
+        return tables;
+    }
+
+    private static boolean isMVT(String key){
+        for(String mvt : MVT_TABLES){
+            if(mvt.equals(key)) return true;
+        }
+        return false;
+    }
+
+    private static int intValue(IndexedTable tt, int column, int row){
+        return column<0||row<0 ? 0 : tt.getIntValueAt(column, row);
+    }
+
+    private static double doubleValue(IndexedTable tt, int column, int row){
+        return column<0||row<0 ? 0 : tt.getDoubleValueAt(column, row);
+    }
+
+    public int getRunNumber(){
+        return this.runNumber;
+    }
+
+    /**
+     * @return number of FADC channels with fitter parameters
+     */
+    public int getRowCount(){
+        return this.rowCount;
+    }
+
+    /**
+     * @param crate crate
+     * @param slot slot
+     * @param channel channel
+     * @return row of the channel, -1 if it is not in any FADC table
+     */
+    public int getRow(int crate, int slot, int channel){
+        return rowIndex.get(IndexedList.IndexGenerator.hashCode(crate, slot, channel));
+    }
+
+    public int getNsa(int row){ return nsa[row];}
+    public int getNsb(int row){ return nsb[row];}
+    public int getTet(int row){ return tet[row];}
+    /**
+     * @param row row of the channel
+     * @return pedestal of the channel, only given by the RF table, 0 otherwise
+     */
+    public int getPedestal(int row){ return pedestal[row];}
+    /**
+     * @param row row of the channel
+     * @return position of the table the parameters come from in the list of keys
+     */
+    public int getTableIndex(int row){ return tableIndex[row];}
+
+    /**
+     * @param type detector type
+     * @return index of the DAQ configuration of a BMT, FMT or FTTRK type, -1 for other types
+     */
+    public int getMVT(DetectorType type){
+        for(int i = 0; i < mvtCount; i++){
+            if(mvtTypes[i]==type) return i;
+        }
+        return -1;
+    }
+
+    public short  getAdcOffset(int mvt){ return mvtAdcOffset[mvt];}
+    public double getFineTimeStampResolution(int mvt){ return mvtFineTimeStampResolution[mvt];}
+    public double getSamplingTime(int mvt){ return mvtSamplingTime[mvt];}
+    public int    getSparseSample(int mvt){ return mvtSparseSample[mvt];}
+    public int    getMVTTableIndex(int mvt){ return mvtTableIndex[mvt];}
+}
@@ -0,0 +1,149 @@
+package org.jlab.detector.decode;
+
+import java.util.List;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.utils.groups.IndexedList;
+import org.jlab.utils.groups.IndexedTable;
+import org.jlab.utils.groups.LongIntHashMap;
+
+/**
+ * Translation tables of all the detectors for one run compiled in a single
+ * index: the packed (crate,slot,channel) key gives a row of primitive arrays
+ * holding detector type, sector, layer, component and order. When a channel
+ * appears in more than one table the last table wins, as when the tables are
+ * applied one after the other.
+ */
+public class TranslationTable {
+
+    private final int              runNumber;
+    private final LongIntHashMap   rowIndex;
+    private final DetectorType[]   types;
+    private final int[]            sectors;
+    private final int[]            layers;
+    private final int[]            components;
+    private final int[]            orders;
+    private int                    rowCount = 0;
+
+    /**
+     * compiles the translation tables of a run.
+     * @param manager constants manager holding the translation tables
+     * @param run run number
+     * @param keys names of the tables, also the names of the detector types
+     */
+    public TranslationTable(ConstantsManager manager, int run, List<String> keys){
+        this(run, keys, getTables(manager, run, keys));
+    }
+
+    /**
+     * compiles the given translation tables.
+     * @param run run number
+     * @param keys names of the tables, also the names of the detector types
+     * @param tables translation table of each key, null if missing
+     */
+    public TranslationTable(int run, List<String> keys, IndexedTable[] tables){
+        this.runNumber = run;
+
+        int nentries = 0;
+        for(IndexedTable tt : tables){
+            if(tt!=null) nentries += tt.getList().size();
+        }
+
+        rowIndex   = new LongIntHashMap(nentries);
+        types      = new DetectorType[nentries];
+        sectors    = new int[nentries];
+        layers     = new int[nentries];
+        components = new int[nentries];
+        orders     = new int[nentries];
+
+        for(int i = 0; i < tables.length; i++){
+            IndexedTable tt = tables[i];
+            if(tt==null||tt.getIndexCount()!=3) continue;
+            DetectorType type = DetectorType.getType(keys.get(i));
+            int colSector    = tt.getColumnIndex("sector");
+            int colLayer     = tt.getColumnIndex("layer");
+            int colComponent = tt.getColumnIndex("component");
+            int colOrder     = tt.getColumnIndex("order");
+            IndexedList list = tt.getList();
+            for(int pos = 0; pos < list.size(); pos++){
+                int crate   = list.getIndexAt(pos, 0);
+                int slot    = list.getIndexAt(pos, 1);
+                int channel = list.getIndexAt(pos, 2);
+                int tableRow = tt.getRowIndex(crate, slot, channel);
+                long key = IndexedList.IndexGenerator.hashCode(crate, slot, channel);
+                int row = rowIndex.get(key);
+                if(row<0){
+                    row = rowCount++;
+                    rowIndex.put(key, row);
+                }
+                types[row]      = type;
+                sectors[row]    = value(tt, colSector, tableRow);
+                layers[row]     = value(tt, colLayer, tableRow);
+                components[row] = value(tt, colComponent, tableRow);
+                orders[row]     = value(tt, colOrder, tableRow);
+            }
+        }
+    }
+
+    private static IndexedTable[] getTables(ConstantsManager manager, int run, List<String> keys){
+        IndexedTable[] tables = new IndexedTable[keys.size()];
+        for(int i = 0; i < tables.length; i++){
+            tables[i] = manager.getConstants(run, keys.get(i));
+        }
+        return tables;
+    }
+
+    private static int value(IndexedTable tt, int column, int row){
+        return column<0 ? 0 : tt.getIntValueAt(column, row);
+    }
+
+    public int getRunNumber(){
+        return this.runNumber;
+    }
+
+    /**
+     * @return number of translated channels
+     */
+    public int getRowCount(){
+        return this.rowCount;
+    }
+
+    /**
+     * @param crate crate
+     * @param slot slot
+     * @param channel channel
+     * @return row of the channel, -1 if it is not in any table
+     */
+    public int getRow(int crate, int slot, int channel){
+        return rowIndex.get(IndexedList.IndexGenerator.hashCode(crate, slot, channel));
+    }
+
+    public DetectorType getType(int row){ return types[row];}
+    public int getSector(int row){ return sectors[row];}
+    public int getLayer(int row){ return layers[row];}
+    public int getComponent(int row){ return components[row];}
+    public int getOrder(int row){ return orders[row];}
+
+    /**
+     * sets type, sector, layer, component and order of a digitized channel,
+     * channels not in the tables are left untouched.
+     * @param data digitized data
+     * @return true if the channel was translated
+     */
+    public boolean translate(DetectorDataDgtz data){
+        int row = this.getRow(data.getDescriptor().getCrate(),
+                data.getDescriptor().getSlot(), data.getDescriptor().getChannel());
+        if(row<0) return false;
+        int order = orders[row];
+        data.getDescriptor().setSectorLayerComponent(sectors[row], layers[row], components[row]);
+        data.getDescriptor().setOrder(order);
+        data.getDescriptor().setType(types[row]);
+        for(int i = 0; i < data.getADCSize(); i++) {
+            data.getADCData(i).setOrder(order);
+        }
+        for(int i = 0; i < data.getTDCSize(); i++) {
+            data.getTDCData(i).setOrder(order);
+        }
+        return true;
+    }
+}
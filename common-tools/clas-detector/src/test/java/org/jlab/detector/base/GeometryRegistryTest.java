@@ -0,0 +1,108 @@
+package org.jlab.detector.base;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GeometryRegistryTest {
+
+    private static Map<String,String[]> createValues(){
+        Map<String,String[]> constants = new LinkedHashMap<String,String[]>();
+        constants.put("/geometry/dc/superlayer/wpdist", new String[]{"0.3861", "0.4042", "0.6219", "0.6586", "0.9351", "0.9780"});
+        constants.put("/geometry/dc/superlayer/nsenselayers", new String[]{"6", "6", "6", "6", "6", "6"});
+        return constants;
+    }
+
+    @Test
+    public void testBuildOnce() throws Exception {
+        final AtomicInteger builds = new AtomicInteger();
+        final Callable<Object> builder = new Callable<Object>(){
+            @Override
+            public Object call() throws Exception {
+                builds.incrementAndGet();
+                Thread.sleep(50);
+                return new Object();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for(int i = 0; i < 32; i++){
+            results.add(executor.submit(new Callable<Object>(){
+                @Override
+                public Object call(){
+                    return GeometryRegistry.get(DetectorType.DC, "test", 11, "default", builder);
+                }
+            }));
+        }
+        Object first = results.get(0).get();
+        for(Future<Object> result : results) assertSame(first, result.get());
+        executor.shutdown();
+
+        assertEquals(1, builds.get());
+        assertTrue(GeometryRegistry.contains(DetectorType.DC, "test", 11, "default"));
+        assertEquals(32, GeometryRegistry.getRequestCount("DC/test/11/default"));
+        assertTrue(GeometryRegistry.getBuildTime("DC/test/11/default")>=50);
+
+        Object other = GeometryRegistry.get(DetectorType.DC, "test", 12, "default", builder);
+        assertNotSame(first, other);
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    public void testFailedBuild(){
+        Callable<Object> failing = new Callable<Object>(){
+            @Override
+            public Object call(){
+                throw new IllegalArgumentException("no geometry");
+            }
+        };
+        try {
+            GeometryRegistry.get(DetectorType.FTOF, "failing", 11, "default", failing);
+            fail("the build error should be reported");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertFalse(GeometryRegistry.contains(DetectorType.FTOF, "failing", 11, "default"));
+    }
+
+    @Test
+    public void testConstantsCache() throws Exception {
+        GeometryConstants constants = new GeometryConstants(11, "default", createValues());
+        assertEquals(0.6219, constants.getDouble("/geometry/dc/superlayer/wpdist", 2), 0.0);
+        assertEquals(6, constants.getInteger("/geometry/dc/superlayer/nsenselayers", 5));
+        assertEquals(0, constants.length("/geometry/dc/superlayer/missing"));
+
+        File file = File.createTempFile("geometry", ".dat");
+        file.deleteOnExit();
+        constants.save(file.getAbsolutePath());
+        GeometryConstants cached = GeometryConstants.read(file.getAbsolutePath());
+        assertNotNull(cached);
+        assertEquals(11, cached.getRun());
+        assertEquals("default", cached.getVariation());
+        assertEquals(constants.getEntrySet(), cached.getEntrySet());
+        for(String name : constants.getEntrySet()){
+            assertEquals(constants.length(name), cached.length(name));
+            for(int row = 0; row < constants.length(name); row++){
+                assertEquals(constants.getDouble(name, row), cached.getDouble(name, row), 0.0);
+            }
+        }
+
+        GeometryRegistry.setCacheDirectory(file.getParent());
+        File named = new File(file.getParent(), "geometry-DC-11-registrytest.dat");
+        named.deleteOnExit();
+        new GeometryConstants(11, "registrytest", createValues()).save(named.getAbsolutePath());
+        GeometryConstants registered = GeometryRegistry.getConstants(DetectorType.DC, 11, "registrytest");
+        assertSame(registered, GeometryRegistry.getConstants(DetectorType.DC, 11, "registrytest"));
+        assertEquals(0.9780, registered.getDouble("/geometry/dc/superlayer/wpdist", 5), 0.0);
+        GeometryRegistry.setCacheDirectory(null);
+    }
+}
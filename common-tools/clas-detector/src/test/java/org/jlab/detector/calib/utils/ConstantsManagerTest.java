@@ -0,0 +1,123 @@
+package org.jlab.detector.calib.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jlab.utils.groups.IndexedTable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Run cache of ConstantsManager, with all the tables taken from a snapshot
+ * file so that no database is needed.
+ */
+public class ConstantsManagerTest {
+
+    private static final List<String> KEYS   = Arrays.asList("adc", "tdc");
+    private static final List<String> TABLES = Arrays.asList("/test/adc", "/test/tdc");
+
+    private File file;
+
+    private static IndexedTable createTable(int run, int offset){
+        IndexedTable table = new IndexedTable(3, "gain/D:status/I");
+        for(int component = 1; component <= 10; component++){
+            table.addEntry(1, 1, component);
+            table.setDoubleValue(run + offset + component*0.5, "gain", 1, 1, component);
+            table.setIntValue(run%7 + component, "status", 1, 1, component);
+        }
+        return table;
+    }
+
+    @Before
+    public void writeSnapshot() throws IOException {
+        file = File.createTempFile("constants", ".snapshot");
+        ConstantsSnapshot snapshot = new ConstantsSnapshot();
+        for(int run = 1; run <= 6; run++){
+            Map<String,IndexedTable> tables = new LinkedHashMap<String,IndexedTable>();
+            tables.put(TABLES.get(0), createTable(run, 0));
+            tables.put(TABLES.get(1), createTable(run, 100));
+            snapshot.addTables(run, "default", "", tables);
+        }
+        snapshot.save(file.getAbsolutePath());
+        ConstantsManager.setSnapshotFile(file.getAbsolutePath());
+    }
+
+    @After
+    public void deleteSnapshot(){
+        ConstantsManager.setSnapshotFile(null);
+        file.delete();
+    }
+
+    private static ConstantsManager createManager(){
+        ConstantsManager manager = new ConstantsManager("default");
+        manager.init(KEYS, TABLES);
+        return manager;
+    }
+
+    @Test
+    public void testUnbounded() {
+        ConstantsManager manager = createManager();
+        assertEquals(0, manager.getMaxRuns());
+        for(int run = 1; run <= 6; run++){
+            assertEquals(run + 1.5, manager.getConstants(run, "adc").getDoubleValue("gain", 1, 1, 3), 0);
+        }
+        for(int run = 1; run <= 6; run++) assertTrue(manager.hasRun(run));
+    }
+
+    @Test
+    public void testEvictionOrder() {
+        ConstantsManager manager = createManager();
+        manager.setMaxRuns(3);
+        manager.getConstants(1, "adc");
+        manager.getConstants(2, "adc");
+        manager.getConstants(3, "adc");
+        // run 1 becomes the most recently used, run 2 the least
+        manager.getConstants(1, "tdc");
+        manager.getConstants(4, "adc");
+        assertTrue(manager.hasRun(1));
+        assertFalse(manager.hasRun(2));
+        assertTrue(manager.hasRun(3));
+        assertTrue(manager.hasRun(4));
+
+        manager.getConstants(5, "adc");
+        assertFalse(manager.hasRun(3));
+        assertTrue(manager.hasRun(1));
+
+        // an evicted run is loaded again, removing run 1
+        assertEquals(2 + 100 + 0.5, manager.getConstants(2, "tdc").getDoubleValue("gain", 1, 1, 1), 0);
+        assertFalse(manager.hasRun(1));
+        assertTrue(manager.hasRun(4));
+
+        manager.setMaxRuns(1);
+        assertTrue(manager.hasRun(2));
+        assertFalse(manager.hasRun(4));
+        assertFalse(manager.hasRun(5));
+    }
+
+    @Test
+    public void testPrefetch() {
+        ConstantsManager prefetched = createManager();
+        ConstantsManager reference  = createManager();
+        prefetched.prefetch(3);
+        prefetched.prefetch(4);
+        for(int run = 3; run <= 4; run++){
+            for(String key : KEYS){
+                IndexedTable a = prefetched.getConstants(run, key);
+                IndexedTable b = reference.getConstants(run, key);
+                assertNotNull(a);
+                assertEquals(b.getRowCount(), a.getRowCount());
+                for(int component = 1; component <= 10; component++){
+                    assertEquals(b.getDoubleValue("gain", 1, 1, component), a.getDoubleValue("gain", 1, 1, component), 0);
+                    assertEquals(b.getIntValue("status", 1, 1, component), a.getIntValue("status", 1, 1, component));
+                }
+            }
+            assertTrue(prefetched.hasRun(run));
+        }
+        assertEquals(3 + 100 + 1.0, prefetched.getConstants(3, "tdc").getDoubleValue("gain", 1, 1, 2), 0);
+    }
+}
@@ -0,0 +1,194 @@
+package org.jlab.detector.calib.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import org.jlab.utils.groups.IndexedList;
+import org.jlab.utils.groups.IndexedTable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ConstantsSnapshotTest {
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("constants", ".snapshot");
+    }
+
+    @After
+    public void deleteFile(){
+        ConstantsManager.setSnapshotFile(null);
+        file.delete();
+    }
+
+    private static IndexedTable createTable(Random rand, int nindex, String format, int nrows){
+        IndexedTable table = new IndexedTable(nindex, format);
+        for(int i = 0; i < nindex; i++) table.setIndexName(i, "index" + i);
+        int[] index = new int[nindex];
+        for(int r = 0; r < nrows; r++){
+            for(int i = 0; i < nindex; i++) index[i] = rand.nextInt(100);
+            if(table.hasEntry(index)) continue;
+            table.addEntry(index);
+            for(int c = 0; c < table.getEntryCount(); c++){
+                if("D".equals(table.getEntryType(c))){
+                    table.setDoubleValue(rand.nextGaussian()*1e3, table.getEntryName(c), index);
+                } else {
+                    table.setIntValue(rand.nextInt(), table.getEntryName(c), index);
+                }
+            }
+        }
+        return table;
+    }
+
+    private static ConstantsSnapshot createSnapshot(){
+        Random rand = new Random(11);
+        ConstantsSnapshot snapshot = new ConstantsSnapshot();
+        for(int run : new int[]{11, 4013, 5000}){
+            Map<String,IndexedTable> tables = new LinkedHashMap<String,IndexedTable>();
+            tables.put("/calibration/ec/gain", createTable(rand, 3, "gain/D:status/I", 500));
+            tables.put("/calibration/dc/t0", createTable(rand, 4, "T0Correction/D:T0Error/D", 300));
+            tables.put("/daq/tt/ftof", createTable(rand, 3, "sector/I:layer/I:component/I:order/I", 200));
+            tables.put("/calibration/empty", createTable(rand, 1, "value/D", 0));
+            snapshot.addTables(run, "default", "", tables);
+        }
+        snapshot.addTables(11, "rga_fall2018", "08/10/2020", Collections.singletonMap("/calibration/ec/gain",
+                createTable(rand, 3, "gain/D:status/I", 100)));
+        return snapshot;
+    }
+
+    private static void assertSameTable(IndexedTable expected, IndexedTable table){
+        assertNotNull(table);
+        assertEquals(expected.getIndexCount(), table.getIndexCount());
+        assertEquals(expected.getEntryCount(), table.getEntryCount());
+        for(int i = 0; i < expected.getIndexCount(); i++){
+            assertEquals(expected.getIndexName(i), table.getIndexName(i));
+        }
+        for(int c = 0; c < expected.getEntryCount(); c++){
+            assertEquals(expected.getEntryName(c), table.getEntryName(c));
+            assertEquals(expected.getEntryType(c), table.getEntryType(c));
+        }
+        IndexedList<IndexedTable.IndexedEntry> a = expected.getList();
+        IndexedList<IndexedTable.IndexedEntry> b = table.getList();
+        assertEquals(a.size(), b.size());
+        for(int r = 0; r < a.size(); r++){
+            assertEquals(a.getKeyAt(r), b.getKeyAt(r));
+            for(int c = 0; c < expected.getEntryCount(); c++){
+                Number va = a.getItemAt(r).getValue(c);
+                Number vb = b.getItemAt(r).getValue(c);
+                assertEquals(va.getClass(), vb.getClass());
+                assertEquals(va, vb);
+            }
+        }
+    }
+
+    private static void assertSameSnapshot(ConstantsSnapshot expected, ConstantsSnapshot snapshot){
+        assertEquals(expected.getRuns(), snapshot.getRuns());
+        String[][] keys = {{"default", ""}, {"rga_fall2018", "08/10/2020"}};
+        for(int run : new int[]{11, 4013, 5000}){
+            for(String[] key : keys){
+                assertEquals(expected.hasRun(run, key[0], key[1]), snapshot.hasRun(run, key[0], key[1]));
+                for(String name : Arrays.asList("/calibration/ec/gain", "/calibration/dc/t0",
+                        "/daq/tt/ftof", "/calibration/empty")){
+                    IndexedTable table = expected.getTable(run, key[0], key[1], name);
+                    if(table==null){
+                        assertNull(snapshot.getTable(run, key[0], key[1], name));
+                    } else {
+                        assertSameTable(table, snapshot.getTable(run, key[0], key[1], name));
+                    }
+                }
+            }
+        }
+        assertNull(snapshot.getTable(12, "default", "", "/calibration/ec/gain"));
+        assertNull(snapshot.getTable(11, "default", "", "/calibration/missing"));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ConstantsSnapshot snapshot = createSnapshot();
+        snapshot.save(file.getAbsolutePath());
+        ConstantsSnapshot read = ConstantsSnapshot.read(file.getAbsolutePath());
+        assertNotNull(read);
+        assertSameSnapshot(snapshot, read);
+
+        // saving a snapshot read from a file, with runs not decoded yet
+        ConstantsSnapshot partial = ConstantsSnapshot.read(file.getAbsolutePath());
+        partial.getTable(4013, "default", "", "/daq/tt/ftof");
+        File copy = File.createTempFile("constants", ".snapshot");
+        try {
+            partial.save(copy.getAbsolutePath());
+            assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(copy.toPath()));
+        } finally {
+            copy.delete();
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        Files.write(file.toPath(), bytes);
+    }
+
+    private static byte[] withChecksum(byte[] content){
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return ByteBuffer.allocate(content.length + 8).put(content).putLong(crc.getValue()).array();
+    }
+
+    @Test
+    public void testCorruptedFile() throws IOException {
+        createSnapshot().save(file.getAbsolutePath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertNotNull(ConstantsSnapshot.read(file.getAbsolutePath()));
+
+        // truncated file
+        for(int length : new int[]{0, 12, 19, bytes.length/3, bytes.length - 8, bytes.length - 1}){
+            write(Arrays.copyOf(bytes, length));
+            assertNull(ConstantsSnapshot.read(file.getAbsolutePath()));
+        }
+
+        // wrong checksum
+        for(int position : new int[]{0, 13, bytes.length/2, bytes.length - 9, bytes.length - 1}){
+            byte[] corrupted = bytes.clone();
+            corrupted[position] ^= 0x10;
+            write(corrupted);
+            assertNull(ConstantsSnapshot.read(file.getAbsolutePath()));
+        }
+
+        // truncated tables with a valid checksum
+        for(int length : new int[]{bytes.length/2, bytes.length - 12, bytes.length - 16}){
+            write(withChecksum(Arrays.copyOf(bytes, length)));
+            assertNull(ConstantsSnapshot.read(file.getAbsolutePath()));
+        }
+
+        // data after the tables
+        write(withChecksum(Arrays.copyOf(bytes, bytes.length - 8 + 4)));
+        assertNull(ConstantsSnapshot.read(file.getAbsolutePath()));
+    }
+
+    @Test
+    public void testManagerFallback() throws IOException {
+        createSnapshot().save(file.getAbsolutePath());
+        ConstantsManager.setSnapshotFile(file.getAbsolutePath());
+        assertNotNull(ConstantsManager.getSnapshot());
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length/2] ^= 0x01;
+        write(bytes);
+        // no table is taken from a corrupted file, all are read from the database
+        ConstantsManager.setSnapshotFile(file.getAbsolutePath());
+        assertNull(ConstantsManager.getSnapshot());
+
+        write(Arrays.copyOf(bytes, bytes.length/2));
+        ConstantsManager.setSnapshotFile(file.getAbsolutePath());
+        assertNull(ConstantsManager.getSnapshot());
+    }
+}
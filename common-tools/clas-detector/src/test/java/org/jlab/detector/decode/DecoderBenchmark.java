@@ -0,0 +1,154 @@
+package org.jlab.detector.decode;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jlab.detector.base.DetectorDescriptor;
+import org.jlab.io.evio.EvioDataEvent;
+import org.jlab.io.evio.EvioSource;
+
+/**
+ * Measures the events/s of the translation of the digitized data, applying
+ * the tables one after the other (DecoderReference) and with the compiled
+ * translation table (translate), alone and followed by the pulse fitting,
+ * and the events/s of the pulse fitting looking the fitter tables up one
+ * after the other (DecoderReference), with the compiled fitter table
+ * (fitPulses) and with the compiled table in parallel chunks.
+ * The raw data of the events are decoded once and kept in memory, each
+ * event is also checked to be translated identically by both methods.
+ *
+ * Usage: DecoderBenchmark file.evio [max events] [channels per parallel chunk]
+ */
+public class DecoderBenchmark {
+
+    /**
+     * decodes the raw data of an event as CLASDecoder.initEvent does,
+     * before translation.
+     * @param coda coda decoder
+     * @param event evio event
+     * @return digitized data
+     */
+    public static List<DetectorDataDgtz> readRaw(CodaEventDecoder coda, EvioDataEvent event){
+        List<DetectorDataDgtz> dataList = coda.getDataEntries(event);
+        List<FADCData>  fadcPacked = coda.getADCEntries(event);
+        if(fadcPacked!=null){
+            dataList.addAll(FADCData.convert(fadcPacked));
+        }
+        return dataList;
+    }
+
+    private static boolean same(DetectorDataDgtz a, DetectorDataDgtz b){
+        DetectorDescriptor da = a.getDescriptor();
+        DetectorDescriptor db = b.getDescriptor();
+        if(da.getType()!=db.getType()||da.getSector()!=db.getSector()||da.getLayer()!=db.getLayer()
+                ||da.getComponent()!=db.getComponent()||da.getOrder()!=db.getOrder()) return false;
+        for(int i = 0; i < a.getADCSize(); i++){
+            if(a.getADCData(i).getOrder()!=b.getADCData(i).getOrder()) return false;
+        }
+        for(int i = 0; i < a.getTDCSize(); i++){
+            if(a.getTDCData(i).getOrder()!=b.getTDCData(i).getOrder()) return false;
+        }
+        return true;
+    }
+
+    private static void translateFromTables(DetectorEventDecoder decoder, int run, List<DetectorDataDgtz> data){
+        DecoderReference.translate(decoder.keysTrans,
+                DecoderReference.getTables(decoder.translationManager, run, decoder.keysTrans), data);
+    }
+
+    private static void fitPulsesFromTables(DetectorEventDecoder decoder, int run, List<DetectorDataDgtz> data){
+        DecoderReference.fitPulses(decoder.keysFitter,
+                DecoderReference.getTables(decoder.fitterManager, run, decoder.keysFitter), data);
+    }
+
+    private static double rate(DetectorEventDecoder decoder, List<List<DetectorDataDgtz>> events,
+            List<Integer> runs, boolean compiled, boolean fit){
+        long start = System.nanoTime();
+        for(int i = 0; i < events.size(); i++){
+            decoder.setRunNumber(runs.get(i));
+            if(compiled) decoder.translate(events.get(i));
+            else         translateFromTables(decoder, runs.get(i), events.get(i));
+            if(fit) decoder.fitPulses(events.get(i));
+        }
+        return events.size()*1e9/(System.nanoTime()-start);
+    }
+
+    private static double fitRate(DetectorEventDecoder decoder, List<List<DetectorDataDgtz>> events,
+            List<Integer> runs, boolean compiled){
+        long start = System.nanoTime();
+        for(int i = 0; i < events.size(); i++){
+            decoder.setRunNumber(runs.get(i));
+            if(compiled) decoder.fitPulses(events.get(i));
+            else         fitPulsesFromTables(decoder, runs.get(i), events.get(i));
+        }
+        return events.size()*1e9/(System.nanoTime()-start);
+    }
+
+    public static void main(String[] args){
+
+        if(args.length<1){
+            System.out.println("usage: DecoderBenchmark file.evio [max events] [channels per parallel chunk]");
+            return;
+        }
+        int maxEvents = args.length>1 ? Integer.parseInt(args[1]) : 5000;
+        int chunkSize = args.length>2 ? Integer.parseInt(args[2]) : 32;
+
+        CodaEventDecoder coda = new CodaEventDecoder();
+        DetectorEventDecoder decoder = new DetectorEventDecoder();
+        List<List<DetectorDataDgtz>> events = new ArrayList<>();
+        List<Integer> runs = new ArrayList<>();
+
+        EvioSource reader = new EvioSource();
+        reader.open(args[0]);
+        int bad = 0;
+        long channels = 0;
+        while(reader.hasEvent()==true && events.size()<maxEvents){
+            EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
+            List<DetectorDataDgtz> reference = readRaw(coda, event);
+            List<DetectorDataDgtz> data      = readRaw(coda, event);
+            int run = coda.getRunNumber();
+            decoder.setRunNumber(run);
+            translateFromTables(decoder, run, reference);
+            decoder.translate(data);
+            for(int i = 0; i < data.size(); i++){
+                if(!same(reference.get(i), data.get(i))){
+                    bad++;
+                    break;
+                }
+            }
+            channels += data.size();
+            events.add(readRaw(coda, event));
+            runs.add(run);
+        }
+        reader.close();
+        if(events.isEmpty()){
+            System.out.println("no events in " + args[0]);
+            return;
+        }
+        System.out.println(String.format("%d events, %.1f channels/event, %d translation tables entries,"
+                + " %d events translated differently", events.size(), (double) channels/events.size(),
+                decoder.getTranslationTable().getRowCount(), bad));
+
+        for(int iter = 0; iter < 5; iter++){
+            double tables   = rate(decoder, events, runs, false, false);
+            double compiled = rate(decoder, events, runs, true, false);
+            double tablesFit   = rate(decoder, events, runs, false, true);
+            double compiledFit = rate(decoder, events, runs, true, true);
+            System.out.println(String.format("iteration %d : translation %10.0f -> %10.0f events/s (x%.1f),"
+                    + " translation+fit %9.0f -> %9.0f events/s", iter, tables, compiled, compiled/tables,
+                    tablesFit, compiledFit));
+        }
+
+        for(List<DetectorDataDgtz> event : events) decoder.translate(event);
+        for(int iter = 0; iter < 5; iter++){
+            decoder.setParallelFitting(0);
+            double tables   = fitRate(decoder, events, runs, false);
+            double compiled = fitRate(decoder, events, runs, true);
+            decoder.setParallelFitting(chunkSize);
+            double parallel = fitRate(decoder, events, runs, true);
+            System.out.println(String.format("iteration %d : fit %10.0f -> %10.0f events/s (x%.1f),"
+                    + " parallel (%d channels per chunk) %10.0f events/s", iter, tables, compiled,
+                    compiled/tables, chunkSize, parallel));
+        }
+        decoder.setParallelFitting(0);
+    }
+}
@@ -0,0 +1,130 @@
+package org.jlab.detector.decode;
+
+import java.util.List;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.detector.decode.DetectorDataDgtz.ADCData;
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * The decoding loops of DetectorEventDecoder before the tables were compiled,
+ * looking every channel up in each of the tables one after the other. Used
+ * as reference by the tests and by DecoderBenchmark.
+ */
+public class DecoderReference {
+
+    /**
+     * @param manager constants manager holding the tables
+     * @param run run number
+     * @param keys names of the tables
+     * @return table of each key for the run
+     */
+    public static IndexedTable[] getTables(ConstantsManager manager, int run, List<String> keys){
+        IndexedTable[] tables = new IndexedTable[keys.size()];
+        for(int i = 0; i < tables.length; i++){
+            tables[i] = manager.getConstants(run, keys.get(i));
+        }
+        return tables;
+    }
+
+    /**
+     * applies the translation tables one after the other.
+     * @param keys names of the tables, also the names of the detector types
+     * @param tables translation table of each key
+     * @param detectorData digitized data
+     */
+    public static void translate(List<String> keys, IndexedTable[] tables, List<DetectorDataDgtz> detectorData){
+
+        for(DetectorDataDgtz data : detectorData){
+
+            int crate    = data.getDescriptor().getCrate();
+            int slot     = data.getDescriptor().getSlot();
+            int channel  = data.getDescriptor().getChannel();
+
+            for(int t = 0; t < keys.size(); t++){
+                IndexedTable  tt = tables[t];
+                DetectorType  type = DetectorType.getType(keys.get(t));
+
+                if(tt.hasEntry(crate,slot,channel)==true){
+                    int sector    = tt.getIntValue("sector", crate,slot,channel);
+                    int layer     = tt.getIntValue("layer", crate,slot,channel);
+                    int component = tt.getIntValue("component", crate,slot,channel);
+                    int order     = tt.getIntValue("order", crate,slot,channel);
+
+                    data.getDescriptor().setSectorLayerComponent(sector, layer, component);
+                    data.getDescriptor().setOrder(order);
+                    data.getDescriptor().setType(type);
+                    for(int i = 0; i < data.getADCSize(); i++) {
+                        data.getADCData(i).setOrder(order);
+                    }
+                    for(int i = 0; i < data.getTDCSize(); i++) {
+                        data.getTDCData(i).setOrder(order);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * fits the pulses looking every channel up in each of the fitter tables,
+     * with the fitter objects.
+     * @param keys names of the tables, also the names of the detector types
+     * @param tables fitter table of each key
+     * @param detectorData digitized data
+     */
+    public static void fitPulses(List<String> keys, IndexedTable[] tables, List<DetectorDataDgtz> detectorData){
+        ExtendedFADCFitter extendedFitter = new ExtendedFADCFitter();
+        MVTFitter          mvtFitter      = new MVTFitter();
+        for(DetectorDataDgtz data : detectorData){
+            int crate    = data.getDescriptor().getCrate();
+            int slot     = data.getDescriptor().getSlot();
+            int channel  = data.getDescriptor().getChannel();
+            for(int t = 0; t < keys.size(); t++){
+                String table = keys.get(t);
+                IndexedTable daq = tables[t];
+                //custom MM fitter
+                if( ( (table.equals("BMT"))&&(data.getDescriptor().getType().getName().equals("BMT")) )
+                 || ( (table.equals("FMT"))&&(data.getDescriptor().getType().getName().equals("FMT")) )
+                 || ( (table.equals("FTTRK"))&&(data.getDescriptor().getType().getName().equals("FTTRK")) ) ){
+                    short adcOffset = (short) daq.getDoubleValue("adc_offset", 0, 0, 0);
+                    double fineTimeStampResolution = (byte) daq.getDoubleValue("dream_clock", 0, 0, 0);
+                    double samplingTime = (byte) daq.getDoubleValue("sampling_time", 0, 0, 0);
+                    int sparseSample = daq.getIntValue("sparse", 0, 0 ,0);
+                    if (data.getADCSize() > 0) {
+                        ADCData adc = data.getADCData(0);
+                        mvtFitter.fit(adcOffset, fineTimeStampResolution, samplingTime, adc.getPulseArray(), adc.getTimeStamp(), sparseSample);
+                        adc.setHeight((short) (mvtFitter.adcMax));
+                        adc.setTime((int) (mvtFitter.timeMax));
+                        adc.setIntegral((int) (mvtFitter.integral));
+                        adc.setTimeStamp(mvtFitter.timestamp);
+                    }
+                } else if(daq.hasEntry(crate,slot,channel)==true){
+                    int nsa = daq.getIntValue("nsa", crate,slot,channel);
+                    int nsb = daq.getIntValue("nsb", crate,slot,channel);
+                    int tet = daq.getIntValue("tet", crate,slot,channel);
+                    int ped = 0;
+                    if(table.equals("RF")&&data.getDescriptor().getType().getName().equals("RF")) ped = daq.getIntValue("pedestal", crate,slot,channel);
+                    for(int i = 0; i < data.getADCSize(); i++){
+                        ADCData adc = data.getADCData(i);
+                        if(adc.getPulseSize()>0){
+                            try {
+                                extendedFitter.fit(nsa, nsb, tet, ped, adc.getPulseArray());
+                            } catch (Exception e) {
+                                System.out.println(">>>> error : fitting pulse "
+                                                    +  crate + " / " + slot + " / " + channel);
+                            }
+                            int adc_corrected = extendedFitter.adc + extendedFitter.ped*(nsa+nsb);
+                            adc.setHeight((short) extendedFitter.pulsePeakValue);
+                            adc.setIntegral(adc_corrected);
+                            adc.setTimeWord(extendedFitter.t0);
+                            adc.setPedestal((short) extendedFitter.ped);
+                        }
+                    }
+                    for(int i = 0; i < data.getADCSize(); i++){
+                        data.getADCData(i).setADC(nsa, nsb);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.jlab.detector.decode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.evio.EvioSource;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ParallelDecoder stops its writer thread when the input can not
+ * be read, no event is decoded so no HIPO writer is needed.
+ */
+public class ParallelDecoderTest {
+
+    private static boolean writerAlive(){
+        for(Thread thread : Thread.getAllStackTraces().keySet()){
+            if(thread.getName().equals("decoder-writer") && thread.isAlive()) return true;
+        }
+        return false;
+    }
+
+    @Test(timeout=10000)
+    public void testMissingFile() {
+        ParallelDecoder decoder = new ParallelDecoder(false, 2, 0);
+        decoder.setReportInterval(0);
+        assertEquals(0, decoder.process(Arrays.asList("/nonexistent/decoder-input.evio"), null, -1));
+        assertFalse(writerAlive());
+    }
+
+    @Test(timeout=10000)
+    public void testCorruptFile() throws IOException {
+        File file = File.createTempFile("decoder-input", ".evio");
+        file.deleteOnExit();
+        byte[] bytes = new byte[4096];
+        new Random(11).nextBytes(bytes);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        ParallelDecoder decoder = new ParallelDecoder(false, 2, 0);
+        decoder.setReportInterval(0);
+        try {
+            assertEquals(0, decoder.process(Arrays.asList(file.getAbsolutePath()), null, -1));
+        } catch (RuntimeException e) {
+            // a corrupt file may also be reported by an exception
+        }
+        assertFalse(writerAlive());
+    }
+
+    @Test(timeout=10000)
+    public void testReadFailure() {
+        ParallelDecoder decoder = new ParallelDecoder(false, 2, 0){
+            @Override
+            EvioSource openReader(String inputFile){
+                return new EvioSource(){
+                    @Override
+                    public boolean hasEvent(){ return true;}
+                    @Override
+                    public DataEvent getNextEvent(){
+                        throw new IllegalStateException("corrupt event");
+                    }
+                };
+            }
+        };
+        decoder.setReportInterval(0);
+        try {
+            decoder.process(Arrays.asList("input.evio"), null, -1);
+            fail("the read failure was not reported");
+        } catch (IllegalStateException e) {
+            assertEquals("corrupt event", e.getMessage());
+        }
+        assertFalse(writerAlive());
+    }
+}
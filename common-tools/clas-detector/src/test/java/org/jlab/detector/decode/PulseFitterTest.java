@@ -0,0 +1,363 @@
+package org.jlab.detector.decode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.decode.DetectorDataDgtz.ADCData;
+import org.jlab.utils.groups.IndexedTable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PulseFitterTest {
+
+    /**
+     * ExtendedFADCFitter.fit before the static fit was added.
+     */
+    private static class LegacyFADCFitter {
+
+        int p1=1,p2=15;
+        int pedistalMaxBin = 5;
+        int     t0,adc,ped,pedsum;
+        int     thresholdCrossing,pulsePeakValue, pulsePeakPosition, pulseWidth;
+        double  baseline, rms;
+        int     tcourse, tfine;
+
+        void fit(int nsa, int nsb, int tet, int pedr, short[] pulse) {
+            t0=0; adc=0; ped=0; pedsum=0; baseline=0; rms=0;
+            thresholdCrossing=0; pulsePeakValue=0; pulsePeakPosition=0; pulseWidth=0;
+            tcourse=0; tfine=0;
+            double noise  = 0;
+            int    tstart = pedistalMaxBin+1;
+            int    tcross = 0;
+            int    pmax   = 0;
+            int    ppos   = 0;
+            if (pedr!=0) ped=pedr;
+            if(pulse.length<p2+1 && pedr==0) {
+                for (int bin = 0; bin < pulse.length; bin++) {
+                    pedsum += pulse[bin];
+                }
+                ped=pedsum/pulse.length;
+                return;
+            }
+            if (pedr==0) {
+                tstart = p2+1;
+                for (int bin = p1+1; bin < p2+1; bin++) {
+                    pedsum += pulse[bin];
+                    noise  += pulse[bin] * pulse[bin];
+                }
+                baseline = ((double) pedsum)/ (p2 - p1);
+                ped = pedsum=pedsum/(p2-p1);
+                rms = Math.sqrt(noise / (p2 - p1) - baseline * baseline);
+            }
+            for (int bin=tstart; bin<pulse.length; bin++) {
+                if(pulse[bin]>ped+tet) {
+                    tcross=bin;
+                    thresholdCrossing=tcross;
+                    break;
+                }
+            }
+            if(tcross>0) {
+                for (int bin=Math.max(0,tcross-nsb); bin<Math.min(pulse.length,tcross+nsa+1); bin++) {
+                    adc+=pulse[bin]-ped;
+                    if(bin>=tcross && pulse[bin]>pmax) {
+                        pmax=pulse[bin];
+                        ppos=bin;
+                    }
+                }
+                pulsePeakPosition=ppos;
+                pulsePeakValue=pmax;
+                double halfMax = (pmax+baseline)/2;
+                int s0 = -1;
+                int s1 = -1;
+                for (int bin=tcross-1; bin<Math.min(pulse.length-1,ppos+1); bin++) {
+                    if (pulse[bin]<=halfMax && pulse[bin+1]>halfMax) {
+                        s0 = bin;
+                        break;
+                    }
+                }
+                for (int bin=ppos; bin<Math.min(pulse.length-1,tcross+nsa); bin++) {
+                    if (pulse[bin]>halfMax && pulse[bin+1]<=halfMax) {
+                        s1 = bin;
+                        break;
+                    }
+                }
+                if(s0>-1) {
+                    int a0 = pulse[s0];
+                    int a1 = pulse[s0+1];
+                    tcourse = s0;
+                    tfine   = ((int) ((halfMax - a0)/(a1-a0) * 64));
+                    t0      = (tcourse << 6) + tfine;
+                }
+                if(s1>-1 && s0>-1) {
+                    pulseWidth  = s1 - s0;
+                }
+            }
+        }
+    }
+
+    /**
+     * MVTFitter.fit before the static fit was added.
+     */
+    private static class LegacyMVTFitter {
+
+        int    binMax, binOffset;
+        double adcMax, timeMax, integral;
+        long   timestamp;
+        short[] pulseArrayCorr;
+        int binNumber;
+
+        void fit(short adcOffset, double fineTimeStampResolution, double samplingTime, short[] pulseArray, long timeStamp, int sparseSample) {
+            binNumber = pulseArray.length;
+            binMax = 0;
+            adcMax = (short) (pulseArray[0]-adcOffset);
+            integral = 0;
+            pulseArrayCorr = new short[binNumber];
+            for (int bin = 0 ; bin < binNumber ; bin ++){
+                pulseArrayCorr[bin] = (short) (pulseArray[bin] - adcOffset);
+                integral = integral + pulseArrayCorr[bin];
+                if (pulseArrayCorr[bin]>adcMax){
+                    adcMax = pulseArrayCorr[bin];
+                    binMax = bin;
+                }
+            }
+            binOffset = sparseSample * binMax;
+            timeMax = (binMax+binOffset) * samplingTime;
+            if (binMax < (binNumber-1) && binMax > 0) {
+                int y1 = pulseArrayCorr[binMax - 1];
+                int y2 = pulseArrayCorr[binMax];
+                int y3 = pulseArrayCorr[binMax + 1];
+                int x1 = binMax - 1 + binOffset - 1;
+                int x2 = binMax + binOffset;
+                int x3 = binMax + 1 + binOffset + 1;
+                double denom = (x1 - x2) * (x1 - x3) * (x2 - x3);
+                double A = (x3 * (y2 - y1) + x2 * (y1 - y3) + x1 * (y3 - y2)) / denom;
+                double B = (x3 * x3 * (y1 - y2) + x2 * x2 * (y3 - y1) + x1 * x1 * (y2 - y3)) / denom;
+                double C = (x2 * x3 * (x2 - x3) * y1 + x3 * x1 * (x3 - x1) * y2 + x1 * x2 * (x1 - x2) * y3) / denom;
+                timeMax = -B / (2 * A) * samplingTime;
+                adcMax = C - B * B / (4 * A);
+            }
+            timestamp = timeStamp;
+            String binaryTimeStamp = Long.toBinaryString(timeStamp);
+            if (binaryTimeStamp.length()>=3){
+                byte fineTimeStamp = Byte.parseByte(binaryTimeStamp.substring(binaryTimeStamp.length()-3,binaryTimeStamp.length()),2);
+                timeMax += (double) ((fineTimeStamp+0.5) * fineTimeStampResolution);
+            }
+        }
+    }
+
+    private static short[] createFADCPulse(Random rand, int length){
+        short[] pulse = new short[length];
+        int    ped    = 150 + rand.nextInt(200);
+        double height = rand.nextInt(4) == 0 ? 0 : 20 + 2000 * rand.nextDouble();
+        double peak   = 20 + (length - 30) * rand.nextDouble();
+        for(int i = 0; i < length; i++){
+            double x = (i - peak) / 2.5;
+            pulse[i] = (short) (ped + rand.nextInt(7) - 3 + (x > -3 ? height * Math.exp(-0.5 * x * x) : 0));
+        }
+        return pulse;
+    }
+
+    private static short[] createMVTPulse(Random rand){
+        short[] pulse = new short[3 + rand.nextInt(14)];
+        int offset = 200 + rand.nextInt(50);
+        int peak   = rand.nextInt(pulse.length);
+        for(int i = 0; i < pulse.length; i++){
+            pulse[i] = (short) (offset + rand.nextInt(9) - 4 + 1500 * Math.exp(-0.3 * (i - peak) * (i - peak)));
+        }
+        return pulse;
+    }
+
+    @Test
+    public void testFADCFitter() {
+        Random rand = new Random(5);
+        ExtendedFADCFitter fitter = new ExtendedFADCFitter();
+        LegacyFADCFitter   legacy = new LegacyFADCFitter();
+        int[] result = new int[ExtendedFADCFitter.RESULT_SIZE];
+        for(int n = 0; n < 20000; n++){
+            short[] pulse = createFADCPulse(rand, rand.nextInt(10) == 0 ? 8 + rand.nextInt(10) : 100);
+            int nsa  = 5 + rand.nextInt(30);
+            int nsb  = 1 + rand.nextInt(8);
+            int tet  = 5 + rand.nextInt(30);
+            int pedr = rand.nextInt(3) == 0 ? 150 + rand.nextInt(200) : 0;
+            legacy.fit(nsa, nsb, tet, pedr, pulse);
+            fitter.fit(nsa, nsb, tet, pedr, pulse);
+            ExtendedFADCFitter.fit(nsa, nsb, tet, pedr, pulse, result);
+
+            assertEquals(legacy.t0, fitter.t0);
+            assertEquals(legacy.adc, fitter.adc);
+            assertEquals(legacy.ped, fitter.ped);
+            assertEquals(legacy.pedsum, fitter.pedsum);
+            assertEquals(legacy.pulsePeakValue, fitter.pulsePeakValue);
+            assertEquals(legacy.pulsePeakPosition, fitter.pulsePeakPosition);
+            assertEquals(legacy.thresholdCrossing, fitter.thresholdCrossing);
+            assertEquals(legacy.pulseWidth, fitter.pulseWidth);
+            assertEquals(legacy.baseline, fitter.baseline, 0);
+            assertEquals(legacy.rms, fitter.rms, 0);
+
+            assertEquals(legacy.t0, result[ExtendedFADCFitter.T0]);
+            assertEquals(legacy.adc, result[ExtendedFADCFitter.ADC]);
+            assertEquals(legacy.ped, result[ExtendedFADCFitter.PED]);
+            assertEquals(legacy.pulsePeakValue, result[ExtendedFADCFitter.PEAK_VALUE]);
+            assertEquals(legacy.pulsePeakPosition, result[ExtendedFADCFitter.PEAK_POSITION]);
+            assertEquals(legacy.thresholdCrossing, result[ExtendedFADCFitter.THRESHOLD_CROSSING]);
+            assertEquals(legacy.pulseWidth, result[ExtendedFADCFitter.PULSE_WIDTH]);
+        }
+    }
+
+    @Test
+    public void testMVTFitter() {
+        Random rand = new Random(7);
+        MVTFitter       fitter = new MVTFitter();
+        LegacyMVTFitter legacy = new LegacyMVTFitter();
+        double[] result = new double[MVTFitter.RESULT_SIZE];
+        for(int n = 0; n < 20000; n++){
+            short[] pulse = createMVTPulse(rand);
+            short  adcOffset  = (short) (200 + rand.nextInt(50));
+            double resolution = 1 + rand.nextInt(8);
+            double sampling   = 10 + rand.nextInt(30);
+            int    sparse     = rand.nextInt(3);
+            long   timeStamp  = rand.nextInt(4) == 0 ? rand.nextInt(8) - 2 : rand.nextLong();
+            legacy.fit(adcOffset, resolution, sampling, pulse, timeStamp, sparse);
+            fitter.fit(adcOffset, resolution, sampling, pulse, timeStamp, sparse);
+            MVTFitter.fit(adcOffset, resolution, sampling, pulse, timeStamp, sparse, result);
+
+            assertEquals(legacy.adcMax, fitter.adcMax, 0);
+            assertEquals(legacy.timeMax, fitter.timeMax, 0);
+            assertEquals(legacy.integral, fitter.integral, 0);
+            assertEquals(legacy.binMax, fitter.binMax);
+            assertEquals(legacy.binOffset, fitter.binOffset);
+            assertEquals(legacy.timestamp, fitter.timestamp);
+
+            assertEquals(legacy.adcMax, result[MVTFitter.ADC_MAX], 0);
+            assertEquals(legacy.timeMax, result[MVTFitter.TIME_MAX], 0);
+            assertEquals(legacy.integral, result[MVTFitter.INTEGRAL], 0);
+            assertEquals(legacy.binMax, (int) result[MVTFitter.BIN_MAX]);
+            assertEquals(legacy.binOffset, (int) result[MVTFitter.BIN_OFFSET]);
+        }
+    }
+
+    private static IndexedTable createFADCTable(int crate, boolean rf){
+        IndexedTable table = new IndexedTable(3, rf ? "nsa/I:nsb/I:tet/I:pedestal/I" : "nsa/I:nsb/I:tet/I");
+        for(int slot = 1; slot <= 4; slot++){
+            for(int channel = 0; channel < 16; channel++){
+                table.addEntry(crate, slot, channel);
+                table.setIntValue(10 + crate + channel, "nsa", crate, slot, channel);
+                table.setIntValue(2 + slot, "nsb", crate, slot, channel);
+                table.setIntValue(10 + 2 * channel, "tet", crate, slot, channel);
+                if(rf) table.setIntValue(200 + slot, "pedestal", crate, slot, channel);
+            }
+        }
+        return table;
+    }
+
+    private static IndexedTable createMVTTable(){
+        IndexedTable table = new IndexedTable(3, "adc_offset/D:dream_clock/D:sampling_time/D:sparse/I");
+        table.addEntry(0, 0, 0);
+        table.setDoubleValue(220.0, "adc_offset", 0, 0, 0);
+        table.setDoubleValue(8.0, "dream_clock", 0, 0, 0);
+        table.setDoubleValue(40.0, "sampling_time", 0, 0, 0);
+        table.setIntValue(0, "sparse", 0, 0, 0);
+        return table;
+    }
+
+    private static IndexedTable[] createTables(List<String> keys){
+        IndexedTable[] tables = new IndexedTable[keys.size()];
+        for(int i = 0; i < tables.length; i++){
+            switch(keys.get(i)){
+                case "FTOF" : tables[i] = createFADCTable(1, false); break;
+                case "ECAL" : tables[i] = createFADCTable(2, false); break;
+                case "RF"   : tables[i] = createFADCTable(3, true);  break;
+                default     : tables[i] = createMVTTable();
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * FTOF, ECAL and RF channels, BMT channels of crate 4 and one BMT
+     * channel with the crate, slot and channel of an FTOF channel.
+     */
+    private static List<DetectorDataDgtz> createData(long seed){
+        Random rand = new Random(seed);
+        DetectorType[] types = new DetectorType[]{DetectorType.FTOF, DetectorType.ECAL, DetectorType.RF, DetectorType.BMT};
+        List<DetectorDataDgtz> data = new ArrayList<>();
+        for(int i = 0; i < 400; i++){
+            int crate = 1 + rand.nextInt(5);
+            DetectorDataDgtz dgtz = new DetectorDataDgtz(crate, 1 + rand.nextInt(4), rand.nextInt(16));
+            dgtz.getDescriptor().setType(crate < 5 ? types[crate - 1] : DetectorType.DC);
+            if(crate == 4){
+                dgtz.addADC(new ADCData(createMVTPulse(rand)).setTimeStamp(rand.nextInt(1000)));
+            } else {
+                dgtz.addPulse(createFADCPulse(rand, 100));
+                if(rand.nextBoolean()) dgtz.addADC(new ADCData());
+            }
+            data.add(dgtz);
+        }
+        DetectorDataDgtz shared = new DetectorDataDgtz(1, 2, 7);
+        shared.getDescriptor().setType(DetectorType.BMT);
+        shared.addADC(new ADCData(createMVTPulse(rand)).setTimeStamp(13));
+        data.add(shared);
+        return data;
+    }
+
+    private static void assertSameFit(List<DetectorDataDgtz> expected, List<DetectorDataDgtz> data){
+        assertEquals(expected.size(), data.size());
+        for(int i = 0; i < data.size(); i++){
+            assertEquals(expected.get(i).getADCSize(), data.get(i).getADCSize());
+            for(int j = 0; j < data.get(i).getADCSize(); j++){
+                ADCData a = expected.get(i).getADCData(j);
+                ADCData b = data.get(i).getADCData(j);
+                assertEquals(a.getHeight(), b.getHeight());
+                assertEquals(a.getIntegral(), b.getIntegral());
+                assertEquals(a.getADC(), b.getADC());
+                assertEquals(a.getPedestal(), b.getPedestal());
+                assertEquals(a.getTime(), b.getTime(), 0);
+                assertEquals(a.getTimeCourse(), b.getTimeCourse());
+                assertEquals(a.getTimeStamp(), b.getTimeStamp());
+            }
+        }
+    }
+
+    private static List<DetectorDataDgtz> fitWithTable(List<String> keys, int chunkSize){
+        DetectorEventDecoder decoder = new DetectorEventDecoder();
+        decoder.setParallelFitting(chunkSize);
+        List<DetectorDataDgtz> data = createData(3);
+        decoder.fitPulses(new PulseFitterTable(10, keys, createTables(keys)), data);
+        return data;
+    }
+
+    private static List<DetectorDataDgtz> fitWithTables(List<String> keys){
+        List<DetectorDataDgtz> data = createData(3);
+        DecoderReference.fitPulses(keys, createTables(keys), data);
+        return data;
+    }
+
+    @Test
+    public void testMVTOrder() {
+        List<String> mvtLast  = Arrays.asList("FTOF", "ECAL", "BMT", "RF");
+        List<String> mvtFirst = Arrays.asList("BMT", "FTOF", "ECAL", "RF");
+
+        List<DetectorDataDgtz> fitMVTLast  = fitWithTable(mvtLast, 0);
+        List<DetectorDataDgtz> fitMVTFirst = fitWithTable(mvtFirst, 0);
+        assertSameFit(fitWithTables(mvtLast), fitMVTLast);
+        assertSameFit(fitWithTables(mvtFirst), fitMVTFirst);
+
+        // the shared channel gets the fit of the last table
+        ADCData last  = fitMVTLast.get(fitMVTLast.size() - 1).getADCData(0);
+        ADCData first = fitMVTFirst.get(fitMVTFirst.size() - 1).getADCData(0);
+        assertNotEquals(last.getIntegral(), first.getIntegral());
+        assertNotEquals(last.getTime(), first.getTime(), 0);
+    }
+
+    @Test
+    public void testParallelFitting() {
+        List<String> keys = Arrays.asList("FTOF", "ECAL", "BMT", "RF");
+        List<DetectorDataDgtz> serial = fitWithTable(keys, 0);
+        assertSameFit(fitWithTables(keys), serial);
+        for(int chunk : new int[]{1, 7, 64, 1000}){
+            assertSameFit(serial, fitWithTable(keys, chunk));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.jlab.detector.decode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.jlab.detector.base.DetectorDescriptor;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.utils.groups.IndexedTable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TranslationTableTest {
+
+    private static final List<String> KEYS = Arrays.asList("FTOF", "ECAL", "DC");
+
+    private static IndexedTable createTable(int crate, int nslots, int offset){
+        IndexedTable table = new IndexedTable(3, "sector/I:layer/I:component/I:order/I");
+        for(int slot = 1; slot <= nslots; slot++){
+            for(int channel = 0; channel < 16; channel++){
+                table.addEntry(crate, slot, channel);
+                table.setIntValue(offset + 1, "sector", crate, slot, channel);
+                table.setIntValue(offset + slot, "layer", crate, slot, channel);
+                table.setIntValue(offset + channel, "component", crate, slot, channel);
+                table.setIntValue(channel % 4, "order", crate, slot, channel);
+            }
+        }
+        return table;
+    }
+
+    private static IndexedTable[] createTables(){
+        IndexedTable[] tables = new IndexedTable[]{
+            createTable(1, 4, 100), createTable(2, 4, 200), createTable(3, 6, 300)
+        };
+        // a channel of the FTOF crate also in the ECAL table
+        tables[1].addEntry(1, 2, 7);
+        tables[1].setIntValue(5, "sector", 1, 2, 7);
+        tables[1].setIntValue(6, "layer", 1, 2, 7);
+        tables[1].setIntValue(77, "component", 1, 2, 7);
+        tables[1].setIntValue(3, "order", 1, 2, 7);
+        return tables;
+    }
+
+    private static List<DetectorDataDgtz> createData(long seed){
+        Random rand = new Random(seed);
+        List<DetectorDataDgtz> data = new ArrayList<>();
+        for(int i = 0; i < 500; i++){
+            DetectorDataDgtz dgtz = new DetectorDataDgtz(1 + rand.nextInt(4), 1 + rand.nextInt(7), rand.nextInt(18));
+            dgtz.addADC(new DetectorDataDgtz.ADCData());
+            dgtz.addTDC(new DetectorDataDgtz.TDCData(rand.nextInt(1000)));
+            data.add(dgtz);
+        }
+        return data;
+    }
+
+    @Test
+    public void testLastTableWins() {
+        TranslationTable table = new TranslationTable(10, KEYS, createTables());
+        assertEquals(10, table.getRunNumber());
+        assertEquals(4*16 + 4*16 + 6*16, table.getRowCount());
+
+        int row = table.getRow(1, 2, 7);
+        assertTrue(row >= 0);
+        assertEquals(DetectorType.ECAL, table.getType(row));
+        assertEquals(5, table.getSector(row));
+        assertEquals(6, table.getLayer(row));
+        assertEquals(77, table.getComponent(row));
+        assertEquals(3, table.getOrder(row));
+
+        row = table.getRow(1, 2, 8);
+        assertEquals(DetectorType.FTOF, table.getType(row));
+        assertEquals(108, table.getComponent(row));
+
+        assertEquals(-1, table.getRow(4, 1, 0));
+        assertEquals(-1, table.getRow(1, 5, 0));
+    }
+
+    @Test
+    public void testMissingTable() {
+        IndexedTable[] tables = createTables();
+        tables[1] = null;
+        TranslationTable table = new TranslationTable(10, KEYS, tables);
+        assertEquals(4*16 + 6*16, table.getRowCount());
+        assertEquals(DetectorType.FTOF, table.getType(table.getRow(1, 2, 7)));
+        assertEquals(-1, table.getRow(2, 1, 0));
+    }
+
+    @Test
+    public void testSameAsTables() {
+        IndexedTable[] tables = createTables();
+        TranslationTable table = new TranslationTable(10, KEYS, tables);
+        List<DetectorDataDgtz> reference = createData(11);
+        List<DetectorDataDgtz> data      = createData(11);
+        DecoderReference.translate(KEYS, tables, reference);
+        int translated = 0;
+        for(DetectorDataDgtz dgtz : data){
+            if(table.translate(dgtz)) translated++;
+        }
+        assertTrue(translated > 0 && translated < data.size());
+        for(int i = 0; i < data.size(); i++){
+            DetectorDescriptor a = reference.get(i).getDescriptor();
+            DetectorDescriptor b = data.get(i).getDescriptor();
+            assertEquals(a.getType(), b.getType());
+            assertEquals(a.getSector(), b.getSector());
+            assertEquals(a.getLayer(), b.getLayer());
+            assertEquals(a.getComponent(), b.getComponent());
+            assertEquals(a.getOrder(), b.getOrder());
+            assertEquals(reference.get(i).getADCData(0).getOrder(), data.get(i).getADCData(0).getOrder());
+            assertEquals(reference.get(i).getTDCData(0).getOrder(), data.get(i).getTDCData(0).getOrder());
+        }
+    }
+}
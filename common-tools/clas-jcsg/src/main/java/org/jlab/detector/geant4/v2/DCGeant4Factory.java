@@ -389,6 +389,7 @@ public final class DCGeant4Factory extends Geant4Factory {
     private final Wire[][][][] wires;
     private final Vector3d[][][] layerMids;
     private final Vector3d[][] regionMids;
+    private final DCWireTable wireTable;
 
     public static boolean MINISTAGGERON=true;
     public static boolean MINISTAGGEROFF=false;
@@ -484,6 +485,16 @@ public final class DCGeant4Factory extends Geant4Factory {
 
             }
         }
+
+        wireTable = new DCWireTable(wires, layerMids, regionMids, dbref.nsensewires());
+    }
+
+    /**
+     * @return wire, layer and region positions in primitive arrays, for
+     * lookups that do not allocate
+     */
+    public DCWireTable getWireTable() {
+        return wireTable;
     }
 
     public Vector3d getWireMidpoint(int isec, int isuper, int ilayer, int iwire) {
@@ -498,6 +509,10 @@ public final class DCGeant4Factory extends Geant4Factory {
         return wires[isec][isuper][ilayer][iwire].right();
     }
 
+    public Vector3d getWireDirection(int isec, int isuper, int ilayer, int iwire) {
+        return wires[isec][isuper][ilayer][iwire].dir();
+    }
+
     public Vector3d getRegionMidpoint(int isec, int iregion) {
         return regionMids[isec][iregion].clone();
     }
@@ -0,0 +1,179 @@
+package org.jlab.detector.geant4.v2;
+
+import eu.mihosoft.vrl.v3d.Vector3d;
+
+/**
+ * Wire positions of DCGeant4Factory in flat primitive arrays (one array
+ * per coordinate), indexed by the wire id given by getWireId. The wires
+ * of one layer are contiguous, so a whole layer can be copied at once.
+ * The values are copied from the wires built by DCGeant4Factory and the
+ * accessors do not allocate. Sector, superlayer, layer and wire numbers
+ * start at 0 as in the DCGeant4Factory getters.
+ */
+public final class DCWireTable {
+
+    private final int nsectors;
+    private final int nsuperlayers;
+    private final int nregions;
+    private final int nlayers;
+    private final int nwires;
+
+    private final double[] midX, midY, midZ;
+    private final double[] leftX, leftY, leftZ;
+    private final double[] rightX, rightY, rightZ;
+    private final double[] dirX, dirY, dirZ;
+
+    private final double[] layerMidX, layerMidY, layerMidZ;
+    private final double[] regionMidX, regionMidY, regionMidZ;
+
+    DCWireTable(Wire[][][][] wires, Vector3d[][][] layerMids, Vector3d[][] regionMids, int nwires) {
+        this.nsectors     = wires.length;
+        this.nsuperlayers = wires[0].length;
+        this.nregions     = regionMids[0].length;
+        this.nwires       = nwires;
+        int maxlayers = 0;
+        for(int isuper = 0; isuper < nsuperlayers; isuper++) {
+            maxlayers = Math.max(maxlayers, wires[0][isuper].length);
+        }
+        this.nlayers = maxlayers;
+
+        int size = nsectors*nsuperlayers*nlayers*nwires;
+        midX   = new double[size]; midY   = new double[size]; midZ   = new double[size];
+        leftX  = new double[size]; leftY  = new double[size]; leftZ  = new double[size];
+        rightX = new double[size]; rightY = new double[size]; rightZ = new double[size];
+        dirX   = new double[size]; dirY   = new double[size]; dirZ   = new double[size];
+
+        int nlayerids = nsectors*nsuperlayers*nlayers;
+        layerMidX  = new double[nlayerids];
+        layerMidY  = new double[nlayerids];
+        layerMidZ  = new double[nlayerids];
+        regionMidX = new double[nsectors*nregions];
+        regionMidY = new double[nsectors*nregions];
+        regionMidZ = new double[nsectors*nregions];
+
+        for(int isec = 0; isec < nsectors; isec++) {
+            for(int ireg = 0; ireg < nregions; ireg++) {
+                int id = isec*nregions + ireg;
+                regionMidX[id] = regionMids[isec][ireg].x;
+                regionMidY[id] = regionMids[isec][ireg].y;
+                regionMidZ[id] = regionMids[isec][ireg].z;
+            }
+            for(int isuper = 0; isuper < nsuperlayers; isuper++) {
+                for(int ilayer = 0; ilayer < wires[isec][isuper].length; ilayer++) {
+                    int lid = getLayerId(isec, isuper, ilayer);
+                    layerMidX[lid] = layerMids[isec][isuper][ilayer].x;
+                    layerMidY[lid] = layerMids[isec][isuper][ilayer].y;
+                    layerMidZ[lid] = layerMids[isec][isuper][ilayer].z;
+                    for(int iwire = 0; iwire < nwires; iwire++) {
+                        Wire wire = wires[isec][isuper][ilayer][iwire];
+                        int id = lid*nwires + iwire;
+                        set(midX, midY, midZ, id, wire.mid());
+                        set(leftX, leftY, leftZ, id, wire.left());
+                        set(rightX, rightY, rightZ, id, wire.right());
+                        set(dirX, dirY, dirZ, id, wire.dir());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void set(double[] x, double[] y, double[] z, int id, Vector3d v) {
+        x[id] = v.x;
+        y[id] = v.y;
+        z[id] = v.z;
+    }
+
+    public int getNSectors()     { return nsectors;}
+    public int getNSuperlayers() { return nsuperlayers;}
+    public int getNLayers()      { return nlayers;}
+    public int getNWires()       { return nwires;}
+
+    /**
+     * @param isec sector (0-5)
+     * @param isuper superlayer (0-5)
+     * @param ilayer layer (0-5)
+     * @return index of the layer in the layer midpoint arrays
+     */
+    public int getLayerId(int isec, int isuper, int ilayer) {
+        return (isec*nsuperlayers + isuper)*nlayers + ilayer;
+    }
+
+    /**
+     * @param isec sector (0-5)
+     * @param isuper superlayer (0-5)
+     * @param ilayer layer (0-5)
+     * @param iwire wire (0-111)
+     * @return index of the wire in the wire arrays
+     */
+    public int getWireId(int isec, int isuper, int ilayer, int iwire) {
+        return ((isec*nsuperlayers + isuper)*nlayers + ilayer)*nwires + iwire;
+    }
+
+    public double getMidpointX(int wire)  { return midX[wire];}
+    public double getMidpointY(int wire)  { return midY[wire];}
+    public double getMidpointZ(int wire)  { return midZ[wire];}
+    public double getLeftendX(int wire)   { return leftX[wire];}
+    public double getLeftendY(int wire)   { return leftY[wire];}
+    public double getLeftendZ(int wire)   { return leftZ[wire];}
+    public double getRightendX(int wire)  { return rightX[wire];}
+    public double getRightendY(int wire)  { return rightY[wire];}
+    public double getRightendZ(int wire)  { return rightZ[wire];}
+    public double getDirectionX(int wire) { return dirX[wire];}
+    public double getDirectionY(int wire) { return dirY[wire];}
+    public double getDirectionZ(int wire) { return dirZ[wire];}
+
+    public double getMidpointX(int isec, int isuper, int ilayer, int iwire)  { return midX[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getMidpointY(int isec, int isuper, int ilayer, int iwire)  { return midY[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getMidpointZ(int isec, int isuper, int ilayer, int iwire)  { return midZ[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getLeftendX(int isec, int isuper, int ilayer, int iwire)   { return leftX[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getLeftendY(int isec, int isuper, int ilayer, int iwire)   { return leftY[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getLeftendZ(int isec, int isuper, int ilayer, int iwire)   { return leftZ[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getRightendX(int isec, int isuper, int ilayer, int iwire)  { return rightX[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getRightendY(int isec, int isuper, int ilayer, int iwire)  { return rightY[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getRightendZ(int isec, int isuper, int ilayer, int iwire)  { return rightZ[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getDirectionX(int isec, int isuper, int ilayer, int iwire) { return dirX[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getDirectionY(int isec, int isuper, int ilayer, int iwire) { return dirY[getWireId(isec, isuper, ilayer, iwire)];}
+    public double getDirectionZ(int isec, int isuper, int ilayer, int iwire) { return dirZ[getWireId(isec, isuper, ilayer, iwire)];}
+
+    public double getLayerMidpointX(int isec, int isuper, int ilayer) { return layerMidX[getLayerId(isec, isuper, ilayer)];}
+    public double getLayerMidpointY(int isec, int isuper, int ilayer) { return layerMidY[getLayerId(isec, isuper, ilayer)];}
+    public double getLayerMidpointZ(int isec, int isuper, int ilayer) { return layerMidZ[getLayerId(isec, isuper, ilayer)];}
+
+    public double getRegionMidpointX(int isec, int iregion) { return regionMidX[isec*nregions + iregion];}
+    public double getRegionMidpointY(int isec, int iregion) { return regionMidY[isec*nregions + iregion];}
+    public double getRegionMidpointZ(int isec, int iregion) { return regionMidZ[isec*nregions + iregion];}
+
+    /**
+     * copies the midpoints of all the wires of a layer, the arrays need
+     * getNWires() elements, null arrays are skipped.
+     * @param isec sector (0-5)
+     * @param isuper superlayer (0-5)
+     * @param ilayer layer (0-5)
+     * @param x midpoint x of each wire
+     * @param y midpoint y of each wire
+     * @param z midpoint z of each wire
+     */
+    public void getMidpoints(int isec, int isuper, int ilayer, double[] x, double[] y, double[] z) {
+        copyLayer(isec, isuper, ilayer, midX, midY, midZ, x, y, z);
+    }
+
+    public void getLeftends(int isec, int isuper, int ilayer, double[] x, double[] y, double[] z) {
+        copyLayer(isec, isuper, ilayer, leftX, leftY, leftZ, x, y, z);
+    }
+
+    public void getRightends(int isec, int isuper, int ilayer, double[] x, double[] y, double[] z) {
+        copyLayer(isec, isuper, ilayer, rightX, rightY, rightZ, x, y, z);
+    }
+
+    public void getDirections(int isec, int isuper, int ilayer, double[] x, double[] y, double[] z) {
+        copyLayer(isec, isuper, ilayer, dirX, dirY, dirZ, x, y, z);
+    }
+
+    private void copyLayer(int isec, int isuper, int ilayer,
+            double[] srcX, double[] srcY, double[] srcZ, double[] x, double[] y, double[] z) {
+        int first = getWireId(isec, isuper, ilayer, 0);
+        if(x!=null) System.arraycopy(srcX, first, x, 0, nwires);
+        if(y!=null) System.arraycopy(srcY, first, y, 0, nwires);
+        if(z!=null) System.arraycopy(srcZ, first, z, 0, nwires);
+    }
+}
@@ -0,0 +1,121 @@
+package org.jlab.detector.geant4.v2;
+
+import eu.mihosoft.vrl.v3d.Vector3d;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jlab.detector.base.GeometryConstants;
+import org.jlab.geom.base.ConstantProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DCWireTableTest {
+
+    private static String[] values(double... values) {
+        String[] strings = new String[values.length];
+        for(int i = 0; i < values.length; i++) strings[i] = String.valueOf(values[i]);
+        return strings;
+    }
+
+    private static String[] values(int... values) {
+        String[] strings = new String[values.length];
+        for(int i = 0; i < values.length; i++) strings[i] = String.valueOf(values[i]);
+        return strings;
+    }
+
+    /**
+     * DC geometry constants of the default variation.
+     */
+    private static ConstantProvider createConstants() {
+        Map<String,String[]> constants = new LinkedHashMap<String,String[]>();
+        constants.put("/geometry/dc/layer/nguardwires",         values(2));
+        constants.put("/geometry/dc/layer/nsensewires",         values(112));
+        constants.put("/geometry/dc/region/dist2tgt",           values(228.078, 345.9, 483.7));
+        constants.put("/geometry/dc/region/xdist",              values(7.5, 7.8, 8.1));
+        constants.put("/geometry/dc/region/frontgap",           values(1.27, 1.27, 1.27));
+        constants.put("/geometry/dc/region/midgap",             values(3.5, 3.5, 3.5));
+        constants.put("/geometry/dc/region/backgap",            values(1.27, 1.27, 1.27));
+        constants.put("/geometry/dc/region/thopen",             values(59.0, 60.0, 59.6));
+        constants.put("/geometry/dc/region/thtilt",             values(25.0, 25.0, 25.0));
+        constants.put("/geometry/dc/superlayer/thmin",          values(4.694, 4.495, 4.812, 4.771, 4.860, 4.926));
+        constants.put("/geometry/dc/superlayer/thster",         values(6.0, -6.0, 6.0, -6.0, 6.0, -6.0));
+        constants.put("/geometry/dc/superlayer/wpdist",         values(0.386160, 0.404220, 0.621906, 0.658597, 0.935140, 0.977982));
+        constants.put("/geometry/dc/superlayer/cellthickness",  values(2.0, 2.0, 2.0, 2.0, 2.0, 2.0));
+        constants.put("/geometry/dc/superlayer/nsenselayers",   values(6, 6, 6, 6, 6, 6));
+        constants.put("/geometry/dc/superlayer/nguardlayers",   values(2, 2, 2, 2, 2, 2));
+        constants.put("/geometry/dc/superlayer/nfieldlayers",   values(7, 7, 7, 7, 7, 7));
+        return new GeometryConstants(11, "default", constants);
+    }
+
+    private static void assertVector(Vector3d expected, double x, double y, double z) {
+        assertEquals(expected.x, x, 0);
+        assertEquals(expected.y, y, 0);
+        assertEquals(expected.z, z, 0);
+    }
+
+    @Test
+    public void testSameAsFactory() {
+        DCGeant4Factory dcDetector = new DCGeant4Factory(createConstants(), DCGeant4Factory.MINISTAGGERON);
+        DCWireTable     table      = dcDetector.getWireTable();
+        assertEquals(6,   table.getNSectors());
+        assertEquals(6,   table.getNSuperlayers());
+        assertEquals(6,   table.getNLayers());
+        assertEquals(112, table.getNWires());
+
+        int nwires = table.getNWires();
+        double[] x = new double[nwires], y = new double[nwires], z = new double[nwires];
+        int ids = 0;
+        for(int isec = 0; isec < 6; isec++) {
+            for(int ireg = 0; ireg < 3; ireg++) {
+                assertVector(dcDetector.getRegionMidpoint(isec, ireg), table.getRegionMidpointX(isec, ireg),
+                        table.getRegionMidpointY(isec, ireg), table.getRegionMidpointZ(isec, ireg));
+            }
+            for(int isuper = 0; isuper < 6; isuper++) {
+                for(int ilayer = 0; ilayer < 6; ilayer++) {
+                    assertVector(dcDetector.getLayerMidpoint(isec, isuper, ilayer), table.getLayerMidpointX(isec, isuper, ilayer),
+                            table.getLayerMidpointY(isec, isuper, ilayer), table.getLayerMidpointZ(isec, isuper, ilayer));
+                    for(int iwire = 0; iwire < nwires; iwire++) {
+                        int id = table.getWireId(isec, isuper, ilayer, iwire);
+                        assertEquals(ids++, id);
+                        Vector3d mid   = dcDetector.getWireMidpoint(isec, isuper, ilayer, iwire);
+                        Vector3d left  = dcDetector.getWireLeftend(isec, isuper, ilayer, iwire);
+                        Vector3d right = dcDetector.getWireRightend(isec, isuper, ilayer, iwire);
+                        Vector3d dir   = dcDetector.getWireDirection(isec, isuper, ilayer, iwire);
+
+                        assertVector(mid,   table.getMidpointX(id),  table.getMidpointY(id),  table.getMidpointZ(id));
+                        assertVector(left,  table.getLeftendX(id),   table.getLeftendY(id),   table.getLeftendZ(id));
+                        assertVector(right, table.getRightendX(id),  table.getRightendY(id),  table.getRightendZ(id));
+                        assertVector(dir,   table.getDirectionX(id), table.getDirectionY(id), table.getDirectionZ(id));
+
+                        assertVector(mid,   table.getMidpointX(isec, isuper, ilayer, iwire),
+                                table.getMidpointY(isec, isuper, ilayer, iwire), table.getMidpointZ(isec, isuper, ilayer, iwire));
+                        assertVector(left,  table.getLeftendX(isec, isuper, ilayer, iwire),
+                                table.getLeftendY(isec, isuper, ilayer, iwire), table.getLeftendZ(isec, isuper, ilayer, iwire));
+                        assertVector(right, table.getRightendX(isec, isuper, ilayer, iwire),
+                                table.getRightendY(isec, isuper, ilayer, iwire), table.getRightendZ(isec, isuper, ilayer, iwire));
+                        assertVector(dir,   table.getDirectionX(isec, isuper, ilayer, iwire),
+                                table.getDirectionY(isec, isuper, ilayer, iwire), table.getDirectionZ(isec, isuper, ilayer, iwire));
+                    }
+
+                    table.getMidpoints(isec, isuper, ilayer, x, y, z);
+                    for(int iwire = 0; iwire < nwires; iwire++) {
+                        assertVector(dcDetector.getWireMidpoint(isec, isuper, ilayer, iwire), x[iwire], y[iwire], z[iwire]);
+                    }
+                    table.getLeftends(isec, isuper, ilayer, x, y, z);
+                    for(int iwire = 0; iwire < nwires; iwire++) {
+                        assertVector(dcDetector.getWireLeftend(isec, isuper, ilayer, iwire), x[iwire], y[iwire], z[iwire]);
+                    }
+                    table.getRightends(isec, isuper, ilayer, x, y, z);
+                    for(int iwire = 0; iwire < nwires; iwire++) {
+                        assertVector(dcDetector.getWireRightend(isec, isuper, ilayer, iwire), x[iwire], y[iwire], z[iwire]);
+                    }
+                    table.getDirections(isec, isuper, ilayer, x, null, z);
+                    for(int iwire = 0; iwire < nwires; iwire++) {
+                        Vector3d dir = dcDetector.getWireDirection(isec, isuper, ilayer, iwire);
+                        assertEquals(dir.x, x[iwire], 0);
+                        assertEquals(dir.z, z[iwire], 0);
+                    }
+                }
+            }
+        }
+    }
+}
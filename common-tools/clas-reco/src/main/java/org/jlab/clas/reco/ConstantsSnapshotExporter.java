@@ -0,0 +1,56 @@
+package org.jlab.clas.reco;
+
+import java.io.IOException;
+import java.util.List;
+import org.jlab.detector.calib.utils.ConstantsSnapshot;
+import org.jlab.utils.options.OptionParser;
+
+/**
+ * Exports all database tables required by a chain of reconstruction
+ * engines into a local snapshot file, which can then be used by
+ * ConstantsManager (CLAS12_CONSTANTS_SNAPSHOT) instead of the database.
+ */
+public class ConstantsSnapshotExporter {
+    
+    public static void main(String[] args){
+        
+        OptionParser parser = new OptionParser("constants-snapshot");
+        parser.addRequired("-o","output snapshot file");
+        parser.addRequired("-r","list of runs (e.g. 4013,5000-5010)");
+        parser.addOption("-v","default","database variation");
+        parser.addOption("-t","","database time stamp (MM/dd/yyyy)");
+        parser.addOption("-c","0","use default configuration [0 - no, 1 - yes/default, 2 - all services] ");
+        parser.setRequiresInputList(false);
+        parser.parse(args);
+        
+        if(parser.hasOption("-o")==true&&parser.hasOption("-r")==true){
+            
+            EngineProcessor proc = new EngineProcessor();
+            int config = parser.getOption("-c").intValue();
+            if(config>0){
+                if(config==2){
+                    proc.initAll();
+                } else {
+                    proc.initDefault();
+                }
+            } else {
+                for(String engine : parser.getInputList()){
+                    proc.addEngine(engine);
+                }
+            }
+            proc.init();
+            
+            List<String> tables = proc.getRequiredTables();
+            System.out.println("[ConstantsSnapshotExporter] ---> exporting " + tables.size() + " tables");
+            try {
+                ConstantsSnapshot.export(parser.getOption("-o").stringValue(),
+                        ConstantsSnapshot.parseRuns(parser.getOption("-r").stringValue()),
+                        parser.getOption("-v").stringValue(),
+                        parser.getOption("-t").stringValue(),
+                        tables);
+            } catch (IOException e) {
+                System.out.println("[ConstantsSnapshotExporter] ---> error writing file : " + e.getMessage());
+            }
+        }
+    }
+}
@@ -5,16 +5,31 @@
  */
 package org.jlab.clas.reco;
 
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jlab.detector.calib.utils.ConstantsManager;
 import org.jlab.io.base.DataEvent;
 import org.jlab.io.hipo.HipoDataSource;
 import org.jlab.io.hipo.HipoDataSync;
 import org.jlab.utils.benchmark.ProgressPrintout;
 import org.jlab.utils.options.OptionParser;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 /**
  *
@@ -25,6 +40,9 @@ public class EngineProcessor {
     private final Map<String,ReconstructionEngine>  processorEngines = new LinkedHashMap<String,ReconstructionEngine>();
     ReconstructionEngine  engineDummy = null;
     
+    private double  statisticsInterval = -1.0;
+    private long    statisticsTime     = 0;
+    
     public EngineProcessor(){
         this.engineDummy = new DummyEngine();
     }
@@ -192,7 +210,7 @@ public class EngineProcessor {
             try {
                 //System.out.println("processing engine : " + engine.getKey());
                 //System.out.println("processing event");
-                engine.getValue().processDataEvent(event);
+                engine.getValue().processDataEventTimed(event);
             } catch (Exception e){
                 
                 System.out.println("[Exception] >>>>> engine : " + engine.getKey());
@@ -202,6 +220,71 @@ public class EngineProcessor {
         }
     }
     
+    /**
+     * enables the per engine statistics for all engines in the chain.
+     * @param interval time in seconds between printouts of the statistics
+     * table during processing, no periodic printout if interval is not positive.
+     */
+    public void enableStatistics(double interval){
+        this.statisticsInterval = interval;
+        this.statisticsTime     = System.currentTimeMillis();
+        for(Map.Entry<String,ReconstructionEngine> entry : this.processorEngines.entrySet()){
+            entry.getValue().setStatisticsEnabled(true);
+        }
+    }
+    
+    /**
+     * prints the statistics table if the printout interval has elapsed.
+     */
+    private void updateStatistics(){
+        if(this.statisticsInterval<=0) return;
+        long now = System.currentTimeMillis();
+        if((now-this.statisticsTime)*1e-3>=this.statisticsInterval){
+            this.statisticsTime = now;
+            this.showStatistics();
+        }
+    }
+    
+    /**
+     * prints the per engine statistics table.
+     */
+    public void showStatistics(){
+        System.out.println("----->>> EngineProcessor statistics:");
+        System.out.println(EngineStatistics.getHeaderString());
+        for(Map.Entry<String,ReconstructionEngine> entry : this.processorEngines.entrySet()){
+            EngineStatistics stats = entry.getValue().getStatistics();
+            if(stats.isEnabled()==true) System.out.println(stats.toString());
+        }
+    }
+    
+    /**
+     * @return JSON report with the statistics of each engine in the chain
+     */
+    public JSONObject getStatisticsJSON(){
+        JSONArray engines = new JSONArray();
+        for(Map.Entry<String,ReconstructionEngine> entry : this.processorEngines.entrySet()){
+            JSONObject stats = entry.getValue().getStatistics().toJSON();
+            stats.put("name", entry.getKey());
+            engines.put(stats);
+        }
+        JSONObject report = new JSONObject();
+        report.put("engines", engines);
+        return report;
+    }
+    
+    /**
+     * writes the JSON statistics report to a file.
+     * @param file output file name
+     */
+    public void saveStatistics(String file){
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(this.getStatisticsJSON().toString(2));
+            writer.write("\n");
+        } catch (IOException ex) {
+            Logger.getLogger(EngineProcessor.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    
     public void processFile(String file, String output){
         this.processFile(file, output, -1);
     }
@@ -230,11 +313,266 @@ public class EngineProcessor {
                     if(eventCounter>nevents) break;
                 }
                 progress.updateStatus();
+                this.updateStatistics();
             }
             progress.showStatus();
             writer.close();
         }
     }
+    /**
+     * process entire file through engine chain using a pipeline of
+     * one reader thread, nthreads worker threads each running the full
+     * engine chain on its own events, and an ordered writer. Events are
+     * written in the same order they were read. The number of events in
+     * flight is bounded by queueSize. An error thrown by a thread (e.g. an
+     * Error from an engine, exceptions are caught by processEvent) stops
+     * the reading, the events in flight are dropped and the error is
+     * rethrown once all the threads have finished.
+     * @param file file name to process.
+     * @param output output file name
+     * @param nevents maximum number of events to process (-1 for all)
+     * @param nthreads number of worker threads
+     * @param queueSize maximum number of events in flight
+     */
+    public void processFile(String file, String output, int nevents, int nthreads, int queueSize){
+        if(nthreads<=1){
+            this.processFile(file, output, nevents);
+            return;
+        }
+        if(file.endsWith(".hipo")==false) return;
+        if(queueSize<nthreads) queueSize = 2*nthreads;
+        
+        final HipoDataSource reader = new HipoDataSource();
+        reader.open(file);
+        
+        HipoDataSync   writer = new HipoDataSync();
+        writer.setCompressionType(2);
+        writer.open(output);
+        
+        final BlockingQueue<PipelineEvent>  inputQueue  = new ArrayBlockingQueue<PipelineEvent>(queueSize);
+        final BlockingQueue<PipelineEvent>  outputQueue = new ArrayBlockingQueue<PipelineEvent>(queueSize);
+        final Semaphore                     inFlight    = new Semaphore(queueSize);
+        final PipelineStage  readerStage = new PipelineStage("READER");
+        final PipelineStage  workerStage = new PipelineStage("WORKERS");
+        final PipelineStage  writerStage = new PipelineStage("WRITER");
+        final int            maxEvents   = nevents;
+        final int            permits     = queueSize;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        
+        Thread readerThread = new Thread(new Runnable(){
+            @Override
+            public void run() {
+                long sequence = 0;
+                int  run      = -1;
+                boolean interrupted = false;
+                try {
+                    while(reader.hasEvent()==true&&failure.get()==null){
+                        if(maxEvents>0&&sequence>=maxEvents) break;
+                        inFlight.acquire();
+                        if(failure.get()!=null) break;
+                        long start = System.nanoTime();
+                        DataEvent event = reader.getNextEvent();
+                        readerStage.update(System.nanoTime()-start);
+                        run = prefetchConstants(event, run);
+                        inputQueue.put(new PipelineEvent(sequence,event));
+                        sequence++;
+                    }
+                } catch (InterruptedException ex) {
+                    interrupted = Thread.interrupted();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    // the workers drain the input queue, one end marker each
+                    for(int i = 0; i < nthreads; i++){
+                        while(true){
+                            try {
+                                inputQueue.put(new PipelineEvent(-1,null));
+                                break;
+                            } catch (InterruptedException ex) {
+                                interrupted = true;
+                            }
+                        }
+                    }
+                    if(interrupted) Thread.currentThread().interrupt();
+                }
+            }
+        },"EngineProcessor-reader");
+        
+        Thread[] workers = new Thread[nthreads];
+        for(int i = 0; i < nthreads; i++){
+            workers[i] = new Thread(new Runnable(){
+                @Override
+                public void run() {
+                    try {
+                        while(true){
+                            PipelineEvent item = inputQueue.take();
+                            if(item.event==null) break;
+                            // after a failure the events are only passed on, to release them
+                            if(failure.get()==null){
+                                try {
+                                    long start = System.nanoTime();
+                                    processEvent(item.event);
+                                    workerStage.update(System.nanoTime()-start);
+                                } catch (Throwable t) {
+                                    failure.compareAndSet(null, t);
+                                }
+                            }
+                            outputQueue.put(item);
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        try {
+                            outputQueue.put(new PipelineEvent(-1,null));
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            },"EngineProcessor-worker-" + i);
+        }
+        
+        long startTime = System.nanoTime();
+        readerThread.start();
+        for(Thread worker : workers) worker.start();
+        
+        ProgressPrintout  progress = new ProgressPrintout();
+        Map<Long,DataEvent>  pending = new HashMap<Long,DataEvent>();
+        long nextSequence    = 0;
+        int  finishedWorkers = 0;
+        try {
+            while(finishedWorkers<nthreads){
+                PipelineEvent item = outputQueue.take();
+                if(failure.get()!=null){
+                    // drop the events in flight and unblock the reader waiting for a permit
+                    if(inFlight.availablePermits()<permits) inFlight.release(permits);
+                    pending.clear();
+                }
+                if(item.event==null){
+                    finishedWorkers++;
+                    continue;
+                }
+                if(failure.get()!=null) continue;
+                pending.put(item.sequence, item.event);
+                while(pending.containsKey(nextSequence)==true){
+                    DataEvent event = pending.remove(nextSequence);
+                    long start = System.nanoTime();
+                    try {
+                        writer.writeEvent(event);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                        if(inFlight.availablePermits()<permits) inFlight.release(permits);
+                        pending.clear();
+                        break;
+                    }
+                    writerStage.update(System.nanoTime()-start);
+                    inFlight.release();
+                    nextSequence++;
+                    progress.setAsInteger("input", inputQueue.size());
+                    progress.setAsInteger("output", outputQueue.size());
+                    progress.updateStatus();
+                    this.updateStatistics();
+                }
+            }
+            readerThread.join();
+            for(Thread worker : workers) worker.join();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(EngineProcessor.class.getName()).log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
+        }
+        progress.showStatus();
+        writer.close();
+        
+        Throwable error = failure.get();
+        if(error!=null){
+            System.out.println(String.format("----->>> EngineProcessor: processing stopped after %d events", nextSequence));
+            if(error instanceof Error) throw (Error) error;
+            if(error instanceof RuntimeException) throw (RuntimeException) error;
+            throw new RuntimeException("EngineProcessor: processing failed", error);
+        }
+        
+        double elapsed = (System.nanoTime()-startTime)*1e-9;
+        System.out.println(String.format("----->>> EngineProcessor: %d events, %d threads, %.2f sec, %.2f events/sec",
+                nextSequence, nthreads, elapsed, nextSequence/elapsed));
+        System.out.println(readerStage.toString(1));
+        System.out.println(workerStage.toString(nthreads));
+        System.out.println(writerStage.toString(1));
+    }
+    
+    /**
+     * starts loading constants in the background when the run number of
+     * the event differs from the previous one, so the workers do not stall
+     * on the database at the run boundary.
+     * @param event data event
+     * @param run run number of the previous event
+     * @return run number of the event
+     */
+    private int prefetchConstants(DataEvent event, int run){
+        if(event.hasBank("RUN::config")==false) return run;
+        int eventRun = event.getBank("RUN::config").getInt("run", 0);
+        if(eventRun>0&&eventRun!=run){
+            for(Map.Entry<String,ReconstructionEngine> entry : this.processorEngines.entrySet()){
+                entry.getValue().prefetchConstants(eventRun);
+            }
+        }
+        return eventRun;
+    }
+    
+    /**
+     * event travelling through the processing pipeline, tagged with
+     * its position in the input file. A null event marks the end of input.
+     */
+    private static class PipelineEvent {
+        final long      sequence;
+        final DataEvent event;
+        PipelineEvent(long seq, DataEvent ev){
+            sequence = seq;
+            event    = ev;
+        }
+    }
+    
+    /**
+     * counts events and busy time of one pipeline stage.
+     */
+    private static class PipelineStage {
+        final String     name;
+        final AtomicLong counter  = new AtomicLong();
+        final AtomicLong busyTime = new AtomicLong();
+        PipelineStage(String n){
+            name = n;
+        }
+        void update(long nanos){
+            counter.incrementAndGet();
+            busyTime.addAndGet(nanos);
+        }
+        /**
+         * @param nthreads number of threads sharing the stage
+         * @return summary line with the stage throughput in events/sec
+         */
+        String toString(int nthreads){
+            long   count = counter.get();
+            double busy  = busyTime.get()*1e-9;
+            double rate  = busy>0 ? nthreads*count/busy : 0.0;
+            return String.format("%-24s | events : %12d | busy : %10.2f sec | rate : %12.2f events/sec",
+                    name, count, busy, rate);
+        }
+    }
+    
+    /**
+     * @return names of all database tables required by the engines in the chain
+     */
+    public List<String> getRequiredTables(){
+        Set<String> tables = new LinkedHashSet<String>();
+        for(Map.Entry<String,ReconstructionEngine> entry : this.processorEngines.entrySet()){
+            for(ConstantsManager manager : entry.getValue().getConstantsManagers()){
+                tables.addAll(manager.getTableNames());
+            }
+        }
+        return new ArrayList<String>(tables);
+    }
+    
     /**
      * display services registered with the processor.
      */
@@ -253,6 +591,10 @@ public class EngineProcessor {
         parser.setRequiresInputList(false);
         parser.addOption("-c","0","use default configuration [0 - no, 1 - yes/default, 2 - all services] ");
         parser.addOption("-n","-1","number of events to process");
+        parser.addOption("-t","1","number of worker threads");
+        parser.addOption("-q","0","maximum number of events in flight (default 4 x threads)");
+        parser.addOption("-s","0","print engine statistics every given number of seconds (0 - only at the end)");
+        parser.addOption("-j","","write engine statistics as JSON to the given file");
         
         parser.parse(args);
         
@@ -270,6 +612,9 @@ public class EngineProcessor {
             EngineProcessor proc = new EngineProcessor();
             int config  = parser.getOption("-c").intValue();
             int nevents = parser.getOption("-n").intValue();
+            int nthreads = parser.getOption("-t").intValue();
+            int nqueue   = parser.getOption("-q").intValue();
+            if(nqueue<=0) nqueue = 4*nthreads;
             if(config>0){
                 if(config>2){
                     proc.initCaloDebug();
@@ -284,8 +629,16 @@ public class EngineProcessor {
                     proc.addEngine(engine);
                 }
             }
+            double statInterval = parser.getOption("-s").doubleValue();
+            String statFile     = parser.getOption("-j").stringValue();
+            boolean statistics  = parser.containsOptions(Arrays.asList(args), "-s", "-j");
             proc.init();
-            proc.processFile(inputFile,outputFile,nevents);        
+            if(statistics==true) proc.enableStatistics(statInterval);
+            proc.processFile(inputFile,outputFile,nevents,nthreads,nqueue);
+            if(statistics==true){
+                proc.showStatistics();
+                if(statFile.length()>0) proc.saveStatistics(statFile);
+            }
         }
     }
 }
@@ -0,0 +1,192 @@
+package org.jlab.clas.reco;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.json.JSONObject;
+
+/**
+ * Latency and throughput counters of one reconstruction engine.
+ * Latencies are accumulated in a log-linear histogram (16 bins per
+ * power of two, ~6% resolution) so percentiles can be estimated
+ * without storing individual measurements. All counters are lock free
+ * and can be updated concurrently from the CLARA worker threads.
+ */
+public class EngineStatistics {
+
+    private static final int SUB_BITS    = 4;
+    private static final int SUB_BINS    = 1 << SUB_BITS;
+    private static final int NBINS       = (64 - SUB_BITS + 1) * SUB_BINS;
+
+    private final String          engineName;
+    private volatile boolean      enabled = false;
+
+    private final AtomicLong      callCounter  = new AtomicLong();
+    private final AtomicLong      errorCounter = new AtomicLong();
+    private final AtomicLong      skipCounter  = new AtomicLong();
+    private final AtomicLong      totalTime    = new AtomicLong();
+    private final AtomicLong      maxTime      = new AtomicLong();
+    private final AtomicLongArray histogram    = new AtomicLongArray(NBINS);
+
+    public EngineStatistics(String name){
+        this.engineName = name;
+    }
+
+    public String  getName(){ return this.engineName;}
+
+    public boolean isEnabled(){ return this.enabled;}
+
+    public void    setEnabled(boolean flag){ this.enabled = flag;}
+
+    /**
+     * records one engine call.
+     * @param nanos time spent in the call in nanoseconds
+     * @param status value returned by the engine, false counts as skipped event
+     */
+    public void addCall(long nanos, boolean status){
+        this.addCalls(1, nanos, status);
+    }
+
+    /**
+     * records a group of events processed in one call, each event is
+     * accounted with the average time of the group.
+     * @param nevents number of events in the group
+     * @param nanos time spent for the whole group in nanoseconds
+     * @param status value returned by the engine, false counts all events as skipped
+     */
+    public void addCalls(int nevents, long nanos, boolean status){
+        if(nevents<=0) return;
+        long perEvent = nanos/nevents;
+        callCounter.addAndGet(nevents);
+        totalTime.addAndGet(nanos);
+        histogram.addAndGet(getBin(perEvent), nevents);
+        long max = maxTime.get();
+        while(perEvent>max&&maxTime.compareAndSet(max, perEvent)==false){
+            max = maxTime.get();
+        }
+        if(status==false) skipCounter.addAndGet(nevents);
+    }
+
+    /**
+     * records engine calls that ended with an exception.
+     * @param nevents number of events affected
+     */
+    public void addErrors(int nevents){
+        errorCounter.addAndGet(nevents);
+    }
+
+    public long getCount(){ return callCounter.get();}
+
+    public long getErrors(){ return errorCounter.get();}
+
+    public long getSkipped(){ return skipCounter.get();}
+
+    /**
+     * @return total time spent in the engine in milliseconds
+     */
+    public double getTotalTime(){ return totalTime.get()*1e-6;}
+
+    /**
+     * @return maximum time per event in milliseconds
+     */
+    public double getMaxTime(){ return maxTime.get()*1e-6;}
+
+    /**
+     * @return average time per event in milliseconds
+     */
+    public double getMeanTime(){
+        long count = callCounter.get();
+        if(count==0) return 0.0;
+        return totalTime.get()*1e-6/count;
+    }
+
+    /**
+     * @return number of events per second of engine time
+     */
+    public double getRate(){
+        long time = totalTime.get();
+        if(time==0) return 0.0;
+        return callCounter.get()*1e9/time;
+    }
+
+    /**
+     * estimates the latency below which the given fraction of calls fall.
+     * @param quantile fraction between 0 and 1 (0.5 for the median)
+     * @return time per event in milliseconds (upper edge of the histogram bin)
+     */
+    public double getPercentile(double quantile){
+        long count = 0;
+        for(int i = 0; i < NBINS; i++) count += histogram.get(i);
+        if(count==0) return 0.0;
+        long threshold = (long) Math.ceil(quantile*count);
+        if(threshold<1) threshold = 1;
+        long sum = 0;
+        for(int i = 0; i < NBINS; i++){
+            sum += histogram.get(i);
+            if(sum>=threshold) return Math.min(getBinUpperEdge(i),maxTime.get())*1e-6;
+        }
+        return maxTime.get()*1e-6;
+    }
+
+    /**
+     * @param bin histogram bin
+     * @return number of events in the bin
+     */
+    long getBinCount(int bin){
+        return histogram.get(bin);
+    }
+
+    public void reset(){
+        callCounter.set(0);
+        errorCounter.set(0);
+        skipCounter.set(0);
+        totalTime.set(0);
+        maxTime.set(0);
+        for(int i = 0; i < NBINS; i++) histogram.set(i, 0);
+    }
+
+    public JSONObject toJSON(){
+        JSONObject json = new JSONObject();
+        json.put("engine", this.engineName);
+        json.put("count", this.getCount());
+        json.put("errors", this.getErrors());
+        json.put("skipped", this.getSkipped());
+        json.put("total_ms", this.getTotalTime());
+        json.put("mean_ms", this.getMeanTime());
+        json.put("p50_ms", this.getPercentile(0.50));
+        json.put("p99_ms", this.getPercentile(0.99));
+        json.put("max_ms", this.getMaxTime());
+        json.put("rate_hz", this.getRate());
+        return json;
+    }
+
+    public static String getHeaderString(){
+        return String.format("%-14s | %10s | %8s | %8s | %12s | %10s | %10s | %10s | %10s",
+                "engine","events","errors","skipped","total (s)","mean (ms)","p50 (ms)","p99 (ms)","rate (Hz)");
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%-14s | %10d | %8d | %8d | %12.2f | %10.3f | %10.3f | %10.3f | %10.1f",
+                this.engineName, this.getCount(), this.getErrors(), this.getSkipped(),
+                this.getTotalTime()*1e-3, this.getMeanTime(),
+                this.getPercentile(0.50), this.getPercentile(0.99), this.getRate());
+    }
+
+    /*
+     * values below 16 ns have their own bin, then each power of two is
+     * divided in 16 bins.
+     */
+    static int getBin(long value){
+        if(value<SUB_BINS) return (int) Math.max(value, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int mantissa = (int) (value >>> exponent) - SUB_BINS;
+        return (exponent+1)*SUB_BINS + mantissa;
+    }
+
+    static long getBinUpperEdge(int bin){
+        if(bin<SUB_BINS) return bin;
+        int  exponent = bin/SUB_BINS - 1;
+        long mantissa = (bin%SUB_BINS) + SUB_BINS;
+        return ((mantissa+1) << exponent) - 1;
+    }
+}
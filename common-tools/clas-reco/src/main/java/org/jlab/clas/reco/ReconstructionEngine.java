@@ -6,7 +6,7 @@
 package org.jlab.clas.reco;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -49,11 +49,15 @@ public abstract class ReconstructionEngine implements Engine {
     String             engineAuthor      = "N.T.";
     String             engineVersion     = "0.0";
     String             engineDescription = "CLARA Engine";
+    
+    final EngineStatistics engineStatistics;
 
     public ReconstructionEngine(String name, String author, String version){
         engineName    = name;
         engineAuthor  = author;
         engineVersion = version;
+        engineStatistics  = new EngineStatistics(name);
+        engineStatistics.setEnabled(Boolean.getBoolean("clas12.engine.statistics"));
         constManagerMap   = new ConcurrentHashMap<String,ConstantsManager>();
         engineDictionary  = new SchemaFactory();
         engineConfigMap   = new ConcurrentHashMap<String,String>();
@@ -64,6 +68,70 @@ public abstract class ReconstructionEngine implements Engine {
     abstract public boolean processDataEvent(DataEvent event);
     abstract public boolean init();
     
+    /**
+     * Process one event and account the call in the engine statistics,
+     * when statistics are disabled it is equivalent to processDataEvent.
+     * @param event data event
+     * @return value returned by processDataEvent
+     */
+    public final boolean processDataEventTimed(DataEvent event){
+        if(engineStatistics.isEnabled()==false) return this.processDataEvent(event);
+        long start = System.nanoTime();
+        try {
+            boolean status = this.processDataEvent(event);
+            engineStatistics.addCall(System.nanoTime()-start, status);
+            return status;
+        } catch (RuntimeException e) {
+            engineStatistics.addCall(System.nanoTime()-start, true);
+            engineStatistics.addErrors(1);
+            throw e;
+        }
+    }
+    
+    /**
+     * Process a group of events and account them in the engine statistics
+     * with the average time per event of the group.
+     * @param events data events
+     * @return value returned by processDataEvents
+     */
+    public final boolean processDataEventsTimed(List<DataEvent> events){
+        if(engineStatistics.isEnabled()==false) return this.processDataEvents(events);
+        long start = System.nanoTime();
+        try {
+            boolean status = this.processDataEvents(events);
+            engineStatistics.addCalls(events.size(), System.nanoTime()-start, status);
+            return status;
+        } catch (RuntimeException e) {
+            engineStatistics.addCalls(events.size(), System.nanoTime()-start, true);
+            engineStatistics.addErrors(events.size());
+            throw e;
+        }
+    }
+    
+    public EngineStatistics getStatistics(){
+        return this.engineStatistics;
+    }
+    
+    public void setStatisticsEnabled(boolean flag){
+        this.engineStatistics.setEnabled(flag);
+    }
+    
+    /**
+     * Process a group of events received in one CLARA transfer. The default
+     * implementation calls processDataEvent for each event in order, engines
+     * can override it to share per-run setup and scratch objects across the
+     * whole group.
+     * @param events decoded events of the group
+     * @return true if all events were processed
+     */
+    public boolean processDataEvents(List<DataEvent> events){
+        boolean status = true;
+        for(DataEvent event : events){
+            if(this.processDataEvent(event)==false) status = false;
+        }
+        return status;
+    }
+    
     public void requireConstants(List<String> tables){
         if(constManagerMap.containsKey(this.getClass().getName())==false){
             System.out.println("[ConstantsManager] ---> create a new one for module : " + this.getClass().getName());
@@ -81,6 +149,25 @@ public abstract class ReconstructionEngine implements Engine {
         return constManagerMap.get(this.getClass().getName());
     }
 
+    /**
+     * Returns all constants managers requested by the engine.
+     * @return list of constants managers
+     */
+    public List<ConstantsManager> getConstantsManagers(){
+        return new ArrayList<ConstantsManager>(constManagerMap.values());
+    }
+
+    /**
+     * Starts loading the constants of the given run in the background for
+     * all constants managers of the engine.
+     * @param run run number
+     */
+    public void prefetchConstants(int run){
+        for(ConstantsManager manager : constManagerMap.values()){
+            manager.prefetch(run);
+        }
+    }
+
     public String getEngineConfigString(String key) {
         String val=null;
         if (this.engineConfigMap.containsKey(key)) {
@@ -115,6 +202,9 @@ public abstract class ReconstructionEngine implements Engine {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        if(engineConfigMap.containsKey("statistics")==true){
+            engineStatistics.setEnabled(Boolean.parseBoolean(engineConfigMap.get("statistics")));
+        }
 
         
       if(constManagerMap == null)
@@ -222,63 +312,20 @@ public abstract class ReconstructionEngine implements Engine {
 
         EngineData output = input;
 
-        //return output;
-
-        String mt = input.getMimeType();
-        //System.out.println(" DATA TYPE = [" + mt + "]");
-        HipoDataEvent dataEventHipo = null;
-        if(mt.compareTo("binary/data-hipo")==0){
-            try {
-                //ByteBuffer bb = (ByteBuffer) input.getData();
-                HipoEvent hipoEvent = (HipoEvent) input.getData();
-                hipoEvent.setSchemaFactory(engineDictionary, false);
-                dataEventHipo = new HipoDataEvent(hipoEvent);
-                
-                //dataEventHipo.initDictionary(engineDictionary);
-                //dataEventHipo = new HipoDataEvent(bb.array(),this.engineDictionary);
-            } catch (Exception e) {
-                String msg = String.format("Error reading input event%n%n%s", ClaraUtil.reportException(e));
-                output.setStatus(EngineStatus.ERROR);
-                output.setDescription(msg);
-                return output;
-            }
-
-            try {
-                this.processDataEvent(dataEventHipo);
-                ByteBuffer  bbo = dataEventHipo.getEventBuffer();
-                //byte[] buffero = bbo.array();
-                //output.setData(mt, bbo);
-                output.setData(mt, dataEventHipo.getHipoEvent());
-            } catch (Exception e) {
-                String msg = String.format("Error processing input event%n%n%s", ClaraUtil.reportException(e));
-                output.setStatus(EngineStatus.ERROR);
-                output.setDescription(msg);
-                return output;
-            }
-
+        DataEvent dataEvent = null;
+        try {
+            dataEvent = this.readDataEvent(input);
+        } catch (Exception e) {
+            String msg = String.format("Error reading input event%n%n%s", ClaraUtil.reportException(e));
+            output.setStatus(EngineStatus.ERROR);
+            output.setDescription(msg);
             return output;
         }
 
-        EvioDataEvent dataevent = null;
-
-        if(mt.compareTo("binary/data-evio")==0){
-            try {
-                ByteBuffer bb = (ByteBuffer) input.getData();
-                byte[] buffer = bb.array();
-                ByteOrder endianness = bb.order();
-                dataevent = new EvioDataEvent(buffer, endianness, EvioFactory.getDictionary());
-            } catch (Exception e) {
-                String msg = String.format("Error reading input event%n%n%s", ClaraUtil.reportException(e));
-                output.setStatus(EngineStatus.ERROR);
-                output.setDescription(msg);
-                return output;
-            }
-
+        if(dataEvent!=null){
             try {
-                this.processDataEvent(dataevent);
-                ByteBuffer  bbo = dataevent.getEventBuffer();
-                //byte[] buffero = bbo.array();
-                output.setData(mt, bbo);
+                this.processDataEventTimed(dataEvent);
+                this.writeDataEvent(output, dataEvent);
             } catch (Exception e) {
                 String msg = String.format("Error processing input event%n%n%s", ClaraUtil.reportException(e));
                 output.setStatus(EngineStatus.ERROR);
@@ -327,10 +374,88 @@ public abstract class ReconstructionEngine implements Engine {
         */
     }
 
+    /**
+     * Executes a group of events: all events are decoded first, processed
+     * with one call to processDataEvents, and the output data is written back
+     * into each EngineData of the group. Events that can not be decoded are
+     * marked with an error and left out of the group, an exception thrown
+     * while processing marks every event of the group with an error.
+     * @param set group of input events
+     * @return the last event of the group, or null for an empty group
+     */
     @Override
     public EngineData executeGroup(Set<EngineData> set) {
+        
+        List<EngineData> inputs = new ArrayList<EngineData>(set.size());
+        List<DataEvent>  events = new ArrayList<DataEvent>(set.size());
+        EngineData       output = null;
+        
+        for(EngineData input : set){
+            output = input;
+            DataEvent event = null;
+            try {
+                event = this.readDataEvent(input);
+            } catch (Exception e) {
+                String msg = String.format("Error reading input event%n%n%s", ClaraUtil.reportException(e));
+                input.setStatus(EngineStatus.ERROR);
+                input.setDescription(msg);
+                continue;
+            }
+            if(event!=null){
+                inputs.add(input);
+                events.add(event);
+            }
+        }
+        
+        if(events.isEmpty()==true) return output;
+        
+        try {
+            this.processDataEventsTimed(events);
+            for(int i = 0; i < inputs.size(); i++){
+                this.writeDataEvent(inputs.get(i), events.get(i));
+            }
+        } catch (Exception e) {
+            String msg = String.format("Error processing input event group%n%n%s", ClaraUtil.reportException(e));
+            for(EngineData input : inputs){
+                input.setStatus(EngineStatus.ERROR);
+                input.setDescription(msg);
+            }
+        }
+        return output;
+    }
+    
+    /**
+     * Decodes the event carried by the engine data.
+     * @param input engine data
+     * @return data event, or null if the mime type is not an event type
+     * @throws Exception if the event can not be decoded
+     */
+    protected DataEvent readDataEvent(EngineData input) throws Exception {
+        String mt = input.getMimeType();
+        if(mt.compareTo("binary/data-hipo")==0){
+            HipoEvent hipoEvent = (HipoEvent) input.getData();
+            hipoEvent.setSchemaFactory(engineDictionary, false);
+            return new HipoDataEvent(hipoEvent);
+        }
+        if(mt.compareTo("binary/data-evio")==0){
+            ByteBuffer bb = (ByteBuffer) input.getData();
+            return new EvioDataEvent(bb.array(), bb.order(), EvioFactory.getDictionary());
+        }
         return null;
-        //throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+    
+    /**
+     * Stores the processed event back into the engine data.
+     * @param output engine data the event was read from
+     * @param event processed data event
+     */
+    protected void writeDataEvent(EngineData output, DataEvent event){
+        String mt = output.getMimeType();
+        if(event instanceof HipoDataEvent){
+            output.setData(mt, ((HipoDataEvent) event).getHipoEvent());
+        } else {
+            output.setData(mt, event.getEventBuffer());
+        }
     }
 
     @Override
@@ -396,6 +521,9 @@ public abstract class ReconstructionEngine implements Engine {
 
     @Override
     public void destroy() {
+        if(engineStatistics.isEnabled()==true){
+            System.out.println("[STATISTICS][" + this.getName() + "] " + engineStatistics.toJSON().toString());
+        }
         //throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
     
@@ -0,0 +1,87 @@
+package org.jlab.clas.reco;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class EngineStatisticsTest {
+
+    @Test
+    public void testBins() {
+        for(long value = 0; value < 16; value++){
+            assertEquals(value, EngineStatistics.getBin(value));
+            assertEquals(value, EngineStatistics.getBinUpperEdge((int) value));
+        }
+        int previous = EngineStatistics.getBin(15);
+        for(long value = 16; value < 1L<<40; value += 1 + value/997){
+            int bin = EngineStatistics.getBin(value);
+            assertTrue(bin==previous||bin==previous+1);
+            assertTrue(EngineStatistics.getBinUpperEdge(bin) >= value);
+            assertTrue(EngineStatistics.getBinUpperEdge(bin-1) < value);
+            // 16 bins per power of two
+            long lower = EngineStatistics.getBinUpperEdge(bin-1) + 1;
+            assertTrue(EngineStatistics.getBinUpperEdge(bin) - lower + 1 <= Math.max(1, lower/16));
+            previous = bin;
+        }
+        assertEquals(0, EngineStatistics.getBin(-5));
+        assertTrue(EngineStatistics.getBin(Long.MAX_VALUE) < (64 - 4 + 1)*16);
+    }
+
+    @Test
+    public void testPercentiles() {
+        EngineStatistics stats = new EngineStatistics("TEST");
+        for(int i = 0; i < 90; i++) stats.addCall(1000, true);
+        for(int i = 0; i < 9;  i++) stats.addCall(50000, true);
+        stats.addCall(2000000, false);
+
+        // 1000 ns = 31 x 32 ns, bin 1000-1023
+        int bin1 = EngineStatistics.getBin(1000);
+        assertEquals(1023, EngineStatistics.getBinUpperEdge(bin1));
+        assertEquals(90, stats.getBinCount(bin1));
+        assertEquals(90, stats.getBinCount(EngineStatistics.getBin(992)));
+        assertEquals(0,  stats.getBinCount(EngineStatistics.getBin(1024)));
+        // 50000 ns = 24.4 x 2048 ns, bin 49152-51199
+        int bin2 = EngineStatistics.getBin(50000);
+        assertEquals(51199, EngineStatistics.getBinUpperEdge(bin2));
+        assertEquals(9, stats.getBinCount(bin2));
+        assertEquals(1, stats.getBinCount(EngineStatistics.getBin(2000000)));
+        long total = 0;
+        for(int bin = 0; bin < (64 - 4 + 1)*16; bin++) total += stats.getBinCount(bin);
+        assertEquals(100, total);
+
+        assertEquals(100, stats.getCount());
+        assertEquals(1, stats.getSkipped());
+        assertEquals(0.001023, stats.getPercentile(0.50), 1e-12);
+        assertEquals(0.001023, stats.getPercentile(0.90), 1e-12);
+        assertEquals(0.051199, stats.getPercentile(0.91), 1e-12);
+        assertEquals(0.051199, stats.getPercentile(0.99), 1e-12);
+        // the last bin is limited by the maximum
+        assertEquals(2.0, stats.getPercentile(1.0), 1e-12);
+        assertEquals(0.001023, stats.getPercentile(0.0), 1e-12);
+        assertEquals(2.0, stats.getMaxTime(), 1e-12);
+        assertEquals((90*1000 + 9*50000 + 2000000)*1e-6, stats.getTotalTime(), 1e-9);
+        assertEquals((90*1000 + 9*50000 + 2000000)*1e-8, stats.getMeanTime(), 1e-12);
+
+        stats.reset();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getBinCount(bin1));
+        assertEquals(0.0, stats.getPercentile(0.5), 0);
+    }
+
+    @Test
+    public void testGroups() {
+        EngineStatistics stats = new EngineStatistics("TEST");
+        stats.addCalls(10, 10000, true);
+        stats.addCalls(4, 400000, false);
+        stats.addCalls(0, 5000, true);
+        stats.addErrors(2);
+        assertEquals(14, stats.getCount());
+        assertEquals(4, stats.getSkipped());
+        assertEquals(2, stats.getErrors());
+        // each event of a group is counted with the average time of the group
+        assertEquals(10, stats.getBinCount(EngineStatistics.getBin(1000)));
+        assertEquals(4,  stats.getBinCount(EngineStatistics.getBin(100000)));
+        assertEquals(0.1, stats.getMaxTime(), 1e-12);
+        assertEquals(14*1e9/410000, stats.getRate(), 1e-6);
+        assertEquals(0.001023, stats.getPercentile(0.5), 1e-12);
+    }
+}
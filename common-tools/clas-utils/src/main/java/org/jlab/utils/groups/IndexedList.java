@@ -5,84 +5,412 @@
  */
 package org.jlab.utils.groups;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
+ * Collection of items indexed by up to 4 integer indices. Items are kept
+ * in insertion order in parallel key/item arrays, with an open addressing
+ * hash from the primitive long key to the position, so lookups do not box
+ * the key. Items can be iterated by position (size(), getKeyAt(), getItemAt())
+ * without creating entry objects; getMap() gives a Map view for existing code.
+ * Removing an item moves the following items back, so reading the list
+ * never changes it.
  *
  * @author gavalian
  * @param <T> - indexed collection type
  */
 public class IndexedList<T> {
 
-    private final Map<Long,T>  collection = new LinkedHashMap<Long,T>();
+    private long[]             itemKeys  = new long[16];
+    private Object[]           itemArray = new Object[16];
+    private int                itemCount = 0;
+    private LongIntHashMap     itemIndex = new LongIntHashMap();
+    private boolean            isFrozen  = false;
     private int                indexSize = 3;
-    
+    private final MapView      mapView   = new MapView();
+    // structural changes, for the fail fast iterators of the map view
+    private int                modCount  = 0;
+
     public IndexedList(){
-        
+
     }
-    
+
     public IndexedList(int indsize){
         this.indexSize = indsize;
     }
-    
+
     public void add(T item, int... index){
         if(index.length!=this.indexSize){
             System.out.println("HashCollection:: error can not add item, inconsistency of index count.");
             return;
         }
         long code = IndexGenerator.hashCode(index);
-        this.collection.put(code, item);
+        this.put(code, item);
     }
-    
+
     public boolean hasItem(int... index){
         if(index.length!=this.indexSize) return false;
         long code = IndexGenerator.hashCode(index);
-        return this.collection.containsKey(code);
+        return this.position(code)>=0;
+    }
+
+    public boolean hasItem(int a, int b, int c){
+        if(this.indexSize!=3) return false;
+        return this.position(IndexGenerator.hashCode(a, b, c))>=0;
     }
-    
+
     public T getItem(int... index){
         if(index.length!=this.indexSize) return null;
         long code = IndexGenerator.hashCode(index);
-        return this.collection.get(code);
+        return this.getItemByKey(code);
+    }
+
+    public T getItem(int a){
+        if(this.indexSize!=1) return null;
+        return this.getItemByKey(IndexGenerator.hashCode(a));
+    }
+
+    public T getItem(int a, int b){
+        if(this.indexSize!=2) return null;
+        return this.getItemByKey(IndexGenerator.hashCode(a, b));
+    }
+
+    public T getItem(int a, int b, int c){
+        if(this.indexSize!=3) return null;
+        return this.getItemByKey(IndexGenerator.hashCode(a, b, c));
+    }
+
+    public T getItem(int a, int b, int c, int d){
+        if(this.indexSize!=4) return null;
+        return this.getItemByKey(IndexGenerator.hashCode(a, b, c, d));
+    }
+
+    /**
+     * @param key key produced by IndexGenerator.hashCode
+     * @return the item, or null if there is no item with the key
+     */
+    @SuppressWarnings("unchecked")
+    public T getItemByKey(long key){
+        int position = this.position(key);
+        if(position<0) return null;
+        return (T) this.itemArray[position];
+    }
+
+    /**
+     * @return number of items in the list
+     */
+    public int size(){ return this.itemCount;}
+
+    /**
+     * @param position position in insertion order (0 to size()-1)
+     * @return key of the item
+     */
+    public long getKeyAt(int position){
+        return this.itemKeys[position];
+    }
+
+    /**
+     * @param position position in insertion order (0 to size()-1)
+     * @return the item
+     */
+    @SuppressWarnings("unchecked")
+    public T getItemAt(int position){
+        return (T) this.itemArray[position];
     }
-    
-    public void clear(){this.collection.clear();}
+
+    /**
+     * @param position position in insertion order (0 to size()-1)
+     * @param order index number (0 to 3)
+     * @return index value of the item
+     */
+    public int getIndexAt(int position, int order){
+        return IndexGenerator.getIndex(this.getKeyAt(position), order);
+    }
+
+    /**
+     * Trims the storage to the number of items and makes the list read only,
+     * any later attempt to add, replace, remove or clear items throws
+     * UnsupportedOperationException.
+     */
+    public void freeze(){
+        if(this.isFrozen==true) return;
+        this.itemKeys  = Arrays.copyOf(this.itemKeys, this.itemCount);
+        this.itemArray = Arrays.copyOf(this.itemArray, this.itemCount);
+        this.isFrozen  = true;
+    }
+
+    public boolean isFrozen(){ return this.isFrozen;}
+
+    public void clear(){
+        this.checkFrozen();
+        Arrays.fill(this.itemArray, 0, this.itemCount, null);
+        this.itemCount    = 0;
+        this.itemIndex.clear();
+        this.modCount++;
+    }
+
     public int  getIndexSize(){ return this.indexSize;}
-    public Map<Long,T> getMap(){ return this.collection;}
-    
-    public void show(){        
-        for(Map.Entry<Long,T>  entry : this.collection.entrySet()){
-            System.out.println(String.format("[%s] : ", 
-                    IndexGenerator.getString(entry.getKey())) + entry.getValue());
+
+    /**
+     * @return map view of the list (in insertion order), backed by the list
+     */
+    public Map<Long,T> getMap(){ return this.mapView;}
+
+    public void show(){
+        for(int i = 0; i < this.size(); i++){
+            System.out.println(String.format("[%s] : ",
+                    IndexGenerator.getString(this.getKeyAt(i))) + this.getItemAt(i));
+        }
+    }
+
+    /*
+     * position of the item with the key in the storage, -1 if there is
+     * no item.
+     */
+    private int position(long key){
+        return this.itemIndex.get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T put(long key, T item){
+        this.checkFrozen();
+        int position = this.position(key);
+        if(position>=0){
+            T previous = (T) this.itemArray[position];
+            this.itemArray[position] = item;
+            return previous;
+        }
+        if(this.itemCount==this.itemKeys.length){
+            int capacity = Math.max(16, 2*this.itemCount);
+            this.itemKeys  = Arrays.copyOf(this.itemKeys, capacity);
+            this.itemArray = Arrays.copyOf(this.itemArray, capacity);
         }
+        this.itemKeys[this.itemCount]  = key;
+        this.itemArray[this.itemCount] = item;
+        this.itemIndex.put(key, this.itemCount);
+        this.itemCount++;
+        this.modCount++;
+        return null;
     }
-    
+
+    /*
+     * the following items are moved back by one position to keep the
+     * insertion order, and their positions in the index updated.
+     */
+    @SuppressWarnings("unchecked")
+    private T remove(long key){
+        int position = this.position(key);
+        if(position<0) return null;
+        this.checkFrozen();
+        T previous = (T) this.itemArray[position];
+        int moved = this.itemCount-position-1;
+        System.arraycopy(this.itemKeys,  position+1, this.itemKeys,  position, moved);
+        System.arraycopy(this.itemArray, position+1, this.itemArray, position, moved);
+        this.itemCount--;
+        this.itemArray[this.itemCount] = null;
+        this.itemIndex.remove(key);
+        for(int i = position; i < this.itemCount; i++) this.itemIndex.put(this.itemKeys[i], i);
+        this.modCount++;
+        return previous;
+    }
+
+    private void checkFrozen(){
+        if(this.isFrozen==true){
+            throw new UnsupportedOperationException("IndexedList:: the list is frozen");
+        }
+    }
+
     /**
-     * Index Generator class for generating a Long number out of 
+     * Map view used by the code written for the LinkedHashMap based list.
+     */
+    private class MapView extends AbstractMap<Long,T> {
+
+        private final EntrySet entrySet = new EntrySet();
+
+        @Override
+        public int size(){ return IndexedList.this.size();}
+
+        @Override
+        public boolean containsKey(Object key){
+            return (key instanceof Long)&&position((Long) key)>=0;
+        }
+
+        @Override
+        public T get(Object key){
+            if(key instanceof Long) return getItemByKey((Long) key);
+            return null;
+        }
+
+        @Override
+        public T put(Long key, T value){
+            return IndexedList.this.put(key, value);
+        }
+
+        @Override
+        public T remove(Object key){
+            if(key instanceof Long) return IndexedList.this.remove((Long) key);
+            return null;
+        }
+
+        @Override
+        public void clear(){
+            IndexedList.this.clear();
+        }
+
+        @Override
+        public Set<Map.Entry<Long,T>> entrySet(){
+            return this.entrySet;
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<Long,T>> {
+
+        @Override
+        public int size(){ return IndexedList.this.size();}
+
+        @Override
+        public Iterator<Map.Entry<Long,T>> iterator(){
+            return new EntryIterator();
+        }
+    }
+
+    /**
+     * Iterates the storage in insertion order, a removal through the
+     * iterator moves the next item back to the current position. Any other
+     * structural change of the list throws ConcurrentModificationException,
+     * as LinkedHashMap does.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<Long,T>> {
+
+        int     position      = 0;
+        int     expectedMod   = modCount;
+        long    currentKey    = 0L;
+        boolean canRemove     = false;
+
+        @Override
+        public boolean hasNext(){
+            if(modCount!=expectedMod) throw new ConcurrentModificationException();
+            return position<itemCount;
+        }
+
+        @Override
+        public Map.Entry<Long,T> next(){
+            if(modCount!=expectedMod) throw new ConcurrentModificationException();
+            if(position>=itemCount) throw new NoSuchElementException();
+            currentKey = itemKeys[position++];
+            canRemove  = true;
+            return new ListEntry(currentKey);
+        }
+
+        @Override
+        public void remove(){
+            if(!canRemove) throw new IllegalStateException();
+            if(modCount!=expectedMod) throw new ConcurrentModificationException();
+            IndexedList.this.remove(currentKey);
+            expectedMod = modCount;
+            position--;
+            canRemove   = false;
+        }
+    }
+
+    private class ListEntry implements Map.Entry<Long,T> {
+
+        private final long key;
+
+        ListEntry(long key){ this.key = key;}
+
+        @Override
+        public Long getKey(){ return key;}
+
+        @Override
+        public T getValue(){ return getItemByKey(key);}
+
+        @Override
+        public T setValue(T value){
+            checkFrozen();
+            int position = position(key);
+            if(position<0) throw new IllegalStateException("IndexedList:: the entry was removed");
+            @SuppressWarnings("unchecked")
+            T previous = (T) itemArray[position];
+            itemArray[position] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Map.Entry)) return false;
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            T value = getValue();
+            return getKey().equals(entry.getKey())
+                    &&(value==null ? entry.getValue()==null : value.equals(entry.getValue()));
+        }
+
+        @Override
+        public int hashCode(){
+            T value = getValue();
+            return Long.hashCode(key)^(value==null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString(){ return key + "=" + getValue();}
+    }
+
+    /**
+     * Index Generator class for generating a Long number out of
      * up to 4 indecies.
      */
     public static class IndexGenerator {
-        
+
         static int[] byteShits = new int[]{48,32,16,0};
-        
+
         public static long hashCode(int... indecies){
             long result = (long) 0;
-            
+
             for(int loop = 0; loop < indecies.length; loop++){
-                long patern = (((long) indecies[loop])&0x000000000000FFFF)<<IndexGenerator.byteShits[loop]; 
+                long patern = (((long) indecies[loop])&0x000000000000FFFF)<<IndexGenerator.byteShits[loop];
                 result = (result | patern);
             }
             return result;
         }
-        
+
+        /**
+         * fixed size versions of hashCode, they give the same result as
+         * the variable argument version and do not allocate an array.
+         */
+        public static long hashCode(int a){
+            return (((long) a)&0x000000000000FFFF)<<48;
+        }
+
+        public static long hashCode(int a, int b){
+            return ((((long) a)&0x000000000000FFFF)<<48)
+                  |((((long) b)&0x000000000000FFFF)<<32);
+        }
+
+        public static long hashCode(int a, int b, int c){
+            return ((((long) a)&0x000000000000FFFF)<<48)
+                  |((((long) b)&0x000000000000FFFF)<<32)
+                  |((((long) c)&0x000000000000FFFF)<<16);
+        }
+
+        public static long hashCode(int a, int b, int c, int d){
+            return ((((long) a)&0x000000000000FFFF)<<48)
+                  |((((long) b)&0x000000000000FFFF)<<32)
+                  |((((long) c)&0x000000000000FFFF)<<16)
+                  | (((long) d)&0x000000000000FFFF);
+        }
+
         public static int getIndex(long hashcode, int order){
             int result = (int) (hashcode>>IndexGenerator.byteShits[order])&0x000000000000FFFF;
             return result;
         }
-        
+
         public static String  getString(long hashcode){
             StringBuilder str = new StringBuilder();
             for(int loop = 0; loop <4; loop++){
@@ -9,11 +9,9 @@ import java.awt.Color;
 import java.awt.Component;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 import javax.swing.JTable;
 import javax.swing.table.DefaultTableCellRenderer;
@@ -36,6 +34,8 @@ public class IndexedTable extends DefaultTableModel {
     
     private Map<Integer,List<RowConstraint>>  constrains = new HashMap<Integer,List<RowConstraint>>(); 
     
+    private volatile ColumnStore              columnStore = null;
+    
     private int DEBUG_MODE = 0;
     
     public IndexedTable(int indexCount){
@@ -86,9 +86,12 @@ public class IndexedTable extends DefaultTableModel {
         indexNames.set(index, name);
     }
     
-    public  void addEntry(int... index){
+    public  synchronized void addEntry(int... index){
         //System.out.println("adding entry with size = " + entryMap.size());
-        this.entries.add(new IndexedEntry(entryMap.size()), index);       
+        IndexedEntry entry = new IndexedEntry(entryMap.size());
+        entry.table = this;
+        this.entries.add(entry, index);
+        this.columnStore = null;
     }
     
     public  void addConstraint(int column, double min, double max){
@@ -117,7 +120,8 @@ public class IndexedTable extends DefaultTableModel {
               if(DEBUG_MODE>0) System.out.println( "[IndexedTable] ---> error.. entry does not have item = " + item);
             } else {
                 Integer mapIndex = this.entryMap.get(item);
-                this.entries.getItem(index).setValue(mapIndex, value);
+                this.entries.getItem(index).entryValues.set(mapIndex, value);
+                this.updateColumnStore(mapIndex, value, index);
             }
         }
     }
@@ -130,43 +134,191 @@ public class IndexedTable extends DefaultTableModel {
                if(DEBUG_MODE>0) System.out.println( "[IndexedTable] ---> error.. entry does not have item = " + item);
             } else {
                 Integer mapIndex = this.entryMap.get(item);
-                this.entries.getItem(index).setValue(mapIndex, value);
+                this.entries.getItem(index).entryValues.set(mapIndex, value);
+                this.updateColumnStore(mapIndex, value, index);
             }
         }
     }
     
+    /*
+     * keeps the cell of the columnar copy in sync with the entry, if the
+     * copy was already built. Only the cell changes, the rows and the
+     * arrays of the copy stay the same.
+     */
+    private void updateColumnStore(int column, Number value, int[] index){
+        ColumnStore store = this.columnStore;
+        if(store==null) return;
+        int row = store.rowIndex.get(IndexedList.IndexGenerator.hashCode(index));
+        if(row<0||column>=store.ncolumns){
+            this.invalidate();
+            return;
+        }
+        store.doubleValues[column][row] = value.doubleValue();
+        store.intValues[column][row]    = value.intValue();
+    }
+    
     public int  getIntValue(String item, int... index){
-        if(this.entries.hasItem(index)==false){
+        int row = this.findRow(index);
+        if(row<0){
             if(DEBUG_MODE>0) System.out.println( "[IndexedTable] ---> error.. entry does not exist");
         } else {
-            if(this.entryMap.containsKey(item)==false){
+            Integer mapIndex = this.entryMap.get(item);
+            if(mapIndex==null){
                if(DEBUG_MODE>0) System.out.println( "[IndexedTable] ---> error.. entry does not have item = " + item);
             } else {
-                Integer mapIndex = this.entryMap.get(item);
-                return this.entries.getItem(index).getValue(mapIndex).intValue();
+                return this.getColumnStore().intValues[mapIndex][row];
             }
         }
         return 0;
     }
     
     public double  getDoubleValue(String item, int... index){
-        if(this.entries.hasItem(index)==false){
+        int row = this.findRow(index);
+        if(row<0){
             if(DEBUG_MODE>0) System.out.println( "[IndexedTable] ---> error.. entry does not exist");
         } else {
-            if(this.entryMap.containsKey(item)==false){
+            Integer mapIndex = this.entryMap.get(item);
+            if(mapIndex==null){
                 if(DEBUG_MODE>0) System.out.println( "[IndexedTable] ---> error.. entry does not have item = " + item);
             } else {
-                Integer mapIndex = this.entryMap.get(item);
-                return this.entries.getItem(index).getValue(mapIndex).doubleValue();
+                return this.getColumnStore().doubleValues[mapIndex][row];
             }
         }
         return 0;
     }
     
+    /**
+     * Returns a handle for a column, to be resolved once and used with the
+     * primitive accessors getIntValue(int,...) and getDoubleValue(int,...).
+     * @param item column name
+     * @return column handle, -1 if the table does not have the column
+     */
+    public int getColumnIndex(String item){
+        Integer mapIndex = this.entryMap.get(item);
+        if(mapIndex==null) return -1;
+        return mapIndex;
+    }
+    
+    /**
+     * Returns the row number of an entry of a table with three indices.
+     * @param a first index
+     * @param b second index
+     * @param c third index
+     * @return row number, -1 if the entry does not exist or the table
+     * does not have three indices
+     */
+    public int getRowIndex(int a, int b, int c){
+        if(this.entries.getIndexSize()!=3) return -1;
+        return this.getColumnStore().rowIndex.get(IndexedList.IndexGenerator.hashCode(a, b, c));
+    }
+    
+    public int getRowIndex(int a, int b, int c, int d){
+        if(this.entries.getIndexSize()!=4) return -1;
+        return this.getColumnStore().rowIndex.get(IndexedList.IndexGenerator.hashCode(a, b, c, d));
+    }
+    
+    private int findRow(int[] index){
+        if(index.length!=this.entries.getIndexSize()) return -1;
+        return this.getColumnStore().rowIndex.get(IndexedList.IndexGenerator.hashCode(index));
+    }
+    
+    /**
+     * @param column column handle from getColumnIndex
+     * @param row row number from getRowIndex
+     * @return value of the column in the row
+     */
+    public double getDoubleValueAt(int column, int row){
+        return this.getColumnStore().doubleValues[column][row];
+    }
+    
+    public int getIntValueAt(int column, int row){
+        return this.getColumnStore().intValues[column][row];
+    }
+    
+    /**
+     * Primitive lookup without boxing or varargs, returns 0 if the entry
+     * does not exist or the table does not have three indices (as the
+     * string based version).
+     * @param column column handle from getColumnIndex
+     * @param a first index
+     * @param b second index
+     * @param c third index
+     * @return column value
+     */
+    public double getDoubleValue(int column, int a, int b, int c){
+        if(this.entries.getIndexSize()!=3) return 0;
+        ColumnStore store = this.getColumnStore();
+        int row = store.rowIndex.get(IndexedList.IndexGenerator.hashCode(a, b, c));
+        if(row<0) return 0;
+        return store.doubleValues[column][row];
+    }
+    
+    public int getIntValue(int column, int a, int b, int c){
+        if(this.entries.getIndexSize()!=3) return 0;
+        ColumnStore store = this.getColumnStore();
+        int row = store.rowIndex.get(IndexedList.IndexGenerator.hashCode(a, b, c));
+        if(row<0) return 0;
+        return store.intValues[column][row];
+    }
+    
+    /**
+     * Columnar copy of the table, built by the first read after the table
+     * was loaded and never resized: adding an entry drops it, the set
+     * methods and IndexedEntry.setValue() update or drop it. The tables
+     * shared by ConstantsManager are read by several threads, the copy is
+     * built once under the table lock and published by the volatile field.
+     * @return column store
+     */
+    private ColumnStore getColumnStore(){
+        ColumnStore store = this.columnStore;
+        if(store==null){
+            synchronized(this){
+                store = this.columnStore;
+                if(store==null){
+                    store = new ColumnStore(this.entries, this.entryNames.size());
+                    this.columnStore = store;
+                }
+            }
+        }
+        return store;
+    }
+    
+    /**
+     * drops the columnar copy of the table, it is built again by the next
+     * read.
+     */
+    public synchronized void invalidate(){
+        this.columnStore = null;
+    }
+    
     public IndexedList getList(){
         return this.entries;
     }
     
+    public int getIndexCount(){
+        return this.entries.getIndexSize();
+    }
+    
+    public String getIndexName(int index){
+        return this.indexNames.get(index);
+    }
+    
+    public int getEntryCount(){
+        return this.entryNames.size();
+    }
+    
+    public String getEntryName(int column){
+        return this.entryNames.get(column);
+    }
+    
+    /**
+     * @param column column number (not counting the index columns)
+     * @return column type, "D" for double and "I" for integer
+     */
+    public String getEntryType(int column){
+        return this.entryTypes.get(this.entryNames.get(column));
+    }
+    
     private void parseFormat(String format){
         String[] tokens = format.split(":");
         entryMap.clear();
@@ -200,11 +352,12 @@ public class IndexedTable extends DefaultTableModel {
         
         this.addEntry(index);
 
+        IndexedEntry entry = entries.getItem(index);
         for(int i = 0; i < this.entryNames.size(); i++){
             if(entryTypes.get(entryNames.get(i)).compareTo("D")==0){
-                entries.getItem(index).setValue(i, Double.parseDouble(values[i+3]));
+                entry.entryValues.set(i, Double.parseDouble(values[i+3]));
             } else {
-                entries.getItem(index).setValue(i, Integer.parseInt(values[i+3]));
+                entry.entryValues.set(i, Integer.parseInt(values[i+3]));
             }
         }
     }
@@ -290,7 +443,7 @@ public class IndexedTable extends DefaultTableModel {
         //return 2;
         int nrows = 0;
         try {
-            nrows = entries.getMap().size();
+            nrows = entries.size();
         } catch (Exception e){
             
         }
@@ -300,20 +453,14 @@ public class IndexedTable extends DefaultTableModel {
     
     @Override
     public Object getValueAt(int row, int column) { 
-        Set<Long>  keys = entries.getMap().keySet();
         int   ic = entries.getIndexSize();
-        Iterator   iter = keys.iterator();
-        Long       value = (Long) iter.next();
-        for(int i = 0; i < row; i++){
-            value = (Long) iter.next();
-        }
         //System.out.println();
         if(column<entries.getIndexSize()){
-            Integer index = IndexedList.IndexGenerator.getIndex(value, column);
+            Integer index = entries.getIndexAt(row, column);
             return index.toString();
         }
         
-        IndexedEntry  trow = entries.getMap().get(value);
+        IndexedEntry  trow = entries.getItemAt(row);
         //System.out.println(" number of rows = " + trow.getSize() + "  " + (column-ic));
         /*if((column-ic)>=trow.getSize()){
             return "0";
@@ -378,11 +525,44 @@ public class IndexedTable extends DefaultTableModel {
                 }
     }
     
+    /**
+     * Structure of arrays copy of the table: an open addressing index from
+     * the entry key to the row number and one primitive array per column
+     * for double and integer values. Rows are in the order of the list,
+     * only the cells are updated after the copy is built.
+     */
+    private static final class ColumnStore {
+        
+        final LongIntHashMap  rowIndex;
+        final int             ncolumns;
+        final double[][]      doubleValues;
+        final int[][]         intValues;
+        
+        ColumnStore(IndexedList<IndexedEntry> list, int ncolumns){
+            int size = list.size();
+            this.ncolumns = ncolumns;
+            rowIndex     = new LongIntHashMap(size);
+            doubleValues = new double[ncolumns][size];
+            intValues    = new int[ncolumns][size];
+            for(int row = 0; row < size; row++){
+                IndexedEntry values = list.getItemAt(row);
+                rowIndex.put(list.getKeyAt(row), row);
+                for(int c = 0; c < ncolumns; c++){
+                    Number value = c < values.getSize() ? values.getValue(c) : 0;
+                    doubleValues[c][row] = value.doubleValue();
+                    intValues[c][row]    = value.intValue();
+                }
+            }
+        }
+    }
+    
     public static class IndexedEntry {
         
         //private List<Number>  columnValues = ;
         int  entrySize = 0;
         List<Number>   entryValues = new ArrayList<Number>();
+        // table of the entry, its columnar copy is dropped by setValue()
+        IndexedTable   table = null;
         
         public IndexedEntry(int size){
             entrySize = size;
@@ -393,6 +573,7 @@ public class IndexedTable extends DefaultTableModel {
         
         public void setValue(int index, Number value){
             entryValues.set(index, value);
+            if(table!=null&&table.columnStore!=null) table.invalidate();
         }
         
         public Number getValue(int index){
@@ -409,6 +590,7 @@ public class IndexedTable extends DefaultTableModel {
             for(int i = 0; i < size; i++){
                 entryValues.add((Integer) 0);
             }
+            if(table!=null&&table.columnStore!=null) table.invalidate();
         }
     }
 }
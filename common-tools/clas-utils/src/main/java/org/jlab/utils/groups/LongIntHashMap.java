@@ -0,0 +1,127 @@
+package org.jlab.utils.groups;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive long keys to non-negative
+ * int values, used to index rows of IndexedTable and items of IndexedList
+ * without boxing the keys. Uses linear probing with a power of two
+ * capacity kept at most half full.
+ */
+public class LongIntHashMap {
+
+    private long[] hashKeys;
+    private int[]  hashValues;
+    private int    hashMask;
+    private int    hashSize = 0;
+
+    public LongIntHashMap(){
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize){
+        int capacity = 4;
+        while(capacity<2*expectedSize) capacity <<= 1;
+        this.allocate(capacity);
+    }
+
+    private void allocate(int capacity){
+        hashKeys   = new long[capacity];
+        hashValues = new int[capacity];
+        hashMask   = capacity - 1;
+        Arrays.fill(hashValues, -1);
+    }
+
+    private static int mix(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @param key key
+     * @return value for the key, or -1 if the key is not in the map
+     */
+    public int get(long key){
+        int slot = mix(key) & hashMask;
+        while(true){
+            int value = hashValues[slot];
+            if(value<0) return -1;
+            if(hashKeys[slot]==key) return value;
+            slot = (slot + 1) & hashMask;
+        }
+    }
+
+    public boolean containsKey(long key){
+        return this.get(key)>=0;
+    }
+
+    /**
+     * adds or replaces the value of a key.
+     * @param key key
+     * @param value value, has to be non-negative
+     */
+    public void put(long key, int value){
+        if(value<0) throw new IllegalArgumentException("LongIntHashMap: negative value " + value);
+        if(2*(hashSize+1)>hashValues.length) this.rehash(2*hashValues.length);
+        int slot = mix(key) & hashMask;
+        while(hashValues[slot]>=0){
+            if(hashKeys[slot]==key){
+                hashValues[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & hashMask;
+        }
+        hashKeys[slot]   = key;
+        hashValues[slot] = value;
+        hashSize++;
+    }
+
+    /**
+     * removes a key, moving back the following entries of its probe
+     * sequence so that no removal marker is needed.
+     * @param key key
+     * @return value of the key, or -1 if the key was not in the map
+     */
+    public int remove(long key){
+        int slot = mix(key) & hashMask;
+        while(hashKeys[slot]!=key||hashValues[slot]<0){
+            if(hashValues[slot]<0) return -1;
+            slot = (slot + 1) & hashMask;
+        }
+        int removed = hashValues[slot];
+        int gap  = slot;
+        int next = (gap + 1) & hashMask;
+        while(hashValues[next]>=0){
+            int home = mix(hashKeys[next]) & hashMask;
+            // the entry can fill the gap if the gap is between its home slot and its slot
+            if(((next - home) & hashMask) >= ((next - gap) & hashMask)){
+                hashKeys[gap]   = hashKeys[next];
+                hashValues[gap] = hashValues[next];
+                gap = next;
+            }
+            next = (next + 1) & hashMask;
+        }
+        hashValues[gap] = -1;
+        hashSize--;
+        return removed;
+    }
+
+    private void rehash(int capacity){
+        long[] keys   = hashKeys;
+        int[]  values = hashValues;
+        this.allocate(capacity);
+        hashSize = 0;
+        for(int i = 0; i < values.length; i++){
+            if(values[i]>=0) this.put(keys[i], values[i]);
+        }
+    }
+
+    public int size(){
+        return this.hashSize;
+    }
+
+    public void clear(){
+        Arrays.fill(hashValues, -1);
+        hashSize = 0;
+    }
+}
@@ -0,0 +1,90 @@
+package org.jlab.utils.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.jlab.utils.groups.IndexedList;
+
+/**
+ * Compares IndexedList lookups with the LinkedHashMap based implementation
+ * it replaced, for key distributions of the drift chambers
+ * (6 sectors x 36 layers x 112 wires) and of the calorimeter
+ * (6 sectors x 9 views x 68 strips). One lookup in four is a miss.
+ */
+public class IndexedListBenchmark {
+
+    private static void run(String name, int nsectors, int nlayers, int ncomponents, int iterations){
+
+        IndexedList<Double>  list   = new IndexedList<Double>(3);
+        Map<Long,Double>     legacy = new LinkedHashMap<Long,Double>();
+        for(int sector = 1; sector <= nsectors; sector++){
+            for(int layer = 1; layer <= nlayers; layer++){
+                for(int component = 1; component <= ncomponents; component++){
+                    Double value = sector*1000.0 + layer*10.0 + component;
+                    list.add(value, sector, layer, component);
+                    legacy.put(IndexedList.IndexGenerator.hashCode(sector, layer, component), value);
+                }
+            }
+        }
+
+        Random rand = new Random(12345);
+        int[] sectors    = new int[8192];
+        int[] layers     = new int[8192];
+        int[] components = new int[8192];
+        for(int i = 0; i < 8192; i++){
+            sectors[i]    = rand.nextInt(nsectors) + 1;
+            layers[i]     = rand.nextInt(nlayers) + 1;
+            components[i] = rand.nextInt(4*ncomponents/3) + 1;
+        }
+
+        for(int pass = 0; pass < 3; pass++){
+            if(pass==2) list.freeze();
+            BenchmarkTimer timerLegacy = new BenchmarkTimer("legacy");
+            BenchmarkTimer timerVararg = new BenchmarkTimer("varargs");
+            BenchmarkTimer timerFixed  = new BenchmarkTimer("fixed");
+            double sumLegacy = 0.0;
+            double sumVararg = 0.0;
+            double sumFixed  = 0.0;
+
+            timerLegacy.resume();
+            for(int i = 0; i < iterations; i++){
+                int k = i&8191;
+                Double value = legacy.get(IndexedList.IndexGenerator.hashCode(new int[]{sectors[k], layers[k], components[k]}));
+                if(value!=null) sumLegacy += value;
+            }
+            timerLegacy.pause();
+
+            timerVararg.resume();
+            for(int i = 0; i < iterations; i++){
+                int k = i&8191;
+                Double value = list.getItem(new int[]{sectors[k], layers[k], components[k]});
+                if(value!=null) sumVararg += value;
+            }
+            timerVararg.pause();
+
+            timerFixed.resume();
+            for(int i = 0; i < iterations; i++){
+                int k = i&8191;
+                Double value = list.getItem(sectors[k], layers[k], components[k]);
+                if(value!=null) sumFixed += value;
+            }
+            timerFixed.pause();
+
+            double norm = 1e6/iterations;
+            System.out.println(String.format("%-4s %s : LinkedHashMap = %7.2f ns, varargs = %7.2f ns, fixed = %7.2f ns, speedup = %5.2f (check %s)",
+                    name, pass==2 ? "frozen" : "      ",
+                    timerLegacy.getMiliseconds()*norm,
+                    timerVararg.getMiliseconds()*norm,
+                    timerFixed.getMiliseconds()*norm,
+                    timerLegacy.getMiliseconds()/timerFixed.getMiliseconds(),
+                    (sumLegacy==sumVararg&&sumLegacy==sumFixed) ? "ok" : "MISMATCH"));
+        }
+    }
+
+    public static void main(String[] args){
+        int iterations = 20000000;
+        if(args.length>0) iterations = Integer.parseInt(args[0]);
+        run("DC", 6, 36, 112, iterations);
+        run("EC", 6,  9,  68, iterations);
+    }
+}
@@ -0,0 +1,77 @@
+package org.jlab.utils.benchmark;
+
+import java.util.Random;
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * Compares the string/varargs lookups of IndexedTable with the
+ * column handle lookups on a table with the size of a typical
+ * calibration table (6 sectors x 3 layers x 112 components).
+ */
+public class IndexedTableBenchmark {
+
+    public static IndexedTable createTable(){
+        IndexedTable table = new IndexedTable(3, "gain/D:offset/D:status/I");
+        for(int sector = 1; sector <= 6; sector++){
+            for(int layer = 1; layer <= 3; layer++){
+                for(int component = 1; component <= 112; component++){
+                    table.addEntry(sector, layer, component);
+                    table.setDoubleValue(1.0 + 0.001*component, "gain", sector, layer, component);
+                    table.setDoubleValue(0.5*layer, "offset", sector, layer, component);
+                    table.setIntValue(component%7, "status", sector, layer, component);
+                }
+            }
+        }
+        return table;
+    }
+
+    public static void main(String[] args){
+
+        int iterations = 20000000;
+        if(args.length>0) iterations = Integer.parseInt(args[0]);
+
+        IndexedTable table = createTable();
+        Random       rand  = new Random(12345);
+        int[] sectors    = new int[4096];
+        int[] layers     = new int[4096];
+        int[] components = new int[4096];
+        for(int i = 0; i < 4096; i++){
+            sectors[i]    = rand.nextInt(6) + 1;
+            layers[i]     = rand.nextInt(3) + 1;
+            components[i] = rand.nextInt(112) + 1;
+        }
+
+        int gain   = table.getColumnIndex("gain");
+        int status = table.getColumnIndex("status");
+
+        for(int warmup = 0; warmup < 3; warmup++){
+            BenchmarkTimer timerString = new BenchmarkTimer("string lookup");
+            BenchmarkTimer timerHandle = new BenchmarkTimer("handle lookup");
+            double sumString = 0.0;
+            double sumHandle = 0.0;
+
+            timerString.resume();
+            for(int i = 0; i < iterations; i++){
+                int k = i&4095;
+                sumString += table.getDoubleValue("gain", sectors[k], layers[k], components[k]);
+                sumString += table.getIntValue("status", sectors[k], layers[k], components[k]);
+            }
+            timerString.pause();
+
+            timerHandle.resume();
+            for(int i = 0; i < iterations; i++){
+                int k = i&4095;
+                sumHandle += table.getDoubleValue(gain, sectors[k], layers[k], components[k]);
+                sumHandle += table.getIntValue(status, sectors[k], layers[k], components[k]);
+            }
+            timerHandle.pause();
+
+            System.out.println(String.format("iteration %d : string = %8.2f ns/lookup, handle = %8.2f ns/lookup, speedup = %6.2f (check %s)",
+                    warmup,
+                    timerString.getMiliseconds()*1e6/(2.0*iterations),
+                    timerHandle.getMiliseconds()*1e6/(2.0*iterations),
+                    timerString.getMiliseconds()/timerHandle.getMiliseconds(),
+                    sumString==sumHandle ? "ok" : "MISMATCH"));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.jlab.utils.groups;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.jlab.utils.groups.IndexedList.IndexGenerator;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IndexedListTest {
+
+    private static IndexedList<String> createList(int n){
+        IndexedList<String> list = new IndexedList<String>(3);
+        for(int i = 0; i < n; i++){
+            list.add("item" + i, 1 + i%6, i/6, i);
+        }
+        return list;
+    }
+
+    private static void assertSameAs(Map<Long,String> expected, IndexedList<String> list){
+        assertEquals(expected.size(), list.size());
+        int position = 0;
+        for(Map.Entry<Long,String> entry : expected.entrySet()){
+            assertEquals((long) entry.getKey(), list.getKeyAt(position));
+            assertEquals(entry.getValue(), list.getItemAt(position));
+            assertEquals(entry.getValue(), list.getItemByKey(entry.getKey()));
+            position++;
+        }
+        assertEquals(expected, list.getMap());
+    }
+
+    @Test
+    public void testInsertionOrder() {
+        IndexedList<String> list = createList(100);
+        assertEquals(100, list.size());
+        for(int i = 0; i < 100; i++){
+            assertEquals("item" + i, list.getItemAt(i));
+            assertEquals(1 + i%6, list.getIndexAt(i, 0));
+            assertEquals(i/6, list.getIndexAt(i, 1));
+            assertEquals(i, list.getIndexAt(i, 2));
+        }
+        // replacing an item keeps its position
+        list.add("replaced", 1 + 10%6, 10/6, 10);
+        assertEquals(100, list.size());
+        assertEquals("replaced", list.getItemAt(10));
+        assertEquals("replaced", list.getItem(1 + 10%6, 10/6, 10));
+        assertEquals("item11", list.getItemAt(11));
+    }
+
+    @Test
+    public void testRemoveAndAdd() {
+        IndexedList<String>  list     = createList(200);
+        Map<Long,String>     expected = new LinkedHashMap<Long,String>(list.getMap());
+        Random rand = new Random(11);
+        for(int i = 0; i < 1000; i++){
+            int c = rand.nextInt(300);
+            long key = IndexGenerator.hashCode(1 + c%6, c/6, c);
+            if(rand.nextBoolean()){
+                assertEquals(expected.remove(key), list.getMap().remove(key));
+                assertFalse(list.hasItem(1 + c%6, c/6, c));
+            } else {
+                expected.put(key, "added" + i);
+                list.add("added" + i, 1 + c%6, c/6, c);
+                assertTrue(list.hasItem(1 + c%6, c/6, c));
+            }
+            if(i%50==0) assertSameAs(expected, list);
+        }
+        assertSameAs(expected, list);
+
+        // removing through the iterator
+        Iterator<Map.Entry<Long,String>> it  = list.getMap().entrySet().iterator();
+        Iterator<Map.Entry<Long,String>> ref = expected.entrySet().iterator();
+        while(ref.hasNext()){
+            assertTrue(it.hasNext());
+            Map.Entry<Long,String> entry = it.next();
+            assertEquals(ref.next(), entry);
+            if(entry.getKey()%3==0){
+                it.remove();
+                ref.remove();
+            }
+        }
+        assertFalse(it.hasNext());
+        assertSameAs(expected, list);
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertNull(list.getItem(1, 0, 0));
+        list.add("again", 1, 0, 0);
+        assertEquals("again", list.getItemAt(0));
+    }
+
+    @Test(expected=ConcurrentModificationException.class)
+    public void testIteratorAdd() {
+        IndexedList<String> list = createList(10);
+        for(Map.Entry<Long,String> entry : list.getMap().entrySet()){
+            list.add("new", 7, 7, 7);
+        }
+    }
+
+    @Test(expected=ConcurrentModificationException.class)
+    public void testIteratorRemove() {
+        IndexedList<String> list = createList(10);
+        for(Long key : list.getMap().keySet()){
+            list.getMap().remove(key);
+        }
+    }
+
+    @Test
+    public void testIteratorReplace() {
+        IndexedList<String> list = createList(10);
+        // replacing an item is not a structural change
+        for(Map.Entry<Long,String> entry : list.getMap().entrySet()){
+            entry.setValue(entry.getValue() + "*");
+            list.add("replaced", 1, 0, 0);
+        }
+        assertEquals("replaced", list.getItemAt(0));
+        assertEquals("item9*", list.getItemAt(9));
+    }
+
+    @Test
+    public void testFreeze() {
+        IndexedList<String> list = createList(10);
+        list.getMap().remove(IndexGenerator.hashCode(1, 0, 0));
+        list.freeze();
+        assertTrue(list.isFrozen());
+        assertEquals(9, list.size());
+        assertEquals("item1", list.getItemAt(0));
+        assertEquals("item5", list.getItem(6, 0, 5));
+        List<Runnable> changes = new ArrayList<Runnable>();
+        changes.add(() -> list.add("new", 7, 7, 7));
+        changes.add(() -> list.add("replaced", 2, 0, 1));
+        changes.add(() -> list.clear());
+        changes.add(() -> list.getMap().remove(IndexGenerator.hashCode(2, 0, 1)));
+        changes.add(() -> list.getMap().entrySet().iterator().next().setValue("replaced"));
+        for(Runnable change : changes){
+            try {
+                change.run();
+                fail("a frozen list was changed");
+            } catch (UnsupportedOperationException e) {
+            }
+        }
+        assertEquals(9, list.size());
+        assertEquals("item1", list.getItemAt(0));
+        // removing a missing item does not change the list
+        assertNull(list.getMap().remove(IndexGenerator.hashCode(7, 7, 7)));
+    }
+
+    @Test
+    public void testMapView() {
+        IndexedList<String> list = new IndexedList<String>(2);
+        Map<Long,String> map = list.getMap();
+        map.put(IndexGenerator.hashCode(1, 2), "a");
+        map.put(IndexGenerator.hashCode(3, 4), "b");
+        assertEquals("a", list.getItem(1, 2));
+        assertTrue(map.containsKey(IndexGenerator.hashCode(3, 4)));
+        assertFalse(map.containsKey(IndexGenerator.hashCode(4, 3)));
+        assertFalse(map.containsKey("key"));
+        assertEquals("b", map.put(IndexGenerator.hashCode(3, 4), "c"));
+        assertEquals("c", list.getItemAt(1));
+
+        Map<Long,String> copy = new LinkedHashMap<Long,String>(map);
+        assertEquals(copy, map);
+        assertEquals(copy.hashCode(), map.hashCode());
+        IndexedList<String> other = new IndexedList<String>(2);
+        other.getMap().putAll(copy);
+        assertSameAs(copy, other);
+    }
+
+    @Test
+    public void testFixedArity() {
+        Random rand = new Random(11);
+        for(int i = 0; i < 1000; i++){
+            // values beyond 16 bits and negative values are masked the same way
+            int a = rand.nextInt(), b = rand.nextInt(70000) - 100, c = rand.nextInt(), d = rand.nextInt(100);
+            assertEquals(IndexGenerator.hashCode(new int[]{a}), IndexGenerator.hashCode(a));
+            assertEquals(IndexGenerator.hashCode(new int[]{a, b}), IndexGenerator.hashCode(a, b));
+            assertEquals(IndexGenerator.hashCode(new int[]{a, b, c}), IndexGenerator.hashCode(a, b, c));
+            assertEquals(IndexGenerator.hashCode(new int[]{a, b, c, d}), IndexGenerator.hashCode(a, b, c, d));
+        }
+
+        IndexedList<String> list3 = new IndexedList<String>(3);
+        list3.add("x", new int[]{1, 2, 3});
+        assertTrue(list3.hasItem(1, 2, 3));
+        assertTrue(list3.hasItem(new int[]{1, 2, 3}));
+        assertEquals("x", list3.getItem(1, 2, 3));
+        assertEquals("x", list3.getItem(new int[]{1, 2, 3}));
+        // wrong number of indices
+        assertNull(list3.getItem(1, 2));
+        assertNull(list3.getItem(1, 2, 3, 0));
+        assertFalse(list3.hasItem(1, 2));
+        list3.add("y", 1, 2);
+        assertEquals(1, list3.size());
+
+        IndexedList<String> list4 = new IndexedList<String>(4);
+        list4.add("z", 1, 2, 3, 4);
+        assertEquals("z", list4.getItem(1, 2, 3, 4));
+        assertEquals("z", list4.getItem(new int[]{1, 2, 3, 4}));
+        assertNull(list4.getItem(1, 2, 3));
+        assertFalse(list4.hasItem(1, 2, 3));
+    }
+}
@@ -0,0 +1,146 @@
+package org.jlab.utils.groups;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the primitive getters of IndexedTable, which read the columnar
+ * copy of the table, with the values of the entries.
+ */
+public class IndexedTableTest {
+
+    private static final String FORMAT = "mean/D:sigma/D:status/I";
+
+    private static void assertSameAsEntries(IndexedTable table){
+        int mean   = table.getColumnIndex("mean");
+        int sigma  = table.getColumnIndex("sigma");
+        int status = table.getColumnIndex("status");
+        IndexedList<IndexedTable.IndexedEntry> list = table.getList();
+        assertEquals(list.size(), table.getRowCount());
+        for(int i = 0; i < list.size(); i++){
+            int a = list.getIndexAt(i, 0), b = list.getIndexAt(i, 1), c = list.getIndexAt(i, 2);
+            IndexedTable.IndexedEntry entry = list.getItemAt(i);
+            assertEquals(entry.getValue(0).doubleValue(), table.getDoubleValue("mean", a, b, c), 0);
+            assertEquals(entry.getValue(1).doubleValue(), table.getDoubleValue("sigma", a, b, c), 0);
+            assertEquals(entry.getValue(2).intValue(), table.getIntValue("status", a, b, c));
+            assertEquals(entry.getValue(1).intValue(), table.getIntValue("sigma", a, b, c));
+
+            assertEquals(table.getDoubleValue("mean", a, b, c), table.getDoubleValue(mean, a, b, c), 0);
+            assertEquals(table.getDoubleValue("sigma", a, b, c), table.getDoubleValue(sigma, a, b, c), 0);
+            assertEquals(table.getIntValue("status", a, b, c), table.getIntValue(status, a, b, c));
+
+            int row = table.getRowIndex(a, b, c);
+            assertTrue(row>=0);
+            assertEquals(table.getDoubleValue("mean", a, b, c), table.getDoubleValueAt(mean, row), 0);
+            assertEquals(table.getIntValue("status", a, b, c), table.getIntValueAt(status, row));
+        }
+    }
+
+    private static IndexedTable createTable(int nrows, long seed){
+        Random rand = new Random(seed);
+        IndexedTable table = new IndexedTable(3, FORMAT);
+        for(int i = 0; i < nrows; i++){
+            table.addEntryFromString(new String[]{
+                String.valueOf(1 + i%6), String.valueOf(1 + (i/6)%36), String.valueOf(1 + i/216),
+                String.valueOf(rand.nextGaussian()*100), String.valueOf(rand.nextDouble()*10),
+                String.valueOf(rand.nextInt(5))
+            });
+        }
+        return table;
+    }
+
+    @Test
+    public void testAddEntryFromString() {
+        IndexedTable table = createTable(1000, 11);
+        assertSameAsEntries(table);
+        // entries added after the first read
+        for(int i = 1000; i < 1100; i++){
+            table.addEntryFromString(new String[]{
+                String.valueOf(1 + i%6), String.valueOf(1 + (i/6)%36), String.valueOf(1 + i/216),
+                String.valueOf(i*0.5), String.valueOf(i*0.25), String.valueOf(i%7)
+            });
+            assertEquals(i*0.5, table.getDoubleValue("mean", 1 + i%6, 1 + (i/6)%36, 1 + i/216), 0);
+        }
+        assertSameAsEntries(table);
+        // a replaced entry
+        table.addEntryFromString(new String[]{"1", "1", "1", "7.5", "2.5", "3"});
+        assertEquals(7.5, table.getDoubleValue("mean", 1, 1, 1), 0);
+        assertEquals(3, table.getIntValue("status", 1, 1, 1));
+        assertSameAsEntries(table);
+    }
+
+    @Test
+    public void testAddAndSet() {
+        IndexedTable table = new IndexedTable(3, FORMAT);
+        Random rand = new Random(11);
+        for(int i = 0; i < 2000; i++){
+            int a = 1 + rand.nextInt(6), b = 1 + rand.nextInt(36), c = 1 + rand.nextInt(112);
+            if(!table.hasEntry(a, b, c)) table.addEntry(a, b, c);
+            table.setDoubleValue(rand.nextDouble(), "mean", a, b, c);
+            table.setDoubleValue(rand.nextDouble()*10, "sigma", a, b, c);
+            table.setIntValue(rand.nextInt(5), "status", a, b, c);
+            // unknown column and entry are ignored
+            table.setIntValue(1, "unknown", a, b, c);
+            table.setIntValue(1, "status", 7, 0, 0);
+            if(i%100==0) assertSameAsEntries(table);
+        }
+        assertSameAsEntries(table);
+        assertEquals(0, table.getIntValue("status", 7, 0, 0));
+        assertEquals(0, table.getDoubleValue("unknown", 1, 1, 1), 0);
+        assertEquals(0, table.getIntValue(table.getColumnIndex("status"), 7, 0, 0));
+        assertEquals(-1, table.getRowIndex(7, 0, 0));
+        assertEquals(-1, table.getRowIndex(1, 1, 1, 1));
+        assertEquals(-1, table.getColumnIndex("unknown"));
+    }
+
+    @Test
+    public void testSetThroughList() {
+        IndexedTable table = createTable(500, 11);
+        assertSameAsEntries(table);
+        IndexedList<IndexedTable.IndexedEntry> list = table.getList();
+        list.getItem(2, 1, 1).setValue(0, 12.5);
+        assertEquals(12.5, table.getDoubleValue("mean", 2, 1, 1), 0);
+        list.getItem(3, 1, 1).setValue(2, 4);
+        assertEquals(4, table.getIntValue(table.getColumnIndex("status"), 3, 1, 1));
+        list.getItemAt(10).setSize(3);
+        assertSameAsEntries(table);
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final IndexedTable table = createTable(5000, 11);
+        final int status = table.getColumnIndex("status");
+        final IndexedList<IndexedTable.IndexedEntry> list = table.getList();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            for(int pass = 0; pass < 20; pass++){
+                // the next reads build the columnar copy again, in several threads
+                table.invalidate();
+                List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+                for(int t = 0; t < 4; t++){
+                    results.add(pool.submit(new Callable<Integer>(){
+                        @Override
+                        public Integer call(){
+                            int errors = 0;
+                            for(int i = 0; i < list.size(); i++){
+                                int a = list.getIndexAt(i, 0), b = list.getIndexAt(i, 1), c = list.getIndexAt(i, 2);
+                                if(table.getIntValue(status, a, b, c)!=list.getItemAt(i).getValue(2).intValue()) errors++;
+                            }
+                            return errors;
+                        }
+                    }));
+                }
+                for(Future<Integer> result : results) assertEquals(0, (int) result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -38,6 +38,15 @@ public abstract class FieldProbe implements IField {
 	 */
 	protected GridCoordinate q3Coordinate;
 
+	// work space for single point evaluations, probes are used by one thread
+	private final float _work[] = new float[3];
+
+	// work space for the seven points of the gradient
+	private final float _gradX[] = new float[7];
+	private final float _gradY[] = new float[7];
+	private final float _gradZ[] = new float[7];
+	private final float _gradB[] = new float[7];
+
 	
 	/**
 	 * Create a probe, which is a thread safe way to use the field
@@ -86,9 +95,95 @@ public abstract class FieldProbe implements IField {
 	 */
 	@Override
 	public float fieldMagnitude(float x, float y, float z) {
-		float result[] = new float[3];
-		field(x, y, z, result);
-		return FastMath.vectorLength(result);
+		field(x, y, z, _work);
+		return FastMath.vectorLength(_work);
+	}
+
+	/**
+	 * Obtain the magnetic field at a set of locations expressed in Cartesian
+	 * coordinates. The locations and the field components are given as
+	 * separate arrays (structure of arrays), the field is in kiloGauss. Consecutive
+	 * points close to each other reuse the cell cached by the probe, so it
+	 * pays to order the points along a path.
+	 * 
+	 * @param count
+	 *            the number of points to evaluate
+	 * @param x
+	 *            the x coordinates in cm
+	 * @param y
+	 *            the y coordinates in cm
+	 * @param z
+	 *            the z coordinates in cm
+	 * @param bx
+	 *            on return, the x components of the field
+	 * @param by
+	 *            on return, the y components of the field
+	 * @param bz
+	 *            on return, the z components of the field
+	 */
+	public void field(int count, float x[], float y[], float z[], float bx[], float by[], float bz[]) {
+		float result[] = _work;
+		for (int i = 0; i < count; i++) {
+			field(x[i], y[i], z[i], result);
+			bx[i] = result[0];
+			by[i] = result[1];
+			bz[i] = result[2];
+		}
+	}
+
+	/**
+	 * Obtain the magnetic field at a set of locations expressed in Cartesian
+	 * coordinates in the sector (not lab or global) system. See
+	 * {@link #field(int, float[], float[], float[], float[], float[], float[])}.
+	 * 
+	 * @param sector
+	 *            the sector [1..6]
+	 * @param count
+	 *            the number of points to evaluate
+	 * @param x
+	 *            the x sector coordinates in cm
+	 * @param y
+	 *            the y sector coordinates in cm
+	 * @param z
+	 *            the z sector coordinates in cm
+	 * @param bx
+	 *            on return, the x components of the field
+	 * @param by
+	 *            on return, the y components of the field
+	 * @param bz
+	 *            on return, the z components of the field
+	 */
+	public void field(int sector, int count, float x[], float y[], float z[], float bx[], float by[], float bz[]) {
+		float result[] = _work;
+		for (int i = 0; i < count; i++) {
+			field(sector, x[i], y[i], z[i], result);
+			bx[i] = result[0];
+			by[i] = result[1];
+			bz[i] = result[2];
+		}
+	}
+
+	/**
+	 * Get the field magnitude in kiloGauss at a set of locations expressed
+	 * in Cartesian coordinates.
+	 * 
+	 * @param count
+	 *            the number of points to evaluate
+	 * @param x
+	 *            the x coordinates in cm
+	 * @param y
+	 *            the y coordinates in cm
+	 * @param z
+	 *            the z coordinates in cm
+	 * @param b
+	 *            on return, the magnitude of the field in kiloGauss
+	 */
+	public void fieldMagnitude(int count, float x[], float y[], float z[], float b[]) {
+		float result[] = _work;
+		for (int i = 0; i < count; i++) {
+			field(x[i], y[i], z[i], result);
+			b[i] = FastMath.vectorLength(result);
+		}
 	}
 	
 	
@@ -188,21 +283,31 @@ public abstract class FieldProbe implements IField {
 		float del = 1f; //cm
 		float del2 = 2*del;
 		
-		float baseVal = fieldMagnitude(x, y, z);
-		float bv3 = -3*baseVal;
+		float px[] = _gradX;
+		float py[] = _gradY;
+		float pz[] = _gradZ;
+		float b[] = _gradB;
+		
+		//base point, then two steps along each axis
+		for (int i = 0; i < 7; i++) {
+			px[i] = x;
+			py[i] = y;
+			pz[i] = z;
+		}
+		px[1] = x+del;
+		px[2] = x+del2;
+		py[3] = y+del;
+		py[4] = y+del2;
+		pz[5] = z+del;
+		pz[6] = z+del2;
 		
-		float bx0 = fieldMagnitude(x+del, y, z);
-		float bx1 = fieldMagnitude(x+del2, y, z);
+		fieldMagnitude(7, px, py, pz, b);
 		
-//		System.err.println(" " + baseVal + "  " + bx0 + "  " + bx1);
-		float by0 = fieldMagnitude(x, y+del, z);
-		float by1 = fieldMagnitude(x, y+del2, z);
-		float bz0 = fieldMagnitude(x, y, z+del);
-		float bz1 = fieldMagnitude(x, y, z+del2);
+		float bv3 = -3*b[0];
 		
-		result[0] = (bv3 + 4*bx0 - bx1)/del2;
-		result[1] = (bv3 + 4*by0 - by1)/del2;
-		result[2] = (bv3 + 4*bz0 - bz1)/del2;
+		result[0] = (bv3 + 4*b[1] - b[2])/del2;
+		result[1] = (bv3 + 4*b[3] - b[4])/del2;
+		result[2] = (bv3 + 4*b[5] - b[6])/del2;
     }
 	
 	/**
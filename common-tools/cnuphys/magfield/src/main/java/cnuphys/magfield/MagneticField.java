@@ -8,6 +8,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * For magnetic fields stored in a specific format.
@@ -126,6 +128,13 @@ public abstract class MagneticField implements IMagField {
 	// determine whether we use interpolation or nearest neighbor
 	protected static boolean _interpolate = true;		
 	
+	// if true, the field values are memory mapped (read only) from the binary
+	// file instead of being copied to the heap, so that several processes on
+	// the same node share the same pages. Set by the property or environment
+	// variable CLAS12_FIELDMAP_MMAP, or by setMemoryMapped
+	protected static boolean _memoryMapped = Boolean.parseBoolean(
+			System.getProperty("CLAS12_FIELDMAP_MMAP", System.getenv("CLAS12_FIELDMAP_MMAP")));
+	
 	private static final double TINY = 1.0e-5;
 	/**
 	 * Scale the field.
@@ -425,7 +434,8 @@ public abstract class MagneticField implements IMagField {
 		// N23 = -1;
 
 		try {
-			DataInputStream dos = new DataInputStream(new FileInputStream(binaryFile));
+			FileInputStream fis = new FileInputStream(binaryFile);
+			DataInputStream dos = new DataInputStream(fis);
 
 			boolean swap = false;
 			int magicnum = dos.readInt(); // magic number
@@ -475,14 +485,26 @@ public abstract class MagneticField implements IMagField {
 			// now get the field values
 			int size = 3 * 4 * numFieldPoints;
 
-			byte bytes[] = new byte[size];
+			FileChannel channel = fis.getChannel();
+			long offset = channel.position();
 
-			// read the bytes as a block
-			dos.read(bytes);
-//			ByteBuffer byteBuffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
-//			field = byteBuffer.asFloatBuffer().asReadOnlyBuffer();
-			ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-			field = byteBuffer.asFloatBuffer();
+			if (_memoryMapped && (channel.size() >= offset + size)) {
+				// map the values read only, the mapping stays valid
+				// after the file is closed
+				MappedByteBuffer byteBuffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+				field = byteBuffer.asFloatBuffer();
+				System.out.println("Memory mapped field values from " + binaryFile.getPath());
+			}
+			else {
+				byte bytes[] = new byte[size];
+
+				// read the bytes as a block
+				dos.readFully(bytes);
+//				ByteBuffer byteBuffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+//				field = byteBuffer.asFloatBuffer().asReadOnlyBuffer();
+				ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+				field = byteBuffer.asFloatBuffer();
+			}
 
 			computeMaxField();
 
@@ -493,6 +515,20 @@ public abstract class MagneticField implements IMagField {
 		}
 	}
 
+	/**
+	 * Copy the field values to the heap if they are memory mapped,
+	 * needed before the values are modified.
+	 */
+	protected final void makeFieldWritable() {
+		if ((field != null) && field.isReadOnly()) {
+			FloatBuffer copy = FloatBuffer.allocate(field.limit());
+			copy.put(field.duplicate());
+			copy.rewind();
+			field = copy;
+			System.out.println("Copied memory mapped field values to heap for " + getBaseFileName());
+		}
+	}
+
 	/**
 	 * Get the magnitude for a given index.
 	 * 
@@ -655,6 +691,28 @@ public abstract class MagneticField implements IMagField {
 		System.out.println("Interpolating fields: " + _interpolate);
 	}
 
+	/**
+	 * Check whether field maps read from now on are memory mapped
+	 * 
+	 * @return <code>true</code> if the field values are memory mapped
+	 */
+	public static final boolean isMemoryMapped() {
+		return _memoryMapped;
+	}
+
+	/**
+	 * Set whether the field values of maps read from now on are memory
+	 * mapped (read only) rather than copied to the heap. Interpolated
+	 * values are the same either way.
+	 * 
+	 * @param memoryMapped
+	 *            the memory mapped flag to set
+	 */
+	public static final void setMemoryMapped(boolean memoryMapped) {
+		_memoryMapped = memoryMapped;
+		System.out.println("Memory mapped fields: " + _memoryMapped);
+	}
+
 
 	/**
 	 * @return the phiCoordinate
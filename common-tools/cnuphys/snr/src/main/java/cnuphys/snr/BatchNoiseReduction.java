@@ -0,0 +1,494 @@
+package cnuphys.snr;
+
+import java.util.Arrays;
+
+/**
+ * Noise reduction for many chambers (superlayers) at once. This is the same
+ * algorithm as in NoiseReductionParameters, but the data of all the chambers
+ * are laid out in parallel "lanes" of two longs (128 bits, enough for the 112
+ * wires), one array per layer. Each step of the algorithm (bleeds, ands, ors,
+ * missing layer bookkeeping) is then a loop over all the lanes instead of a
+ * loop over ExtendedWord objects, and bleeds are done by doubling the shift
+ * instead of one bit at a time.
+ * <p>
+ * All the bits of the two words are kept, as in ExtendedWord, so that the
+ * results are identical to the ones of NoiseReductionParameters.
+ * <p>
+ * Not thread safe: use one object per thread.
+ */
+public class BatchNoiseReduction {
+
+	// track leaning directions
+	public static final int LEFT_LEAN = NoiseReductionParameters.LEFT_LEAN;
+	public static final int RIGHT_LEAN = NoiseReductionParameters.RIGHT_LEAN;
+
+	/** the maximum number of wires per layer */
+	public static final int MAX_WIRE = 128;
+
+	private static final long ALLBITSON = 0xFFFFFFFFFFFFFFFFL;
+
+	// number of lanes (chambers) and layers per chamber
+	private final int _numLane;
+	private final int _numLayer;
+
+	// configuration, indexed [layer][lane]
+	private final int _leftShifts[][];
+	private final int _rightShifts[][];
+
+	// allowed missing layers per lane, and the max over the lanes
+	private final int _allowedMissing[];
+	private int _maxMissing;
+
+	// the data (cleaned by the analysis) and a copy of the raw data, [layer][lane]
+	private final long _packedLo[][];
+	private final long _packedHi[][];
+	private final long _rawLo[][];
+	private final long _rawHi[][];
+
+	// segments, [lane]
+	private final long _leftLo[];
+	private final long _leftHi[];
+	private final long _rightLo[];
+	private final long _rightHi[];
+
+	// workspace
+	private final long _copyLo[][];
+	private final long _copyHi[][];
+	private long _missLo[][];
+	private long _missHi[][];
+
+	// flag that specifies whether the data have been analyzed
+	private boolean _analyzed = false;
+
+	/**
+	 * Create the noise reduction for a number of chambers with the same
+	 * number of layers. The shifts and allowed missing layers are set with
+	 * configure.
+	 *
+	 * @param numLane the number of chambers (superlayers)
+	 * @param numLayer the number of layers per chamber
+	 */
+	public BatchNoiseReduction(int numLane, int numLayer) {
+		_numLane = numLane;
+		_numLayer = numLayer;
+		_leftShifts = new int[numLayer][numLane];
+		_rightShifts = new int[numLayer][numLane];
+		_allowedMissing = new int[numLane];
+		_packedLo = new long[numLayer][numLane];
+		_packedHi = new long[numLayer][numLane];
+		_rawLo = new long[numLayer][numLane];
+		_rawHi = new long[numLayer][numLane];
+		_copyLo = new long[numLayer][numLane];
+		_copyHi = new long[numLayer][numLane];
+		_leftLo = new long[numLane];
+		_leftHi = new long[numLane];
+		_rightLo = new long[numLane];
+		_rightHi = new long[numLane];
+		_missLo = new long[0][numLane];
+		_missHi = new long[0][numLane];
+	}
+
+	/**
+	 * Set the parameters of a lane from a NoiseReductionParameters
+	 *
+	 * @param lane the 0-based lane
+	 * @param params the parameters. Must have the same number of layers as
+	 *            this object, and at most MAX_WIRE wires.
+	 */
+	public void configure(int lane, NoiseReductionParameters params) {
+		if ((params.getNumLayer() != _numLayer) || (params.getNumWire() > MAX_WIRE)) {
+			throw new IllegalArgumentException("parameters with " + params.getNumLayer() + " layers and "
+					+ params.getNumWire() + " wires do not fit in " + _numLayer + " layers of " + MAX_WIRE + " wires");
+		}
+		configure(lane, params.getAllowedMissingLayers(), params.getLeftLayerShifts(),
+				params.getRightLayerShifts());
+	}
+
+	/**
+	 * Set the parameters of a lane
+	 *
+	 * @param lane the 0-based lane
+	 * @param allowedMissingLayers the number of missing layers permitted.
+	 * @param leftLayerShifts the shifts for left leaning tracks, one per layer
+	 * @param rightLayerShifts the shifts for right leaning tracks, one per
+	 *            layer
+	 */
+	public void configure(int lane, int allowedMissingLayers, int[] leftLayerShifts, int[] rightLayerShifts) {
+		for (int layer = 0; layer < _numLayer; layer++) {
+			_leftShifts[layer][lane] = leftLayerShifts[layer];
+			_rightShifts[layer][lane] = rightLayerShifts[layer];
+		}
+		_allowedMissing[lane] = allowedMissingLayers;
+
+		int max = 0;
+		for (int missing : _allowedMissing) {
+			max = Math.max(max, missing);
+		}
+		if (max != _maxMissing) {
+			_maxMissing = max;
+			_missLo = new long[max][_numLane];
+			_missHi = new long[max][_numLane];
+		}
+	}
+
+	/**
+	 * @return the number of lanes (chambers)
+	 */
+	public int getNumLane() {
+		return _numLane;
+	}
+
+	/**
+	 * @return the number of layers per chamber
+	 */
+	public int getNumLayer() {
+		return _numLayer;
+	}
+
+	/**
+	 * Clear all data
+	 */
+	public void clear() {
+		for (int layer = 0; layer < _numLayer; layer++) {
+			Arrays.fill(_packedLo[layer], 0L);
+			Arrays.fill(_packedHi[layer], 0L);
+		}
+		Arrays.fill(_leftLo, 0L);
+		Arrays.fill(_leftHi, 0L);
+		Arrays.fill(_rightLo, 0L);
+		Arrays.fill(_rightHi, 0L);
+		_analyzed = false;
+	}
+
+	/**
+	 * pack a hit
+	 *
+	 * @param lane the 0-based lane
+	 * @param layer the 0-based layer
+	 * @param wire the 0-based wire
+	 */
+	public void packHit(int lane, int layer, int wire) {
+		if (wire < 64) {
+			_packedLo[layer][lane] |= (1L << wire);
+		}
+		else {
+			_packedHi[layer][lane] |= (1L << (wire - 64));
+		}
+	}
+
+	/**
+	 * Set the packed data of a layer of a lane. The analyzed flag is set to
+	 * false.
+	 *
+	 * @param lane the 0-based lane
+	 * @param layer the 0-based layer
+	 * @param lo the bits of wires 0..63
+	 * @param hi the bits of wires 64..127
+	 */
+	public void setPackedData(int lane, int layer, long lo, long hi) {
+		_packedLo[layer][lane] = lo;
+		_packedHi[layer][lane] = hi;
+		_analyzed = false;
+	}
+
+	/**
+	 * @param lane the 0-based lane
+	 * @param layer the 0-based layer
+	 * @param hi if true the bits of wires 64..127, else of wires 0..63
+	 * @return the packed data of a layer of a lane, raw or with the noise
+	 *         removed if the analysis was done
+	 */
+	public long getPackedData(int lane, int layer, boolean hi) {
+		return hi ? _packedHi[layer][lane] : _packedLo[layer][lane];
+	}
+
+	/**
+	 * @param lane the 0-based lane
+	 * @param direction LEFT_LEAN or RIGHT_LEAN
+	 * @param hi if true the bits of wires 64..127, else of wires 0..63
+	 * @return the segment starting wire positions of a lane. Meaningful only
+	 *         if the analysis has been performed.
+	 */
+	public long getSegments(int lane, int direction, boolean hi) {
+		if (direction == LEFT_LEAN) {
+			return hi ? _leftHi[lane] : _leftLo[lane];
+		}
+		return hi ? _rightHi[lane] : _rightLo[lane];
+	}
+
+	/**
+	 * @param lane the 0-based lane
+	 * @param direction LEFT_LEAN or RIGHT_LEAN
+	 * @return the number of segments of a lane
+	 */
+	public int segmentCount(int lane, int direction) {
+		if (direction == LEFT_LEAN) {
+			return Long.bitCount(_leftLo[lane]) + Long.bitCount(_leftHi[lane]);
+		}
+		return Long.bitCount(_rightLo[lane]) + Long.bitCount(_rightHi[lane]);
+	}
+
+	/**
+	 * @return the analyzed flag
+	 */
+	public boolean isAnalyzed() {
+		return _analyzed;
+	}
+
+	/**
+	 * Checks whether a given wire has a noise hit. Only sensible if analysis is
+	 * complete.
+	 *
+	 * @param lane the 0-based lane
+	 * @param layer the 0-based layer
+	 * @param wire the 0-base wire
+	 * @return true if this was a noise hit--i.e., it is in the raw data but not
+	 *         the analyzed data
+	 */
+	public boolean isNoiseHit(int lane, int layer, int wire) {
+		if (!_analyzed) {
+			return false;
+		}
+		long raw;
+		long packed;
+		if (wire < 64) {
+			raw = _rawLo[layer][lane];
+			packed = _packedLo[layer][lane];
+		}
+		else {
+			raw = _rawHi[layer][lane];
+			packed = _packedHi[layer][lane];
+			wire -= 64;
+		}
+		return (((raw & ~packed) >>> wire) & 1L) != 0;
+	}
+
+	/**
+	 * Remove the noise in all the lanes.
+	 */
+	public void removeNoise() {
+		for (int layer = 0; layer < _numLayer; layer++) {
+			System.arraycopy(_packedLo[layer], 0, _rawLo[layer], 0, _numLane);
+			System.arraycopy(_packedHi[layer], 0, _rawHi[layer], 0, _numLane);
+		}
+
+		findPossibleSegments(LEFT_LEAN);
+		findPossibleSegments(RIGHT_LEAN);
+
+		cleanFromSegments();
+		_analyzed = true;
+	}
+
+	/**
+	 * Second pass: reduce the segments of all the lanes by and-ing them with
+	 * the given words, then clean the data again.
+	 *
+	 * @param direction LEFT_LEAN or RIGHT_LEAN
+	 * @param lo the words to keep, wires 0..63, [lane]
+	 * @param hi the words to keep, wires 64..127, [lane]
+	 */
+	public void secondPass(int direction, long lo[], long hi[]) {
+		andSegments(direction, lo, hi);
+		cleanFromSegments();
+	}
+
+	/**
+	 * Reduce the segments of all the lanes by and-ing them with the given
+	 * words, without cleaning. cleanFromSegments must be called afterwards.
+	 *
+	 * @param direction LEFT_LEAN or RIGHT_LEAN
+	 * @param lo the words to keep, wires 0..63, [lane]
+	 * @param hi the words to keep, wires 64..127, [lane]
+	 */
+	public void andSegments(int direction, long lo[], long hi[]) {
+		long segLo[] = (direction == LEFT_LEAN) ? _leftLo : _rightLo;
+		long segHi[] = (direction == LEFT_LEAN) ? _leftHi : _rightHi;
+		for (int lane = 0; lane < _numLane; lane++) {
+			segLo[lane] &= lo[lane];
+			segHi[lane] &= hi[lane];
+		}
+	}
+
+	/**
+	 * Remove from the data the hits that are not in the buckets of the left
+	 * and right segments.
+	 */
+	public void cleanFromSegments() {
+		// layer 0 never has a layer shift
+		long lo0[] = _packedLo[0];
+		long hi0[] = _packedHi[0];
+		for (int lane = 0; lane < _numLane; lane++) {
+			lo0[lane] &= (_leftLo[lane] | _rightLo[lane]);
+			hi0[lane] &= (_leftHi[lane] | _rightHi[lane]);
+		}
+
+		for (int layer = 1; layer < _numLayer; layer++) {
+			long lo[] = _packedLo[layer];
+			long hi[] = _packedHi[layer];
+			int left[] = _leftShifts[layer];
+			int right[] = _rightShifts[layer];
+			for (int lane = 0; lane < _numLane; lane++) {
+				// left segments bled left, right segments bled right
+				long lLo = _leftLo[lane];
+				long lHi = _leftHi[lane];
+				int n = left[lane];
+				int s = 1;
+				while (2 * s <= n + 1) {
+					lHi |= shlHi(lLo, lHi, s);
+					lLo |= shlLo(lLo, s);
+					s *= 2;
+				}
+				if (s < n + 1) {
+					int k = n + 1 - s;
+					lHi |= shlHi(lLo, lHi, k);
+					lLo |= shlLo(lLo, k);
+				}
+
+				long rLo = _rightLo[lane];
+				long rHi = _rightHi[lane];
+				n = right[lane];
+				s = 1;
+				while (2 * s <= n + 1) {
+					rLo |= shrLo(rLo, rHi, s);
+					rHi |= shrHi(rHi, s);
+					s *= 2;
+				}
+				if (s < n + 1) {
+					int k = n + 1 - s;
+					rLo |= shrLo(rLo, rHi, k);
+					rHi |= shrHi(rHi, k);
+				}
+
+				lo[lane] &= (lLo | rLo);
+				hi[lane] &= (lHi | rHi);
+			}
+		}
+	}
+
+	// find the left or right leaning segments of all the lanes
+	private void findPossibleSegments(int direction) {
+		boolean left = (direction == LEFT_LEAN);
+		int shifts[][] = left ? _leftShifts : _rightShifts;
+
+		// copy the data and bleed it: right for left leaners, left for right
+		// leaners. Layer 0 is not used, the segments start from its data.
+		for (int layer = 1; layer < _numLayer; layer++) {
+			if (left) {
+				bleedRight(_packedLo[layer], _packedHi[layer], shifts[layer], _copyLo[layer], _copyHi[layer]);
+			}
+			else {
+				bleedLeft(_packedLo[layer], _packedHi[layer], shifts[layer], _copyLo[layer], _copyHi[layer]);
+			}
+		}
+
+		// the "reservoir" of misses is full for the missing layers allowed
+		// in each lane, and empty beyond
+		for (int j = 0; j < _maxMissing; j++) {
+			long missLo[] = _missLo[j];
+			long missHi[] = _missHi[j];
+			for (int lane = 0; lane < _numLane; lane++) {
+				long fill = (j < _allowedMissing[lane]) ? ALLBITSON : 0L;
+				missLo[lane] = fill;
+				missHi[lane] = fill;
+			}
+		}
+
+		long segLo[] = left ? _leftLo : _rightLo;
+		long segHi[] = left ? _leftHi : _rightHi;
+		System.arraycopy(_packedLo[0], 0, segLo, 0, _numLane);
+		System.arraycopy(_packedHi[0], 0, segHi, 0, _numLane);
+
+		for (int layer = 0; layer < _numLayer; layer++) {
+			long copyLo[] = _copyLo[layer];
+			long copyHi[] = _copyHi[layer];
+
+			// no need to check more misses than the layers already seen;
+			// for a lane the misses beyond its allowed number are empty
+			// and leave the segments unchanged
+			int numCheck = Math.min(layer + 1, _maxMissing);
+
+			for (int lane = 0; lane < _numLane; lane++) {
+				long lo = segLo[lane];
+				long hi = segHi[lane];
+				if (layer > 0) {
+					lo &= copyLo[lane];
+					hi &= copyHi[lane];
+				}
+				for (int j = 0; j < numCheck; j++) {
+					long missLo = _missLo[j][lane];
+					long missHi = _missHi[j][lane];
+					// remove used up misses, then use whatever was left
+					_missLo[j][lane] = missLo & lo;
+					_missHi[j][lane] = missHi & hi;
+					lo |= missLo;
+					hi |= missHi;
+				}
+				segLo[lane] = lo;
+				segHi[lane] = hi;
+			}
+		}
+	}
+
+	// bleed (or of the shifts 0..n) towards the lower wires
+	private void bleedRight(long srcLo[], long srcHi[], int shifts[], long dstLo[], long dstHi[]) {
+		for (int lane = 0; lane < _numLane; lane++) {
+			long lo = srcLo[lane];
+			long hi = srcHi[lane];
+			int n = shifts[lane];
+			int s = 1;
+			while (2 * s <= n + 1) {
+				lo |= shrLo(lo, hi, s);
+				hi |= shrHi(hi, s);
+				s *= 2;
+			}
+			if (s < n + 1) {
+				int k = n + 1 - s;
+				lo |= shrLo(lo, hi, k);
+				hi |= shrHi(hi, k);
+			}
+			dstLo[lane] = lo;
+			dstHi[lane] = hi;
+		}
+	}
+
+	// bleed (or of the shifts 0..n) towards the higher wires
+	private void bleedLeft(long srcLo[], long srcHi[], int shifts[], long dstLo[], long dstHi[]) {
+		for (int lane = 0; lane < _numLane; lane++) {
+			long lo = srcLo[lane];
+			long hi = srcHi[lane];
+			int n = shifts[lane];
+			int s = 1;
+			while (2 * s <= n + 1) {
+				hi |= shlHi(lo, hi, s);
+				lo |= shlLo(lo, s);
+				s *= 2;
+			}
+			if (s < n + 1) {
+				int k = n + 1 - s;
+				hi |= shlHi(lo, hi, k);
+				lo |= shlLo(lo, k);
+			}
+			dstLo[lane] = lo;
+			dstHi[lane] = hi;
+		}
+	}
+
+	// 128 bit shifts by 0 < n < 128, split in low and high words
+
+	private static long shrLo(long lo, long hi, int n) {
+		return (n < 64) ? ((lo >>> n) | (hi << (64 - n))) : (hi >>> (n - 64));
+	}
+
+	private static long shrHi(long hi, int n) {
+		return (n < 64) ? (hi >>> n) : 0L;
+	}
+
+	private static long shlLo(long lo, int n) {
+		return (n < 64) ? (lo << n) : 0L;
+	}
+
+	private static long shlHi(long lo, long hi, int n) {
+		return (n < 64) ? ((hi << n) | (lo >>> (64 - n))) : (lo << (n - 64));
+	}
+
+}
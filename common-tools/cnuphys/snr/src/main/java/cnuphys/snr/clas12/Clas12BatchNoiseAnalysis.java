@@ -0,0 +1,189 @@
+package cnuphys.snr.clas12;
+
+import cnuphys.snr.BatchNoiseReduction;
+import cnuphys.snr.NoiseReductionParameters;
+
+/**
+ * Clas12 noise analysis done for all the sectors and superlayers at once
+ * with a BatchNoiseReduction. The 36 superlayers are the lanes of one batch
+ * and the 24 composite chambers (used when looking for tracks) the lanes of
+ * another one. The results are identical to the ones of Clas12NoiseAnalysis.
+ * <p>
+ * The parameters of the base class only hold the configuration: the shifts
+ * and allowed missing layers are copied to the batches when the object is
+ * created or when setParameters/setCompositeParameters are called. The hit
+ * words are in the batches. Not thread safe: use one object per thread.
+ */
+public class Clas12BatchNoiseAnalysis extends Clas12NoiseAnalysis {
+
+	private static final int NUM_SECTOR = 6;
+	private static final int NUM_SUPERLAYER = 6;
+	private static final int NUM_LAYER = 6;
+	private static final int NUM_COMPOSITE = 4;
+	private static final int NUM_COMPOSITE_LAYER = 3;
+
+	private static final int LEFT = NoiseReductionParameters.LEFT_LEAN; // 0
+	private static final int RIGHT = NoiseReductionParameters.RIGHT_LEAN; // 1
+
+	// composite chambers, as in Clas12NoiseAnalysis
+	private static final int LEFT_PLUS = 0;
+	private static final int RIGHT_PLUS = 1;
+	private static final int LEFT_MINUS = 2;
+	private static final int RIGHT_MINUS = 3;
+
+	// lane = sector*NUM_SUPERLAYER + superlayer
+	private final BatchNoiseReduction _superlayers = new BatchNoiseReduction(NUM_SECTOR * NUM_SUPERLAYER,
+			NUM_LAYER);
+
+	// lane = sector*NUM_COMPOSITE + composite
+	private final BatchNoiseReduction _composites = new BatchNoiseReduction(NUM_SECTOR * NUM_COMPOSITE,
+			NUM_COMPOSITE_LAYER);
+
+	// composite data used for the second pass, per superlayer lane
+	private final long _leftLo[] = new long[NUM_SECTOR * NUM_SUPERLAYER];
+	private final long _leftHi[] = new long[NUM_SECTOR * NUM_SUPERLAYER];
+	private final long _rightLo[] = new long[NUM_SECTOR * NUM_SUPERLAYER];
+	private final long _rightHi[] = new long[NUM_SECTOR * NUM_SUPERLAYER];
+
+	public Clas12BatchNoiseAnalysis() {
+		for (int sect = 0; sect < NUM_SECTOR; sect++) {
+			for (int supl = 0; supl < NUM_SUPERLAYER; supl++) {
+				_superlayers.configure(sect * NUM_SUPERLAYER + supl, getParameters(sect, supl));
+			}
+			for (int lrpm = 0; lrpm < NUM_COMPOSITE; lrpm++) {
+				_composites.configure(sect * NUM_COMPOSITE + lrpm, getCompositeParameters(sect, lrpm));
+			}
+		}
+	}
+
+	@Override
+	public void setParameters(int sector, int supl, NoiseReductionParameters params) {
+		super.setParameters(sector, supl, params);
+		_superlayers.configure(sector * NUM_SUPERLAYER + supl, params);
+	}
+
+	@Override
+	public void setCompositeParameters(int sector, int lrpm, NoiseReductionParameters params) {
+		super.setCompositeParameters(sector, lrpm, params);
+		_composites.configure(sector * NUM_COMPOSITE + lrpm, params);
+	}
+
+	/**
+	 * Get the batch holding the superlayers
+	 *
+	 * @return the batch of the superlayers, lane = 0-based sector*6 + 0-based
+	 *         superlayer
+	 */
+	public BatchNoiseReduction getSuperlayers() {
+		return _superlayers;
+	}
+
+	/**
+	 * Clear all the data
+	 */
+	@Override
+	public void clear() {
+		rawHitCount = 0;
+		_superlayers.clear();
+		_composites.clear();
+	}
+
+	/**
+	 * This methods takes the data arrays and generates the results. The input
+	 * arrays contain 1-based indices, just like in the clasio banks
+	 *
+	 * @param sector
+	 *            the 1-based sector array
+	 * @param superlayer
+	 *            the 1-based superlayer array
+	 * @param layer
+	 *            the 1-based layer array
+	 * @param wire
+	 *            the 1-based wire array
+	 * @param results
+	 *            container for the results
+	 */
+	@Override
+	public void findNoise(int sector[], int superlayer[], int layer[], int wire[], Clas12NoiseResult results) {
+		if (sector == null) {
+			rawHitCount = 0;
+			return;
+		}
+
+		rawHitCount = sector.length;
+
+		// pack the data
+		for (int hit = 0; hit < rawHitCount; hit++) {
+			int lane = (sector[hit] - 1) * NUM_SUPERLAYER + superlayer[hit] - 1;
+			_superlayers.packHit(lane, layer[hit] - 1, wire[hit] - 1);
+		}
+
+		// 1st pass, all superlayers at once
+		_superlayers.removeNoise();
+
+		// 2nd pass for composite detector to find track candidates
+		if (NoiseReductionParameters.lookForTracks()) {
+			secondPass();
+		}
+
+		// now stuff the results object;
+		results.noise = new boolean[rawHitCount];
+		for (int hit = 0; hit < rawHitCount; hit++) {
+			int lane = (sector[hit] - 1) * NUM_SUPERLAYER + superlayer[hit] - 1;
+			results.noise[hit] = _superlayers.isNoiseHit(lane, layer[hit] - 1, wire[hit] - 1);
+		}
+	}
+
+	// the segments of the superlayers are the layers of the composite
+	// chambers; the segments not found again in the composite chambers are
+	// removed and the superlayers cleaned with what remains
+	private void secondPass() {
+		for (int sect = 0; sect < NUM_SECTOR; sect++) {
+			for (int supl = 0; supl < NUM_SUPERLAYER; supl++) {
+				int lane = sect * NUM_SUPERLAYER + supl;
+				boolean plus = (supl % 2) == 0;
+				int compositeLayer = supl / 2;
+				int left = sect * NUM_COMPOSITE + (plus ? LEFT_PLUS : LEFT_MINUS);
+				int right = sect * NUM_COMPOSITE + (plus ? RIGHT_PLUS : RIGHT_MINUS);
+				_composites.setPackedData(left, compositeLayer, _superlayers.getSegments(lane, LEFT, false),
+						_superlayers.getSegments(lane, LEFT, true));
+				_composites.setPackedData(right, compositeLayer, _superlayers.getSegments(lane, RIGHT, false),
+						_superlayers.getSegments(lane, RIGHT, true));
+			}
+		}
+
+		_composites.removeNoise();
+
+		for (int sect = 0; sect < NUM_SECTOR; sect++) {
+			int plusSegLeftCount = _composites.segmentCount(sect * NUM_COMPOSITE + LEFT_PLUS, LEFT);
+			int plusSegRightCount = _composites.segmentCount(sect * NUM_COMPOSITE + RIGHT_PLUS, RIGHT);
+			int minusSegLeftCount = _composites.segmentCount(sect * NUM_COMPOSITE + LEFT_MINUS, LEFT);
+			int minusSegRightCount = _composites.segmentCount(sect * NUM_COMPOSITE + RIGHT_MINUS, RIGHT);
+
+			// must have a left seg in plus and minus or a right seg in plus
+			// and minus
+			boolean noRight = (plusSegRightCount == 0) || (minusSegRightCount == 0);
+			boolean noLeft = (plusSegLeftCount == 0) || (minusSegLeftCount == 0);
+
+			for (int supl = 0; supl < NUM_SUPERLAYER; supl++) {
+				int lane = sect * NUM_SUPERLAYER + supl;
+				boolean plus = (supl % 2) == 0;
+				int compositeLayer = supl / 2;
+				int left = sect * NUM_COMPOSITE + (plus ? LEFT_PLUS : LEFT_MINUS);
+				int right = sect * NUM_COMPOSITE + (plus ? RIGHT_PLUS : RIGHT_MINUS);
+
+				_leftLo[lane] = noLeft ? 0L : _composites.getPackedData(left, compositeLayer, false);
+				_leftHi[lane] = noLeft ? 0L : _composites.getPackedData(left, compositeLayer, true);
+				_rightLo[lane] = noRight ? 0L : _composites.getPackedData(right, compositeLayer, false);
+				_rightHi[lane] = noRight ? 0L : _composites.getPackedData(right, compositeLayer, true);
+			}
+		}
+
+		// the segments only shrink, so cleaning once with both reduced sets
+		// gives the same data as cleaning after each of them
+		_superlayers.andSegments(LEFT, _leftLo, _leftHi);
+		_superlayers.andSegments(RIGHT, _rightLo, _rightHi);
+		_superlayers.cleanFromSegments();
+	}
+
+}
@@ -0,0 +1,153 @@
+package cnuphys.snr.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import cnuphys.snr.NoiseReductionParameters;
+import cnuphys.snr.clas12.Clas12BatchNoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseResult;
+
+/**
+ * Compares the batched noise analysis with the one superlayer at a time
+ * analysis on random events (tracks crossing all the superlayers of a
+ * sector plus random noise), with and without the second pass looking for
+ * tracks, and measures the time per event of both.
+ * <p>
+ * Usage: BatchNoiseTest [events] [noise hits per event]
+ */
+public class BatchNoiseTest {
+
+	/** 1-based hit arrays of one event, parallel to a DC::tdc bank */
+	public static class Event {
+		public int sector[];
+		public int superlayer[];
+		public int layer[];
+		public int wire[];
+	}
+
+	/**
+	 * Create a random event
+	 *
+	 * @param rand the random generator
+	 * @param numTrack the number of tracks
+	 * @param numNoise the number of noise hits
+	 * @return the event
+	 */
+	public static Event randomEvent(Random rand, int numTrack, int numNoise) {
+		int hits[][] = new int[4][numTrack * 36 + numNoise];
+		int n = 0;
+		for (int t = 0; t < numTrack; t++) {
+			int sect = 1 + rand.nextInt(6);
+			double wire = 5 + rand.nextInt(100);
+			double slope = rand.nextGaussian() * 0.6;
+			for (int supl = 1; supl <= 6; supl++) {
+				for (int lay = 1; lay <= 6; lay++) {
+					wire += slope;
+					int w = (int) Math.round(wire);
+					// some inefficiency
+					if ((w < 1) || (w > 112) || (rand.nextDouble() < 0.05)) {
+						continue;
+					}
+					hits[0][n] = sect;
+					hits[1][n] = supl;
+					hits[2][n] = lay;
+					hits[3][n] = w;
+					n++;
+				}
+				wire += rand.nextGaussian() * 2;
+			}
+		}
+		for (int i = 0; i < numNoise; i++) {
+			hits[0][n] = 1 + rand.nextInt(6);
+			hits[1][n] = 1 + rand.nextInt(6);
+			hits[2][n] = 1 + rand.nextInt(6);
+			hits[3][n] = 1 + rand.nextInt(112);
+			n++;
+		}
+		Event event = new Event();
+		event.sector = Arrays.copyOf(hits[0], n);
+		event.superlayer = Arrays.copyOf(hits[1], n);
+		event.layer = Arrays.copyOf(hits[2], n);
+		event.wire = Arrays.copyOf(hits[3], n);
+		return event;
+	}
+
+	/**
+	 * Run an analysis on an event
+	 *
+	 * @param analysis the analysis
+	 * @param event the event
+	 * @param results the results
+	 */
+	public static void analyze(Clas12NoiseAnalysis analysis, Event event, Clas12NoiseResult results) {
+		results.clear();
+		analysis.clear();
+		analysis.findNoise(event.sector, event.superlayer, event.layer, event.wire, results);
+	}
+
+	/**
+	 * Compare the two analyses on random events
+	 *
+	 * @param numEvent the number of events
+	 * @param numNoise the number of noise hits per event
+	 * @param seed the random seed
+	 * @return the number of events with different results
+	 */
+	public static int compare(int numEvent, int numNoise, long seed) {
+		Random rand = new Random(seed);
+		Clas12NoiseAnalysis reference = new Clas12NoiseAnalysis();
+		Clas12NoiseAnalysis batch = new Clas12BatchNoiseAnalysis();
+		Clas12NoiseResult refResults = new Clas12NoiseResult();
+		Clas12NoiseResult batchResults = new Clas12NoiseResult();
+
+		int bad = 0;
+		for (int i = 0; i < numEvent; i++) {
+			Event event = randomEvent(rand, 1 + rand.nextInt(6), rand.nextInt(numNoise + 1));
+			analyze(reference, event, refResults);
+			analyze(batch, event, batchResults);
+			if (!Arrays.equals(refResults.noise, batchResults.noise)) {
+				bad++;
+			}
+		}
+		return bad;
+	}
+
+	private static double time(Clas12NoiseAnalysis analysis, Event events[], Clas12NoiseResult results) {
+		long start = System.nanoTime();
+		for (Event event : events) {
+			analyze(analysis, event, results);
+		}
+		return (System.nanoTime() - start) * 1.0e-3 / events.length;
+	}
+
+	public static void main(String arg[]) {
+		int numEvent = (arg.length > 0) ? Integer.parseInt(arg[0]) : 20000;
+		int numNoise = (arg.length > 1) ? Integer.parseInt(arg[1]) : 400;
+
+		boolean lookForTracks = NoiseReductionParameters.lookForTracks();
+		for (boolean tracks : new boolean[] { false, true }) {
+			NoiseReductionParameters.setLookForTracks(tracks);
+			int bad = compare(numEvent, numNoise, 12345L);
+			System.out.println("look for tracks " + tracks + ": " + bad + " of " + numEvent
+					+ " events with different results");
+		}
+
+		NoiseReductionParameters.setLookForTracks(false);
+		Random rand = new Random(54321L);
+		Event events[] = new Event[numEvent];
+		for (int i = 0; i < numEvent; i++) {
+			events[i] = randomEvent(rand, 1 + rand.nextInt(6), numNoise);
+		}
+		Clas12NoiseAnalysis reference = new Clas12NoiseAnalysis();
+		Clas12NoiseAnalysis batch = new Clas12BatchNoiseAnalysis();
+		Clas12NoiseResult results = new Clas12NoiseResult();
+		for (int iter = 0; iter < 5; iter++) {
+			double ref = time(reference, events, results);
+			double bat = time(batch, events, results);
+			System.out.println(String.format("iteration %d : superlayer by superlayer %8.2f us/event,"
+					+ " batched %8.2f us/event, speed-up %5.2f", iter, ref, bat, ref / bat));
+		}
+		NoiseReductionParameters.setLookForTracks(lookForTracks);
+	}
+}
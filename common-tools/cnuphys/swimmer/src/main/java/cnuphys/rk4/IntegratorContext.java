@@ -0,0 +1,102 @@
+package cnuphys.rk4;
+
+/**
+ * The work space of a RungeKutta integration: the state, derivative, error and
+ * stage buffers of the drivers and advancers, allocated once for a given
+ * dimension (e.g. 6 for [x,y,z,vx,vy,vz]) and reused by every step of every
+ * integration done with it. A RungeKutta object owns one context; a context
+ * must never be used by two integrations at the same time.
+ */
+public class IntegratorContext {
+
+	// the dimension of the problem
+	private final int _nDim;
+
+	// driver buffers: current state, trial state, derivatives and error
+	final double yt[];
+	final double yt2[];
+	final double dydt[];
+	final double error[];
+
+	// half step advance: the result of the full step
+	final double yfull[];
+
+	// uniform advance: the stages and the intermediate state
+	final double k2[];
+	final double k3[];
+	final double k4[];
+	final double ytemp[];
+
+	// Butcher tableau advance: k[1..numStage], grown as needed
+	private double _stages[][];
+
+	// the advancers working in this context
+	final RungeKutta.UniformAdvance uniformAdvance;
+	final RungeKutta.HalfStepAdvance halfStepAdvance;
+	private RungeKutta.ButcherTableauAdvance _tableauAdvance;
+
+	/**
+	 * Create a context for problems of a given dimension
+	 *
+	 * @param nDim
+	 *            the dimension of the state vector, e.g. 6 for [x,y,z,vx,vy,vz]
+	 */
+	public IntegratorContext(int nDim) {
+		_nDim = nDim;
+		yt = new double[nDim];
+		yt2 = new double[nDim];
+		dydt = new double[nDim];
+		error = new double[nDim];
+		yfull = new double[nDim];
+		k2 = new double[nDim];
+		k3 = new double[nDim];
+		k4 = new double[nDim];
+		ytemp = new double[nDim];
+		_stages = new double[1][];
+
+		uniformAdvance = new RungeKutta.UniformAdvance(this);
+		halfStepAdvance = new RungeKutta.HalfStepAdvance(this);
+	}
+
+	/**
+	 * Get the dimension of the problems this context is for
+	 *
+	 * @return the dimension of the state vector
+	 */
+	public int getDimension() {
+		return _nDim;
+	}
+
+	/**
+	 * Get the stage vectors of a Butcher tableau advance
+	 *
+	 * @param numStage
+	 *            the number of stages of the tableau
+	 * @return the stage vectors k[1..numStage] (k[0] is not used)
+	 */
+	double[][] stages(int numStage) {
+		if (_stages.length <= numStage) {
+			double stages[][] = new double[numStage + 1][];
+			for (int s = 1; s <= numStage; s++) {
+				stages[s] = (s < _stages.length) ? _stages[s] : new double[_nDim];
+			}
+			_stages = stages;
+		}
+		return _stages;
+	}
+
+	/**
+	 * Get the advancer for a Butcher tableau, reusing the last one if it is for
+	 * the same tableau
+	 *
+	 * @param tableau
+	 *            the Butcher tableau
+	 * @return the advancer
+	 */
+	RungeKutta.ButcherTableauAdvance tableauAdvance(ButcherTableau tableau) {
+		if ((_tableauAdvance == null) || (_tableauAdvance.tableau != tableau)) {
+			_tableauAdvance = new RungeKutta.ButcherTableauAdvance(this, tableau);
+		}
+		return _tableauAdvance;
+	}
+}
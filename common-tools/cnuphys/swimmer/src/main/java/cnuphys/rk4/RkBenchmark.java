@@ -0,0 +1,190 @@
+package cnuphys.rk4;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Timing and allocation of the uniform and adaptive RungeKutta paths for a
+ * charged particle in an analytic field (a toroidal field plus a solenoid
+ * fringe), with a new RungeKutta object per integration (as the swimmer used
+ * to do) and with one reused RungeKutta object. Also compares the number of
+ * derivative evaluations of adaptive integrations started at a fixed step
+ * size and started from a StepSizeCache.
+ * <p>
+ * Usage: RkBenchmark [integrations per measurement]
+ */
+public class RkBenchmark {
+
+	// GeV/c per (T m) for a unit charge
+	private static final double CLIGHT = 0.299792458;
+
+	// path length of an integration in m
+	private static final double SMAX = 5.0;
+
+	private static final double TOLERANCE[] = { 1.0e-5, 1.0e-5, 1.0e-5, 1.0e-5, 1.0e-5, 1.0e-5 };
+
+	// a unit charge in the analytic field, state [x, y, z, ux, uy, uz],
+	// independent variable the path length
+	static class Derivative implements IDerivative {
+
+		double kappa;
+		long count;
+
+		void set(int charge, double p) {
+			kappa = charge * CLIGHT / p;
+		}
+
+		@Override
+		public void derivative(double s, double[] u, double[] du) {
+			count++;
+			double x = u[0];
+			double y = u[1];
+			double z = u[2];
+
+			// toroid between z = 1.5 m and 4.5 m, 1/r; solenoid fringe
+			double rho2 = x * x + y * y + 0.01;
+			double tor = ((z > 1.5) && (z < 4.5)) ? 2.0 * Math.sin(Math.PI * (z - 1.5) / 3.0) / rho2 : 0;
+			double bx = -tor * y;
+			double by = tor * x;
+			double bz = 5.0 / (1.0 + z * z / 0.25);
+
+			du[0] = u[3];
+			du[1] = u[4];
+			du[2] = u[5];
+			du[3] = kappa * (u[4] * bz - u[5] * by);
+			du[4] = kappa * (u[5] * bx - u[3] * bz);
+			du[5] = kappa * (u[3] * by - u[4] * bx);
+		}
+	}
+
+	private interface Path {
+		void integrate(RungeKutta rk, double uo[]) throws RungeKuttaException;
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		try {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+					.getThreadMXBean();
+			bean.setThreadAllocatedMemoryEnabled(true);
+			return bean;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static long allocated() {
+		return (THREADS == null) ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	// starting states: from the target, 5 to 35 degrees, all azimuths
+	private static double[][] startStates(int n, long seed) {
+		Random rand = new Random(seed);
+		double states[][] = new double[n][];
+		for (int i = 0; i < n; i++) {
+			double theta = Math.toRadians(5 + 30 * rand.nextDouble());
+			double phi = 2 * Math.PI * rand.nextDouble();
+			states[i] = new double[] { 0, 0, 0, Math.sin(theta) * Math.cos(phi), Math.sin(theta) * Math.sin(phi),
+					Math.cos(theta) };
+		}
+		return states;
+	}
+
+	// ns and bytes per integration
+	private static double[] measure(Path path, boolean reuse, double states[][]) throws RungeKuttaException {
+		RungeKutta shared = new RungeKutta();
+		long bytes = allocated();
+		long start = System.nanoTime();
+		for (double uo[] : states) {
+			path.integrate(reuse ? shared : new RungeKutta(), uo);
+		}
+		long time = System.nanoTime() - start;
+		bytes = allocated() - bytes;
+		return new double[] { (double) time / states.length, (double) bytes / states.length };
+	}
+
+	private static void compare(String name, Path path, double states[][]) throws RungeKuttaException {
+		double perCall[] = null;
+		double reused[] = null;
+		for (int iter = 0; iter < 5; iter++) { // the first ones warm up the JIT
+			perCall = measure(path, false, states);
+			reused = measure(path, true, states);
+		}
+		System.out.println(String.format("%-22s new RungeKutta %9.0f ns %7.0f bytes | reused %9.0f ns %7.0f bytes",
+				name, perCall[0], perCall[1], reused[0], reused[1]));
+	}
+
+	// derivative evaluations per integration, cold or warm start
+	private static void warmStart(Derivative deriv, double states[][], double momenta[]) throws RungeKuttaException {
+		RungeKutta rk = new RungeKutta();
+		StepSizeCache cache = new StepSizeCache(1, 1, 16, 0.1, 10.0);
+		double uf[] = new double[6];
+		double hdata[] = new double[3];
+		for (boolean warm : new boolean[] { false, true }) {
+			cache.clear();
+			deriv.count = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < states.length; i++) {
+				deriv.set(-1, momenta[i]);
+				double h = warm ? cache.getStepSize(1, 0, momenta[i], 5.0e-4) : 5.0e-4;
+				rk.adaptiveStep(states[i], uf, 0, SMAX, h, RungeKutta.DEFMAXSTEPSIZE, deriv, null, null, TOLERANCE,
+						hdata);
+				cache.update(1, 0, momenta[i], hdata);
+			}
+			long time = System.nanoTime() - start;
+			System.out.println(String.format("adaptive %s start: %8.1f derivatives %9.0f ns per integration",
+					warm ? "warm" : "cold", (double) deriv.count / states.length, (double) time / states.length));
+		}
+	}
+
+	public static void main(String arg[]) throws RungeKuttaException {
+		int num = (arg.length > 0) ? Integer.parseInt(arg[0]) : 2000;
+
+		final Derivative deriv = new Derivative();
+		deriv.set(-1, 2.0);
+		final double uf[] = new double[6];
+		final double hdata[] = new double[3];
+		final double yscale[] = { 1, 1, 1, 1, 1, 1 };
+		double states[][] = startStates(num, 12345L);
+
+		System.out.println("integrations of " + SMAX + " m, averages per integration");
+
+		compare("uniform", new Path() {
+			@Override
+			public void integrate(RungeKutta rk, double[] uo) {
+				rk.uniformStep(uo, 0, SMAX, 0.01, deriv, null, null);
+			}
+		}, states);
+
+		compare("uniform tableau", new Path() {
+			@Override
+			public void integrate(RungeKutta rk, double[] uo) {
+				rk.uniformStep(uo, 0, SMAX, 0.01, deriv, null, null, ButcherTableau.DORMAND_PRINCE);
+			}
+		}, states);
+
+		compare("adaptive", new Path() {
+			@Override
+			public void integrate(RungeKutta rk, double[] uo) throws RungeKuttaException {
+				rk.adaptiveStep(uo, uf, 0, SMAX, 5.0e-4, RungeKutta.DEFMAXSTEPSIZE, deriv, null, null, TOLERANCE,
+						hdata);
+			}
+		}, states);
+
+		compare("adaptive scaled error", new Path() {
+			@Override
+			public void integrate(RungeKutta rk, double[] uo) throws RungeKuttaException {
+				rk.adaptiveStep(uo, 0, SMAX, 5.0e-4, deriv, null, null, null, 1.0e-6, yscale, hdata);
+			}
+		}, states);
+
+		Random rand = new Random(54321L);
+		double momenta[] = new double[num];
+		for (int i = 0; i < num; i++) {
+			momenta[i] = 0.5 + 4.5 * rand.nextDouble();
+		}
+		warmStart(deriv, states, momenta);
+		warmStart(deriv, states, momenta);
+	}
+}
@@ -1,12 +1,16 @@
 package cnuphys.rk4;
 
-import java.util.ArrayDeque;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Static methods for Runge-Kutta 4 integration, including a constant stepsize
  * method and an adaptive stepsize method.
  * 
+ * The work arrays are kept in an IntegratorContext and reused from one
+ * integration to the next, so keep the object rather than creating one per
+ * integration.
+ * 
  * @author heddle
  * 
  */
@@ -24,17 +28,50 @@ public class RungeKutta {
 	// the max dimension we'll use is probably 6, for state vectors
 	// [x,y,z,vx,vy,vz].
 	private static int MAXDIM = 6; // we'll know if this fails!
-	
-	//object cache
-	private ArrayDeque<HalfStepAdvance> _hafStepAdvCache = new ArrayDeque<>();
 
-	//object cache
-	private ArrayDeque<double []> _workArrayCache = new ArrayDeque<>(); 
+	// the buffers of the integrations done with this object
+	private IntegratorContext _context;
+
+	// set while an integration uses _context. A second integration running
+	// at the same time (another thread, or a derivative that integrates)
+	// gets its own context
+	private final AtomicBoolean _contextInUse = new AtomicBoolean(false);
 
 	/**
 	 * Create a RungeKutta object that can be used for integration
 	 */
 	public RungeKutta() {
+		this(new IntegratorContext(MAXDIM));
+	}
+
+	/**
+	 * Create a RungeKutta object that integrates using the buffers of a given
+	 * context
+	 * 
+	 * @param context
+	 *            the context, it will be replaced by one of the right
+	 *            dimension if used for a problem of a different dimension
+	 */
+	public RungeKutta(IntegratorContext context) {
+		_context = context;
+	}
+
+	// get the context for an integration of dimension nDim
+	private IntegratorContext acquireContext(int nDim) {
+		if (!_contextInUse.compareAndSet(false, true)) {
+			return new IntegratorContext(nDim);
+		}
+		if (_context.getDimension() != nDim) {
+			_context = new IntegratorContext(nDim);
+		}
+		return _context;
+	}
+
+	// done with a context obtained from acquireContext
+	private void releaseContext(IntegratorContext context) {
+		if (context == _context) {
+			_contextInUse.set(false);
+		}
 	}
 
 	/**
@@ -155,8 +192,12 @@ public class RungeKutta {
 			IStopper stopper,
 			IRkListener listener) {
 
-		UniformAdvance advancer = new UniformAdvance();
-		return driver(yo, to, tf, h, deriv, stopper, listener, advancer);
+		IntegratorContext context = acquireContext(yo.length);
+		try {
+			return driver(yo, to, tf, h, deriv, stopper, listener, context.uniformAdvance, context);
+		} finally {
+			releaseContext(context);
+		}
 	}
 
 	/**
@@ -198,8 +239,12 @@ public class RungeKutta {
 			IRkListener listener,
 			ButcherTableau tableau) {
 
-		ButcherTableauAdvance advancer = new ButcherTableauAdvance(tableau);
-		return driver(yo, to, tf, h, deriv, stopper, listener, advancer);
+		IntegratorContext context = acquireContext(yo.length);
+		try {
+			return driver(yo, to, tf, h, deriv, stopper, listener, context.tableauAdvance(tableau), context);
+		} finally {
+			releaseContext(context);
+		}
 	}
 
 
@@ -332,8 +377,13 @@ public class RungeKutta {
 
 		// ButcherTableauAdvance advancer = new ButcherTableauAdvance(tableau);
 		// use a simple half-step advance
-		IAdvance advancer = new HalfStepAdvance();
-		return driver(yo, to, tf, h, deriv, stopper, listener, advancer, relTolerance, hdata);
+		IntegratorContext context = acquireContext(yo.length);
+		try {
+			return driver(yo, to, tf, h, deriv, stopper, listener, context.halfStepAdvance, relTolerance, hdata,
+					context);
+		} finally {
+			releaseContext(context);
+		}
 	}
 	
 
@@ -390,18 +440,13 @@ public class RungeKutta {
 
 		// ButcherTableauAdvance advancer = new ButcherTableauAdvance(tableau);
 		// use a simple half-step advance
-		
-		HalfStepAdvance advancer;
-		if (_hafStepAdvCache.isEmpty()) {
-			advancer = new HalfStepAdvance();
-		}
-		else {
-			advancer = _hafStepAdvCache.pop();
+		IntegratorContext context = acquireContext(yo.length);
+		try {
+			return driver(yo, yf, to, tf, h, maxH, deriv, stopper, context.halfStepAdvance, relTolerance, hdata,
+					context);
+		} finally {
+			releaseContext(context);
 		}
-
-		int n = driver(yo, yf, to, tf, h, maxH, deriv, stopper, advancer, relTolerance, hdata);
-		_hafStepAdvCache.push(advancer);
-		return n;
 	}
 
 
@@ -541,8 +586,13 @@ public class RungeKutta {
 
 		// ButcherTableauAdvance advancer = new ButcherTableauAdvance(tableau);
 		// use a simple half-step advance
-		IAdvance advancer = new HalfStepAdvance();
-		return driver(yo, to, tf, h, deriv, stopper, listener, advancer, eps, yscale, hdata);
+		IntegratorContext context = acquireContext(yo.length);
+		try {
+			return driver(yo, to, tf, h, deriv, stopper, listener, context.halfStepAdvance, eps, yscale, hdata,
+					context);
+		} finally {
+			releaseContext(context);
+		}
 	}
 
 	// copy a vector
@@ -580,6 +630,8 @@ public class RungeKutta {
 	 * @param stopper
 	 *            if not <code>null</code> will be used to exit the integration
 	 *            early because some condition has been reached.
+	 * @param context
+	 *            holds the work arrays
 	 * @return the number of steps used.
 	 */
 	private int driver(double yo[],
@@ -589,7 +641,8 @@ public class RungeKutta {
 			IDerivative deriv,
 			IStopper stopper,
 			IRkListener listener,
-			IAdvance advancer) {
+			IAdvance advancer,
+			IntegratorContext context) {
 		int nstep = (int) (1 + (tf - to) / h); // the number of steps to store
 
 		// the dimensionality of the problem. E.., 6 if (x, y, z, vx, vy, vz)
@@ -597,8 +650,8 @@ public class RungeKutta {
 
 		// yt is the current value of the state vector,
 		// typically [x, y, z, vx, vy, vz] and derivative
-		double yt[] = new double[nDim];
-		double dydt[] = new double[nDim];
+		double yt[] = context.yt;
+		double dydt[] = context.dydt;
 
 		double t = to;
 		for (int i = 0; i < nDim; i++) {
@@ -667,6 +720,8 @@ public class RungeKutta {
 	 *            if not null, should be double[3]. Upon return, hdata[0] is the
 	 *            min stepsize used, hdata[1] is the average stepsize used, and
 	 *            hdata[2] is the max stepsize used
+	 * @param context
+	 *            holds the work arrays
 	 * @return the number of steps used.
 	 * @throw(new RungeKuttaException("Step size too small in Runge Kutta
 	 *            driver" ));
@@ -680,7 +735,8 @@ public class RungeKutta {
 			IRkListener listener,
 			IAdvance advancer,
 			double relTolerance[],
-			double hdata[]) throws RungeKuttaException {
+			double hdata[],
+			IntegratorContext context) throws RungeKuttaException {
 
 		// if our advancer does not compute error we can't use adaptive stepsize
 		if (!advancer.computesError()) {
@@ -699,12 +755,12 @@ public class RungeKutta {
 
 		// yt is the current value of the state vector,
 		// typically [x, y, z, vx, vy, vz] and derivative
-		double yt[] = new double[nDim];
-		double yt2[] = new double[nDim];
-		double dydt[] = new double[nDim];
+		double yt[] = context.yt;
+		double yt2[] = context.yt2;
+		double dydt[] = context.dydt;
 
 		// do we compute error?
-		double error[] = new double[nDim];
+		double error[] = context.error;
 
 		double t = to;
 		for (int i = 0; i < nDim; i++) {
@@ -820,6 +876,8 @@ public class RungeKutta {
 	 *            if not null, should be double[3]. Upon return, hdata[0] is the
 	 *            min stepsize used, hdata[1] is the average stepsize used, and
 	 *            hdata[2] is the max stepsize used
+	 * @param context
+	 *            holds the work arrays
 	 * @return the number of steps used.
 	 * @throw(new RungeKuttaException("Step size too small in Runge Kutta
 	 *            driver" ));
@@ -834,7 +892,8 @@ public class RungeKutta {
 			IStopper stopper,
 			IAdvance advancer,
 			double relTolerance[],
-			double hdata[]) throws RungeKuttaException {
+			double hdata[],
+			IntegratorContext context) throws RungeKuttaException {
 
 		// the dimensionality of the problem. E.., 6 if (x, y, z, vx, vy, vz)
 		int nDim = uo.length;
@@ -857,13 +916,13 @@ public class RungeKutta {
 		// typically [x, y, z, vx, vy, vz] and derivative
 		
 
-		double yt[] = getWorkArrayFromCache();
-		double yt2[] = getWorkArrayFromCache();
-		double dydt[] = getWorkArrayFromCache();
+		double yt[] = context.yt;
+		double yt2[] = context.yt2;
+		double dydt[] = context.dydt;
 		System.arraycopy(uo, 0, yt, 0, nDim);
 		
 		// do we compute error?
-		double error[] = new double[nDim];
+		double error[] = context.error;
 
 		double t = to;
 
@@ -916,11 +975,7 @@ public class RungeKutta {
 						if (stopper.terminateIntegration(t, yt)) {
 							System.arraycopy(yt, 0, uf, 0, nDim);
 						}
-						
-						_workArrayCache.push(yt);
-						_workArrayCache.push(yt2);
-						_workArrayCache.push(dydt);
-						
+
 						return nstep; // actual number of steps taken
 					}
 				}
@@ -937,12 +992,6 @@ public class RungeKutta {
 		if ((hdata != null) && (nstep > 0)) {
 			hdata[1] = hdata[1] / nstep;
 		}
-		
-		_workArrayCache.push(yt);
-		_workArrayCache.push(yt2);
-		_workArrayCache.push(dydt);
-		
-//		System.out.println("  ****** workarray cache size: " + _workArrayCache.size());
 
 		return nstep;
 	}
@@ -988,6 +1037,8 @@ public class RungeKutta {
 	 *            if not null, should be double[3]. Upon return, hdata[0] is the
 	 *            min stepsize used, hdata[1] is the average stepsize used, and
 	 *            hdata[2] is the max stepsize used
+	 * @param context
+	 *            holds the work arrays
 	 * @return the number of steps used.
 	 * @throws RungeKuttaException
 	 */
@@ -1001,7 +1052,8 @@ public class RungeKutta {
 			IAdvance advancer,
 			double eps,
 			double yscale[],
-			double hdata[]) throws RungeKuttaException {
+			double hdata[],
+			IntegratorContext context) throws RungeKuttaException {
 
 		// if our advancer does not compute error we can't use adaptive stepsize
 		if (!advancer.computesError()) {
@@ -1026,12 +1078,12 @@ public class RungeKutta {
 
 		// yt is the current value of the state vector,
 		// typically [x, y, z, vx, vy, vz] and derivative
-		double yt[] = new double[nDim];
-		double yt2[] = new double[nDim];
-		double dydt[] = new double[nDim];
+		double yt[] = context.yt;
+		double yt2[] = context.yt2;
+		double dydt[] = context.dydt;
 
 		// do we compute error?
-		double error[] = new double[nDim];
+		double error[] = context.error;
 
 		double t = to;
 		for (int i = 0; i < nDim; i++) {
@@ -1105,19 +1157,15 @@ public class RungeKutta {
 		return nstep;
 	}
 	
-	private double [] getWorkArrayFromCache() {
-		double array[];
-		if (_workArrayCache.isEmpty()) {
-			array = new double[MAXDIM];
-		}
-		else {
-			array = _workArrayCache.pop();
-		}
-		return array;
-	}
-
 	// A uniform step size advancer
-	class UniformAdvance implements IAdvance {
+	static class UniformAdvance implements IAdvance {
+
+		// holds the work arrays
+		private final IntegratorContext context;
+
+		UniformAdvance(IntegratorContext context) {
+			this.context = context;
+		}
 
 		@Override
 		public void advance(double t,
@@ -1131,13 +1179,11 @@ public class RungeKutta {
 
 			// note that dydt (input) is k1
 			double k1[] = dydt; // the current dreivatives
-			// we need some arrays from the pool
-			
-			
-			double k2[] = getWorkArrayFromCache();
-			double k3[] = getWorkArrayFromCache();
-			double k4[] = getWorkArrayFromCache();
-			double ytemp[] = getWorkArrayFromCache();
+			// we need some work arrays
+			double k2[] = context.k2;
+			double k3[] = context.k3;
+			double k4[] = context.k4;
+			double ytemp[] = context.ytemp;
 
 			double hh = h * 0.5; // half step
 			double h6 = h / 6.0;
@@ -1168,13 +1214,6 @@ public class RungeKutta {
 			for (int i = 0; i < nDim; i++) {
 				yout[i] = y[i] + h6 * (k1[i] + +2.0 * k2[i] + 2 * k3[i] + k4[i]);
 			}
-
-			// return the work arrays to the cache
-			// note k1 is NOT a work array
-			_workArrayCache.push(k2);
-			_workArrayCache.push(k3);
-			_workArrayCache.push(k4);
-			_workArrayCache.push(ytemp);
 		}
 
 		@Override
@@ -1184,13 +1223,17 @@ public class RungeKutta {
 	}
 
 	// simple half stepper for adaptive
-	class HalfStepAdvance implements IAdvance {
+	static class HalfStepAdvance implements IAdvance {
 
-		private UniformAdvance uniAdvance;
+		// holds the work arrays
+		private final IntegratorContext context;
 
-		public HalfStepAdvance() {
+		private final UniformAdvance uniAdvance;
+
+		HalfStepAdvance(IntegratorContext context) {
+			this.context = context;
 			// get a uniform advancer
-			uniAdvance = new UniformAdvance();
+			uniAdvance = context.uniformAdvance;
 		}
 
 		@Override
@@ -1205,7 +1248,7 @@ public class RungeKutta {
 			// System.err.println("HALF STEP ADVANCE");
 			// advance the full step
 			int ndim = y.length;
-			double yfull[] = new double[ndim];
+			double yfull[] = context.yfull;
 			uniAdvance.advance(t, y, dydt, h, deriv, yfull, null);
 
 			// advance two half steps
@@ -1235,11 +1278,15 @@ public class RungeKutta {
 	}
 
 	// a Butcher Tableau advancer
-	class ButcherTableauAdvance implements IAdvance {
+	static class ButcherTableauAdvance implements IAdvance {
+
+		// holds the work arrays
+		private final IntegratorContext context;
 
-		private ButcherTableau tableau;
+		final ButcherTableau tableau;
 
-		public ButcherTableauAdvance(ButcherTableau tableau) {
+		ButcherTableauAdvance(IntegratorContext context, ButcherTableau tableau) {
+			this.context = context;
 			this.tableau = tableau;
 		}
 
@@ -1256,20 +1303,16 @@ public class RungeKutta {
 			int nDim = y.length;
 			int numStage = tableau.getS();
 
-			double ytemp[] = getWorkArrayFromCache();
-			double k[][] = new double[numStage + 1][];
-			k[0] = null; // not used
+			double ytemp[] = context.ytemp;
+			double k[][] = context.stages(numStage); // k[0] not used
 
 			// k1 is just h*dydt
-			k[1] = getWorkArrayFromCache();
 			for (int i = 0; i < nDim; i++) {
 				k[1][i] = h * dydt[i];
 			}
 
 			// fill the numStage k vectors
 			for (int s = 2; s <= numStage; s++) {
-				k[s] = getWorkArrayFromCache();
-
 				double ts = t + tableau.c(s);
 				for (int i = 0; i < nDim; i++) {
 					ytemp[i] = y[i];
@@ -1320,12 +1363,6 @@ public class RungeKutta {
 				// System.out.println();
 
 			}
-
-			// //return the work arrays
-			_workArrayCache.push(ytemp);
-			for (int s = 1; s <= numStage; s++) {
-				_workArrayCache.push((k[s]));
-			}
 		}
 
 		@Override
@@ -0,0 +1,143 @@
+package cnuphys.rk4;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the step sizes of adaptive integrations in coarse bins of sector,
+ * region and momentum, so that the next integration started in the same bin
+ * can begin near the step size it will settle on instead of at a generic
+ * default. The value kept for a bin is a running average of the average
+ * accepted step sizes (hdata[1]) reported by the drivers. Momentum bins are
+ * logarithmic; momenta outside the range go to the first or last bin.
+ * <p>
+ * The step sizes are in whatever units the integrations use. Not thread safe:
+ * use one cache per thread.
+ */
+public class StepSizeCache {
+
+	// weight of a new step size in the running average
+	private static final double WEIGHT = 0.25;
+
+	private final int _numSector;
+	private final int _numRegion;
+	private final int _numMomentum;
+
+	// log of the lower momentum edge and bin width
+	private final double _logPMin;
+	private final double _logPWidth;
+
+	// the step sizes, 0 for a bin not filled yet
+	private final double _steps[];
+
+	/**
+	 * Create a step size cache
+	 *
+	 * @param numSector
+	 *            the number of sectors, sectors are 1..numSector
+	 * @param numRegion
+	 *            the number of regions, regions are 0..numRegion-1
+	 * @param numMomentum
+	 *            the number of momentum bins
+	 * @param pMin
+	 *            the lower edge of the first momentum bin
+	 * @param pMax
+	 *            the upper edge of the last momentum bin
+	 */
+	public StepSizeCache(int numSector, int numRegion, int numMomentum, double pMin, double pMax) {
+		_numSector = numSector;
+		_numRegion = numRegion;
+		_numMomentum = numMomentum;
+		_logPMin = Math.log(pMin);
+		_logPWidth = (Math.log(pMax) - _logPMin) / numMomentum;
+		_steps = new double[numSector * numRegion * numMomentum];
+	}
+
+	/**
+	 * Get the bin of a sector, region and momentum
+	 *
+	 * @param sector
+	 *            the 1-based sector
+	 * @param region
+	 *            the 0-based region
+	 * @param p
+	 *            the momentum
+	 * @return the bin, or -1 if the sector or region is out of range
+	 */
+	public int getBin(int sector, int region, double p) {
+		if ((sector < 1) || (sector > _numSector) || (region < 0) || (region >= _numRegion)) {
+			return -1;
+		}
+		int pbin = (p > 0) ? (int) Math.floor((Math.log(p) - _logPMin) / _logPWidth) : 0;
+		pbin = Math.max(0, Math.min(_numMomentum - 1, pbin));
+		return ((sector - 1) * _numRegion + region) * _numMomentum + pbin;
+	}
+
+	/**
+	 * Get the step size to start an integration with
+	 *
+	 * @param sector
+	 *            the 1-based sector
+	 * @param region
+	 *            the 0-based region
+	 * @param p
+	 *            the momentum
+	 * @param defaultStepSize
+	 *            returned if nothing is known for the bin
+	 * @return the step size remembered for the bin, or the default
+	 */
+	public double getStepSize(int sector, int region, double p, double defaultStepSize) {
+		int bin = getBin(sector, region, p);
+		if ((bin < 0) || (_steps[bin] <= 0)) {
+			return defaultStepSize;
+		}
+		return _steps[bin];
+	}
+
+	/**
+	 * Add the step size used by an integration
+	 *
+	 * @param sector
+	 *            the 1-based sector
+	 * @param region
+	 *            the 0-based region
+	 * @param p
+	 *            the momentum
+	 * @param stepSize
+	 *            the step size, ignored unless positive
+	 */
+	public void update(int sector, int region, double p, double stepSize) {
+		int bin = getBin(sector, region, p);
+		if ((bin < 0) || !(stepSize > 0) || Double.isInfinite(stepSize)) {
+			return;
+		}
+		double step = _steps[bin];
+		_steps[bin] = (step > 0) ? step + WEIGHT * (stepSize - step) : stepSize;
+	}
+
+	/**
+	 * Add the step sizes used by an integration
+	 *
+	 * @param sector
+	 *            the 1-based sector
+	 * @param region
+	 *            the 0-based region
+	 * @param p
+	 *            the momentum
+	 * @param hdata
+	 *            the min, average and max step sizes filled by the adaptive
+	 *            drivers, the average is used
+	 */
+	public void update(int sector, int region, double p, double hdata[]) {
+		if ((hdata != null) && (hdata.length > 1)) {
+			update(sector, region, p, hdata[1]);
+		}
+	}
+
+	/**
+	 * Forget all the step sizes, e.g. when the field changes
+	 */
+	public void clear() {
+		Arrays.fill(_steps, 0);
+	}
+
+}
@@ -35,14 +35,6 @@ public class Bxdl {
 			
 		}
 
-		double dr[] = new double[3];
-
-		for (int i = 0; i < 3; i++) {
-			dr[i] = p1[i] - p0[i];
-		}
-
-		double pathlength = vecmag(dr);
-
 		// use the average position (in cm) to compute B for b cross dl
 		float xavgcm = (float) (100. * (p0[0] + p1[0]) / 2);
 		float yavgcm = (float) (100. * (p0[1] + p1[1]) / 2);
@@ -50,18 +42,7 @@ public class Bxdl {
 		float b[] = new float[3];
 		probe.field(xavgcm, yavgcm, zavgcm, b);
 
-		double bxdl[] = cross(b, dr);
-		double magbxdl = vecmag(bxdl);
-
-		// make it cumulative if we have a previous
-		if (previous != null) {
-			pathlength += previous._pathlength;
-			magbxdl += previous._bxdl;
-		}
-
-		// set the current
-		current._pathlength = pathlength;
-		current._bxdl = magbxdl;
+		accumulate(previous, current, p0, p1, b);
 	}
 	
 	/**
@@ -80,6 +61,33 @@ public class Bxdl {
 	 */
 	public static void sectorAccumulate(int sector, Bxdl previous, Bxdl current, double[] p0, double[] p1, RotatedCompositeProbe probe) {
 
+		// use the average position (in cm) to compute B for b cross dl
+		float xavgcm = (float) (100. * (p0[0] + p1[0]) / 2);
+		float yavgcm = (float) (100. * (p0[1] + p1[1]) / 2);
+		float zavgcm = (float) (100. * (p0[2] + p1[2]) / 2);
+		float b[] = new float[3];
+		probe.field(sector, xavgcm, yavgcm, zavgcm, b);
+
+		accumulate(previous, current, p0, p1, b);
+	}
+
+	/**
+	 * Accumulate the integral of b cross dl with the field already evaluated
+	 * at the average position of the step.
+	 * 
+	 * @param previous
+	 *            the previous accumulation
+	 * @param current
+	 *            the (after returning) current accumulation
+	 * @param p0
+	 *            the starting [x,y,z] position
+	 * @param p1
+	 *            the ending [x,y,z] position
+	 * @param b
+	 *            the field at the average position in kiloGauss
+	 */
+	public static void accumulate(Bxdl previous, Bxdl current, double[] p0, double[] p1, float b[]) {
+
 		double dr[] = new double[3];
 
 		for (int i = 0; i < 3; i++) {
@@ -88,13 +96,6 @@ public class Bxdl {
 
 		double pathlength = vecmag(dr);
 
-		// use the average position (in cm) to compute B for b cross dl
-		float xavgcm = (float) (100. * (p0[0] + p1[0]) / 2);
-		float yavgcm = (float) (100. * (p0[1] + p1[1]) / 2);
-		float zavgcm = (float) (100. * (p0[2] + p1[2]) / 2);
-		float b[] = new float[3];
-		probe.field(sector, xavgcm, yavgcm, zavgcm, b);
-
 		double bxdl[] = cross(b, dr);
 		double magbxdl = vecmag(bxdl);
 
@@ -353,14 +353,21 @@ public class SwimTrajectory extends ArrayList<double[]> {
 			
 		}
 
+		// evaluate the field at the average position of all steps at once
+		float[][] b = stepField(0, probe);
+
 		Bxdl previous = new Bxdl();
 		Bxdl current = new Bxdl();
 		double[] p0 = this.get(0);
 		augment(p0, 0, 0, 0);
 
+		float bstep[] = new float[3];
 		for (int i = 1; i < size(); i++) {
 			double[] p1 = get(i);
-			Bxdl.accumulate(previous, current, p0, p1, probe);
+			bstep[0] = b[0][i-1];
+			bstep[1] = b[1][i-1];
+			bstep[2] = b[2][i-1];
+			Bxdl.accumulate(previous, current, p0, p1, bstep);
 			
 			augment(p1, current.getPathlength(), current.getIntegralBxdl(), i);
 			previous.set(current);
@@ -385,14 +392,21 @@ public class SwimTrajectory extends ArrayList<double[]> {
 			return;
 		}
 		
+		// evaluate the field at the average position of all steps at once
+		float[][] b = stepField(sector, probe);
+
 		Bxdl previous = new Bxdl();
 		Bxdl current = new Bxdl();
 		double[] p0 = get(0);
 		augment(p0, 0, 0, 0);
 
+		float bstep[] = new float[3];
 		for (int i = 1; i < size(); i++) {
 			double[] p1 = get(i);
-			Bxdl.sectorAccumulate(sector, previous, current, p0, p1, probe);
+			bstep[0] = b[0][i-1];
+			bstep[1] = b[1][i-1];
+			bstep[2] = b[2][i-1];
+			Bxdl.accumulate(previous, current, p0, p1, bstep);
 			
 			augment(p1, current.getPathlength(), current.getIntegralBxdl(), i);
 
@@ -403,6 +417,32 @@ public class SwimTrajectory extends ArrayList<double[]> {
 	}
 
 
+	// field (kG) at the average position (cm) of each step, as [component][step],
+	// using the batch probe call. A sector of 0 means lab coordinates
+	private float[][] stepField(int sector, FieldProbe probe) {
+		int nstep = Math.max(size() - 1, 0);
+		float x[] = new float[nstep];
+		float y[] = new float[nstep];
+		float z[] = new float[nstep];
+		float b[][] = new float[3][nstep];
+		
+		double[] p0 = get(0);
+		for (int i = 0; i < nstep; i++) {
+			double[] p1 = get(i+1);
+			x[i] = (float) (100. * (p0[0] + p1[0]) / 2);
+			y[i] = (float) (100. * (p0[1] + p1[1]) / 2);
+			z[i] = (float) (100. * (p0[2] + p1[2]) / 2);
+			p0 = p1;
+		}
+		
+		if (sector > 0) {
+			probe.field(sector, nstep, x, y, z, b[0], b[1], b[2]);
+		} else {
+			probe.field(nstep, x, y, z, b[0], b[1], b[2]);
+		}
+		return b;
+	}
+
 	// replace the 6D state vector <at the given index with
 	// and 8D vector that appends pathelength (m) and integral
 	// b dot dl (kg-m)
@@ -49,6 +49,9 @@ public final class Swimmer {
 	// so care has to be taken when using the field object
 	private FieldProbe _probe;
 
+	// the integrator, it keeps its work arrays from one swim to the next
+	private final RungeKutta _rungeKutta = new RungeKutta();
+
 	public static final String VERSION = "1.08";
 
 	static {
@@ -222,7 +225,7 @@ public final class Swimmer {
 
 		// Integrate
 		DefaultDerivative deriv = new DefaultDerivative(charge, momentum, _probe);
-		ntotal = (new RungeKutta()).uniformStep(uo, 0, maxPathLength, u, s, deriv, stopper);
+		ntotal = _rungeKutta.uniformStep(uo, 0, maxPathLength, u, s, deriv, stopper);
 
 		// now cycle through and get the save points
 		for (int i = 0; i < ntotal; i++) {
@@ -322,7 +325,7 @@ public final class Swimmer {
 
 		// Integrate
 		DefaultDerivative deriv = new DefaultDerivative(charge, momentum, _probe);
-		return (new RungeKutta()).uniformStep(uo, 0, maxPathLength, stepSize, deriv, stopper, listener);
+		return _rungeKutta.uniformStep(uo, 0, maxPathLength, stepSize, deriv, stopper, listener);
 	}
 
 	/**
@@ -857,7 +860,7 @@ public final class Swimmer {
 		// integrate
 		// SECTOR SWIM C
 		try {
-			(new RungeKutta()).adaptiveStep(uo, s0, sMax, stepSize, s, u, deriv, stopper, _defaultTableau, relTolerance,
+			_rungeKutta.adaptiveStep(uo, s0, sMax, stepSize, s, u, deriv, stopper, _defaultTableau, relTolerance,
 					hdata);
 		} catch (RungeKuttaException e) {
 		//	System.err.println("SECTOR SWIM C RungeKutta Exception");
@@ -1480,7 +1483,7 @@ public final class Swimmer {
 		DefaultDerivative deriv = new DefaultDerivative(charge, momentum, _probe);
 
 		// integrate
-		(new RungeKutta()).adaptiveStep(uo, s0, sMax, stepSize, s, u, deriv, stopper, _defaultTableau, relTolerance,
+		_rungeKutta.adaptiveStep(uo, s0, sMax, stepSize, s, u, deriv, stopper, _defaultTableau, relTolerance,
 				hdata);
 		// now cycle through and get the save points
 		for (int i = 0; i < u.size(); i++) {
@@ -1548,7 +1551,7 @@ public final class Swimmer {
 		// Integrate
 		DefaultDerivative deriv = new DefaultDerivative(charge, momentum, _probe);
 
-		int nstep = (new RungeKutta()).adaptiveStep(uo, 0, maxPathLength, stepSize, deriv, stopper, listener,
+		int nstep = _rungeKutta.adaptiveStep(uo, 0, maxPathLength, stepSize, deriv, stopper, listener,
 				_defaultTableau, relTolerance, hdata);
 
 		return nstep;
@@ -1614,7 +1617,7 @@ public final class Swimmer {
 		DefaultDerivative deriv = new DefaultDerivative(charge, momentum, _probe);
 
 		// integrate
-		(new RungeKutta()).adaptiveStep(uo, 0, maxPathLength, stepSize, t, y, deriv, stopper, _defaultTableau,
+		_rungeKutta.adaptiveStep(uo, 0, maxPathLength, stepSize, t, y, deriv, stopper, _defaultTableau,
 				tolerance, yscale, hdata);
 		// now cycle through and get the save points
 
@@ -1684,7 +1687,7 @@ public final class Swimmer {
 		// Integrate
 		DefaultDerivative deriv = new DefaultDerivative(charge, momentum, _probe);
 
-		int nstep = (new RungeKutta()).adaptiveStep(uo, 0, maxPathLength, stepSize, deriv, stopper, listener,
+		int nstep = _rungeKutta.adaptiveStep(uo, 0, maxPathLength, stepSize, deriv, stopper, listener,
 				_defaultTableau, tolerance, yscale, hdata);
 
 		return nstep;
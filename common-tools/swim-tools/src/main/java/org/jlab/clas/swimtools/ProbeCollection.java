@@ -8,6 +8,7 @@ package org.jlab.clas.swimtools;
 import cnuphys.magfield.CompositeProbe;
 import cnuphys.magfield.MagneticFields;
 import cnuphys.magfield.RotatedCompositeProbe;
+import cnuphys.rk4.StepSizeCache;
 import cnuphys.swimZ.SwimZ;
 
 /**
@@ -23,6 +24,9 @@ public class ProbeCollection {
     //Probes:
     public final RotatedCompositeProbe RCP;
     public final CompositeProbe CP; 
+    //Starting step sizes of the adaptive swims (see Swim.setStepSizeWarmStart):
+    public final StepSizeCache stepSizes;   //  RCF and CF swims, in m
+    public final StepSizeCache zStepSizes;  //  RCF_z and CF_z swims, in cm
     /**
      * Gets rotated composite and composite fields, get corresponding probes
      */
@@ -34,5 +38,8 @@ public class ProbeCollection {
         CF_z    =   new SwimZ(MagneticFields.getInstance().getCompositeField());
         RCF     =   new cnuphys.swim.Swimmer(MagneticFields.getInstance().getRotatedCompositeField());
         CF      =   new cnuphys.swim.Swimmer(MagneticFields.getInstance().getCompositeField());
+        
+        stepSizes   =   new StepSizeCache(6, 8, 16, 0.05, 12.0);
+        zStepSizes  =   new StepSizeCache(6, 8, 16, 0.05, 12.0);
     }
 }
@@ -7,6 +7,7 @@ package org.jlab.clas.swimtools;
 
 import cnuphys.rk4.IStopper;
 import cnuphys.rk4.RungeKuttaException;
+import cnuphys.rk4.StepSizeCache;
 import cnuphys.swim.SwimTrajectory;
 import cnuphys.swim.util.Plane;
 import cnuphys.swimZ.SwimZException;
@@ -39,16 +40,66 @@ public class Swim {
     final double accuracy = 20e-6; // 20 microns
     final double stepSize = 5.00 * 1.e-4; // 500 microns
 
+    // z boundaries (m) of the regions used to bin the starting step sizes
+    private static final double[] WARMSTARTZ = {2.0, 3.2, 4.6};
+    private static volatile boolean stepSizeWarmStart = false;
+
     private ProbeCollection PC;
     
     /**
      * Class for swimming to various surfaces.  The input and output units are cm and GeV/c
      */
     public Swim() {
-        PC = Swimmer.getProbeCollection(Thread.currentThread());
-        if (PC == null) {
-            PC = new ProbeCollection();
-            Swimmer.put(Thread.currentThread(), PC);
+        PC = Swimmer.getProbeCollection();
+    }
+
+    /**
+     * Starts the adaptive swims with the step size remembered for their
+     * (sector, region, momentum) bin instead of the default 500 microns.
+     * The trajectories then change within the swim tolerance, which is why
+     * this is off by default.
+     * @param warmStart true to use the remembered step sizes
+     */
+    public static void setStepSizeWarmStart(boolean warmStart) {
+        stepSizeWarmStart = warmStart;
+    }
+
+    /**
+     * @return true if the adaptive swims start with the remembered step sizes
+     */
+    public static boolean isStepSizeWarmStart() {
+        return stepSizeWarmStart;
+    }
+
+    /**
+     * @param zStart z (m) of the starting point
+     * @param inward true if swimming towards the target
+     * @return the region of the warm start bins: 0 to 3 for the target
+     * and the three DC regions, plus 4 if swimming inward
+     */
+    private int warmStartRegion(double zStart, boolean inward) {
+        int region = 0;
+        while (region < WARMSTARTZ.length && zStart > WARMSTARTZ[region]) {
+            region++;
+        }
+        return inward ? region + 4 : region;
+    }
+
+    /**
+     * @return the sector of the momentum direction, for the swims in the lab frame
+     */
+    private int warmStartSector() {
+        double phi = ((_phi + 30) % 360 + 360) % 360;
+        return Math.min(6, 1 + (int) (phi / 60));
+    }
+
+    private double initialStepSize(StepSizeCache cache, int sector, int region, double defaultStepSize) {
+        return stepSizeWarmStart ? cache.getStepSize(sector, region, _pTot, defaultStepSize) : defaultStepSize;
+    }
+
+    private void updateStepSize(StepSizeCache cache, int sector, int region, double[] hdata) {
+        if (stepSizeWarmStart) {
+            cache.update(sector, region, _pTot, hdata);
         }
     }
 
@@ -177,6 +228,7 @@ public class Swim {
 
         SwimTrajectory traj = null;
         double hdata[] = new double[3];
+        int region = warmStartRegion(_z0, z < _z0);
 
         try {
 
@@ -186,13 +238,14 @@ public class Swim {
                 // NOTE THE DISTANCE, UNITS FOR swimZ are cm, NOT m like the old
                 // swimmer (dph)
 
-                double stepSizeCM = stepSize * 100; // convert to cm
+                double stepSizeCM = initialStepSize(PC.zStepSizes, sector, region, stepSize * 100); // convert to cm
 
                 // create the starting SwimZ state vector
                 SwimZStateVector start = new SwimZStateVector(_x0 * 100, _y0 * 100, _z0 * 100, _pTot, _theta, _phi);
 
                 try {
                         szr = PC.RCF_z.sectorAdaptiveRK(sector, _charge, _pTot, start, z_cm, stepSizeCM, hdata);
+                        if (szr != null) updateStepSize(PC.zStepSizes, sector, region, hdata);
                 } catch (SwimZException e) {
                         szr = null;
                         //System.err.println("[WARNING] Tilted SwimZ Failed for p = " + _pTot);
@@ -218,11 +271,13 @@ public class Swim {
                                 // (dph)
 
                 traj = PC.RCF.sectorSwim(sector, _charge, _x0, _y0, _z0, _pTot, _theta, _phi, z, accuracy, _rMax,
-                                _maxPathLength, stepSize, cnuphys.swim.Swimmer.CLAS_Tolerance, hdata);
+                                _maxPathLength, initialStepSize(PC.stepSizes, sector, region, stepSize),
+                                cnuphys.swim.Swimmer.CLAS_Tolerance, hdata);
 
                 // traj.computeBDL(sector, rprob);
                 if(traj==null)
                     return null;
+                updateStepSize(PC.stepSizes, sector, region, hdata);
                 
                 traj.sectorComputeBDL(sector, PC.RCP);
                 // traj.computeBDL(rcompositeField);
@@ -258,6 +313,8 @@ public class Swim {
         }
         SwimTrajectory traj = null;
         double hdata[] = new double[3];
+        int sector = warmStartSector();
+        int region = warmStartRegion(_z0, z < _z0);
 
         // use a SwimZResult instead of a trajectory (dph)
         SwimZResult szr = null;
@@ -270,13 +327,14 @@ public class Swim {
                 // NOTE THE DISTANCE, UNITS FOR swimZ are cm, NOT m like the old
                 // swimmer (dph)
 
-                double stepSizeCM = stepSize * 100; // convert to cm
+                double stepSizeCM = initialStepSize(PC.zStepSizes, sector, region, stepSize * 100); // convert to cm
 
                 // create the starting SwimZ state vector
                 SwimZStateVector start = new SwimZStateVector(_x0 * 100, _y0 * 100, _z0 * 100, _pTot, _theta, _phi);
 
                 try {
                         szr = PC.CF_z.adaptiveRK(_charge, _pTot, start, z_cm, stepSizeCM, hdata);
+                        if (szr != null) updateStepSize(PC.zStepSizes, sector, region, hdata);
                 } catch (SwimZException e) {
                         szr = null;
                         //System.err.println("[WARNING] SwimZ Failed for p = " + _pTot);
@@ -302,9 +360,11 @@ public class Swim {
             } else { // use old swimmer. Either low momentum or SwimZ failed.
                                     // (dph)
                 traj = PC.CF.swim(_charge, _x0, _y0, _z0, _pTot, _theta, _phi, z, accuracy, _rMax, _maxPathLength,
-                                stepSize, cnuphys.swim.Swimmer.CLAS_Tolerance, hdata);
+                                initialStepSize(PC.stepSizes, sector, region, stepSize),
+                                cnuphys.swim.Swimmer.CLAS_Tolerance, hdata);
                 if(traj==null)
                     return null;
+                updateStepSize(PC.stepSizes, sector, region, hdata);
                 traj.computeBDL(PC.CP);
                 // traj.computeBDL(compositeField);
 
@@ -606,8 +666,12 @@ public class Swim {
             }
 
             else {
-                st = PC.CF.swim(_charge, _x0, _y0, _z0, _pTot, _theta, _phi, plane, accuracy, _maxPathLength, stepSize,
+                int sector = warmStartSector();
+                int region = warmStartRegion(_z0, dir < 0);
+                st = PC.CF.swim(_charge, _x0, _y0, _z0, _pTot, _theta, _phi, plane, accuracy, _maxPathLength,
+                                initialStepSize(PC.stepSizes, sector, region, stepSize),
                                 cnuphys.swim.Swimmer.CLAS_Tolerance, hdata);
+                updateStepSize(PC.stepSizes, sector, region, hdata);
 
                 st.computeBDL(PC.CP);
 
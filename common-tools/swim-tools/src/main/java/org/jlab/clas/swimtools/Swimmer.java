@@ -6,7 +6,12 @@
 package org.jlab.clas.swimtools;
 import cnuphys.magfield.MagneticFields;
 
-import java.util.HashMap;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 /**
  *
  * @author ziegler, heddle
@@ -15,13 +20,89 @@ import java.util.HashMap;
 
 public class Swimmer {
     
-    private static HashMap<Thread, ProbeCollection> swimmers = new HashMap<>();
+    /**
+     * Probes are thread confined: each thread gets its own ProbeCollection,
+     * created on first use and reused by every Swim built in that thread.
+     * The collection is released when the thread dies (or with
+     * releaseProbeCollection), liveProbes only holds weak references
+     * to report the number of probes still in memory.
+     */
+    private static final ThreadLocal<ProbeCollection> threadProbes = new ThreadLocal<ProbeCollection>();
+    private static final ReferenceQueue<ProbeCollection> releasedProbes = new ReferenceQueue<ProbeCollection>();
+    private static final Set<Reference<ProbeCollection>> liveProbes = 
+            Collections.newSetFromMap(new ConcurrentHashMap<Reference<ProbeCollection>,Boolean>());
     
+    /**
+     * @return probe collection of the calling thread, created if needed
+     */
+    public static ProbeCollection getProbeCollection(){
+        ProbeCollection PC = threadProbes.get();
+        if (PC == null) {
+            PC = new ProbeCollection();
+            threadProbes.set(PC);
+            purgeProbes();
+            liveProbes.add(new WeakReference<ProbeCollection>(PC, releasedProbes));
+        }
+        return PC;
+    }
+    
+    /**
+     * Drops the probe collection of the calling thread, the next Swim
+     * created in this thread gets a new one.
+     */
+    public static void releaseProbeCollection(){
+        ProbeCollection PC = threadProbes.get();
+        if (PC == null) {
+            return;
+        }
+        threadProbes.remove();
+        for (Reference<ProbeCollection> ref : liveProbes) {
+            if (ref.get() == PC) {
+                liveProbes.remove(ref);
+            }
+        }
+    }
+    
+    /**
+     * @return number of probe collections which have not been garbage collected yet
+     */
+    public static int getLiveProbeCount(){
+        purgeProbes();
+        return liveProbes.size();
+    }
+    
+    private static void purgeProbes(){
+        Reference<? extends ProbeCollection> ref;
+        while ((ref = releasedProbes.poll()) != null) {
+            liveProbes.remove(ref);
+        }
+    }
+    
+    /**
+     * @param thr thread
+     * @return probe collection of the thread, only the calling thread is supported
+     * @deprecated probes are thread confined, use getProbeCollection()
+     */
+    @Deprecated
     public static ProbeCollection getProbeCollection(Thread thr){
-        return swimmers.get(thr);
+        if (thr != Thread.currentThread()) {
+            return null;
+        }
+        return threadProbes.get();
     }
+    
+    /**
+     * @param thr thread
+     * @param PC probe collection
+     * @deprecated probes are thread confined and created by getProbeCollection()
+     */
+    @Deprecated
     public static void put(Thread thr, ProbeCollection PC) {
-        swimmers.put(thr, PC);
+        if (thr != Thread.currentThread() || PC == null) {
+            return;
+        }
+        threadProbes.set(PC);
+        liveProbes.add(new WeakReference<ProbeCollection>(PC, releasedProbes));
     }
     private static float szShift = 0;
     public static synchronized void set_zShift(float shift){ //solenoid z shift
@@ -0,0 +1,116 @@
+package org.jlab.rec.dc;
+
+import cnuphys.snr.NoiseReductionParameters;
+import cnuphys.snr.clas12.Clas12BatchNoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseResult;
+
+import org.jlab.clas.swimtools.Swim;
+import org.jlab.rec.dc.banks.HitReader;
+import org.jlab.rec.dc.banks.RecoBankWriter;
+import org.jlab.rec.dc.cluster.ClusterCleanerUtilities;
+import org.jlab.rec.dc.cluster.ClusterFinder;
+import org.jlab.rec.dc.cluster.ClusterFitter;
+import org.jlab.rec.dc.cross.CrossListFinder;
+import org.jlab.rec.dc.cross.CrossMaker;
+import org.jlab.rec.dc.segment.SegmentFinder;
+import org.jlab.rec.dc.track.TrackCandListFinder;
+import org.jlab.rec.dc.trajectory.RoadFinder;
+import org.jlab.rec.dc.trajectory.TrajectoryFinder;
+
+/**
+ * Reconstruction helpers of one thread, shared by the hit-based and
+ * time-based engines. The helpers and their scratch buffers (noise
+ * reduction words, cluster finder hit array, fit arrays) are created once
+ * per thread and reset with reset() at the start of each event, instead of
+ * being created for every event.
+ *
+ * A workspace must only be used by the thread that got it from get().
+ */
+public class DCWorkspace {
+
+    private static final ThreadLocal<DCWorkspace> workspaces = new ThreadLocal<DCWorkspace>() {
+        @Override
+        protected DCWorkspace initialValue() {
+            return new DCWorkspace();
+        }
+    };
+
+    /**
+     * @return the workspace of the calling thread, created if needed
+     */
+    public static DCWorkspace get() {
+        return workspaces.get();
+    }
+
+    /**
+     * drops the workspace of the calling thread, a new one is created on
+     * the next call to get()
+     */
+    public static void release() {
+        workspaces.remove();
+    }
+
+    // created on first use, in the owning thread, so that it uses the
+    // thread's probe collection
+    private Swim swim;
+
+    // SNR
+    public final Clas12NoiseResult noiseResults = new Clas12NoiseResult();
+    // all the superlayers analyzed at once, same results as Clas12NoiseAnalysis
+    public final Clas12NoiseAnalysis noiseAnalysis = new Clas12BatchNoiseAnalysis();
+    public final NoiseReductionParameters noiseParameters =
+            new NoiseReductionParameters(2, Constants.SNR_LEFTSHIFTS, Constants.SNR_RIGHTSHIFTS);
+
+    // hits and clusters
+    public final HitReader hitReader = new HitReader();
+    public final ClusterFitter clusterFitter = new ClusterFitter();
+    public final ClusterCleanerUtilities clusterCleaner = new ClusterCleanerUtilities();
+    public final ClusterFinder clusterFinder = new ClusterFinder();
+
+    // segments, crosses and tracks
+    public final SegmentFinder segmentFinder = new SegmentFinder();
+    public final CrossMaker crossMaker = new CrossMaker();
+    public final CrossListFinder crossListFinder = new CrossListFinder();
+    public final RoadFinder roadFinder = new RoadFinder();
+    public final TrajectoryFinder trajectoryFinder = new TrajectoryFinder();
+    public final TrackCandListFinder hitBasedTrackFinder = new TrackCandListFinder(Constants.HITBASE);
+    public final TrackCandListFinder timeBasedTrackFinder = new TrackCandListFinder("TimeBased");
+
+    // output banks
+    public final RecoBankWriter bankWriter = new RecoBankWriter();
+
+    private long events = 0;
+
+    private DCWorkspace() {
+    }
+
+    /**
+     * @return the swim of this workspace
+     */
+    public Swim getSwim() {
+        if (swim == null) {
+            swim = new Swim();
+        }
+        return swim;
+    }
+
+    /**
+     * clears the state left by the previous event
+     */
+    public void reset() {
+        noiseResults.clear();
+        noiseAnalysis.clear();
+        noiseParameters.clear();
+        hitReader.clear();
+        clusterFinder.clear();
+        events++;
+    }
+
+    /**
+     * @return the number of events processed with this workspace
+     */
+    public long getEventCount() {
+        return events;
+    }
+}
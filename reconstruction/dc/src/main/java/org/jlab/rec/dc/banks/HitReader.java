@@ -80,6 +80,15 @@ public class HitReader {
         this._TBHits = _TBHits;
     }
 
+    /**
+     * drops the hits of the previous event
+     */
+    public void clear() {
+        _DCHits = null;
+        _HBHits = null;
+        _TBHits = null;
+    }
+
     /**
      * reads the hits using clas-io methods to get the EvioBank for the DC and
      * fill the values to instantiate the DChit and MChit classes. This methods
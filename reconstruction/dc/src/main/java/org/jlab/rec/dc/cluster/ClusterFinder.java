@@ -1,6 +1,7 @@
 package org.jlab.rec.dc.cluster;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.jlab.detector.geant4.v2.DCGeant4Factory;
@@ -73,8 +74,10 @@ public class ClusterFinder {
      */
     private void fillHitArray(List<Hit> hits, int rejectLayer) {
 
-        // a Hit Array is used to identify clusters
-        Hit[][][] hitArray = new Hit[nsect * nslay][nwire][nlayr];
+        // a Hit Array is used to identify clusters, it is reused from
+        // one call to the next
+        this.clear();
+        Hit[][][] hitArray = HitArray;
 
         // initializing non-zero Hit Array entries
         // with valid hits
@@ -89,8 +92,23 @@ public class ClusterFinder {
                 }
             }
         }
-        this.setHitArray(hitArray);
+    }
 
+    /**
+     * Empties the hit array, allocating it again only if it was replaced by
+     * an array of another size with setHitArray
+     */
+    public void clear() {
+        if (HitArray == null || HitArray.length != nsect * nslay
+                || HitArray[0].length != nwire || HitArray[0][0].length != nlayr) {
+            HitArray = new Hit[nsect * nslay][nwire][nlayr];
+            return;
+        }
+        for (Hit[][] wires : HitArray) {
+            for (Hit[] layers : wires) {
+                Arrays.fill(layers, null);
+            }
+        }
     }
 
     /**
@@ -67,11 +67,15 @@ public class ClusterFitter {
             }
 
         }
-        FitArray.add((ArrayList<Double>) x);
-        FitArray.add((ArrayList<Double>) ex);
-        FitArray.add((ArrayList<Double>) y);
-        FitArray.add((ArrayList<Double>) ey);
-        
+        // the four lists are cleared and refilled above, they only need
+        // to be added once so that a reused fitter does not grow FitArray
+        if (FitArray.isEmpty()) {
+            FitArray.add((ArrayList<Double>) x);
+            FitArray.add((ArrayList<Double>) ex);
+            FitArray.add((ArrayList<Double>) y);
+            FitArray.add((ArrayList<Double>) ey);
+        }
+
     }
     /**
      * 
@@ -172,8 +176,8 @@ public class ClusterFitter {
             //clus.get(i).set_ClusFitDoca(FitPars.slope()*FitArray[0][i]+FitPars.intercept());
             //double xWire = GeometryLoader.dcDetector.getSector(0).getSuperlayer(clus.get(i).get_Superlayer()-1).getLayer(clus.get(i).get_Layer()-1).getComponent(clus.get(i).get_Wire()-1).getMidpoint().x();
             //double zWire = GeometryLoader.dcDetector.getSector(0).getSuperlayer(clus.get(i).get_Superlayer()-1).getLayer(clus.get(i).get_Layer()-1).getComponent(clus.get(i).get_Wire()-1).getMidpoint().z();
-            double xWire = DcDetector.getWireMidpoint(clus.get(i).get_Sector() - 1, clus.get(i).get_Superlayer() - 1, clus.get(i).get_Layer() - 1, clus.get(i).get_Wire() - 1).x;
-            double zWire = DcDetector.getWireMidpoint(clus.get(i).get_Sector() - 1, clus.get(i).get_Superlayer() - 1, clus.get(i).get_Layer() - 1, clus.get(i).get_Wire() - 1).z;
+            double xWire = DcDetector.getWireTable().getMidpointX(clus.get(i).get_Sector() - 1, clus.get(i).get_Superlayer() - 1, clus.get(i).get_Layer() - 1, clus.get(i).get_Wire() - 1);
+            double zWire = DcDetector.getWireTable().getMidpointZ(clus.get(i).get_Sector() - 1, clus.get(i).get_Superlayer() - 1, clus.get(i).get_Layer() - 1, clus.get(i).get_Wire() - 1);
 
             Line3D FitLine = new Line3D();
             Point3D pointOnTrk = new Point3D(FitArray.get(0).get(0), FitPars.slope() * FitArray.get(0).get(0) + FitPars.intercept(), 0);
@@ -0,0 +1,104 @@
+package org.jlab.rec.dc.dictionary;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free table of road keys (see RoadDictionary.getKey) with a long
+ * value per road, filled concurrently by the threads generating the
+ * dictionary. When a key is added more than once, the smallest value is
+ * kept: with the index of the generated track in the high bits of the
+ * value, the table holds the first track of each road in generation
+ * order whatever the order in which the threads process the tracks.
+ * <p>
+ * The capacity is fixed at creation (open addressing with linear
+ * probing, the keys are set with compare and swap and never moved), so
+ * it has to be sized for the number of roads expected.
+ */
+public class ConcurrentRoadTable {
+
+    private static final long EMPTY = 0;
+    private static final long UNSET = Long.MAX_VALUE;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray values;
+    private final AtomicInteger   size = new AtomicInteger();
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * @param expectedSize maximum number of roads, the table is full at 3/4 of twice this size
+     */
+    public ConcurrentRoadTable(int expectedSize) {
+        int cap = 16;
+        while (cap < 2L * expectedSize && cap < RoadDictionary.MAXCAPACITY) cap <<= 1;
+        this.capacity = cap;
+        this.mask     = cap - 1;
+        this.keys     = new AtomicLongArray(cap);
+        this.values   = new AtomicLongArray(cap);
+        for (int slot = 0; slot < cap; slot++) values.set(slot, UNSET);
+    }
+
+    /**
+     * adds a road or, if the key is already in the table, keeps the
+     * smallest of the two values.
+     * @param key road key
+     * @param value non negative value
+     * @return true if the key was not in the table
+     */
+    public boolean put(long key, long value) {
+        if (key == EMPTY) return false;
+        int slot = RoadDictionary.hash(key) & mask;
+        while (true) {
+            long k = keys.get(slot);
+            if (k == EMPTY) {
+                if (keys.compareAndSet(slot, EMPTY, key)) {
+                    if (4L * size.incrementAndGet() > 3L * capacity) {
+                        throw new IllegalStateException("[ConcurrentRoadTable] ---> table full : " + size.get() + " roads");
+                    }
+                    this.setMin(slot, value);
+                    return true;
+                }
+                // lost the slot to another thread, look at its key
+                k = keys.get(slot);
+            }
+            if (k == key) {
+                this.setMin(slot, value);
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void setMin(int slot, long value) {
+        long current;
+        while (value < (current = values.get(slot)) && !values.compareAndSet(slot, current, value));
+    }
+
+    /**
+     * @param key road key
+     * @return the slot of the road, -1 if not found
+     */
+    public int find(long key) {
+        if (key == EMPTY) return -1;
+        int slot = RoadDictionary.hash(key) & mask;
+        long k;
+        while ((k = keys.get(slot)) != EMPTY) {
+            if (k == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size()        { return size.get();}
+    public int getCapacity() { return capacity;}
+
+    /**
+     * @param slot table slot, 0 to getCapacity()-1
+     * @return true if the slot holds a road with its value set; while
+     * the table is being filled, a road just added may not have it yet
+     */
+    public boolean isEntry(int slot) { return keys.get(slot) != EMPTY && values.get(slot) != UNSET;}
+    public long getKey(int slot)     { return keys.get(slot);}
+    public long getValue(int slot)   { return values.get(slot);}
+}
@@ -0,0 +1,411 @@
+package org.jlab.rec.dc.dictionary;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Road dictionary in compact form: the road key packs the wires of the
+ * first layer of the 6 superlayers (7 bits per wire, wires 1-112) in a
+ * long, stored in an open addressing table (linear probing, at most half
+ * full) with the road parameters in parallel primitive arrays. A road
+ * costs about 60 bytes instead of the boxed list of wires and Particle of
+ * a HashMap entry.
+ * <p>
+ * The dictionary can be saved in a binary file and mapped in memory when
+ * read, so that opening it takes no time whatever its size. Layout (big
+ * endian): a 32 byte header (int magic, int version, int capacity, int
+ * size, 16 bytes reserved) followed by the arrays of capacity elements:
+ * long key, float p, theta, phi, vz, short paddle1b, paddle2, pcalu,
+ * byte charge. The mapped file is limited to 2 GB, about 30 M roads.
+ * <p>
+ * The text dictionaries written by TrackDictionaryMaker and
+ * TrackDictionaryMakerRNG can be converted with readText, the first road
+ * found for each key is kept as in TrackDictionaryValidation.
+ */
+public class RoadDictionary {
+
+    public static final int MAGIC   = 0x524f4144;
+    public static final int VERSION = 1;
+    public static final int HEADER  = 32;
+
+    // largest capacity for which the arrays fit in one buffer
+    public static final int MAXCAPACITY = 1 << 26;
+
+    public static final int NSUPERLAYERS = 6;
+    private static final int  WIREBITS = 7;
+    private static final long WIREMASK = (1L << WIREBITS) - 1;
+    private static final long EMPTY    = 0;
+
+    private int capacity;
+    private int mask;
+    private int size;
+    private final boolean readOnly;
+
+    private ByteBuffer  data;
+    private LongBuffer  keys;
+    private FloatBuffer p, theta, phi, vz;
+    private ShortBuffer paddle1b, paddle2, pcalu;
+    private ByteBuffer  charge;
+
+    /**
+     * creates an empty dictionary
+     * @param expectedSize number of roads the table is sized for, it grows if needed
+     */
+    public RoadDictionary(int expectedSize) {
+        int cap = 16;
+        while (cap < 2L * expectedSize && cap < MAXCAPACITY) cap <<= 1;
+        this.readOnly = false;
+        this.allocate(cap);
+    }
+
+    private RoadDictionary(ByteBuffer buffer, int capacity, int size) {
+        this.readOnly = true;
+        this.capacity = capacity;
+        this.mask     = capacity - 1;
+        this.size     = size;
+        this.data     = buffer;
+        this.setBuffers(buffer);
+    }
+
+    private void allocate(int cap) {
+        this.capacity = cap;
+        this.mask     = cap - 1;
+        this.size     = 0;
+        this.data     = ByteBuffer.allocate(getFileSize(cap) - HEADER);
+        this.setBuffers(data);
+    }
+
+    /**
+     * @param cap table capacity
+     * @return size in bytes of the dictionary file
+     */
+    private static int getFileSize(int cap) {
+        return HEADER + cap * (8 + 4 * 4 + 3 * 2 + 1);
+    }
+
+    // slices the arrays from a buffer that starts after the header
+    private void setBuffers(ByteBuffer buffer) {
+        int offset = 0;
+        keys     = slice(buffer, offset, 8 * capacity).asLongBuffer();   offset += 8 * capacity;
+        p        = slice(buffer, offset, 4 * capacity).asFloatBuffer();  offset += 4 * capacity;
+        theta    = slice(buffer, offset, 4 * capacity).asFloatBuffer();  offset += 4 * capacity;
+        phi      = slice(buffer, offset, 4 * capacity).asFloatBuffer();  offset += 4 * capacity;
+        vz       = slice(buffer, offset, 4 * capacity).asFloatBuffer();  offset += 4 * capacity;
+        paddle1b = slice(buffer, offset, 2 * capacity).asShortBuffer();  offset += 2 * capacity;
+        paddle2  = slice(buffer, offset, 2 * capacity).asShortBuffer();  offset += 2 * capacity;
+        pcalu    = slice(buffer, offset, 2 * capacity).asShortBuffer();  offset += 2 * capacity;
+        charge   = slice(buffer, offset, capacity);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(offset);
+        dup.limit(offset + length);
+        return dup.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * @param wires wire (1-112) of the first layer of each superlayer
+     * @return the road key, 0 if a wire is out of range
+     */
+    public static long getKey(int[] wires) {
+        return getKey(wires[0], wires[1], wires[2], wires[3], wires[4], wires[5]);
+    }
+
+    public static long getKey(int w1, int w2, int w3, int w4, int w5, int w6) {
+        if (!isWire(w1) || !isWire(w2) || !isWire(w3) || !isWire(w4) || !isWire(w5) || !isWire(w6)) {
+            return EMPTY;
+        }
+        return ((long) w1) | ((long) w2 << 7) | ((long) w3 << 14)
+                | ((long) w4 << 21) | ((long) w5 << 28) | ((long) w6 << 35);
+    }
+
+    private static boolean isWire(int wire) {
+        return wire > 0 && wire <= WIREMASK;
+    }
+
+    /**
+     * @param key road key
+     * @param superlayer superlayer (0-5)
+     * @return wire of the first layer of the superlayer
+     */
+    public static int getWire(long key, int superlayer) {
+        return (int) ((key >>> (WIREBITS * superlayer)) & WIREMASK);
+    }
+
+    static int hash(long key) {
+        // murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * adds a road, if its key is not in the dictionary yet
+     * @return false if the key is already in the dictionary or not valid
+     */
+    public boolean add(long key, int q, float p, float theta, float phi, float vz,
+            int paddle1b, int paddle2, int pcalu) {
+        if (readOnly) {
+            throw new IllegalStateException("[RoadDictionary] ---> dictionary read from file is read only");
+        }
+        if (key == EMPTY) return false;
+        if (2L * (size + 1) > capacity) this.grow();
+        int slot = hash(key) & mask;
+        long k;
+        while ((k = keys.get(slot)) != EMPTY) {
+            if (k == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        keys.put(slot, key);
+        this.p.put(slot, p);
+        this.theta.put(slot, theta);
+        this.phi.put(slot, phi);
+        this.vz.put(slot, vz);
+        this.paddle1b.put(slot, (short) paddle1b);
+        this.paddle2.put(slot, (short) paddle2);
+        this.pcalu.put(slot, (short) pcalu);
+        this.charge.put(slot, (byte) q);
+        size++;
+        return true;
+    }
+
+    private void grow() {
+        if (capacity >= MAXCAPACITY) {
+            throw new IllegalStateException("[RoadDictionary] ---> maximum number of roads reached : " + size);
+        }
+        int         oldCapacity = capacity;
+        LongBuffer  oldKeys  = keys;
+        FloatBuffer oldP     = p,        oldTheta   = theta,   oldPhi = phi, oldVz = vz;
+        ShortBuffer oldPad1b = paddle1b, oldPaddle2 = paddle2, oldPcalu = pcalu;
+        ByteBuffer  oldQ     = charge;
+        this.allocate(2 * capacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if (oldKeys.get(slot) != EMPTY) {
+                this.add(oldKeys.get(slot), oldQ.get(slot), oldP.get(slot), oldTheta.get(slot), oldPhi.get(slot),
+                        oldVz.get(slot), oldPad1b.get(slot), oldPaddle2.get(slot), oldPcalu.get(slot));
+            }
+        }
+    }
+
+    /**
+     * @param key road key
+     * @return the slot of the road, -1 if not found
+     */
+    public int find(long key) {
+        if (key == EMPTY) return -1;
+        int slot = hash(key) & mask;
+        long k;
+        while ((k = keys.get(slot)) != EMPTY) {
+            if (k == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int find(int[] wires) {
+        return this.find(getKey(wires));
+    }
+
+    /**
+     * looks for the road with the wires shifted by up to smear wires in
+     * each superlayer. When several roads match, the one returned is the
+     * one found by TrackDictionaryValidation with the HashMap dictionary:
+     * the last in order of the shifts of superlayers 1 to 5, the first in
+     * order of the shift of superlayer 6.
+     * @param wires wire (1-112) of the first layer of each superlayer
+     * @param smear maximum shift
+     * @return the slot of the road, -1 if not found
+     */
+    public int findRoad(int[] wires, int smear) {
+        if (smear <= 0) return this.find(wires);
+        int found = -1;
+        for (int k1 = -smear; k1 <= smear; k1++) {
+        for (int k2 = -smear; k2 <= smear; k2++) {
+        for (int k3 = -smear; k3 <= smear; k3++) {
+        for (int k4 = -smear; k4 <= smear; k4++) {
+        for (int k5 = -smear; k5 <= smear; k5++) {
+        for (int k6 = -smear; k6 <= smear; k6++) {
+            int slot = this.find(getKey(wires[0] + k1, wires[1] + k2, wires[2] + k3,
+                                        wires[3] + k4, wires[4] + k5, wires[5] + k6));
+            if (slot >= 0) {
+                found = slot;
+                break;
+            }
+        }}}}}}
+        return found;
+    }
+
+    public int size()        { return size;}
+    public int getCapacity() { return capacity;}
+    public boolean isReadOnly() { return readOnly;}
+
+    /**
+     * @param slot table slot, 0 to getCapacity()-1
+     * @return true if the slot holds a road
+     */
+    public boolean isEntry(int slot)  { return keys.get(slot) != EMPTY;}
+    public long  getKey(int slot)     { return keys.get(slot);}
+    public int   getCharge(int slot)  { return charge.get(slot);}
+    public float getP(int slot)       { return p.get(slot);}
+    public float getTheta(int slot)   { return theta.get(slot);}
+    public float getPhi(int slot)     { return phi.get(slot);}
+    public float getVz(int slot)      { return vz.get(slot);}
+    public int   getPaddle1b(int slot){ return paddle1b.get(slot);}
+    public int   getPaddle2(int slot) { return paddle2.get(slot);}
+    public int   getPcalU(int slot)   { return pcalu.get(slot);}
+
+    /**
+     * @return heap or file size used by the table in bytes
+     */
+    public long getMemorySize() {
+        return getFileSize(capacity);
+    }
+
+    /**
+     * writes the dictionary, through a temporary file so that jobs reading
+     * it never see a partial file.
+     * @param filename output file name
+     * @throws IOException
+     */
+    public void save(String filename) throws IOException {
+        File file = new File(filename);
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (RandomAccessFile out = new RandomAccessFile(temp, "rw");
+                 FileChannel channel = out.getChannel()) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(size);
+                header.rewind();
+                while (header.hasRemaining()) channel.write(header);
+                ByteBuffer buffer = data.duplicate();
+                buffer.rewind();
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * maps a dictionary written by save in memory, the arrays are not
+     * copied and are paged in by the lookups.
+     * @param filename file name
+     * @return the read only dictionary, null if the file is not a dictionary
+     * @throws IOException
+     */
+    public static RoadDictionary read(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() < HEADER) return null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && channel.read(header) >= 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                System.out.println("[RoadDictionary] ---> not a road dictionary file (or wrong version) : " + filename);
+                return null;
+            }
+            int capacity = header.getInt();
+            int size     = header.getInt();
+            if (Integer.bitCount(capacity) != 1 || channel.size() != getFileSize(capacity)) {
+                System.out.println("[RoadDictionary] ---> wrong size of file : " + filename);
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, channel.size() - HEADER);
+            return new RoadDictionary(buffer, capacity, size);
+        }
+    }
+
+    /**
+     * @param filename file name
+     * @return true if the file starts as a binary road dictionary
+     */
+    public static boolean isDictionaryFile(String filename) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            return file.length() >= HEADER && file.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * reads a text dictionary, one road per line with tab separated
+     * columns: charge, p, theta, phi, 36 wires (6 layers of superlayer 1,
+     * then superlayer 2...), paddle1b, vz and, in the newer files,
+     * paddle2 and pcalu. Only the roads with a wire in the first layer of
+     * each superlayer are kept.
+     * @param filename file name
+     * @return the dictionary
+     * @throws IOException
+     */
+    public static RoadDictionary readText(String filename) throws IOException {
+        RoadDictionary dictionary = new RoadDictionary(1 << 20);
+        int nLines = 0;
+        int nFull  = 0;
+        int nDupli = 0;
+        try (BufferedReader txtreader = new BufferedReader(new FileReader(filename), 1 << 16)) {
+            String line;
+            int[] wires = new int[NSUPERLAYERS];
+            while ((line = txtreader.readLine()) != null) {
+                nLines++;
+                if (nLines % 1000000 == 0) System.out.println("Read " + nLines + " roads");
+                String[] lineValues = line.split("\t");
+                if (lineValues.length < 42) {
+                    System.out.println("WARNING: dictionary line " + nLines + " incomplete: skipping");
+                    continue;
+                }
+                boolean full = true;
+                for (int i = 0; i < NSUPERLAYERS; i++) {
+                    wires[i] = Integer.parseInt(lineValues[4 + i * 6].trim());
+                    if (wires[i] <= 0) full = false;
+                }
+                if (!full) continue;
+                nFull++;
+                int paddle2 = 0;
+                int pcalu   = 0;
+                if (lineValues.length >= 44) {
+                    paddle2 = Integer.parseInt(lineValues[42].trim());
+                    pcalu   = Integer.parseInt(lineValues[43].trim());
+                }
+                boolean added = dictionary.add(getKey(wires),
+                        Integer.parseInt(lineValues[0].trim()),
+                        Float.parseFloat(lineValues[1].trim()),
+                        Float.parseFloat(lineValues[2].trim()),
+                        Float.parseFloat(lineValues[3].trim()),
+                        Float.parseFloat(lineValues[41].trim()),
+                        Integer.parseInt(lineValues[40].trim()), paddle2, pcalu);
+                if (!added) nDupli++;
+            }
+        }
+        System.out.println("Found " + nLines + " roads with " + nFull + " full ones, " + nDupli
+                + " duplicates and " + dictionary.size() + " good ones");
+        return dictionary;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("\n >>>> usage : RoadDictionary dictionary.txt dictionary.bin\n");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        RoadDictionary dictionary = readText(args[0]);
+        dictionary.save(args[1]);
+        System.out.println(String.format("%d roads written to %s (%.1f MB) in %.1f s", dictionary.size(), args[1],
+                dictionary.getMemorySize() / 1024. / 1024., (System.currentTimeMillis() - start) * 1e-3));
+    }
+}
@@ -1,8 +1,8 @@
 package org.jlab.rec.dc.hit;
 
-import eu.mihosoft.vrl.v3d.Vector3d;
 import org.jlab.clas.clas.math.FastMath;
 import org.jlab.detector.geant4.v2.DCGeant4Factory;
+import org.jlab.detector.geant4.v2.DCWireTable;
 import org.jlab.rec.dc.Constants;
 import org.jlab.rec.dc.timetodistance.TimeToDistanceEstimator;
 import org.jlab.geom.prim.Point3D;
@@ -460,7 +460,7 @@ public class FittedHit extends Hit implements Comparable<Hit> {
     public void updateHitPosition(DCGeant4Factory DcDetector) {
 
         //double z = GeometryLoader.dcDetector.getSector(0).getSuperlayer(this.get_Superlayer()-1).getLayer(this.get_Layer()-1).getComponent(this.get_Wire()-1).getMidpoint().z();
-        double z = DcDetector.getWireMidpoint(this.get_Sector() - 1, this.get_Superlayer() - 1, this.get_Layer() - 1, this.get_Wire() - 1).z;
+        double z = DcDetector.getWireTable().getMidpointZ(this.getWireId(DcDetector.getWireTable()));
         double x= this.calc_GeomCorr(DcDetector, 0); 
         //
         this.set_X(x);
@@ -476,7 +476,7 @@ public class FittedHit extends Hit implements Comparable<Hit> {
             this.set_TimeToDistance(cosTrkAngle, B, tab, tde);
         }
    
-        double z = DcDetector.getWireMidpoint(this.get_Sector() - 1, this.get_Superlayer() - 1, this.get_Layer() - 1, this.get_Wire() - 1).z;        
+        double z = DcDetector.getWireTable().getMidpointZ(this.getWireId(DcDetector.getWireTable()));        
         //double x = DcDetector.getWireMidpoint(this.get_Superlayer() - 1, this.get_Layer() - 1, this.get_Wire() - 1).x;
         double x = this.calc_GeomCorr(DcDetector, 0);
         //this.set_X(x+this.get_LeftRightAmb()*this.get_TimeToDistance());
@@ -525,12 +525,22 @@ public class FittedHit extends Hit implements Comparable<Hit> {
         this._TrkResid = _TrkResid;
     }
     
+    /**
+     * @param wires wire table of the detector geometry
+     * @return index of the hit wire in the wire table
+     */
+    private int getWireId(DCWireTable wires) {
+        return wires.getWireId(this.get_Sector()-1, this.get_Superlayer()-1, this.get_Layer()-1, this.get_Wire()-1);
+    }
+
     private double calc_GeomCorr(DCGeant4Factory DcDetector, double y) {
         
-        double xL = DcDetector.getWireLeftend(this.get_Sector()-1, this.get_Superlayer()-1, this.get_Layer()-1, this.get_Wire()-1).x;
-        double xR = DcDetector.getWireRightend(this.get_Sector()-1, this.get_Superlayer()-1, this.get_Layer()-1, this.get_Wire()-1).x;
-        double yL = DcDetector.getWireLeftend(this.get_Sector()-1, this.get_Superlayer()-1, this.get_Layer()-1, this.get_Wire()-1).y;
-        double yR = DcDetector.getWireRightend(this.get_Sector()-1, this.get_Superlayer()-1, this.get_Layer()-1, this.get_Wire()-1).y;
+        DCWireTable wires = DcDetector.getWireTable();
+        int wireId = this.getWireId(wires);
+        double xL = wires.getLeftendX(wireId);
+        double xR = wires.getRightendX(wireId);
+        double yL = wires.getLeftendY(wireId);
+        double yR = wires.getRightendY(wireId);
         
         double DL = Constants.MAXENDPLTDEFLEC[this.get_Region()-1][this.get_Sector()-1][0];
         double DR = Constants.MAXENDPLTDEFLEC[this.get_Region()-1][this.get_Sector()-1][1];
@@ -725,33 +735,43 @@ public class FittedHit extends Hit implements Comparable<Hit> {
      */
     public double calc_SignalPropagAlongWire(DCGeant4Factory DcDetector) {
         
-        Vector3d WireEnd;
+        DCWireTable wires = DcDetector.getWireTable();
+        int wireId = this.getWireId(wires);
+        double endX;
+        double endY;
         int end = Constants.STBLOC[this.get_Sector()-1][this.get_Superlayer()-1];
         if(end>0) {
-            WireEnd = DcDetector.getWireRightend(this.get_Sector()-1, this.get_Superlayer() - 1, this.get_Layer() - 1, this.get_Wire() - 1);
+            endX = wires.getRightendX(wireId);
+            endY = wires.getRightendY(wireId);
         } else {
-            WireEnd = DcDetector.getWireLeftend(this.get_Sector()-1, this.get_Superlayer() - 1, this.get_Layer() - 1, this.get_Wire() - 1);
+            endX = wires.getLeftendX(wireId);
+            endY = wires.getLeftendY(wireId);
         }
         
         double X = this.getCrossDirIntersWire().x();
         double Y = this.getCrossDirIntersWire().y();
         
-        double r2 = (X-WireEnd.x)*(X-WireEnd.x) + (Y-WireEnd.y)*(Y-WireEnd.y);
+        double r2 = (X-endX)*(X-endX) + (Y-endY)*(Y-endY);
         
         return Math.sqrt(r2);
     }
     
     public double calc_SignalPropagAlongWire(double X, double Y, DCGeant4Factory DcDetector) {
         
-        Vector3d WireEnd;
+        DCWireTable wires = DcDetector.getWireTable();
+        int wireId = this.getWireId(wires);
+        double endX;
+        double endY;
         int end = Constants.STBLOC[this.get_Sector()-1][this.get_Superlayer()-1];
         if(end>0) {
-            WireEnd = DcDetector.getWireRightend(this.get_Sector()-1, this.get_Superlayer() - 1, this.get_Layer() - 1, this.get_Wire() - 1);
+            endX = wires.getRightendX(wireId);
+            endY = wires.getRightendY(wireId);
         } else {
-            WireEnd = DcDetector.getWireLeftend(this.get_Sector()-1, this.get_Superlayer() - 1, this.get_Layer() - 1, this.get_Wire() - 1);
+            endX = wires.getLeftendX(wireId);
+            endY = wires.getLeftendY(wireId);
         }
         
-        double r2 = (X-WireEnd.x)*(X-WireEnd.x) + (Y-WireEnd.y)*(Y-WireEnd.y);
+        double r2 = (X-endX)*(X-endX) + (Y-endY)*(Y-endY);
         
         return Math.sqrt(r2);
     }
@@ -0,0 +1,68 @@
+package org.jlab.rec.dc.timetodistance;
+
+import org.jlab.detector.calib.utils.DatabaseConstantProvider;
+
+/**
+ * T0 corrections and their errors for one run and database variation,
+ * by sector, superlayer, slot and cable. The tables are not modified
+ * after they are loaded.
+ */
+public class T0Table {
+
+    public static final String T0CORRECTIONS = "/calibration/dc/time_corrections/T0Corrections";
+
+    private final int    run;
+    private final String variation;
+    private final double[][][][] t0    = new double[6][6][7][6]; //nSec*nSL*nSlots*nCables
+    private final double[][][][] t0Err = new double[6][6][7][6]; //nSec*nSL*nSlots*nCables
+
+    private T0Table(int run, String variation) {
+        this.run       = run;
+        this.variation = variation;
+    }
+
+    /**
+     * reads the T0 corrections of the run from the database.
+     * @param run run number
+     * @param variation database variation
+     * @return the tables
+     */
+    public static T0Table load(int run, String variation) {
+        T0Table table = new T0Table(run, variation);
+        DatabaseConstantProvider dbprovider = new DatabaseConstantProvider(run, variation);
+        dbprovider.loadTable(T0CORRECTIONS);
+        //disconnect from database. Important to do this after loading tables.
+        dbprovider.disconnect();
+        for (int i = 0; i < dbprovider.length(T0CORRECTIONS+"/Sector"); i++) {
+            int iSec = dbprovider.getInteger(T0CORRECTIONS+"/Sector", i);
+            int iSly = dbprovider.getInteger(T0CORRECTIONS+"/Superlayer", i);
+            int iSlot = dbprovider.getInteger(T0CORRECTIONS+"/Slot", i);
+            int iCab = dbprovider.getInteger(T0CORRECTIONS+"/Cable", i);
+            table.t0[iSec - 1][iSly - 1][iSlot - 1][iCab - 1] = dbprovider.getDouble(T0CORRECTIONS+"/T0Correction", i);
+            table.t0Err[iSec - 1][iSly - 1][iSlot - 1][iCab - 1] = dbprovider.getDouble(T0CORRECTIONS+"/T0Error", i);
+        }
+        return table;
+    }
+
+    public int getRun() {
+        return run;
+    }
+
+    public String getVariation() {
+        return variation;
+    }
+
+    /**
+     * @return T0 corrections in ns, by sector, superlayer, slot and cable
+     */
+    public double[][][][] getT0() {
+        return t0;
+    }
+
+    /**
+     * @return errors of the T0 corrections in ns
+     */
+    public double[][][][] getT0Err() {
+        return t0Err;
+    }
+}
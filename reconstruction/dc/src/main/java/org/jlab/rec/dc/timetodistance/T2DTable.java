@@ -0,0 +1,343 @@
+package org.jlab.rec.dc.timetodistance;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.jlab.rec.dc.Constants;
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * Immutable time-to-distance grid for one run and database variation.
+ * The distance for each (sector, superlayer, B field bin, alpha bin) cell
+ * is stored in one flat array, only up to the last filled time bin of the
+ * cell; later bins read as 0 as in the fully allocated grid.
+ */
+public class T2DTable {
+
+    public static final int NSECTORS     = 6;
+    public static final int NSUPERLAYERS = 6;
+    public static final int NBFIELDBINS  = 8;
+    public static final int NALPHABINS   = 6;
+    public static final int NCELLS       = NSECTORS*NSUPERLAYERS*NBFIELDBINS*NALPHABINS;
+
+    public static final int CACHE_MAGIC   = 0x54324443;
+    public static final int CACHE_VERSION = 1;
+
+    private final int      run;
+    private final String   variation;
+    private final double[] dmax       = new double[NSUPERLAYERS];
+    private final int[]    maxBinIdxT = new int[NCELLS];
+    private final int[]    cellOffset = new int[NCELLS];
+    private final double[] distFromTime;
+
+    private T2DTable(int run, String variation, double[] dmax, double[][] cells, int[] maxBin) {
+        this.run       = run;
+        this.variation = variation;
+        System.arraycopy(dmax, 0, this.dmax, 0, NSUPERLAYERS);
+        System.arraycopy(maxBin, 0, maxBinIdxT, 0, NCELLS);
+        int size = 0;
+        for(int c = 0; c < NCELLS; c++) {
+            cellOffset[c] = size;
+            size += cells[c].length;
+        }
+        distFromTime = new double[size];
+        for(int c = 0; c < NCELLS; c++) {
+            System.arraycopy(cells[c], 0, distFromTime, cellOffset[c], cells[c].length);
+        }
+    }
+
+    /**
+     * builds the grid from the time2dist calibration table, the sectors and
+     * superlayers are filled in parallel.
+     * @param run run number
+     * @param variation database variation
+     * @param tab /calibration/dc/time_to_distance/time2dist table
+     * @return the grid
+     */
+    public static T2DTable create(int run, String variation, IndexedTable tab) {
+        final double[]   dmax   = getDmax();
+        final double[][] cells  = new double[NCELLS][];
+        final int[]      maxBin = new int[NCELLS];
+        final double[][] pars   = new double[NSECTORS*NSUPERLAYERS][];
+        for(int s = 0; s<NSECTORS; s++ ){
+            for(int r = 0; r<NSUPERLAYERS; r++ ){
+                pars[s*NSUPERLAYERS+r] = TableLoader.getT2DParameters(tab, s, r);
+            }
+        }
+        // each task writes only the cells of its sector and superlayer
+        IntStream.range(0, NSECTORS*NSUPERLAYERS).parallel().forEach(i -> {
+            fill(i/NSUPERLAYERS, i%NSUPERLAYERS, dmax[i%NSUPERLAYERS], pars[i], cells, maxBin);
+        });
+        return new T2DTable(run, variation, dmax, cells, maxBin);
+    }
+
+    private static void fill(int s, int r, double dmax, double[] pars, double[][] cells, int[] maxBin) {
+        double stepSize = 0.0010;
+        int nBinsT = TableLoader.nBinsT;
+        double[] grid = new double[nBinsT];
+        double tmax = pars[TableLoader.T2D_TMAX];
+
+        for(int ibfield =0; ibfield<NBFIELDBINS; ibfield++) {
+            double bfield = (double)ibfield*0.5;
+            double maxdist =0;
+            // time at dmax for 30 deg, the same for all distances and angles
+            double timemax = TableLoader.calc_Time( dmax,  dmax,  tmax,  30, bfield, pars);
+
+            for(int icosalpha =0; icosalpha<NALPHABINS; icosalpha++) {
+                int cell = getCell(s, r, ibfield, icosalpha);
+                Arrays.fill(grid, 0);
+
+                double cos30minusalpha = Math.cos(Math.toRadians(30.)) + (double) (icosalpha)*(1. - Math.cos(Math.toRadians(30.)))/5.;
+                double alpha = -(Math.toDegrees(Math.acos(cos30minusalpha)) - 30);
+                int nxmax = (int) (dmax/stepSize);
+
+                for(int idist =0; idist<nxmax; idist++) {
+                    double x = (double)(idist+1)*stepSize;
+                    double timebfield = TableLoader.calc_Time( x,  dmax,  tmax,  alpha, bfield, pars) ;
+
+                    if(timebfield<=timemax)
+                        maxdist=x;
+
+                    if(timebfield>timemax)
+                        x=maxdist;
+
+                    int tbin = getTimeBin(timebfield) -1;
+
+                    if(tbin<0)
+                        tbin=0;
+                    if(tbin>=nBinsT)
+                        tbin = nBinsT-1;
+                    if(tbin>maxBin[cell]) {
+                        maxBin[cell] = tbin;
+                    }
+                    if(grid[tbin]==0) {
+                        grid[tbin]=x;
+                    } else {
+                        grid[tbin]+=stepSize;
+                    }
+                }
+                cells[cell] = Arrays.copyOf(grid, maxBin[cell]+1);
+            }
+        }
+    }
+
+    private static double[] getDmax() {
+        double[] dmax = new double[NSUPERLAYERS];
+        for(int r = 0; r<NSUPERLAYERS; r++ ) dmax[r] = 2.*Constants.wpdist[r];
+        return dmax;
+    }
+
+    /**
+     * gets the grid from the cache directory if a grid built from the same
+     * time2dist values is there, otherwise builds it and saves it in the
+     * directory.
+     * @param run run number
+     * @param variation database variation
+     * @param tab /calibration/dc/time_to_distance/time2dist table
+     * @param directory cache directory, null or empty to always build the grid
+     * @return the grid
+     */
+    public static T2DTable load(int run, String variation, IndexedTable tab, String directory) {
+        if(directory==null||directory.isEmpty()) return create(run, variation, tab);
+
+        String filename = directory + File.separator + "t2d-" + getHash(tab) + ".dat";
+        if(new File(filename).exists()) {
+            T2DTable table = read(filename, run, variation);
+            if(table!=null) {
+                System.out.println(" T2D TABLE READ FROM CACHE..... " + filename);
+                return table;
+            }
+        }
+        T2DTable table = create(run, variation, tab);
+        try {
+            new File(directory).mkdirs();
+            table.save(filename);
+        } catch (IOException e) {
+            System.out.println(" T2D TABLE CACHE NOT WRITTEN..... " + filename + " (" + e.getMessage() + ")");
+        }
+        return table;
+    }
+
+    /**
+     * hash of everything the grid depends on: the time2dist values used by
+     * calc_Time, the wire plane distances and the grid parameters.
+     * @param tab /calibration/dc/time_to_distance/time2dist table
+     * @return hex string of the SHA-1 digest
+     */
+    public static String getHash(IndexedTable tab) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            ByteBuffer buffer = ByteBuffer.allocate(8*(4 + NSUPERLAYERS
+                    + NSECTORS*NSUPERLAYERS*TableLoader.T2D_COLUMNS.length));
+            buffer.putLong(CACHE_VERSION);
+            buffer.putLong(TableLoader.nBinsT);
+            buffer.putDouble(TableLoader.FracDmaxAtMinVel);
+            buffer.putLong(NCELLS);
+            for(double d : getDmax()) buffer.putDouble(d);
+            for(int s = 0; s<NSECTORS; s++ ){
+                for(int r = 0; r<NSUPERLAYERS; r++ ){
+                    for(double par : TableLoader.getT2DParameters(tab, s, r)) buffer.putDouble(par);
+                }
+            }
+            byte[] hash = digest.digest(buffer.array());
+            StringBuilder str = new StringBuilder();
+            for(byte b : hash) str.append(String.format("%02x", b));
+            return str.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * writes the grid to a file, through a temporary file so that jobs
+     * reading the cache never see a partial file. Layout (big endian):
+     * int magic, int version, NSUPERLAYERS x double dmax, NCELLS x int
+     * maxBinIdxT, int size, size x double distance, long crc32.
+     * @param filename output file name
+     * @throws IOException
+     */
+    public void save(String filename) throws IOException {
+        File file = new File(filename);
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            CRC32 crc = new CRC32();
+            try (FileOutputStream fileStream = new FileOutputStream(temp)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(fileStream, crc)));
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                for(double d : dmax) out.writeDouble(d);
+                for(int bin : maxBinIdxT) out.writeInt(bin);
+                out.writeInt(distFromTime.length);
+                for(double d : distFromTime) out.writeDouble(d);
+                out.flush();
+                DataOutputStream tail = new DataOutputStream(fileStream);
+                tail.writeLong(crc.getValue());
+                tail.flush();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * reads a grid written by save.
+     * @param filename file name
+     * @param run run number of the grid
+     * @param variation database variation of the grid
+     * @return the grid, or null if the file can not be read or is corrupted
+     */
+    public static T2DTable read(String filename, int run, String variation) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            int length = (int) channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while(buffer.hasRemaining() && channel.read(buffer)>=0);
+            buffer.flip();
+            if(length<8) return null;
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, length-8);
+            if(crc.getValue()!=buffer.getLong(length-8)) {
+                System.out.println(" T2D TABLE CACHE CHECKSUM ERROR..... " + filename);
+                return null;
+            }
+            if(buffer.getInt()!=CACHE_MAGIC || buffer.getInt()!=CACHE_VERSION) return null;
+
+            double[] dmax = new double[NSUPERLAYERS];
+            for(int r = 0; r<NSUPERLAYERS; r++) dmax[r] = buffer.getDouble();
+            int[] maxBin = new int[NCELLS];
+            for(int c = 0; c<NCELLS; c++) maxBin[c] = buffer.getInt();
+            int size = buffer.getInt();
+            double[][] cells = new double[NCELLS][];
+            for(int c = 0; c<NCELLS; c++) {
+                cells[c] = new double[maxBin[c]+1];
+                buffer.asDoubleBuffer().get(cells[c]);
+                buffer.position(buffer.position() + 8*cells[c].length);
+                size -= cells[c].length;
+            }
+            if(size!=0) return null;
+            return new T2DTable(run, variation, dmax, cells, maxBin);
+        } catch (Exception e) {
+            System.out.println(" T2D TABLE CACHE NOT READ..... " + filename + " (" + e.getMessage() + ")");
+        }
+        return null;
+    }
+
+    /**
+     * time bin number (starting at 1) of a time, the time divided by the
+     * 2 ns bin width rounded up. Same as formatting t/2 with a ceiling
+     * rounding DecimalFormat and parsing the result, without the string.
+     * @param time time in ns
+     * @return time bin
+     */
+    public static int getTimeBin(double time) {
+        return (int) Math.ceil(time/2.);
+    }
+
+    public static int getCell(int sector, int superlayer, int ibfield, int icosalpha) {
+        return ((sector*NSUPERLAYERS + superlayer)*NBFIELDBINS + ibfield)*NALPHABINS + icosalpha;
+    }
+
+    public int getRun() {
+        return run;
+    }
+
+    public String getVariation() {
+        return variation;
+    }
+
+    /**
+     * @param superlayer superlayer index (0...5)
+     * @return the maximum distance to the wire (cm) used to build the grid
+     */
+    public double getDmax(int superlayer) {
+        return dmax[superlayer];
+    }
+
+    /**
+     * @param sector sector index (0...5)
+     * @param superlayer superlayer index (0...5)
+     * @param ibfield bfield bin (0...7)
+     * @param icosalpha cosalpha bin (0...5)
+     * @return last filled time bin of the cell
+     */
+    public int getMaxBinIdxT(int sector, int superlayer, int ibfield, int icosalpha) {
+        return maxBinIdxT[getCell(sector, superlayer, ibfield, icosalpha)];
+    }
+
+    /**
+     * @param sector sector index (0...5)
+     * @param superlayer superlayer index (0...5)
+     * @param ibfield bfield bin (0...7)
+     * @param icosalpha cosalpha bin (0...5)
+     * @param tbin time bin
+     * @return distance to the wire (cm) in the time bin
+     */
+    public double getDistance(int sector, int superlayer, int ibfield, int icosalpha, int tbin) {
+        int cell = getCell(sector, superlayer, ibfield, icosalpha);
+        if(tbin<0 || tbin>maxBinIdxT[cell]) return 0;
+        return distFromTime[cellOffset[cell] + tbin];
+    }
+
+    /**
+     * @return number of stored grid values
+     */
+    public int getSize() {
+        return distFromTime.length;
+    }
+}
@@ -1,9 +1,7 @@
 package org.jlab.rec.dc.timetodistance;
 
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
-import org.jlab.detector.calib.utils.DatabaseConstantProvider;
-import org.jlab.rec.dc.Constants;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.jlab.utils.groups.IndexedTable;
 
 
@@ -13,34 +11,48 @@ public class TableLoader {
             // TODO Auto-generated constructor stub
     }
     static final protected int nBinsT=2000;
-    //public static double[][][][][] DISTFROMTIME = new double[6][6][6][6][850]; // sector slyr alpha Bfield time bins
-    public static double[][][][][] DISTFROMTIME = new double[6][6][8][6][nBinsT]; // sector slyr alpha Bfield time bins
-    static boolean T2DLOADED = false;
-    static boolean T0LOADED = false;
     static int minBinIdxB = 0;
     static int maxBinIdxB = 7;
     static int minBinIdxAlpha = 0;
     static int maxBinIdxAlpha = 6;
     static int minBinIdxT  = 0;
-    static int[][][][] maxBinIdxT  = new int[6][6][8][6];
+
+    // time-to-distance grids by run/variation, the least recently used is dropped
+    static final int T2DCACHESIZE = 4;
+    private static final Map<String,T2DTable> T2DTABLES = new LinkedHashMap<String,T2DTable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,T2DTable> eldest) {
+            return size() > T2DCACHESIZE;
+        }
+    };
+    // T0 corrections by run/variation, the least recently used is dropped
+    static final int T0CACHESIZE = 4;
+    private static final Map<String,T0Table> T0TABLES = new LinkedHashMap<String,T0Table>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,T0Table> eldest) {
+            return size() > T0CACHESIZE;
+        }
+    };
+    // directory where built grids are kept for later jobs, empty for none
+    private static volatile String t2dCacheDir = null;
 
     public static double FracDmaxAtMinVel = 0.615;		// fraction of dmax corresponding to the point in the cell where the velocity is minimal
 
     /*
      * 
      */
-    public void test(){
-            TimeToDistanceEstimator tde = new TimeToDistanceEstimator();
+    public void test(T2DTable table){
+            TimeToDistanceEstimator tde = new TimeToDistanceEstimator(table);
             for(int s = 0; s<1; s++ ){ // loop over sectors
                     for(int r = 2; r<3; r++ ){ //loop over slys
                             for(int ibfield =0; ibfield<8; ibfield++) {
                                     for(int icosalpha =0; icosalpha<6; icosalpha++) {
-                                            for (int tb = 0; tb< maxBinIdxT[s][r][ibfield][icosalpha]; tb++) {
+                                            for (int tb = 0; tb< table.getMaxBinIdxT(s, r, ibfield, icosalpha); tb++) {
                                                 double Xalpha = -(Math.toDegrees(Math.acos(Math.cos(Math.toRadians(30.)) + (icosalpha)*(1. - Math.cos(Math.toRadians(30.)))/5.)) - 30.);
                                                 double Xtime=(2*tb+1);
                                                 double Xdoca=tde.interpolateOnGrid((double) ibfield*0.5, Xalpha, Xtime, s, r);
                                                     System.out.println("s "+(s+1)+" sl "+(r+1)+" time "+(2*tb+1)
-                                                            +" icosalpha "+icosalpha+" Xalpha "+Xalpha+" B "+ ibfield*0.5 + " dis "+ (float)DISTFROMTIME[s][r][ibfield][icosalpha][tb] +" "+
+                                                            +" icosalpha "+icosalpha+" Xalpha "+Xalpha+" B "+ ibfield*0.5 + " dis "+ (float)table.getDistance(s, r, ibfield, icosalpha, tb) +" "+
                                                           (float) Xdoca );
                                             }
 
@@ -52,101 +64,70 @@ public class TableLoader {
     
     
     
-    public static synchronized void FillT0Tables(int run, String variation) {
-        if (T0LOADED) return;
-        System.out.println(" T0 TABLE FILLED..... for Run "+run+" with VARIATION "+variation);
-        DatabaseConstantProvider dbprovider = new DatabaseConstantProvider(run, variation);
-        dbprovider.loadTable("/calibration/dc/time_corrections/T0Corrections");
-        //disconnect from database. Important to do this after loading tables.
-        dbprovider.disconnect();
-        // T0-subtraction
-        double[][][][] T0 ;
-        double[][][][] T0ERR ;
-        //T0s
-        T0 = new double[6][6][7][6]; //nSec*nSL*nSlots*nCables
-        T0ERR = new double[6][6][7][6]; //nSec*nSL*nSlots*nCables
-        for (int i = 0; i < dbprovider.length("/calibration/dc/time_corrections/T0Corrections/Sector"); i++) {
-            int iSec = dbprovider.getInteger("/calibration/dc/time_corrections/T0Corrections/Sector", i);
-            int iSly = dbprovider.getInteger("/calibration/dc/time_corrections/T0Corrections/Superlayer", i);
-            int iSlot = dbprovider.getInteger("/calibration/dc/time_corrections/T0Corrections/Slot", i);
-            int iCab = dbprovider.getInteger("/calibration/dc/time_corrections/T0Corrections/Cable", i);
-            double t0 = dbprovider.getDouble("/calibration/dc/time_corrections/T0Corrections/T0Correction", i);
-            double t0Error = dbprovider.getDouble("/calibration/dc/time_corrections/T0Corrections/T0Error", i);
-
-            T0[iSec - 1][iSly - 1][iSlot - 1][iCab - 1] = t0; 
-            T0ERR[iSec - 1][iSly - 1][iSlot - 1][iCab - 1] = t0Error;
-            Constants.setT0(T0);
-            Constants.setT0Err(T0ERR);
-            //System.out.println("T0 = "+t0);
+    /**
+     * gets the T0 corrections of a run, read from the database the first
+     * time the run/variation is requested and then taken from the cache.
+     * @param run run number
+     * @param variation database variation
+     * @return the T0 tables of the run
+     */
+    public static synchronized T0Table getT0Table(int run, String variation) {
+        String key = run + "/" + variation;
+        T0Table table = T0TABLES.get(key);
+        if (table == null) {
+            table = T0Table.load(run, variation);
+            T0TABLES.put(key, table);
+            System.out.println(" T0 TABLE FILLED..... for Run "+run+" with VARIATION "+variation);
         }
-        T0LOADED = true;
+        return table;
     }
-    
-    public static synchronized void Fill(IndexedTable tab) {
-        //CCDBTables 0 =  "/calibration/dc/signal_generation/doca_resolution";
-        //CCDBTables 1 =  "/calibration/dc/time_to_distance/t2d";
-        //CCDBTables 2 =  "/calibration/dc/time_corrections/T0_correction";	
-        if (T2DLOADED) return;
-        System.out.println(" T2D TABLE FILLED.....");
-        double stepSize = 0.0010;
-        DecimalFormat df = new DecimalFormat("#");
-        df.setRoundingMode(RoundingMode.CEILING);
-        for(int s = 0; s<6; s++ ){ // loop over sectors
-
-                for(int r = 0; r<6; r++ ){ //loop over slys
-                        double dmax = 2.*Constants.wpdist[r]; 
-                        //double tmax = CCDBConstants.getTMAXSUPERLAYER()[s][r];
-                        double tmax = tab.getDoubleValue("tmax", s+1,r+1,0);
-
-                        for(int ibfield =0; ibfield<8; ibfield++) {
-                            double bfield = (double)ibfield*0.5;
-
-                            double maxdist =0;
-
-                                for(int icosalpha =0; icosalpha<6; icosalpha++) {
-
-                                        double cos30minusalpha = Math.cos(Math.toRadians(30.)) + (double) (icosalpha)*(1. - Math.cos(Math.toRadians(30.)))/5.;
 
-                                        double alpha = -(Math.toDegrees(Math.acos(cos30minusalpha)) - 30);
-
-                                        int nxmax = (int) (dmax/stepSize); 
-
-                                        for(int idist =0; idist<nxmax; idist++) {
-
-                                                double x = (double)(idist+1)*stepSize;
-                                                double timebfield = calc_Time( x,  dmax,  tmax,  alpha, bfield, s, r, tab) ;
-
-                                                if(timebfield<=calc_Time( dmax,  dmax,  tmax,  30, bfield, s, r, tab))
-                                                        maxdist=x;
-
-                                                if(timebfield>calc_Time( dmax,  dmax,  tmax,  30, bfield, s, r, tab))
-                                                        x=maxdist;
+    /**
+     * gets the time-to-distance grid of a run, the grid is built from the
+     * time2dist table the first time the run/variation is requested and
+     * then taken from the cache.
+     * @param run run number
+     * @param variation database variation
+     * @param tab /calibration/dc/time_to_distance/time2dist table for the run
+     * @return the grid
+     */
+    public static synchronized T2DTable getT2DTable(int run, String variation, IndexedTable tab) {
+        String key = run + "/" + variation;
+        T2DTable table = T2DTABLES.get(key);
+        if (table == null) {
+            long start = System.currentTimeMillis();
+            table = T2DTable.load(run, variation, tab, getT2DCacheDir());
+            T2DTABLES.put(key, table);
+            System.out.println(" T2D TABLE FILLED..... for Run "+run+" with VARIATION "+variation
+                    +" ("+(System.currentTimeMillis()-start)+" ms)");
+        }
+        return table;
+    }
 
-                                            int tbin = Integer.parseInt(df.format(timebfield/2.) ) -1;
+    /**
+     * sets the directory where the time-to-distance grids are saved, keyed
+     * by a hash of the time2dist values, so that later jobs read the grid
+     * instead of building it. By default the directory is taken from the
+     * property CLAS12_T2D_CACHE or the environment variable of the same
+     * name; without either no cache is used.
+     * @param directory cache directory, null or empty to disable the cache
+     */
+    public static void setT2DCacheDir(String directory) {
+        t2dCacheDir = directory == null ? "" : directory;
+    }
 
+    public static String getT2DCacheDir() {
+        if (t2dCacheDir == null) {
+            String directory = System.getProperty("CLAS12_T2D_CACHE");
+            if (directory == null) directory = System.getenv("CLAS12_T2D_CACHE");
+            t2dCacheDir = directory == null ? "" : directory;
+        }
+        return t2dCacheDir;
+    }
 
-                                            if(tbin<0)
-                                                tbin=0;
-                                            if(tbin>=nBinsT)
-                                                tbin = nBinsT-1;
-                                            if(tbin>maxBinIdxT[s][r][ibfield][icosalpha]) {
-                                                maxBinIdxT[s][r][ibfield][icosalpha] = tbin; 
-                                            } //System.out.println("tbin "+tbin+" tmax "+tmax+ "s "+s+" sl "+r );
-                                            if(DISTFROMTIME[s][r][ibfield][icosalpha][tbin]==0) {
-                                                // firstbin = bin;
-                                                // bincount = 0;				    	 
-                                                DISTFROMTIME[s][r][ibfield][icosalpha][tbin]=x;
-                                            } else {
-                                                // bincount++;
-                                                DISTFROMTIME[s][r][ibfield][icosalpha][tbin]+=stepSize;
-                                            }
-                                        }
-                                }
-                        }
-                }
-        }	
-        T2DLOADED = true;
-     }
+    public static T2DTable Fill(int run, String variation, IndexedTable tab) {
+        return getT2DTable(run, variation, tab);
+    }
 
     /**
      * 
@@ -159,17 +140,32 @@ public class TableLoader {
      * @param r superlayer idx
      * @return returns time (ns) when given inputs of distance x (cm), local angle alpha (degrees) and magnitude of bfield (Tesla).  
      */
-    public static synchronized double calc_Time(double x, double dmax, double tmax, double alpha, double bfield, int s, int r, IndexedTable tab) {
+    public static double calc_Time(double x, double dmax, double tmax, double alpha, double bfield, int s, int r, IndexedTable tab) {
+        return calc_Time(x, dmax, tmax, alpha, bfield, getT2DParameters(tab, s, r));
+    }
+
+    /**
+     * same as {@link #calc_Time(double, double, double, double, double, int, int, IndexedTable)}
+     * with the table values of the sector and superlayer already read.
+     * @param x distance to wire in cm
+     * @param dmax max distance to wire in cm
+     * @param tmax max drift time in ns
+     * @param alpha local angle in deg
+     * @param bfield B field value a x in T
+     * @param pars values from {@link #getT2DParameters(IndexedTable, int, int)}
+     * @return time (ns)
+     */
+    public static double calc_Time(double x, double dmax, double tmax, double alpha, double bfield, double[] pars) {
 
         // Assume a functional form (time=x/v0+a*(x/dmax)**n+b*(x/dmax)**m)
         // for time as a function of x for theta = 30 deg.
         // first, calculate n
-        double deltanm = tab.getDoubleValue("deltanm", s+1,r+1,0);
+        double deltanm = pars[T2D_DELTANM];
         double n = ( 1.+ (deltanm-1.)*Math.pow(FracDmaxAtMinVel, deltanm) )/( 1.- Math.pow(FracDmaxAtMinVel, deltanm));
         //now, calculate m
         double m = n + deltanm;
         // determine b from the requirement that the time = tmax at dist=dmax
-        double v0 = tab.getDoubleValue("v0", s+1,r+1,0);
+        double v0 = pars[T2D_V0];
         double b = (tmax - dmax/v0)/(1.- m/n);
         // determine a from the requirement that the derivative at
         // d=dmax equal the derivative at d=0
@@ -197,19 +193,46 @@ public class TableLoader {
         //	   a track with local angle alpha (for local angle = alpha)
         // double deltatime_bfield = CCDBConstants.getDELT_BFIELD_COEFFICIENT()[s][r]*Math.pow(bfield,2)*tmax*(CCDBConstants.getDELTATIME_BFIELD_PAR1()[s][r]*xhatalpha+CCDBConstants.getDELTATIME_BFIELD_PAR2()[s][r]*Math.pow(xhatalpha, 2)+
         //		 CCDBConstants.getDELTATIME_BFIELD_PAR3()[s][r]*Math.pow(xhatalpha, 3)+CCDBConstants.getDELTATIME_BFIELD_PAR4()[s][r]*Math.pow(xhatalpha, 4));
-        double delBf = tab.getDoubleValue("delta_bfield_coefficient", s+1,r+1,0); 
+        double delBf = pars[T2D_DELBF]; 
         //delBf = 0.15;
-        double deltatime_bfield = delBf*Math.pow(bfield,2)*tmax*(tab.getDoubleValue("b1", s+1,r+1,0)*xhatalpha+tab.getDoubleValue("b2", s+1,r+1,0)*Math.pow(xhatalpha, 2)+
-                     tab.getDoubleValue("b3", s+1,r+1,0)*Math.pow(xhatalpha, 3)+tab.getDoubleValue("b4", s+1,r+1,0)*Math.pow(xhatalpha, 4));
+        double deltatime_bfield = delBf*Math.pow(bfield,2)*tmax*(pars[T2D_B1]*xhatalpha+pars[T2D_B2]*Math.pow(xhatalpha, 2)+
+                     pars[T2D_B3]*Math.pow(xhatalpha, 3)+pars[T2D_B4]*Math.pow(xhatalpha, 4));
         // System.out.println("dB "+deltatime_bfield+" raw time "+time);
         //calculate the time at alpha deg. and at a non-zero bfield	          
         time += deltatime_bfield;
         //added deta(T0) correction
-        time+= tab.getDoubleValue("delta_T0", s+1,r+1,0);
+        time+= pars[T2D_DELTAT0];
 
         return time;
     }
 
+    // positions of the time2dist values in the array used by calc_Time
+    static final int T2D_DELTANM  = 0;
+    static final int T2D_V0       = 1;
+    static final int T2D_DELBF    = 2;
+    static final int T2D_B1       = 3;
+    static final int T2D_B2       = 4;
+    static final int T2D_B3       = 5;
+    static final int T2D_B4       = 6;
+    static final int T2D_DELTAT0  = 7;
+    static final int T2D_TMAX     = 8;
+    static final String[] T2D_COLUMNS = {"deltanm", "v0", "delta_bfield_coefficient",
+        "b1", "b2", "b3", "b4", "delta_T0", "tmax"};
+
+    /**
+     * @param tab /calibration/dc/time_to_distance/time2dist table
+     * @param s sector idx
+     * @param r superlayer idx
+     * @return the time2dist values used by calc_Time for the sector and superlayer
+     */
+    public static double[] getT2DParameters(IndexedTable tab, int s, int r) {
+        double[] pars = new double[T2D_COLUMNS.length];
+        for (int i = 0; i < pars.length; i++) {
+            pars[i] = tab.getDoubleValue(T2D_COLUMNS[i], s+1,r+1,0);
+        }
+        return pars;
+    }
+
 	//public static void main(String args[]) {
 	//	CalibrationConstantsLoader.Load(10, "default");
 	//	TableLoader tbl = new TableLoader();
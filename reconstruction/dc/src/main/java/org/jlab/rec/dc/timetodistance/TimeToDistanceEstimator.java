@@ -1,15 +1,37 @@
 package org.jlab.rec.dc.timetodistance;
 
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
-import org.jlab.rec.dc.Constants;
+public class TimeToDistanceEstimator {
 
+    private static final double COS30 = Math.cos(Math.toRadians(30.));
 
-public class TimeToDistanceEstimator {
+    // cos30-cos(alpha) at the alpha bin values, used for the interpolation in alpha
+    private static final double[] ALPHABINCOS = new double[TableLoader.maxBinIdxAlpha];
+    static {
+        for(int i = 0; i < ALPHABINCOS.length; i++) {
+            ALPHABINCOS[i] = COS30-Math.cos(Math.toRadians(getAlphaFromAlphaIdx(i)));
+        }
+    }
+
+    // grid used for the interpolation
+    private final T2DTable t2dTable;
+
+    /**
+     * @param table time-to-distance grid of the run
+     */
+    public TimeToDistanceEstimator(T2DTable table) {
+        if(table == null) {
+            throw new IllegalArgumentException("no time-to-distance grid");
+        }
+        this.t2dTable = table;
+    }
 
-    public TimeToDistanceEstimator() {
-            // TODO Auto-generated constructor stub
+    /**
+     * @return the grid used for the interpolation
+     */
+    public T2DTable getT2DTable() {
+        return t2dTable;
     }
+
     /**
      * 
      * @param x value on grid
@@ -40,6 +62,7 @@ public class TimeToDistanceEstimator {
         // if(alpha==30)
         //	 alpha-=0.0001;
         //reset range
+        T2DTable table = this.t2dTable;
         if(B>3.0) {
             B=3.0;
         }
@@ -65,15 +88,14 @@ public class TimeToDistanceEstimator {
             binlowAlpha=binhighAlpha-1;
         }
 
-        double alpha1 = this.getAlphaFromAlphaIdx(binlowAlpha);	 
-        double alpha2 = this.getAlphaFromAlphaIdx(binhighAlpha);
 
         // get the time bin edges:
-        int binlowT = this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha);  
+        int binlowT = this.getTimeIdx(table, t, SecIdx, SlyrIdx, binlowB, binlowAlpha);  
         int binhighT = binlowT + 1; 
 
-        if(binhighT>TableLoader.maxBinIdxT[SecIdx][SlyrIdx][binlowB][binlowAlpha]-1) {
-            binhighT=TableLoader.maxBinIdxT[SecIdx][SlyrIdx][binlowB][binlowAlpha]-1;
+        int maxBinIdxT = table.getMaxBinIdxT(SecIdx, SlyrIdx, binlowB, binlowAlpha);
+        if(binhighT>maxBinIdxT-1) {
+            binhighT=maxBinIdxT-1;
         }
 
         double t1 = binlowT*2.;
@@ -83,31 +105,38 @@ public class TimeToDistanceEstimator {
             t=t2;
         }
 
+        // time bins of the four (B, alpha) corners
+        int tLowBLowAlpha   = this.getTimeIdx(table, t, SecIdx, SlyrIdx, binlowB, binlowAlpha);
+        int tHighBLowAlpha  = this.getTimeIdx(table, t, SecIdx, SlyrIdx, binhighB, binlowAlpha);
+        int tLowBHighAlpha  = this.getTimeIdx(table, t, SecIdx, SlyrIdx, binlowB, binhighAlpha);
+        int tHighBHighAlpha = this.getTimeIdx(table, t, SecIdx, SlyrIdx, binhighB, binhighAlpha);
+
          // interpolate in B:
         double f_B_alpha1_t1 = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)]);
+                    table.getDistance(SecIdx, SlyrIdx, binlowB, binlowAlpha, tLowBLowAlpha),
+                    table.getDistance(SecIdx, SlyrIdx, binhighB, binlowAlpha, tHighBLowAlpha));
         double f_B_alpha2_t1 = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)]);
+                    table.getDistance(SecIdx, SlyrIdx, binlowB, binhighAlpha, tLowBHighAlpha),
+                    table.getDistance(SecIdx, SlyrIdx, binhighB, binhighAlpha, tHighBHighAlpha));
         double f_B_alpha1_t2 = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)+1],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)+1]);
+                    table.getDistance(SecIdx, SlyrIdx, binlowB, binlowAlpha, tLowBLowAlpha+1),
+                    table.getDistance(SecIdx, SlyrIdx, binhighB, binlowAlpha, tHighBLowAlpha+1));
         double f_B_alpha2_t2 = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)+1],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)+1]);
+                    table.getDistance(SecIdx, SlyrIdx, binlowB, binhighAlpha, tLowBHighAlpha+1),
+                    table.getDistance(SecIdx, SlyrIdx, binhighB, binhighAlpha, tHighBHighAlpha+1));
          // interpolate in d for 2 values of alpha:		 
         double f_B_alpha1_t = interpolateLinear(t, t1, t2, f_B_alpha1_t1, f_B_alpha1_t2);
         double f_B_alpha2_t = interpolateLinear(t, t1, t2, f_B_alpha2_t1, f_B_alpha2_t2);
 
          // interpolate in alpha: (cos30-cosA)
-        double f_B_alpha_t = interpolateLinear(Math.cos(Math.toRadians(30.))-Math.cos(Math.toRadians(alpha)), 
-                    Math.cos(Math.toRadians(30.))-Math.cos(Math.toRadians(alpha1)), 
-                    Math.cos(Math.toRadians(30.))-Math.cos(Math.toRadians(alpha2)), f_B_alpha1_t, f_B_alpha2_t);
+        double f_B_alpha_t = interpolateLinear(COS30-Math.cos(Math.toRadians(alpha)), 
+                    getAlphaBinCos(binlowAlpha), 
+                    getAlphaBinCos(binhighAlpha), f_B_alpha1_t, f_B_alpha2_t);
 
 
-        if(f_B_alpha_t>2*Constants.wpdist[SlyrIdx]) {
-            f_B_alpha_t = 2*Constants.wpdist[SlyrIdx];
+        double dmax = table.getDmax(SlyrIdx);
+        if(f_B_alpha_t>dmax) {
+            f_B_alpha_t = dmax;
         }                                                      
                 // System.out.println(SlyrIdx+" t "+t+" "+f_B_alpha_t+" tmax "+CalibrationConstantsLoader.dmaxsuperlayer[SlyrIdx]);
         return f_B_alpha_t;
@@ -118,7 +147,7 @@ public class TimeToDistanceEstimator {
      * @param binAlpha alpha parameter bin
      * @return value of alpha from alpha bin
      */
-    private double getAlphaFromAlphaIdx(int binAlpha) {
+    private static double getAlphaFromAlphaIdx(int binAlpha) {
         double cos30minusalpha = Math.cos(Math.toRadians(30.)) + (double) (binAlpha)*(1. - Math.cos(Math.toRadians(30.)))/5.;
         double alpha =  -(Math.toDegrees(Math.acos(cos30minusalpha)) - 30);
         double alpha1 = 0;
@@ -133,6 +162,18 @@ public class TimeToDistanceEstimator {
     }
     /**
      * 
+     * @param binAlpha alpha parameter bin
+     * @return cos30-cos(alpha) for the alpha of the bin
+     */
+    private static double getAlphaBinCos(int binAlpha) {
+        if(binAlpha>=0 && binAlpha<ALPHABINCOS.length) {
+            return ALPHABINCOS[binAlpha];
+        }
+        return COS30-Math.cos(Math.toRadians(getAlphaFromAlphaIdx(binAlpha)));
+    }
+    /**
+     * 
+     * @param table time-to-distance grid
      * @param t1 time value in ns
      * @param is sector index (0...5)
      * @param ir superlayer index (0...5)
@@ -140,15 +181,14 @@ public class TimeToDistanceEstimator {
      * @param icosalpha cosalpha bin (0...5)
      * @return time bin
      */
-    private int getTimeIdx(double t1, int is, int ir, int ibfield, int icosalpha) {
-        DecimalFormat df = new DecimalFormat("#");
-        df.setRoundingMode(RoundingMode.CEILING);
-        int binIdx = Integer.parseInt(df.format(t1/2.) ) -1; 
+    private int getTimeIdx(T2DTable table, double t1, int is, int ir, int ibfield, int icosalpha) {
+        int binIdx = T2DTable.getTimeBin(t1) -1; 
         if(binIdx<0) {
             binIdx = TableLoader.minBinIdxT;
         }
-        if(binIdx>TableLoader.maxBinIdxT[is][ir][ibfield][icosalpha]) {
-            binIdx = TableLoader.maxBinIdxT[is][ir][ibfield][icosalpha]-1;
+        int maxBinIdxT = table.getMaxBinIdxT(is, ir, ibfield, icosalpha);
+        if(binIdx>maxBinIdxT) {
+            binIdx = maxBinIdxT-1;
         }
 
         return binIdx;
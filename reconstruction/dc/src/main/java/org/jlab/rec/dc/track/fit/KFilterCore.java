@@ -0,0 +1,110 @@
+package org.jlab.rec.dc.track.fit;
+
+/**
+ * Measurement update of the DC Kalman filter for the 5x5 covariance
+ * matrix of the state (x, y, tx, ty, q/p), done in place on primitive
+ * arrays. The measurement is the distance to the wire, with projector
+ * H = (H0, H1, 0, 0, 0), so the gain K = C H^T / S, with
+ * S = V + H C H^T, needs no matrix inversion. The covariance matrix is
+ * updated in Joseph form, C' = (I - K H) C (I - K H)^T + K V K^T, which
+ * keeps it symmetric and positive definite. This is the same update as
+ * the information form (C^-1 + H^T H / V)^-1 without the two inversions.
+ * The instance keeps its scratch arrays and is not thread safe: use one
+ * per fitter.
+ */
+public class KFilterCore {
+
+    /**
+     * minimum value of the determinant of the covariance matrix, and of its
+     * inverse after adding the measurement, for the update to be done.
+     */
+    public static final double MINDET = 1.e-30;
+
+    private final double[]   K  = new double[5];
+    private final double[]   CH = new double[5];
+    private final double[]   HC = new double[5];
+    private final double[][] LU = new double[5][5];
+
+    /**
+     * updates the covariance matrix with one measurement and computes the
+     * gain, given by getGain. Nothing is changed if the covariance matrix
+     * is singular.
+     * @param C covariance matrix, updated in place
+     * @param H0 projector derivative with respect to x
+     * @param H1 projector derivative with respect to y
+     * @param V measurement variance
+     * @return false if the update was not done
+     */
+    public boolean filter(double[][] C, double H0, double H1, double V) {
+        double det = this.det(C);
+        if (Math.abs(det) < MINDET) {
+            return false;
+        }
+        for (int i = 0; i < 5; i++) {
+            CH[i] = C[i][0] * H0 + C[i][1] * H1;
+            HC[i] = H0 * C[0][i] + H1 * C[1][i];
+        }
+        double S = V + H0 * CH[0] + H1 * CH[1];
+        // det(C^-1 + H^T H / V) = S / (V det(C))
+        if (Math.abs(S / (V * det)) < MINDET) {
+            return false;
+        }
+        for (int i = 0; i < 5; i++) {
+            K[i] = CH[i] / S;
+        }
+        for (int i = 0; i < 5; i++) {
+            for (int j = i; j < 5; j++) {
+                C[i][j] += -K[i] * HC[j] - CH[i] * K[j] + S * K[i] * K[j];
+                C[j][i] = C[i][j];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param i index of the state parameter (x, y, tx, ty, q/p)
+     * @return gain of the last update
+     */
+    public double getGain(int i) {
+        return K[i];
+    }
+
+    /**
+     * determinant from the LU decomposition with partial pivoting, as in
+     * Jama Matrix.det(), computed on a copy of the matrix.
+     * @param C 5x5 matrix
+     * @return the determinant
+     */
+    public double det(double[][] C) {
+        for (int i = 0; i < 5; i++) {
+            System.arraycopy(C[i], 0, LU[i], 0, 5);
+        }
+        double det = 1;
+        for (int k = 0; k < 5; k++) {
+            int p = k;
+            for (int i = k + 1; i < 5; i++) {
+                if (Math.abs(LU[i][k]) > Math.abs(LU[p][k])) {
+                    p = i;
+                }
+            }
+            if (p != k) {
+                double[] row = LU[p];
+                LU[p] = LU[k];
+                LU[k] = row;
+                det = -det;
+            }
+            double pivot = LU[k][k];
+            if (pivot == 0) {
+                return 0;
+            }
+            det *= pivot;
+            for (int i = k + 1; i < 5; i++) {
+                double f = LU[i][k] / pivot;
+                for (int j = k + 1; j < 5; j++) {
+                    LU[i][j] -= f * LU[k][j];
+                }
+            }
+        }
+        return det;
+    }
+}
@@ -1,7 +1,5 @@
 package org.jlab.rec.dc.track.fit;
 
-import Jama.Matrix;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -22,6 +20,7 @@ public class KFitter {
 
     private StateVecs sv;
     private MeasVecs mv = new MeasVecs();
+    private final KFilterCore filterCore = new KFilterCore();
 
     public StateVec finalStateVec;
     public CovMat finalCovMat;
@@ -81,13 +80,13 @@ public class KFitter {
                 sv.transport(sector,
                         svzLength - 1,
                         0,
-                        sv.trackTraj.get(svzLength - 1),
-                        sv.trackCov.get(svzLength- 1));
+                        sv.trackTraj[svzLength - 1],
+                        sv.trackCov[svzLength- 1]);
             }
             for (int k = 0; k < svzLength - 1; k++) {
                 sv.transport(sector, k, k + 1,
-                        sv.trackTraj.get(k),
-                        sv.trackCov.get(k));
+                        sv.trackTraj[k],
+                        sv.trackCov[k]);
                     this.filter(k + 1);
             }
             if (i > 1) {
@@ -100,16 +99,16 @@ public class KFitter {
 //                double deltaChi2 = Math.abs(this.chi2kf - newChisq);
                 if (this.chi2kf < newChisq) {
                     if(this.finalStateVec!=null) {
-                        if( Math.abs(sv.trackTraj.get(svzLength - 1).Q-this.finalStateVec.Q)<5.e-4 &&
-                                Math.abs(sv.trackTraj.get(svzLength - 1).x-this.finalStateVec.x)<1.e-4 &&
-                                Math.abs(sv.trackTraj.get(svzLength - 1).y-this.finalStateVec.y)<1.e-4 &&
-                                Math.abs(sv.trackTraj.get(svzLength - 1).tx-this.finalStateVec.tx)<1.e-6 &&
-                                Math.abs(sv.trackTraj.get(svzLength - 1).ty-this.finalStateVec.ty)<1.e-6) {
+                        if( Math.abs(sv.trackTraj[svzLength - 1].Q-this.finalStateVec.Q)<5.e-4 &&
+                                Math.abs(sv.trackTraj[svzLength - 1].x-this.finalStateVec.x)<1.e-4 &&
+                                Math.abs(sv.trackTraj[svzLength - 1].y-this.finalStateVec.y)<1.e-4 &&
+                                Math.abs(sv.trackTraj[svzLength - 1].tx-this.finalStateVec.tx)<1.e-6 &&
+                                Math.abs(sv.trackTraj[svzLength - 1].ty-this.finalStateVec.ty)<1.e-6) {
                             i = totNumIter;
                         }
                     }
-                    this.finalStateVec = sv.trackTraj.get(svzLength - 1);
-                    this.finalCovMat = sv.trackCov.get(svzLength - 1);
+                    this.finalStateVec = sv.trackTraj[svzLength - 1];
+                    this.finalCovMat = sv.trackCov[svzLength - 1];
 
 //                    if (deltaChi2 < 0.001) {
 //                        this.ConvStatus = 0;
@@ -124,98 +123,46 @@ public class KFitter {
         }
 //        });
         if(totNumIter==1) {
-            this.finalStateVec = sv.trackTraj.get(svzLength - 1);
-            this.finalCovMat = sv.trackCov.get(svzLength - 1);
+            this.finalStateVec = sv.trackTraj[svzLength - 1];
+            this.finalCovMat = sv.trackCov[svzLength - 1];
         }
         this.calcFinalChisq(sector);
 
     }
 
     private void filter(int k) {
-        if (sv.trackTraj.get(k) != null &&
-                sv.trackCov.get(k).covMat != null &&
-                k < sv.Z.length) {
-            double[] K = new double[5];
-            double V = Math.abs(mv.measurements.get(k).unc);
-            double[] H = mv.H(sv.trackTraj.get(k).y,
-                    mv.measurements.get(k).tilt,
-                    mv.measurements.get(k).wireMaxSag,
-                    mv.measurements.get(k).wireLen);
-
-            double[][] HTGH = new double[][]{
-                    {H[0] * H[0] / V, H[0] * H[1] / V, 0, 0, 0},
-                    {H[0] * H[1] / V, H[1] * H[1] / V, 0, 0, 0},
-                    {0, 0, 0, 0, 0},
-                    {0, 0, 0, 0, 0},
-                    {0, 0, 0, 0, 0}
-            };
-
-            Matrix Ci;
-
-            if (!this.isNonsingular(sv.trackCov.get(k).covMat)) {
-                return;
-            }
-            try {
-                Ci = sv.trackCov.get(k).covMat.inverse();
-            } catch (Exception e) {
+        if (k < sv.Z.length &&
+                sv.trackTraj[k] != null &&
+                sv.trackCov[k].covMat != null) {
+            StateVec sVec = sv.trackTraj[k];
+            MeasVecs.MeasVec mVec = mv.measurements.get(k);
+            double V = Math.abs(mVec.unc);
+            double Hy = mv.Hy(sVec.y, mVec.tilt, mVec.wireMaxSag, mVec.wireLen);
+
+            // updates the covariance matrix in place
+            if (!filterCore.filter(sv.trackCov[k].covMat.getArray(), 1, Hy, V)) {
                 return;
             }
 
-            Matrix Ca;
-            try {
-                Ca = Ci.plus(new Matrix(HTGH));
-            } catch (Exception e) {
-                return;
-            }
-            if (Ca != null && !this.isNonsingular(Ca)) {
-                return;
-            }
-            if (Ca != null) {
-                Matrix CaInv = Ca.inverse();
-                if (CaInv != null) {
-                    sv.trackCov.get(k).covMat = CaInv;
-                } else {
-                    return;
-                }
-            } else {
-                return;
-            }
-
-            for (int j = 0; j < 5; j++) {
-                // the gain matrix
-                K[j] = (H[0] * sv.trackCov.get(k).covMat.get(j, 0) +
-                        H[1] * sv.trackCov.get(k).covMat.get(j, 1)) / V;
-            }
-
-            double h = mv.h(new double[]{sv.trackTraj.get(k).x, sv.trackTraj.get(k).y},
-                    mv.measurements.get(k).tilt,
-                    mv.measurements.get(k).wireMaxSag,
-                    mv.measurements.get(k).wireLen);
-            double c2 = ((mv.measurements.get(k).x - h) * (mv.measurements.get(k).x - h) / V);
-
-            double x_filt = sv.trackTraj.get(k).x + K[0] * (mv.measurements.get(k).x - h);
-            double y_filt = sv.trackTraj.get(k).y + K[1] * (mv.measurements.get(k).x - h);
-            double tx_filt = sv.trackTraj.get(k).tx + K[2] * (mv.measurements.get(k).x - h);
-            double ty_filt = sv.trackTraj.get(k).ty + K[3] * (mv.measurements.get(k).x - h);
-            double Q_filt = sv.trackTraj.get(k).Q + K[4] * (mv.measurements.get(k).x - h);
-
-            chi2kf += c2;
-            sv.trackTraj.get(k).x = x_filt;
-            sv.trackTraj.get(k).y = y_filt;
-            sv.trackTraj.get(k).tx = tx_filt;
-            sv.trackTraj.get(k).ty = ty_filt;
-            sv.trackTraj.get(k).Q = Q_filt;
+            double h = mv.h(sVec.x, sVec.y, mVec.tilt, mVec.wireMaxSag, mVec.wireLen);
+            double res = mVec.x - h;
 
+            chi2kf += res * res / V;
+            sVec.x += filterCore.getGain(0) * res;
+            sVec.y += filterCore.getGain(1) * res;
+            sVec.tx += filterCore.getGain(2) * res;
+            sVec.ty += filterCore.getGain(3) * res;
+            sVec.Q += filterCore.getGain(4) * res;
         }
     }
 
     @SuppressWarnings("unused")
     private void smooth(int sector, int k) {
         this.chi2 = 0;
-        if (sv.trackTraj.get(k) != null && sv.trackCov.get(k).covMat != null) {
-            sv.transport(sector, k, 0, sv.trackTraj.get(k), sv.trackCov.get(k));
+        if (sv.trackTraj[k] != null && sv.trackCov[k].covMat != null) {
+            sv.transport(sector, k, 0, sv.trackTraj[k], sv.trackCov[k]);
             for (int k1 = 0; k1 < k; k1++) {
-                sv.transport(sector, k1, k1 + 1, sv.trackTraj.get(k1), sv.trackCov.get(k1));
+                sv.transport(sector, k1, k1 + 1, sv.trackTraj[k1], sv.trackCov[k1]);
                 this.filter(k1 + 1);
             }
         }
@@ -226,20 +173,20 @@ public class KFitter {
         this.chi2 = 0;
         double path = 0;
         kfStateVecsAlongTrajectory = new ArrayList<>();
-        if (sv.trackTraj.get(k) != null && sv.trackCov.get(k).covMat != null) {
+        if (sv.trackTraj[k] != null && sv.trackCov[k].covMat != null) {
             sv.transport(sector, sv.Z.length - 1, 0,
-                    sv.trackTraj.get(sv.Z.length - 1),
-                    sv.trackCov.get(sv.Z.length - 1));
+                    sv.trackTraj[sv.Z.length - 1],
+                    sv.trackCov[sv.Z.length - 1]);
             org.jlab.rec.dc.trajectory.StateVec svc =
-                    new org.jlab.rec.dc.trajectory.StateVec(sv.trackTraj.get(0).x,
-                            sv.trackTraj.get(0).y,
-                            sv.trackTraj.get(0).tx,
-                            sv.trackTraj.get(0).ty);
-            svc.setZ(sv.trackTraj.get(0).z);
-            svc.setB(sv.trackTraj.get(0).B);
-            path += sv.trackTraj.get(0).deltaPath;
+                    new org.jlab.rec.dc.trajectory.StateVec(sv.trackTraj[0].x,
+                            sv.trackTraj[0].y,
+                            sv.trackTraj[0].tx,
+                            sv.trackTraj[0].ty);
+            svc.setZ(sv.trackTraj[0].z);
+            svc.setB(sv.trackTraj[0].B);
+            path += sv.trackTraj[0].deltaPath;
             svc.setPathLength(path);
-            double h0 = mv.h(new double[]{sv.trackTraj.get(0).x, sv.trackTraj.get(0).y},
+            double h0 = mv.h(new double[]{sv.trackTraj[0].x, sv.trackTraj[0].y},
                     mv.measurements.get(0).tilt,
                     mv.measurements.get(0).wireMaxSag,
                     mv.measurements.get(0).wireLen);
@@ -247,20 +194,20 @@ public class KFitter {
             kfStateVecsAlongTrajectory.add(svc);
             chi2 += (mv.measurements.get(0).x - h0) * (mv.measurements.get(0).x - h0) / mv.measurements.get(0).error;
             for (int k1 = 0; k1 < k; k1++) {
-                sv.transport(sector, k1, k1 + 1, sv.trackTraj.get(k1), sv.trackCov.get(k1));
+                sv.transport(sector, k1, k1 + 1, sv.trackTraj[k1], sv.trackCov[k1]);
 
                 double V = mv.measurements.get(k1 + 1).error;
-                double h = mv.h(new double[]{sv.trackTraj.get(k1 + 1).x, sv.trackTraj.get(k1 + 1).y},
+                double h = mv.h(new double[]{sv.trackTraj[k1 + 1].x, sv.trackTraj[k1 + 1].y},
                         mv.measurements.get(k1 + 1).tilt,
                         mv.measurements.get(k1 + 1).wireMaxSag,
                         mv.measurements.get(k1 + 1).wireLen);
-                svc = new org.jlab.rec.dc.trajectory.StateVec(sv.trackTraj.get(k1 + 1).x,
-                        sv.trackTraj.get(k1 + 1).y,
-                        sv.trackTraj.get(k1 + 1).tx,
-                        sv.trackTraj.get(k1 + 1).ty);
-                svc.setZ(sv.trackTraj.get(k1 + 1).z);
-                svc.setB(sv.trackTraj.get(k1 + 1).B);
-                path += sv.trackTraj.get(k1 + 1).deltaPath;
+                svc = new org.jlab.rec.dc.trajectory.StateVec(sv.trackTraj[k1 + 1].x,
+                        sv.trackTraj[k1 + 1].y,
+                        sv.trackTraj[k1 + 1].tx,
+                        sv.trackTraj[k1 + 1].ty);
+                svc.setZ(sv.trackTraj[k1 + 1].z);
+                svc.setB(sv.trackTraj[k1 + 1].B);
+                path += sv.trackTraj[k1 + 1].deltaPath;
                 svc.setPathLength(path);
                 svc.setProjector(h);
                 kfStateVecsAlongTrajectory.add(svc);
@@ -269,9 +216,4 @@ public class KFitter {
         }
     }
 
-    private boolean isNonsingular(Matrix mat) {
-        double matDet = mat.det();
-        return Math.abs(matDet) >= 1.e-30;
-    }
-
 }
@@ -23,12 +23,24 @@ public class MeasVecs {
     public double[] H(double y, int s, double w, double l) {
         double[] hMatrix = new double[2];
         hMatrix[0] = 1;
-        hMatrix[1] = -Math.tan((Math.toRadians(s * 6.)));
-        // add geometric corrections
-        hMatrix[1]-= w*(4./l)*(1 - y/(l/2.));        
+        hMatrix[1] = this.Hy(y, s, w, l);
         return hMatrix;
     }
 
+    /**
+     * The y entry of the state projector, the x entry is 1
+     *
+     * @param y the track y at the measurement site
+     * @param s the superlayer of the measurement (0..1)
+     * @return the derivative of the projected measurement with respect to y
+     */
+    public double Hy(double y, int s, double w, double l) {
+        double hy = -Math.tan((Math.toRadians(s * 6.)));
+        // add geometric corrections
+        hy-= w*(4./l)*(1 - y/(l/2.));
+        return hy;
+    }
+
     /**
      * The projected measurement derived from the stateVector at the measurement
      * site
@@ -38,10 +50,23 @@ public class MeasVecs {
      * @return projected measurement
      */
     public double h(double[] stateV, int s, double w, double l) {
+        return this.h(stateV[0], stateV[1], s, w, l);
+    }
+
+    /**
+     * The projected measurement derived from the track x and y at the
+     * measurement site
+     *
+     * @param x the track x
+     * @param y the track y
+     * @param s the superlayer (0..1)
+     * @return projected measurement
+     */
+    public double h(double x, double y, int s, double w, double l) {
 
-        double val = stateV[0] - Math.tan((Math.toRadians(s * 6.))) * stateV[1]; 
+        double val = x - Math.tan((Math.toRadians(s * 6.))) * y; 
         // add geometric corrections
-        val+= w*(1 - stateV[1]/(l/2.))*(1 - stateV[1]/(l/2.));       
+        val+= w*(1 - y/(l/2.))*(1 - y/(l/2.));       
         return val;
     }
 
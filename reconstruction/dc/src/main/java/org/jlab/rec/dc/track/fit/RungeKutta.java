@@ -17,6 +17,8 @@ import org.jlab.rec.dc.Constants;
 public class RungeKutta {
     
     private final float[] _b = new float[3];
+    // F C, computed before the covariance matrix C = F C F^T is filled
+    private final double[][] u = new double[5][5];
     final double v = 0.0029979245;
     private final ArrayList<Double> k1;
     private final ArrayList<Double> k2;
@@ -41,7 +43,6 @@ public class RungeKutta {
     void RK4transport(int sector, double q, double x0, double y0, double z0, double tx0, double ty0, double h, Swim swimmer, 
             StateVecs.CovMat covMat, StateVecs.StateVec fVec, StateVecs.CovMat fCov, double mass, double dPath) {
         // Jacobian:
-        double[][] u = new double[5][5];       
         double[][] C = new double[5][5];
         double deltx_deltx0_0 =1;
         double delty_deltx0_0 =0;
@@ -193,12 +194,13 @@ public class RungeKutta {
         double delty_delq0 = this.RK4(delty_delq0_1, delty_delq0_2, delty_delq0_3, delty_delq0_4, h);
 
         //covMat = FCF^T; u = FC;
+        double[][] C0 = covMat.covMat.getArray();
         for (int j1 = 0; j1 < 5; j1++) {
-            u[0][j1] = covMat.covMat.get(0,j1) + covMat.covMat.get(2,j1) * delx_deltx0 + covMat.covMat.get(3,j1)* delx_delty0 + covMat.covMat.get(4,j1) * delx_delq0;
-            u[1][j1] = covMat.covMat.get(1,j1) + covMat.covMat.get(2,j1) * dely_deltx0 + covMat.covMat.get(3,j1) * dely_delty0 + covMat.covMat.get(4,j1) * dely_delq0;
-            u[2][j1] = covMat.covMat.get(2,j1) + covMat.covMat.get(3,j1) * deltx_delty0 + covMat.covMat.get(4,j1) * deltx_delq0;
-            u[3][j1] = covMat.covMat.get(2,j1) * delty_deltx0 + covMat.covMat.get(3,j1) + covMat.covMat.get(4,j1) * delty_delq0;
-            u[4][j1] = covMat.covMat.get(4,j1);
+            u[0][j1] = C0[0][j1] + C0[2][j1] * delx_deltx0 + C0[3][j1]* delx_delty0 + C0[4][j1] * delx_delq0;
+            u[1][j1] = C0[1][j1] + C0[2][j1] * dely_deltx0 + C0[3][j1] * dely_delty0 + C0[4][j1] * dely_delq0;
+            u[2][j1] = C0[2][j1] + C0[3][j1] * deltx_delty0 + C0[4][j1] * deltx_delq0;
+            u[3][j1] = C0[2][j1] * delty_deltx0 + C0[3][j1] + C0[4][j1] * delty_delq0;
+            u[4][j1] = C0[4][j1];
         }
 
         for (int i1 = 0; i1 < 5; i1++) {
@@ -259,7 +261,6 @@ public class RungeKutta {
         jk4.clear();
         
         // Jacobian:
-        double[][] u = new double[5][5];       
         double[][] C = new double[5][5];
         double deltx_deltx0_0 =1;
         double delty_deltx0_0 =0;
@@ -361,12 +362,13 @@ public class RungeKutta {
         double delty_delq0 =        this.RK4(this.jk1.get(11), this.jk2.get(11), this.jk3.get(11), this.jk4.get(11), h);
 
         //covMat = FCF^T; u = FC;
+        double[][] C0 = covMat.covMat.getArray();
         for (int j1 = 0; j1 < 5; j1++) {
-            u[0][j1] = covMat.covMat.get(0,j1) + covMat.covMat.get(2,j1) * delx_deltx0 + covMat.covMat.get(3,j1)* delx_delty0 + covMat.covMat.get(4,j1) * delx_delq0;
-            u[1][j1] = covMat.covMat.get(1,j1) + covMat.covMat.get(2,j1) * dely_deltx0 + covMat.covMat.get(3,j1) * dely_delty0 + covMat.covMat.get(4,j1) * dely_delq0;
-            u[2][j1] = covMat.covMat.get(2,j1) + covMat.covMat.get(3,j1) * deltx_delty0 + covMat.covMat.get(4,j1) * deltx_delq0;
-            u[3][j1] = covMat.covMat.get(2,j1) * delty_deltx0 + covMat.covMat.get(3,j1) + covMat.covMat.get(4,j1) * delty_delq0;
-            u[4][j1] = covMat.covMat.get(4,j1);
+            u[0][j1] = C0[0][j1] + C0[2][j1] * delx_deltx0 + C0[3][j1]* delx_delty0 + C0[4][j1] * delx_delq0;
+            u[1][j1] = C0[1][j1] + C0[2][j1] * dely_deltx0 + C0[3][j1] * dely_delty0 + C0[4][j1] * dely_delq0;
+            u[2][j1] = C0[2][j1] + C0[3][j1] * deltx_delty0 + C0[4][j1] * deltx_delq0;
+            u[3][j1] = C0[2][j1] * delty_deltx0 + C0[3][j1] + C0[4][j1] * delty_delq0;
+            u[4][j1] = C0[4][j1];
         }
 
         for (int i1 = 0; i1 < 5; i1++) {
@@ -1,8 +1,6 @@
 package org.jlab.rec.dc.track.fit;
 
 import Jama.Matrix;
-import java.util.HashMap;
-import java.util.Map;
 import org.jlab.clas.clas.math.FastMath;
 import org.jlab.clas.swimtools.Swim;
 import org.jlab.geom.prim.Point3D;
@@ -15,8 +13,9 @@ public class StateVecs {
     final double speedLight = 0.002997924580;
     public double[] Z;
    // public List<B> bfieldPoints = new ArrayList<B>();
-    public Map<Integer, StateVec> trackTraj = new HashMap<Integer, StateVec>();
-    public Map<Integer, CovMat> trackCov = new HashMap<Integer, CovMat>();
+    // state vectors and covariance matrices at each measurement site, indexed as Z
+    public StateVec[] trackTraj;
+    public CovMat[] trackCov;
 
    
     public StateVec StateVec;
@@ -96,8 +95,12 @@ public class StateVecs {
             BatMeas = fVec.B;
         }
         
-        this.trackTraj.put(f, fVec);
-        this.trackCov.put(f, fCov);
+        if(fCov.covMat == covMat.covMat) {
+            // no step taken: the filter updates the matrix in place
+            fCov.covMat = covMat.covMat.copy();
+        }
+        this.trackTraj[f] = fVec;
+        this.trackCov[f] = fCov;
     }
     
     /**
@@ -146,8 +149,12 @@ public class StateVecs {
             
         }
         
-        this.trackTraj.put(f, fVec);
-        this.trackCov.put(f, fCov);
+        if(fCov.covMat == covMat.covMat) {
+            // no step taken: the filter updates the matrix in place
+            fCov.covMat = covMat.covMat.copy();
+        }
+        this.trackTraj[f] = fVec;
+        this.trackCov[f] = fCov;
     }
     
     
@@ -202,6 +209,8 @@ public class StateVecs {
      * @param kf the final state measurement index
      */
     public void init(Track trkcand, double z0, KFitter kf) {
+        this.trackTraj = new StateVec[Z.length];
+        this.trackCov = new CovMat[Z.length];
         
         if (trkcand.get_StateVecAtReg1MiddlePlane() != null) {
             dcSwim.SetSwimParameters(-1, trkcand.get_StateVecAtReg1MiddlePlane().x(), trkcand.get_StateVecAtReg1MiddlePlane().y(), trkcand.get(0).get_Point().z(),
@@ -222,7 +231,7 @@ public class StateVecs {
             initSV.Q = trkcand.get_Q() / trkcand.get_P();
             dcSwim.Bfield(trkcand.get(0).get_Sector(), initSV.x, initSV.y, initSV.z, bf);
             initSV.B = Math.sqrt(bf[0]*bf[0]+bf[1]*bf[1]+bf[2]*bf[2]);
-            this.trackTraj.put(0, initSV);
+            this.trackTraj[0] = initSV;
         } else {
             kf.setFitFailed = true;
             return;
@@ -252,7 +261,7 @@ public class StateVecs {
 
         CovMat initCM = new CovMat(0);
         initCM.covMat = initCMatrix;
-        this.trackCov.put(0, initCM);
+        this.trackCov[0] = initCM;
     }
 
     public void printMatrix(Matrix C) {
@@ -264,6 +273,8 @@ public class StateVecs {
     }
 
     void initFromHB(Track trkcand, double z0, KFitter kf) { 
+        this.trackTraj = new StateVec[Z.length];
+        this.trackCov = new CovMat[Z.length];
         if (trkcand != null && trkcand.get_CovMat()!=null) {
             dcSwim.SetSwimParameters(trkcand.get_Vtx0().x(), trkcand.get_Vtx0().y(), trkcand.get_Vtx0().z(), 
                     trkcand.get_pAtOrig().x(), trkcand.get_pAtOrig().y(), trkcand.get_pAtOrig().z(), trkcand.get_Q());
@@ -295,11 +306,11 @@ public class StateVecs {
             initSV.Q = trkcand.get_Q() / trkcand.get_pAtOrig().mag(); 
             dcSwim.Bfield(trkcand.get(0).get_Sector(), initSV.x, initSV.y, initSV.z, bf);
             initSV.B = Math.sqrt(bf[0]*bf[0]+bf[1]*bf[1]+bf[2]*bf[2]);
-            this.trackTraj.put(0, initSV); 
+            this.trackTraj[0] = initSV; 
             
             CovMat initCM = new CovMat(0);
             initCM.covMat = trkcand.get_CovMat(); 
-            this.trackCov.put(0, initCM); 
+            this.trackCov[0] = initCM; 
         } else {
             kf.setFitFailed = true;
             return;
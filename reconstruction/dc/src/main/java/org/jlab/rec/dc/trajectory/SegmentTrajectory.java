@@ -66,13 +66,13 @@ public class SegmentTrajectory {
 
             //double x1 = GeometryLoader.dcDetector.getSector(0).getSuperlayer(superlayer-1).getLayer(layer-1).getComponent(1).getMidpoint().x();
             //double x0 = GeometryLoader.dcDetector.getSector(0).getSuperlayer(superlayer-1).getLayer(layer-1).getComponent(0).getMidpoint().x();
-            double x1 = DcDetector.getWireMidpoint(sector-1, superlayer-1, layer-1, 1).x;
-            double x0 = DcDetector.getWireMidpoint(sector-1, superlayer-1, layer-1, 0).x;
+            double x1 = DcDetector.getWireTable().getMidpointX(sector-1, superlayer-1, layer-1, 1);
+            double x0 = DcDetector.getWireTable().getMidpointX(sector-1, superlayer-1, layer-1, 0);
 
             double deltax = Math.abs(x1-x0);
 
             //double xFirstCell = GeometryLoader.dcDetector.getSector(0).getSuperlayer(superlayer-1).getLayer(layer-1).getComponent(0).getMidpoint().x();
-            double xFirstCell = DcDetector.getWireMidpoint(sector-1, superlayer-1, layer-1, 0).x;
+            double xFirstCell = DcDetector.getWireTable().getMidpointX(sector-1, superlayer-1, layer-1, 0);
 
             int nearestWire = (int)Math.ceil((trkX-xFirstCell+deltax/2.)/deltax) ;
 
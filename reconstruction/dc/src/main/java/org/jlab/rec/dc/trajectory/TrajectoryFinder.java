@@ -73,8 +73,8 @@ public class TrajectoryFinder {
      */
     public double integralBdl(int sector, DCGeant4Factory DcDetector, Swim dcSwim) {
 
-        double z1 = DcDetector.getRegionMidpoint(0).z;
-        double z3 = DcDetector.getRegionMidpoint(2).z;
+        double z1 = DcDetector.getWireTable().getRegionMidpointZ(0, 0);
+        double z3 = DcDetector.getWireTable().getRegionMidpointZ(0, 2);
 
         double z = z1;
 
@@ -182,7 +182,7 @@ public class TrajectoryFinder {
         List<StateVec> stateVecAtPlanesList = new ArrayList<StateVec>(36);
         for(int superlayerIdx =0; superlayerIdx<6; superlayerIdx++) {
             for(int layerIdx =0; layerIdx<6; layerIdx++) {
-                double z = DcDetector.getLayerMidpoint(superlayerIdx, layerIdx).z;
+                double z = DcDetector.getWireTable().getLayerMidpointZ(0, superlayerIdx, layerIdx);
                 double x = x_fitCoeff[0]*z*z+x_fitCoeff[1]*z+x_fitCoeff[2];
                 double y = y_fitCoeff[0]*z*z+y_fitCoeff[1]*z+y_fitCoeff[2];
                 double tanTheta_x = x_fitCoeff[0]*z+x_fitCoeff[1];
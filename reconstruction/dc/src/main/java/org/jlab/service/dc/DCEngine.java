@@ -4,7 +4,7 @@ import java.util.Arrays;
 import java.util.Optional;
 import org.jlab.clas.reco.ReconstructionEngine;
 import org.jlab.detector.base.DetectorType;
-import org.jlab.detector.base.GeometryFactory;
+import org.jlab.detector.base.GeometryRegistry;
 import org.jlab.detector.geant4.v2.DCGeant4Factory;
 import org.jlab.detector.geant4.v2.ECGeant4Factory;
 import org.jlab.detector.geant4.v2.FTOFGeant4Factory;
@@ -105,26 +105,35 @@ public class DCEngine extends ReconstructionEngine {
             System.out.println("["+this.getName()+"] run with default geometry");
         }
         
-        // Load the geometry
-        ConstantProvider provider = GeometryFactory.getConstants(DetectorType.DC, 11, Optional.ofNullable(geomDBVar).orElse("default"));
-        dcDetector = new DCGeant4Factory(provider, DCGeant4Factory.MINISTAGGERON);
+        // Load the geometry, shared with the other engines through the registry
+        String dcGeomVar = Optional.ofNullable(geomDBVar).orElse("default");
+        ConstantProvider provider = GeometryRegistry.getConstants(DetectorType.DC, 11, dcGeomVar);
+        dcDetector = GeometryRegistry.getGeometry(DetectorType.DC, "DCGeant4Factory", 11, dcGeomVar,
+                cp -> new DCGeant4Factory(cp, DCGeant4Factory.MINISTAGGERON));
         for(int l=0; l<6; l++) {
             Constants.wpdist[l] = provider.getDouble("/geometry/dc/superlayer/wpdist", l);
             System.out.println("****************** WPDIST READ *********FROM "+geomDBVar+"**** VARIATION ****** "+provider.getDouble("/geometry/dc/superlayer/wpdist", l));
         }
         // Load other geometries
-        ConstantProvider providerFTOF = GeometryFactory.getConstants(DetectorType.FTOF, 11, "default");
-        ftofDetector = new FTOFGeant4Factory(providerFTOF);
-        
-        ConstantProvider providerEC = GeometryFactory.getConstants(DetectorType.ECAL, 11, "default");
-        ecDetector = new ECGeant4Factory(providerEC);
-        pcalDetector = new PCALGeant4Factory(providerEC);
+        String ftofGeomVar = "default";
+        String ecGeomVar   = "default";
+        ftofDetector = GeometryRegistry.getGeometry(DetectorType.FTOF, "FTOFGeant4Factory", 11, ftofGeomVar,
+                cp -> new FTOFGeant4Factory(cp));
+        ecDetector = GeometryRegistry.getGeometry(DetectorType.ECAL, "ECGeant4Factory", 11, ecGeomVar,
+                cp -> new ECGeant4Factory(cp));
+        pcalDetector = GeometryRegistry.getGeometry(DetectorType.ECAL, "PCALGeant4Factory", 11, ecGeomVar,
+                cp -> new PCALGeant4Factory(cp));
         
         
         System.out.println(" -- Det Geometry constants are Loaded " );
-        // create the surfaces
-        tSurf = new TrajectorySurfaces();
-        tSurf.LoadSurfaces(dcDetector, ftofDetector, ecDetector, pcalDetector);
+        // create the surfaces, once for all the DC engines using this geometry,
+        // the key includes the variations of all the detectors they are built from
+        String surfacesVar = "dc=" + dcGeomVar + ",ftof=" + ftofGeomVar + ",ec=" + ecGeomVar;
+        tSurf = GeometryRegistry.get(DetectorType.DC, "TrajectorySurfaces", 11, surfacesVar, () -> {
+            TrajectorySurfaces surfaces = new TrajectorySurfaces();
+            surfaces.LoadSurfaces(dcDetector, ftofDetector, ecDetector, pcalDetector);
+            return surfaces;
+        });
         
         // Get the constants for the correct variation
         String ccDBVar = this.getEngineConfigString("constantsDBVariation");
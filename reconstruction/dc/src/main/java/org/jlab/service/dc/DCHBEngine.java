@@ -16,6 +16,7 @@ import org.jlab.io.base.DataEvent;
 import org.jlab.io.hipo.HipoDataSource;
 import org.jlab.io.hipo.HipoDataSync;
 import org.jlab.rec.dc.Constants;
+import org.jlab.rec.dc.DCWorkspace;
 import org.jlab.rec.dc.banks.HitReader;
 import org.jlab.rec.dc.banks.RecoBankWriter;
 import org.jlab.rec.dc.cluster.ClusterCleanerUtilities;
@@ -67,8 +68,7 @@ public class DCHBEngine extends DCEngine {
 //
 //            if (cycles > 0) triggerPhase = period * ((timeStamp + phase) % cycles);
 //
-//            TableLoader.FillT0Tables(newRun, super.variationName);
-//            TableLoader.Fill(super.getConstantsManager().getConstants(newRun, Constants.TIME2DIST));
+// //            TableLoader.Fill(super.getConstantsManager().getConstants(newRun, Constants.TIME2DIST));
 //
 //            Run.set(newRun);
 //        }
@@ -104,8 +104,7 @@ public class DCHBEngine extends DCEngine {
 
            if (cycles > 0) triggerPhase = period * ((timeStamp + phase) % cycles);
 
-           TableLoader.FillT0Tables(newRun, super.variationName);
-           TableLoader.Fill(super.getConstantsManager().getConstants(newRun, Constants.TIME2DIST));
+           TableLoader.Fill(newRun, super.variationName, super.getConstantsManager().getConstants(newRun, Constants.TIME2DIST));
 
            Run.set(newRun);
            if (event.hasBank("MC::Particle") && this.getEngineConfigString("wireDistort")==null) {
@@ -115,28 +114,27 @@ public class DCHBEngine extends DCEngine {
  //          if (debug.get()) System.out.println("NEW RUN INIT = " + (System.currentTimeMillis() - startTime));
        }
 
+        // per-thread helpers and scratch buffers, reused from event to event
+        DCWorkspace ws = DCWorkspace.get();
+        ws.reset();
         /* 1 */
         // get Field
-        Swim dcSwim = new Swim();
+        Swim dcSwim = ws.getSwim();
         /* 2 */
         // init SNR
-        Clas12NoiseResult results = new Clas12NoiseResult();
+        Clas12NoiseResult results = ws.noiseResults;
         /* 3 */
-        Clas12NoiseAnalysis noiseAnalysis = new Clas12NoiseAnalysis();
+        Clas12NoiseAnalysis noiseAnalysis = ws.noiseAnalysis;
         /* 4 */
-        NoiseReductionParameters parameters =
-                new NoiseReductionParameters(
-                        2,
-                        Constants.SNR_LEFTSHIFTS,
-                        Constants.SNR_RIGHTSHIFTS);
+        NoiseReductionParameters parameters = ws.noiseParameters;
         /* 5 */
-        ClusterFitter cf = new ClusterFitter();
+        ClusterFitter cf = ws.clusterFitter;
         /* 6 */
-        ClusterCleanerUtilities ct = new ClusterCleanerUtilities();
+        ClusterCleanerUtilities ct = ws.clusterCleaner;
         /* 7 */
-        RecoBankWriter rbc = new RecoBankWriter();
+        RecoBankWriter rbc = ws.bankWriter;
         /* 8 */
-        HitReader hitRead = new HitReader();
+        HitReader hitRead = ws.hitReader;
         /* 9 */
         hitRead.fetch_DCHits(event,
                 noiseAnalysis,
@@ -157,7 +155,7 @@ public class DCHBEngine extends DCEngine {
         }
         /* 11 */
         //2) find the clusters from these hits
-        ClusterFinder clusFinder = new ClusterFinder();
+        ClusterFinder clusFinder = ws.clusterFinder;
         List<FittedCluster> clusters = clusFinder.FindHitBasedClusters(hits,
                 ct,
                 cf,
@@ -171,7 +169,7 @@ public class DCHBEngine extends DCEngine {
         rbc.updateListsListWithClusterInfo(fhits, clusters);
         /* 14 */
         //3) find the segments from the fitted clusters
-        SegmentFinder segFinder = new SegmentFinder();
+        SegmentFinder segFinder = ws.segmentFinder;
         List<Segment> segments = segFinder.get_Segments(clusters,
                 event,
                 dcDetector, false);
@@ -201,7 +199,7 @@ public class DCHBEngine extends DCEngine {
         }
         segments.removeAll(rmSegs);
         /* 16 */
-        CrossMaker crossMake = new CrossMaker();
+        CrossMaker crossMake = ws.crossMaker;
         List<Cross> crosses = crossMake.find_Crosses(segments, dcDetector);
         if (crosses.isEmpty()) {
             rbc.fillAllHBBanks(event,
@@ -214,7 +212,7 @@ public class DCHBEngine extends DCEngine {
             return true;
         }
         /* 17 */
-        CrossListFinder crossLister = new CrossListFinder();
+        CrossListFinder crossLister = ws.crossListFinder;
 
         CrossList crosslist = crossLister.candCrossLists(crosses,
                 false,
@@ -224,7 +222,7 @@ public class DCHBEngine extends DCEngine {
                 dcSwim);
         /* 18 */
         //6) find the list of  track candidates
-        TrackCandListFinder trkcandFinder = new TrackCandListFinder(Constants.HITBASE);
+        TrackCandListFinder trkcandFinder = ws.hitBasedTrackFinder;
         List<Track> trkcands = trkcandFinder.getTrackCands(crosslist,
                 dcDetector,
                 Swimmer.getTorScale(),
@@ -266,7 +264,7 @@ public class DCHBEngine extends DCEngine {
             if (!c.get_Segment2().isOnTrack)
                 crossSegsNotOnTrack.add(c.get_Segment2());
         }
-        RoadFinder rf = new RoadFinder();
+        RoadFinder rf = ws.roadFinder;
         List<Road> allRoads = rf.findRoads(segments, dcDetector);
         List<Segment> Segs2Road = new ArrayList<>();
         for (Road r : allRoads) {
@@ -9,6 +9,7 @@ import org.jlab.geom.prim.Vector3D;
 import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
 import org.jlab.rec.dc.Constants;
+import org.jlab.rec.dc.DCWorkspace;
 import org.jlab.rec.dc.banks.HitReader;
 import org.jlab.rec.dc.banks.RecoBankWriter;
 import org.jlab.rec.dc.cluster.ClusterCleanerUtilities;
@@ -20,6 +21,8 @@ import org.jlab.rec.dc.cross.CrossMaker;
 import org.jlab.rec.dc.hit.FittedHit;
 import org.jlab.rec.dc.segment.Segment;
 import org.jlab.rec.dc.segment.SegmentFinder;
+import org.jlab.rec.dc.timetodistance.T0Table;
+import org.jlab.rec.dc.timetodistance.TableLoader;
 import org.jlab.rec.dc.timetodistance.TimeToDistanceEstimator;
 import org.jlab.rec.dc.track.Track;
 import org.jlab.rec.dc.track.TrackCandListFinder;
@@ -36,11 +39,11 @@ public class DCTBEngine extends DCEngine {
 //    PCALGeant4Factory pcalDetector; 
 //    TrajectorySurfaces tSurf;
     
-    private TimeToDistanceEstimator tde;
     private double tarCent=-1.942;
+    private volatile TimeToDistanceEstimator t2dEstimator = null;
+    private volatile T0Table t0Table = null;
     public DCTBEngine() {
         super("DCTB");
-        tde = new TimeToDistanceEstimator();
     }
     @Override
     public boolean init() {
@@ -65,6 +68,9 @@ public class DCTBEngine extends DCEngine {
         int newRun = bank.getInt("run", 0);
         if(newRun==0)
             return true;
+        // time-to-distance grid of the event's run
+        TimeToDistanceEstimator tde = this.getTimeToDistanceEstimator(newRun);
+        T0Table t0s = this.getT0Table(newRun);
 
         double T_Start = 0;
         if(Constants.isUSETSTART() == true) {
@@ -77,11 +83,14 @@ public class DCTBEngine extends DCEngine {
                 return true; // no REC HB bank
             }
         }
+        // per-thread helpers and scratch buffers, reused from event to event
+        DCWorkspace ws = DCWorkspace.get();
+        ws.reset();
         // get Field
-        Swim dcSwim = new Swim();        
+        Swim dcSwim = ws.getSwim();
         //System.out.println(" RUNNING TIME BASED....................................");
-        ClusterFitter cf = new ClusterFitter();
-        ClusterCleanerUtilities ct = new ClusterCleanerUtilities();
+        ClusterFitter cf = ws.clusterFitter;
+        ClusterCleanerUtilities ct = ws.clusterCleaner;
 
         List<FittedHit> fhits = new ArrayList<FittedHit>();	
         List<FittedCluster> clusters = new ArrayList<FittedCluster>();
@@ -90,16 +99,16 @@ public class DCTBEngine extends DCEngine {
         List<Track> trkcands = new ArrayList<Track>();
 
         //instantiate bank writer
-        RecoBankWriter rbc = new RecoBankWriter();
+        RecoBankWriter rbc = ws.bankWriter;
 
-        HitReader hitRead = new HitReader();
+        HitReader hitRead = ws.hitReader;
         hitRead.read_HBHits(event, 
             super.getConstantsManager().getConstants(newRun, "/calibration/dc/signal_generation/doca_resolution"),
             super.getConstantsManager().getConstants(newRun, "/calibration/dc/time_to_distance/time2dist"),
-            Constants.getT0(), Constants.getT0Err(), dcDetector, tde);
+            t0s.getT0(), t0s.getT0Err(), dcDetector, tde);
         hitRead.read_TBHits(event, 
             super.getConstantsManager().getConstants(newRun, "/calibration/dc/signal_generation/doca_resolution"),
-            super.getConstantsManager().getConstants(newRun, "/calibration/dc/time_to_distance/time2dist"), tde, Constants.getT0(), Constants.getT0Err());
+            super.getConstantsManager().getConstants(newRun, "/calibration/dc/time_to_distance/time2dist"), tde, t0s.getT0(), t0s.getT0Err());
         List<FittedHit> hits = new ArrayList<FittedHit>();
         //I) get the hits
         if(hitRead.get_TBHits().isEmpty()) {
@@ -116,7 +125,7 @@ public class DCTBEngine extends DCEngine {
         }
 
         //2) find the clusters from these hits
-        ClusterFinder clusFinder = new ClusterFinder();
+        ClusterFinder clusFinder = ws.clusterFinder;
 
         clusters = clusFinder.FindTimeBasedClusters(hits, cf, ct, super.getConstantsManager().getConstants(newRun, "/calibration/dc/time_to_distance/time2dist"), dcDetector, tde);
 
@@ -126,7 +135,7 @@ public class DCTBEngine extends DCEngine {
         }
 
         //3) find the segments from the fitted clusters
-        SegmentFinder segFinder = new SegmentFinder();
+        SegmentFinder segFinder = ws.segmentFinder;
 
         List<FittedCluster> pclusters = segFinder.selectTimeBasedSegments(clusters);
 
@@ -150,7 +159,7 @@ public class DCTBEngine extends DCEngine {
             }
         }
 
-        CrossMaker crossMake = new CrossMaker();
+        CrossMaker crossMake = ws.crossMaker;
         //crosses = crossMake.find_Crosses(segments, dcDetector);
 
         //if(crosses.isEmpty() ) {			
@@ -200,8 +209,8 @@ public class DCTBEngine extends DCEngine {
         }
         
         //6) find the list of  track candidates
-        TrackCandListFinder trkcandFinder = new TrackCandListFinder("TimeBased");
-        TrajectoryFinder trjFind = new TrajectoryFinder();
+        TrackCandListFinder trkcandFinder = ws.timeBasedTrackFinder;
+        TrajectoryFinder trjFind = ws.trajectoryFinder;
         for(int i = 0; i < TrackArray.length; i++) {
             if(TrackArray[i]==null || TrackArray[i].get_ListOfHBSegments()==null || TrackArray[i].get_ListOfHBSegments().size()<4)
                 continue;
@@ -297,6 +306,33 @@ public class DCTBEngine extends DCEngine {
 
     
 
+    /**
+     * time-to-distance estimator of the run, rebuilt only when the run
+     * changes so that events do not go through the synchronized table cache.
+     */
+    private TimeToDistanceEstimator getTimeToDistanceEstimator(int run) {
+        TimeToDistanceEstimator tde = this.t2dEstimator;
+        if(tde == null || tde.getT2DTable().getRun() != run) {
+            tde = new TimeToDistanceEstimator(TableLoader.getT2DTable(run, super.variationName,
+                    super.getConstantsManager().getConstants(run, Constants.TIME2DIST)));
+            this.t2dEstimator = tde;
+        }
+        return tde;
+    }
+
+    /**
+     * T0 corrections of the run, taken from the cache only when the run
+     * changes.
+     */
+    private T0Table getT0Table(int run) {
+        T0Table t0s = this.t0Table;
+        if(t0s == null || t0s.getRun() != run) {
+            t0s = TableLoader.getT0Table(run, super.variationName);
+            this.t0Table = t0s;
+        }
+        return t0s;
+    }
+
     private int get_Status(Track track) {
         int miss = 0;    
         
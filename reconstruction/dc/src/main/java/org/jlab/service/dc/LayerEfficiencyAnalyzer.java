@@ -36,6 +36,8 @@ import org.jlab.rec.dc.cluster.FittedCluster;
 import org.jlab.rec.dc.hit.FittedHit;
 import org.jlab.rec.dc.segment.Segment;
 import org.jlab.rec.dc.segment.SegmentFinder;
+import org.jlab.rec.dc.timetodistance.T0Table;
+import org.jlab.rec.dc.timetodistance.TableLoader;
 import org.jlab.rec.dc.timetodistance.TimeToDistanceEstimator;
 import org.jlab.rec.dc.trajectory.SegmentTrajectory;
 
@@ -44,7 +46,6 @@ public class LayerEfficiencyAnalyzer extends DCEngine implements IDataEventListe
 
     public LayerEfficiencyAnalyzer(){
         super("LE");
-        tde = new TimeToDistanceEstimator();
         //plotting stuff
         mainPanel = new JPanel();	
         mainPanel.setLayout(new BorderLayout());
@@ -59,7 +60,6 @@ public class LayerEfficiencyAnalyzer extends DCEngine implements IDataEventListe
 
         //this.processorPane.addEventListener(this);
     }
-    private TimeToDistanceEstimator tde;
     //plotting stuff
     JPanel                  mainPanel 	= null;
     DataSourceProcessorPane processorPane 	= null;
@@ -271,8 +271,36 @@ public class LayerEfficiencyAnalyzer extends DCEngine implements IDataEventListe
     private Map<Coordinate, H1F> LayerEffsTrkD4 = new HashMap<Coordinate, H1F>();
     private Map<Coordinate, H1F> LayerEffsTrkD5 = new HashMap<Coordinate, H1F>();
     private Map<Coordinate, H1F> LayerEffsTrkD6 = new HashMap<Coordinate, H1F>();
+    private volatile TimeToDistanceEstimator t2dEstimator = null;
+    private volatile T0Table t0Table = null;
     
-    
+    /**
+     * time-to-distance estimator of the run, rebuilt only when the run
+     * changes so that events do not go through the synchronized table cache.
+     */
+    private TimeToDistanceEstimator getTimeToDistanceEstimator(int run) {
+        TimeToDistanceEstimator tde = this.t2dEstimator;
+        if(tde == null || tde.getT2DTable().getRun() != run) {
+            tde = new TimeToDistanceEstimator(TableLoader.getT2DTable(run, super.variationName,
+                    super.getConstantsManager().getConstants(run, Constants.TIME2DIST)));
+            this.t2dEstimator = tde;
+        }
+        return tde;
+    }
+
+    /**
+     * T0 corrections of the run, taken from the cache only when the run
+     * changes.
+     */
+    private T0Table getT0Table(int run) {
+        T0Table t0s = this.t0Table;
+        if(t0s == null || t0s.getRun() != run) {
+            t0s = TableLoader.getT0Table(run, super.variationName);
+            this.t0Table = t0s;
+        }
+        return t0s;
+    }
+
         @Override
     public boolean processDataEvent(DataEvent event) {
         //setRunConditionsParameters( event) ;
@@ -289,6 +317,9 @@ public class LayerEfficiencyAnalyzer extends DCEngine implements IDataEventListe
         int newRun = bank.getInt("run", 0);
         if(newRun==0)
             return true;
+        // time-to-distance grid of the event's run
+        TimeToDistanceEstimator tde = this.getTimeToDistanceEstimator(newRun);
+        T0Table t0s = this.getT0Table(newRun);
 
         double T_Start = 0;
         if(Constants.isUSETSTART() == true) {
@@ -317,10 +348,10 @@ public class LayerEfficiencyAnalyzer extends DCEngine implements IDataEventListe
         hitRead.read_HBHits(event, 
             super.getConstantsManager().getConstants(newRun, "/calibration/dc/signal_generation/doca_resolution"),
             super.getConstantsManager().getConstants(newRun, "/calibration/dc/time_to_distance/time2dist"),
-            Constants.getT0(), Constants.getT0Err(), dcDetector, tde);
+            t0s.getT0(), t0s.getT0Err(), dcDetector, tde);
         hitRead.read_TBHits(event, 
             super.getConstantsManager().getConstants(newRun, "/calibration/dc/signal_generation/doca_resolution"),
-            super.getConstantsManager().getConstants(newRun, "/calibration/dc/time_to_distance/time2dist"), tde, Constants.getT0(), Constants.getT0Err());
+            super.getConstantsManager().getConstants(newRun, "/calibration/dc/time_to_distance/time2dist"), tde, t0s.getT0(), t0s.getT0Err());
         List<FittedHit> hits = new ArrayList<FittedHit>();
         //I) get the hits
         if(hitRead.get_TBHits().isEmpty()) {
@@ -1,11 +1,31 @@
 package org.jlab.service.dc;
 
 import eu.mihosoft.vrl.v3d.Vector3d;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.math3.util.FastMath;
@@ -26,6 +46,8 @@ import org.jlab.detector.hits.FTOFDetHit;
 import org.jlab.geom.base.ConstantProvider;
 import org.jlab.geometry.prim.Line3d;
 import org.jlab.rec.dc.Constants;
+import org.jlab.rec.dc.dictionary.ConcurrentRoadTable;
+import org.jlab.rec.dc.dictionary.RoadDictionary;
 
 import org.jlab.utils.options.OptionParser;
 
@@ -55,14 +77,8 @@ public class TrackDictionaryMaker extends DCEngine{
         Swim sw = new Swim();
         PrintWriter pw = null;
         try {
-            System.out.println(" MAKING ROADS for "+"TracksDicTorus"+String.valueOf(torScale)+"Solenoid"+String.valueOf(solScale)
-                    +"Charge"+String.valueOf(charge)+"InvPBinSizeiGeV"+String.valueOf(pBinSize)
-                    +"PhiMinDeg" +String.valueOf(phiMin)+"PhiMaxDeg" +String.valueOf(phiMax)
-                    +"VzCm" +String.valueOf(vz));
-            pw = new PrintWriter("TracksDicTorus"+String.valueOf(torScale)+"Solenoid"+String.valueOf(solScale)
-                    +"Charge"+String.valueOf(charge)+"InvPBinSizeiGeV"+String.valueOf(pBinSize)
-                    +"PhiMinDeg" +String.valueOf(phiMin)+"PhiMaxDeg" +String.valueOf(phiMax)
-                    +"VzCm" +String.valueOf(vz)+".txt");
+            System.out.println(" MAKING ROADS for "+this.getFileName(torScale, solScale, charge, pBinSize, phiMin, phiMax, vz));
+            pw = new PrintWriter(this.getFileName(torScale, solScale, charge, pBinSize, phiMin, phiMax, vz)+".txt");
             this.ProcessTracks(pw, dcDetector, ftofDetector, pcalDetector, sw, charge, pBinSize, phiMin, phiMax, vz);
             pw.close();
         } catch (FileNotFoundException ex) {
@@ -73,6 +89,16 @@ public class TrackDictionaryMaker extends DCEngine{
         }
     }
     
+    /**
+     * @return the dictionary file name for the given fields and grid, without extension
+     */
+    public String getFileName(float torScale, float solScale, int charge, float pBinSize, float phiMin, float phiMax, float vz) {
+        return "TracksDicTorus"+String.valueOf(torScale)+"Solenoid"+String.valueOf(solScale)
+                +"Charge"+String.valueOf(charge)+"InvPBinSizeiGeV"+String.valueOf(pBinSize)
+                +"PhiMinDeg" +String.valueOf(phiMin)+"PhiMaxDeg" +String.valueOf(phiMax)
+                +"VzCm" +String.valueOf(vz);
+    }
+
     public static Vector3d rotateToSectorCoordSys(double x, double y, double z) {
         double rz = -x * Math.sin(Math.toRadians(25.)) + z * Math.cos(Math.toRadians(25.));
         double rx = x * Math.cos(Math.toRadians(25.)) + z * Math.sin(Math.toRadians(25.));
@@ -194,7 +220,6 @@ public class TrackDictionaryMaker extends DCEngine{
     private String entry;
     
     public void ProcessTracks(PrintWriter pw,DCGeant4Factory dcDetector, FTOFGeant4Factory ftofDetector, PCALGeant4Factory pcalDetector, Swim sw, int q, float pBinSize, float PhiMin, float PhiMax, float Vz) {
-        double[] swimVal = new double[8];
         //for(int i = 0; i < 2; i++) {
             //int q = (int) Math.pow(-1, i);
             if(Math.abs(q)==1) {
@@ -236,88 +261,9 @@ public class TrackDictionaryMaker extends DCEngine{
 
                         double phi = phiMin + (double) nph * phiBinSize; 
 
-                        double px = p * Math.cos(Math.toRadians(phi)) * Math.sin(Math.toRadians(theta));
-                        double py = p * Math.sin(Math.toRadians(phi)) * Math.sin(Math.toRadians(theta));
-                        double pz = p * Math.cos(Math.toRadians(theta));
-                        sw.SetSwimParameters(0, 0, vz, px, py, pz, q);
-                        swimVal = sw.SwimToPlaneLab(175.);
-                        int sector = this.getSector(swimVal[0], swimVal[1], swimVal[2]);
-
-                        //Point3D rotatedP = tw.rotateToTiltedCoordSys(new Point3D(px, py, pz));
-                        Point3D rotatedP = this.rotateToTiltedCoordSys(new Point3D(swimVal[3], swimVal[4], swimVal[5]));
-                        Point3D rotatedX = this.rotateToTiltedCoordSys(new Point3D(swimVal[0], swimVal[1], swimVal[2]));
-
-                        //List<Integer> Wi = new ArrayList<Integer>();
-                        //List<Integer> Wf = new ArrayList<Integer>();
-                        this.Wl1.clear();
-                        this.Wl2.clear();
-                        this.Wl3.clear();
-                        this.Wl4.clear();
-                        this.Wl5.clear();
-                        this.Wl6.clear();
                         this.entry = "";
-                        for (int sl = 0; sl < 6; sl++) {
-                            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
-                            this.swimtoLayer(sector, 0, sl, Wl1, dcDetector, sw);        
-                            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
-                            this.swimtoLayer(sector, 1, sl, Wl2, dcDetector, sw);        
-                            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
-                            this.swimtoLayer(sector, 2, sl, Wl3, dcDetector, sw);        
-                            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
-                            this.swimtoLayer(sector, 3, sl, Wl4, dcDetector, sw);        
-                            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
-                            this.swimtoLayer(sector, 4, sl, Wl5, dcDetector, sw);        
-                            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
-                            this.swimtoLayer(sector, 5, sl, Wl6, dcDetector, sw);
-
-                            /*
-                            double[] trk = sw.SwimToPlane(dcDetector.getSector(0).getSuperlayer(sl).getLayer(2).getComponent(0).getMidpoint().z());
-                            Line3D trkLine = new Line3D(new Point3D(trk[0], trk[1], trk[2]), new Vector3D(trk[3], trk[4], trk[5]));
-                            double wMax = Math.abs(dcDetector.getSector(0).getSuperlayer(sl).getLayer(0).getComponent(0).getMidpoint().x()
-                                    - dcDetector.getSector(0).getSuperlayer(sl).getLayer(0).getComponent(1).getMidpoint().x()) / 2.;
-
-                            double min = 1000;
-                            int w = -1;
-                            for (int i = 0; i < 112; i++) {
-                                Line3D wl = dcDetector.getSector(0).getSuperlayer(sl).getLayer(2).getComponent(i).getLine();
-                                if (trkLine.distance(wl).length() < min) {
-                                    min = trkLine.distance(wl).length();
-                                    w = i;
-                                }
-                            }
-
-                            if (min < wMax) {
-                                Wi.add(w + 1);
-                            }
-                            */
-                        }
-                        double[] trkTOF = sw.SwimToPlaneTiltSecSys(sector, 668.1);
-                        double[] trkPCAL = sw.SwimToPlaneTiltSecSys(sector, 698.8);
-
-
-                        Line3d trkLine = new Line3d(rotateToSectorCoordSys(trkTOF[0],trkTOF[1],trkTOF[2]), rotateToSectorCoordSys(trkPCAL[0], trkPCAL[1], trkPCAL[2])) ;
-
-                        List<DetHit> hits = ftofDetector.getIntersections(trkLine);
-                        List<DetHit> hits2 = pcalDetector.getIntersections(trkLine);
-
-                        if(hits.size()==0) {
-                            for(int ii =0; ii<3; ii++)
-                                trkTOF[ii]=0;
-                        }
-                        if(hits2.size()==0) {
-                            for(int ii =0; ii<3; ii++)
-                                trkPCAL[ii]=0;
-                        }
-
-                        int paddle = 0;
-                        if (hits != null && hits.size() > 0) {
-                            for (DetHit hit : hits) {
-                                FTOFDetHit fhit = new FTOFDetHit(hit);
-                                if(fhit.getLayer()==1 || fhit.getLayer()==3)
-                                    paddle = fhit.getPaddle();
-                            }
-                        }
-
+                        int paddle = this.swimRoad(sw, q, p, theta, phi, vz, Wl1, Wl2, Wl3, Wl4, Wl5, Wl6,
+                                dcDetector, ftofDetector, pcalDetector);
                         if (count(Wl3) >4) {
                             if(String.valueOf(q)+
                                     String.valueOf(Wl1.get(0))+ String.valueOf(Wl2.get(0))+ String.valueOf(Wl3.get(0))+ String.valueOf(Wl4.get(0))+ String.valueOf(Wl5.get(0))+ String.valueOf(Wl6.get(0))+ 
@@ -367,6 +313,270 @@ public class TrackDictionaryMaker extends DCEngine{
         }
     }
 
+    /**
+     * swims a track from the vertex through the 36 DC layers, then to FTOF
+     * and PCAL.
+     * @param Wl1 filled with the wire hit in the first layer of each superlayer, 0 if none
+     * @param Wl6 same for the sixth layer
+     * @return the FTOF paddle hit in panel 1a or 1b, 0 if none
+     */
+    private int swimRoad(Swim sw, int q, double p, double theta, double phi, double vz,
+            List<Integer> Wl1, List<Integer> Wl2, List<Integer> Wl3, List<Integer> Wl4, List<Integer> Wl5, List<Integer> Wl6,
+            DCGeant4Factory dcDetector, FTOFGeant4Factory ftofDetector, PCALGeant4Factory pcalDetector) {
+        double px = p * Math.cos(Math.toRadians(phi)) * Math.sin(Math.toRadians(theta));
+        double py = p * Math.sin(Math.toRadians(phi)) * Math.sin(Math.toRadians(theta));
+        double pz = p * Math.cos(Math.toRadians(theta));
+        sw.SetSwimParameters(0, 0, vz, px, py, pz, q);
+        double[] swimVal = sw.SwimToPlaneLab(175.);
+        int sector = this.getSector(swimVal[0], swimVal[1], swimVal[2]);
+
+        Point3D rotatedP = this.rotateToTiltedCoordSys(new Point3D(swimVal[3], swimVal[4], swimVal[5]));
+        Point3D rotatedX = this.rotateToTiltedCoordSys(new Point3D(swimVal[0], swimVal[1], swimVal[2]));
+
+        Wl1.clear();
+        Wl2.clear();
+        Wl3.clear();
+        Wl4.clear();
+        Wl5.clear();
+        Wl6.clear();
+        for (int sl = 0; sl < 6; sl++) {
+            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
+            swimtoLayer(sector, 0, sl, Wl1, dcDetector, sw);
+            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
+            swimtoLayer(sector, 1, sl, Wl2, dcDetector, sw);
+            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
+            swimtoLayer(sector, 2, sl, Wl3, dcDetector, sw);
+            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
+            swimtoLayer(sector, 3, sl, Wl4, dcDetector, sw);
+            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
+            swimtoLayer(sector, 4, sl, Wl5, dcDetector, sw);
+            sw.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), q);
+            swimtoLayer(sector, 5, sl, Wl6, dcDetector, sw);
+        }
+        double[] trkTOF = sw.SwimToPlaneTiltSecSys(sector, 668.1);
+        double[] trkPCAL = sw.SwimToPlaneTiltSecSys(sector, 698.8);
+
+        Line3d trkLine = new Line3d(rotateToSectorCoordSys(trkTOF[0],trkTOF[1],trkTOF[2]), rotateToSectorCoordSys(trkPCAL[0], trkPCAL[1], trkPCAL[2])) ;
+
+        List<DetHit> hits = ftofDetector.getIntersections(trkLine);
+        List<DetHit> hits2 = pcalDetector.getIntersections(trkLine);
+
+        if(hits.size()==0) {
+            for(int ii =0; ii<3; ii++)
+                trkTOF[ii]=0;
+        }
+        if(hits2.size()==0) {
+            for(int ii =0; ii<3; ii++)
+                trkPCAL[ii]=0;
+        }
+
+        int paddle = 0;
+        if (hits != null && hits.size() > 0) {
+            for (DetHit hit : hits) {
+                FTOFDetHit fhit = new FTOFDetHit(hit);
+                if(fhit.getLayer()==1 || fhit.getLayer()==3)
+                    paddle = fhit.getPaddle();
+            }
+        }
+        return paddle;
+    }
+
+    // grid of the generated tracks, as in ProcessTracks
+    private static final double INVPMIN       = 1. / 10.;
+    private static final double INVPMAX       = 1. / 0.500;
+    private static final double PHIBINSIZE    = 2.;
+    private static final double THETAMIN      = 5;
+    private static final double THETAMAX      = 41;
+    private static final double THETABINSIZE  = 0.5;
+
+    private static final int CHECKPOINTMAGIC = 0x524f4143;
+
+    /**
+     * generates the roads of the same track grid as processFile with
+     * several threads and writes them to a binary dictionary (see
+     * RoadDictionary). The grid is split in chunks of one momentum and
+     * one theta bin, taken in turn by the threads, each with its own Swim.
+     * The roads are kept in a ConcurrentRoadTable with, for each road, the
+     * first track in grid order, so that the dictionary does not depend on
+     * the number of threads. The roads found and the chunks done are saved
+     * at regular intervals in the checkpoint file outputName.ckpt; if this
+     * file exists when the job starts, the chunks done are skipped. The
+     * checkpoint is deleted when the dictionary is written. If a thread
+     * fails (e.g. the table is full), the other threads stop after their
+     * current chunk and no dictionary is written.
+     * @param nThreads number of threads
+     * @param outputName binary dictionary file
+     * @param checkpointInterval time in seconds between checkpoints
+     */
+    public void processFileParallel(float torScale, float solScale, int charge, float pBinSize, float phiMin, float phiMax, float vz,
+            int nThreads, String outputName, int checkpointInterval) {
+        if(Math.abs(charge)!=1) {
+            System.out.println(" CHARGE MUST BE -1 OR 1");
+            return;
+        }
+        Swimmer.setMagneticFieldsScales(torScale, solScale, -1.9);
+        System.out.println(" MAKING ROADS for "+this.getFileName(torScale, solScale, charge, pBinSize, phiMin, phiMax, vz)
+                +" with "+nThreads+" threads to "+outputName);
+
+        final int    nBinsinvP  = (int) ((INVPMAX - INVPMIN) / pBinSize) + 1;
+        final int    nBinsTheta = (int) ((THETAMAX - THETAMIN) / THETABINSIZE) + 1;
+        final int    nBinsPhi   = (int) (((double) phiMax - (double) phiMin) / PHIBINSIZE) + 1;
+        final int    nChunks    = nBinsinvP * nBinsTheta;
+        final float[] parameters = {torScale, solScale, charge, pBinSize, phiMin, phiMax, vz};
+
+        final ConcurrentRoadTable table = new ConcurrentRoadTable(nChunks * nBinsPhi);
+        final AtomicIntegerArray  done  = new AtomicIntegerArray(nChunks);
+        String checkpointName = outputName + ".ckpt";
+        long start = System.currentTimeMillis();
+        try {
+            if(new File(checkpointName).exists()) {
+                if(!this.readCheckpoint(checkpointName, parameters, table, done)) return;
+            }
+            final List<Integer> chunks = new ArrayList<Integer>();
+            for(int chunk = 0; chunk < nChunks; chunk++) {
+                if(done.get(chunk)==0) chunks.add(chunk);
+            }
+            System.out.println(" "+(nChunks-chunks.size())+" of "+nChunks+" chunks of "+nBinsPhi+" tracks done, "
+                    +table.size()+" roads");
+            final AtomicInteger next = new AtomicInteger();
+            // set by the first thread failing, the others stop at their next chunk
+            final AtomicBoolean abort = new AtomicBoolean(false);
+
+            ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+            List<Future<Integer>> workers = new ArrayList<Future<Integer>>();
+            for(int i = 0; i < nThreads; i++) {
+                workers.add(pool.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        Swim sw = new Swim();
+                        List<Integer> W1 = new ArrayList<Integer>();
+                        List<Integer> W2 = new ArrayList<Integer>();
+                        List<Integer> W3 = new ArrayList<Integer>();
+                        List<Integer> W4 = new ArrayList<Integer>();
+                        List<Integer> W5 = new ArrayList<Integer>();
+                        List<Integer> W6 = new ArrayList<Integer>();
+                        int nTracks = 0;
+                        try {
+                            int i;
+                            while(!abort.get() && (i = next.getAndIncrement()) < chunks.size()) {
+                                int chunk = chunks.get(i);
+                                double p     = 1. / (INVPMIN + (double) (chunk / nBinsTheta) * (double) pBinSize);
+                                double theta = THETAMIN + (double) (chunk % nBinsTheta) * THETABINSIZE;
+                                for (int nph = 0; nph < nBinsPhi; nph++) {
+                                    double phi = (double) phiMin + (double) nph * PHIBINSIZE;
+                                    int paddle = swimRoad(sw, charge, p, theta, phi, vz, W1, W2, W3, W4, W5, W6,
+                                            dcDetector, ftofDetector, pcalDetector);
+                                    if (count(W3) >4) {
+                                        long key = RoadDictionary.getKey(W1.get(0), W1.get(1), W1.get(2), W1.get(3), W1.get(4), W1.get(5));
+                                        table.put(key, ((long) (chunk * nBinsPhi + nph) << 16) | paddle);
+                                    }
+                                    nTracks++;
+                                }
+                                done.set(chunk, 1);
+                            }
+                        } catch (RuntimeException | Error ex) {
+                            abort.set(true);
+                            throw ex;
+                        } finally {
+                            Swimmer.releaseProbeCollection();
+                        }
+                        return nTracks;
+                    }
+                }));
+            }
+            pool.shutdown();
+            while(!pool.awaitTermination(checkpointInterval, TimeUnit.SECONDS)) {
+                if(abort.get()) continue;
+                this.writeCheckpoint(checkpointName, parameters, table, done);
+                int nDone = 0;
+                for(int chunk = 0; chunk < nChunks; chunk++) nDone += done.get(chunk);
+                System.out.println(String.format(" %d of %d chunks done, %d roads, %.1f s", nDone, nChunks,
+                        table.size(), (System.currentTimeMillis() - start) * 1e-3));
+            }
+            int nTracks = 0;
+            for(Future<Integer> worker : workers) nTracks += worker.get();
+
+            // the roads in grid order give the same file for any number of threads
+            long[] roads = new long[table.size()];
+            int nRoads = 0;
+            for(int slot = 0; slot < table.getCapacity(); slot++) {
+                if(table.isEntry(slot)) roads[nRoads++] = ((table.getValue(slot) >> 16) << 32) | slot;
+            }
+            Arrays.sort(roads, 0, nRoads);
+            RoadDictionary dictionary = new RoadDictionary(nRoads);
+            for(int i = 0; i < nRoads; i++) {
+                int  slot   = (int) roads[i];
+                long value  = table.getValue(slot);
+                int  index  = (int) (value >> 16);
+                int  chunk  = index / nBinsPhi;
+                double p     = 1. / (INVPMIN + (double) (chunk / nBinsTheta) * (double) pBinSize);
+                double theta = THETAMIN + (double) (chunk % nBinsTheta) * THETABINSIZE;
+                double phi   = (double) phiMin + (double) (index % nBinsPhi) * PHIBINSIZE;
+                dictionary.add(table.getKey(slot), charge, (float) p, (float) theta, (float) phi, vz,
+                        (int) (value & 0xffff), 0, 0);
+            }
+            dictionary.save(outputName);
+            new File(checkpointName).delete();
+            System.out.println(String.format(" %d tracks swum, %d roads written to %s in %.1f s", nTracks,
+                    dictionary.size(), outputName, (System.currentTimeMillis() - start) * 1e-3));
+        } catch (IOException | InterruptedException | ExecutionException ex) {
+            Logger.getLogger(TrackDictionaryMaker.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * saves the chunks done and the roads found, the chunk flags are read
+     * first so that all the roads of the chunks flagged as done are saved.
+     * Roads of chunks in progress may be saved too, they are found again
+     * when the chunk is redone.
+     */
+    private void writeCheckpoint(String filename, float[] parameters, ConcurrentRoadTable table, AtomicIntegerArray done) throws IOException {
+        File file = new File(filename);
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(CHECKPOINTMAGIC);
+                out.writeInt(parameters.length);
+                for(float parameter : parameters) out.writeFloat(parameter);
+                out.writeInt(done.length());
+                for(int chunk = 0; chunk < done.length(); chunk++) out.writeByte(done.get(chunk));
+                for(int slot = 0; slot < table.getCapacity(); slot++) {
+                    if(table.isEntry(slot)) {
+                        out.writeLong(table.getKey(slot));
+                        out.writeLong(table.getValue(slot));
+                    }
+                }
+                out.writeLong(0);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * @return false if the checkpoint was made for other parameters
+     */
+    private boolean readCheckpoint(String filename, float[] parameters, ConcurrentRoadTable table, AtomicIntegerArray done) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16))) {
+            boolean match = in.readInt() == CHECKPOINTMAGIC && in.readInt() == parameters.length;
+            for(int i = 0; match && i < parameters.length; i++) {
+                match = in.readFloat() == parameters[i];
+            }
+            if(!match || in.readInt() != done.length()) {
+                System.out.println(" CHECKPOINT "+filename+" WAS MADE WITH OTHER PARAMETERS: REMOVE IT TO START AGAIN");
+                return false;
+            }
+            for(int chunk = 0; chunk < done.length(); chunk++) done.set(chunk, in.readByte());
+            long key;
+            while((key = in.readLong()) != 0) {
+                table.put(key, in.readLong());
+            }
+        }
+        System.out.println(" RESUMING FROM CHECKPOINT "+filename);
+        return true;
+    }
+
     public static void ProcessCosmics(PrintWriter pw, DCGeant4Factory dcDetector, TrackDictionaryMaker tw, Swim sw) {
 
         double XMin = 35.;
@@ -626,6 +836,9 @@ public class TrackDictionaryMaker extends DCEngine{
         parser.addOption("-phimax","30.0");
         parser.addOption("-vz","0.0");
         parser.addOption("-var","default");
+        parser.addOption("-n","0","number of threads writing a binary dictionary, 0 to write the text dictionary");
+        parser.addOption("-o","","binary dictionary file (default: text file name with .bin)");
+        parser.addOption("-ckpt","600","time in seconds between checkpoints of the binary dictionary");
         parser.parse(args);
         
         if(parser.hasOption("-t")==true && parser.hasOption("-s")==true){
@@ -637,8 +850,17 @@ public class TrackDictionaryMaker extends DCEngine{
             float phiMax = (float) parser.getOption("-phimax").doubleValue();
             float vz = (float) parser.getOption("-vz").doubleValue();
             String dcVar = parser.getOption("-var").stringValue();
+            int nThreads = parser.getOption("-n").intValue();
             tm.resetGeom(dcVar);
-            tm.processFile(torus, solenoid, charge, pBinSize, phiMin, phiMax, vz);
+            if(nThreads>0) {
+                String outputName = parser.getOption("-o").stringValue();
+                if(outputName.isEmpty())
+                    outputName = tm.getFileName(torus, solenoid, charge, pBinSize, phiMin, phiMax, vz)+".bin";
+                tm.processFileParallel(torus, solenoid, charge, pBinSize, phiMin, phiMax, vz,
+                        nThreads, outputName, parser.getOption("-ckpt").intValue());
+            } else {
+                tm.processFile(torus, solenoid, charge, pBinSize, phiMin, phiMax, vz);
+            }
         } else {
             System.out.println(" FIELDS NOT SET");
         }
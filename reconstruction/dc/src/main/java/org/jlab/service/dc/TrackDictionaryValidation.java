@@ -2,15 +2,9 @@ package org.jlab.service.dc;
 
 import java.awt.Dimension;
 import java.awt.Toolkit;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import javax.swing.JFrame;
 import org.jlab.clas.physics.Particle;
 import org.jlab.groot.data.H2F;
@@ -19,13 +13,14 @@ import org.jlab.groot.group.DataGroup;
 import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
 import org.jlab.io.hipo.HipoDataSource;
+import org.jlab.rec.dc.dictionary.RoadDictionary;
 import org.jlab.utils.groups.IndexedList;
 
 import org.jlab.utils.options.OptionParser;
 
 public class TrackDictionaryValidation {
 
-    private Map<ArrayList<Integer>, Particle> dictionary = null;
+    private RoadDictionary                   dictionary = null;
     private IndexedList<DataGroup>           dataGroups = new IndexedList<DataGroup>(1);
     private EmbeddedCanvasTabbed             canvas     = new EmbeddedCanvasTabbed("Dictionary", "Matched Roads", "Matched Tracks", "Efficiency");
             
@@ -52,7 +47,7 @@ public class TrackDictionaryValidation {
     public void createDictionary(String inputFileName) {
         // create dictionary from event file
         System.out.println("\nCreating dictionary from file: " + inputFileName);
-        Map<ArrayList<Integer>, Particle> newDictionary = new HashMap<>();
+        RoadDictionary newDictionary = new RoadDictionary(1 << 20);
         HipoDataSource reader = new HipoDataSource();
         reader.open(inputFileName);
         int nevent = -1;
@@ -89,21 +84,22 @@ public class TrackDictionaryValidation {
                             wireArray[(superlayer - 1) * 6 + layer - 1] = wire;
                         }
                     }
-                    ArrayList<Integer> wires = new ArrayList<Integer>();
+                    int[] wires = new int[6];
+                    int nWires = 0;
                     for (int k = 0; k < 6; k++) {
                         for (int l=0; l<6; l++) {
                             // use first non zero wire in superlayer
                             if(wireArray[k*6 +l] != 0) {
-                               wires.add(wireArray[k*6+l]);
+                               wires[nWires++] = wireArray[k*6+l];
                                break;
                             }
                         }
                     }
                     // keep only roads with 6 superlayers
-                    if(wires.size()==6) {
-                        if(!newDictionary.containsKey(wires))  {
-                            newDictionary.put(wires, part);
-                        }   
+                    if(nWires==6) {
+                        newDictionary.add(RoadDictionary.getKey(wires), charge, (float) part.p(),
+                                (float) Math.toDegrees(part.theta()), (float) Math.toDegrees(part.phi()),
+                                (float) part.vz(), 0, 0, 0);
                     }
                 }
             }
@@ -244,39 +240,28 @@ public class TrackDictionaryValidation {
         }
     }
     
-    private Particle findRoad(ArrayList<Integer> wires, int smear) {
-        Particle foundRoad = null;
-        if(smear>0) {
-            for(int k1=-smear; k1<=smear; k1++) {
-            for(int k2=-smear; k2<=smear; k2++) {
-            for(int k3=-smear; k3<=smear; k3++) {
-            for(int k4=-smear; k4<=smear; k4++) {
-            for(int k5=-smear; k5<=smear; k5++) {
-            for(int k6=-smear; k6<=smear; k6++) {
-                ArrayList<Integer> wiresCopy = new ArrayList(wires);
-                wiresCopy.set(0, wires.get(0) + k1);
-                wiresCopy.set(1, wires.get(1) + k2);
-                wiresCopy.set(2, wires.get(2) + k3);
-                wiresCopy.set(3, wires.get(3) + k4);
-                wiresCopy.set(4, wires.get(4) + k5);
-                wiresCopy.set(5, wires.get(5) + k6);
-                if(this.dictionary.containsKey(wiresCopy)) {
-                    foundRoad=this.dictionary.get(wiresCopy);
-                    break;
-                }
-            }}}}}}
-        }
-        else {
-            if(this.dictionary.containsKey(wires)) foundRoad=this.dictionary.get(wires);
-        } 
-        return foundRoad;
+    private Particle findRoad(int[] wires, int smear) {
+        int slot = this.dictionary.findRoad(wires, smear);
+        if(slot<0) return null;
+        return this.getRoad(slot);
+    }
+    
+    private Particle getRoad(int slot) {
+        int charge   = this.dictionary.getCharge(slot);
+        double p     = this.dictionary.getP(slot);
+        double theta = this.dictionary.getTheta(slot);
+        double phi   = this.dictionary.getPhi(slot);
+        double px    = p*Math.sin(Math.toRadians(theta))*Math.cos(Math.toRadians(phi));
+        double py    = p*Math.sin(Math.toRadians(theta))*Math.sin(Math.toRadians(phi));
+        double pz    = p*Math.cos(Math.toRadians(theta));
+        return new Particle(211*charge, px, py, pz, 0, 0, this.dictionary.getVz(slot));
     }
     
     public EmbeddedCanvasTabbed getCanvas() {
         return canvas;
     }
 
-    public Map<ArrayList<Integer>, Particle> getDictionary() {
+    public RoadDictionary getDictionary() {
         return dictionary;
     }
     
@@ -311,10 +296,11 @@ public class TrackDictionaryValidation {
     
     public void printDictionary() {
         if(this.dictionary !=null) {
-            for(Map.Entry<ArrayList<Integer>, Particle> entry : this.dictionary.entrySet()) {
-                ArrayList<Integer> wires = entry.getKey();
-                Particle road = entry.getValue();
-                for(int wire: wires) System.out.print(wire + " ");
+            for(int slot=0; slot<this.dictionary.getCapacity(); slot++) {
+                if(!this.dictionary.isEntry(slot)) continue;
+                long key = this.dictionary.getKey(slot);
+                Particle road = this.getRoad(slot);
+                for(int k=0; k<6; k++) System.out.print(RoadDictionary.getWire(key, k) + " ");
                 System.out.println(road.charge() + " " + road.p() + " " + Math.toDegrees(road.theta()) + " " + Math.toDegrees(road.phi()) + " " + road.vz());
             }
         }
@@ -397,18 +383,19 @@ public class TrackDictionaryValidation {
                         }
                     }
                     if(nSL3<3) continue; //ignore tracks with less than 3 hits in SL3 as in dictionary maker
-                    ArrayList<Integer> wires = new ArrayList<Integer>();
+                    int[] wires = new int[6];
+                    int nWires = 0;
                     for (int k = 0; k < 6; k++) {
                         for (int l=0; l<1; l++) {
                             // use first non zero wire in superlayer
                             if(wireArray[k*6 +l] != 0) {
-                               wires.add(wireArray[k*6+l]);
+                               wires[nWires++] = wireArray[k*6+l];
                                break;
                             }
                         }
                     }
                     // use only tracks with 6 superlayers
-                    if(wires.size()==6) {
+                    if(nWires==6) {
                         double phi     = (Math.toDegrees(part.phi())+180+30)%60-30;                        
                         Particle road = this.findRoad(wires,wireSmear);
                         if(road != null) {
@@ -452,85 +439,62 @@ public class TrackDictionaryValidation {
     
     public void readDictionary(String fileName) {
         
-        this.dictionary = new HashMap<>();
-        
         System.out.println("\nReading dictionary from file " + fileName);
-        int nLines = 0;
-        int nFull  = 0;
-        int nDupli = 0;
-        
-        File fileDict = new File(fileName);
-        BufferedReader txtreader = null;
         try {
-            txtreader = new BufferedReader(new FileReader(fileDict));
-            String line = null;
-            while ((line = txtreader.readLine()) != null) {
-                nLines++;
-                if(nLines % 1000000 == 0) System.out.println("Read " + nLines + " roads");
-                String[] lineValues;
-                lineValues  = line.split("\t");
-                ArrayList<Integer> wires = new ArrayList<Integer>();
-                if(lineValues.length < 42) {
-                    System.out.println("WARNING: dictionary line " + nLines + " incomplete: skipping");
-                }
-                else {
-//                    System.out.println(line);
-                    int charge   = Integer.parseInt(lineValues[0]);
-                    double p     = Double.parseDouble(lineValues[1]);
-                    double theta = Double.parseDouble(lineValues[2]);
-                    double phi   = Double.parseDouble(lineValues[3]);
-                    double vz    = Double.parseDouble(lineValues[41]);
-                    double px    = p*Math.sin(Math.toRadians(theta))*Math.cos(Math.toRadians(phi));
-                    double py    = p*Math.sin(Math.toRadians(theta))*Math.sin(Math.toRadians(phi));
-                    double pz    = p*Math.cos(Math.toRadians(theta));
-                    Particle road = new Particle(211*charge, px, py, pz, 0, 0, vz);
-                    // take wire id of first layer in each superlayer, id>0
-                    for(int i=0; i<6; i++) {
-                        int wire = Integer.parseInt(lineValues[4+i*6]);
-                        if(wire>0) wires.add(wire);
-                    }
-                    int paddle1b = Integer.parseInt(lineValues[40]);
-                    int paddle2  = Integer.parseInt(lineValues[42]);
-                    int pcalu    = Integer.parseInt(lineValues[43]);                    
-                    // keep only roads with 6 superlayers
-                    if(wires.size()!=6) continue;
-//                    // keep only roads with ftof
-//                    if(paddle1b==0) continue;
-                    nFull++;
-                    if(this.dictionary.containsKey(wires)) {
-                        nDupli++;
-                        if(nDupli<10) System.out.println("WARNING: found duplicate road");
-                        else if(nDupli==10) System.out.println("WARNING: reached maximum number of warnings, switching to silent mode");
-                    }
-                    else {
-                        this.dictionary.put(wires, road);
-                        double phiSec = (Math.toDegrees(road.phi())+180+30)%60-30;
-                        if(road.charge()<0) {
-                            this.dataGroups.getItem(0).getH2F("hi_ptheta_neg_road").fill(road.p(), Math.toDegrees(road.theta()));
-                            this.dataGroups.getItem(0).getH2F("hi_phitheta_neg_road").fill(phiSec, Math.toDegrees(road.theta()));
-                            this.dataGroups.getItem(0).getH2F("hi_vztheta_neg_road").fill(road.vz(), Math.toDegrees(road.theta()));
-                            if(paddle1b>0) this.dataGroups.getItem(0).getH2F("hi_pcalftof_neg_road").fill(paddle1b, pcalu);
-                        }
-                        else {
-                            this.dataGroups.getItem(0).getH2F("hi_ptheta_pos_road").fill(road.p(), Math.toDegrees(road.theta()));
-                            this.dataGroups.getItem(0).getH2F("hi_phitheta_pos_road").fill(phiSec, Math.toDegrees(road.theta()));                            
-                            this.dataGroups.getItem(0).getH2F("hi_vztheta_pos_road").fill(road.vz(), Math.toDegrees(road.theta()));
-                            if(paddle1b>0) this.dataGroups.getItem(0).getH2F("hi_pcalftof_pos_road").fill(paddle1b, pcalu);
-                        }
-                    }
-                }
+            this.dictionary = null;
+            if(RoadDictionary.isDictionaryFile(fileName)) {
+                this.dictionary = RoadDictionary.read(fileName);
+                if(this.dictionary==null) 
+                    System.out.println("Binary dictionary " + fileName + " has a wrong version or size, reading it as text");
+                else
+                    System.out.println("Found " + this.dictionary.size() + " roads in binary dictionary");
+            }
+            if(this.dictionary==null) {
+                this.dictionary = RoadDictionary.readText(fileName);
             }
-            System.out.println("Found " + nLines + " roads with " + nFull + " full ones, " + nDupli + " duplicates and " + this.dictionary.keySet().size() + " good ones");
         } 
-        catch (FileNotFoundException e) {
+        catch (IOException e) {
             e.printStackTrace();
+            return;
+        } 
+        this.fillDictionaryHistos();
+    }
+    
+    private void fillDictionaryHistos() {
+        if(this.dictionary==null) return;
+        for(int slot=0; slot<this.dictionary.getCapacity(); slot++) {
+            if(!this.dictionary.isEntry(slot)) continue;
+            Particle road = this.getRoad(slot);
+            int paddle1b  = this.dictionary.getPaddle1b(slot);
+            int pcalu     = this.dictionary.getPcalU(slot);
+            double phiSec = (Math.toDegrees(road.phi())+180+30)%60-30;
+            if(road.charge()<0) {
+                this.dataGroups.getItem(0).getH2F("hi_ptheta_neg_road").fill(road.p(), Math.toDegrees(road.theta()));
+                this.dataGroups.getItem(0).getH2F("hi_phitheta_neg_road").fill(phiSec, Math.toDegrees(road.theta()));
+                this.dataGroups.getItem(0).getH2F("hi_vztheta_neg_road").fill(road.vz(), Math.toDegrees(road.theta()));
+                if(paddle1b>0) this.dataGroups.getItem(0).getH2F("hi_pcalftof_neg_road").fill(paddle1b, pcalu);
+            }
+            else {
+                this.dataGroups.getItem(0).getH2F("hi_ptheta_pos_road").fill(road.p(), Math.toDegrees(road.theta()));
+                this.dataGroups.getItem(0).getH2F("hi_phitheta_pos_road").fill(phiSec, Math.toDegrees(road.theta()));                            
+                this.dataGroups.getItem(0).getH2F("hi_vztheta_pos_road").fill(road.vz(), Math.toDegrees(road.theta()));
+                if(paddle1b>0) this.dataGroups.getItem(0).getH2F("hi_pcalftof_pos_road").fill(paddle1b, pcalu);
+            }
+        }
+    }
+    
+    public void writeDictionary(String fileName) {
+        if(this.dictionary==null) return;
+        try {
+            this.dictionary.save(fileName);
+            System.out.println("Dictionary with " + this.dictionary.size() + " roads written to binary file " + fileName);
         } 
         catch (IOException e) {
             e.printStackTrace();
         } 
-   }
+    }
     
-    private void setDictionary(Map<ArrayList<Integer>, Particle> newDictionary) {
+    private void setDictionary(RoadDictionary newDictionary) {
         this.dictionary = newDictionary;
     }
     
@@ -538,7 +502,8 @@ public class TrackDictionaryValidation {
     public static void main(String[] args) {
         
         OptionParser parser = new OptionParser("dict-validation");
-        parser.addOption("-d","dictionary.txt", "read dictionary from file");
+        parser.addOption("-d","dictionary.txt", "read dictionary from file (text or binary)");
+        parser.addOption("-b","dictionary.bin", "write dictionary to binary file");
         parser.addOption("-c","input.hipo", "create dictionary from event file");
         parser.addOption("-i","set event file for dictionary validation");
         parser.addOption("-w", "0", "wire smearing in road finding");
@@ -581,6 +546,9 @@ public class TrackDictionaryValidation {
                 tm.readDictionary(dictionaryFileName);                
             }
     //        tm.printDictionary();
+            if(parser.containsOptions(arguments, "-b")) {
+                tm.writeDictionary(parser.getOption("-b").stringValue());
+            }
             tm.processFile(testFileName,wireSmear,maxEvents);
 
             JFrame frame = new JFrame("Tracking");
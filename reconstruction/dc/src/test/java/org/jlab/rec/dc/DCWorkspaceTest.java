@@ -0,0 +1,48 @@
+package org.jlab.rec.dc;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.jlab.rec.dc.hit.Hit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that each thread gets its own workspace, and that reset() clears
+ * the state left by the previous event without reallocating the buffers.
+ */
+public class DCWorkspaceTest {
+
+    @Test
+    public void testThreadConfinement() throws InterruptedException {
+        DCWorkspace ws = DCWorkspace.get();
+        assertSame(ws, DCWorkspace.get());
+
+        final AtomicReference<DCWorkspace> other = new AtomicReference<DCWorkspace>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other.set(DCWorkspace.get());
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotNull(other.get());
+        assertNotSame(ws, other.get());
+
+        DCWorkspace.release();
+        assertNotSame(ws, DCWorkspace.get());
+    }
+
+    @Test
+    public void testReset() {
+        DCWorkspace ws = DCWorkspace.get();
+        Hit[][][] hitArray = ws.clusterFinder.getHitArray();
+        hitArray[7][20][3] = new Hit(2, 2, 4, 21, 100, 1);
+
+        long events = ws.getEventCount();
+        ws.reset();
+        assertEquals(events+1, ws.getEventCount());
+        assertSame(hitArray, ws.clusterFinder.getHitArray());
+        assertNull(hitArray[7][20][3]);
+        assertNull(ws.hitReader.get_DCHits());
+    }
+}
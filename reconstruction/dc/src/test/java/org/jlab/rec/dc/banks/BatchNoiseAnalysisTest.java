@@ -0,0 +1,55 @@
+package org.jlab.rec.dc.banks;
+
+import cnuphys.snr.NoiseReductionParameters;
+import cnuphys.snr.clas12.Clas12BatchNoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseResult;
+import cnuphys.snr.test.BatchNoiseTest;
+import org.jlab.analysis.physics.TestEvent;
+import org.jlab.rec.dc.benchmark.SNRBenchmark;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the batched noise reduction used by the DC workspace gives
+ * exactly the same noise flags as the superlayer by superlayer one, on the
+ * recorded test event and on random events, with and without the second
+ * pass looking for tracks.
+ */
+public class BatchNoiseAnalysisTest {
+
+    @Test
+    public void testRecordedEvent() {
+        BatchNoiseTest.Event event = SNRBenchmark.readEvent(TestEvent.getDCSector1ElectronEvent());
+        assertNotNull(event);
+
+        boolean lookForTracks = NoiseReductionParameters.lookForTracks();
+        try {
+            for(boolean tracks : new boolean[]{false, true}) {
+                NoiseReductionParameters.setLookForTracks(tracks);
+                Clas12NoiseResult expected = new Clas12NoiseResult();
+                Clas12NoiseResult result   = new Clas12NoiseResult();
+                BatchNoiseTest.analyze(new Clas12NoiseAnalysis(), event, expected);
+                BatchNoiseTest.analyze(new Clas12BatchNoiseAnalysis(), event, result);
+                assertArrayEquals(expected.noise, result.noise);
+            }
+        }
+        finally {
+            NoiseReductionParameters.setLookForTracks(lookForTracks);
+        }
+    }
+
+    @Test
+    public void testRandomEvents() {
+        boolean lookForTracks = NoiseReductionParameters.lookForTracks();
+        try {
+            NoiseReductionParameters.setLookForTracks(false);
+            assertEquals(0, BatchNoiseTest.compare(2000, 400, 12345L));
+            NoiseReductionParameters.setLookForTracks(true);
+            assertEquals(0, BatchNoiseTest.compare(2000, 400, 54321L));
+        }
+        finally {
+            NoiseReductionParameters.setLookForTracks(lookForTracks);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.jlab.rec.dc.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.jlab.detector.base.GeometryConstants;
+import org.jlab.detector.geant4.v2.DCGeant4Factory;
+import org.jlab.detector.geant4.v2.DCWireTable;
+import org.jlab.geom.base.ConstantProvider;
+
+/**
+ * Measures the cost of the wire geometry lookups done for each hit
+ * (midpoint z, and both wire ends for the geometry correction and the
+ * signal propagation) with the Vector3d getters of DCGeant4Factory and
+ * with the primitive arrays of DCWireTable. Uses typical DC geometry
+ * constants so that no database connection is needed.
+ */
+public class DCGeometryBenchmark {
+
+    private static String[] values(double... v) {
+        String[] str = new String[v.length];
+        for(int i = 0; i < v.length; i++) str[i] = String.valueOf(v[i]);
+        return str;
+    }
+
+    private static String[] values(int... v) {
+        String[] str = new String[v.length];
+        for(int i = 0; i < v.length; i++) str[i] = String.valueOf(v[i]);
+        return str;
+    }
+
+    /**
+     * @return DC geometry constants with typical values, without alignment
+     */
+    public static ConstantProvider createConstants() {
+        Map<String,String[]> constants = new LinkedHashMap<String,String[]>();
+        constants.put("/geometry/dc/layer/nguardwires",         values(2));
+        constants.put("/geometry/dc/layer/nsensewires",         values(112));
+        constants.put("/geometry/dc/region/dist2tgt",           values(228.078, 345.9, 483.7));
+        constants.put("/geometry/dc/region/xdist",              values(7.5, 7.8, 8.1));
+        constants.put("/geometry/dc/region/frontgap",           values(1.27, 1.27, 1.27));
+        constants.put("/geometry/dc/region/midgap",             values(3.5, 3.5, 3.5));
+        constants.put("/geometry/dc/region/backgap",            values(1.27, 1.27, 1.27));
+        constants.put("/geometry/dc/region/thopen",             values(59.0, 60.0, 59.6));
+        constants.put("/geometry/dc/region/thtilt",             values(25.0, 25.0, 25.0));
+        constants.put("/geometry/dc/superlayer/thmin",          values(4.694, 4.495, 4.812, 4.771, 4.860, 4.926));
+        constants.put("/geometry/dc/superlayer/thster",         values(6.0, -6.0, 6.0, -6.0, 6.0, -6.0));
+        constants.put("/geometry/dc/superlayer/wpdist",         values(0.386160, 0.404220, 0.621906, 0.658597, 0.935140, 0.977982));
+        constants.put("/geometry/dc/superlayer/cellthickness",  values(2.0, 2.0, 2.0, 2.0, 2.0, 2.0));
+        constants.put("/geometry/dc/superlayer/nsenselayers",   values(6, 6, 6, 6, 6, 6));
+        constants.put("/geometry/dc/superlayer/nguardlayers",   values(2, 2, 2, 2, 2, 2));
+        constants.put("/geometry/dc/superlayer/nfieldlayers",   values(7, 7, 7, 7, 7, 7));
+        return new GeometryConstants(11, "default", constants);
+    }
+
+    public static void main(String[] args) {
+
+        int iterations = 10000000;
+        if(args.length>0) iterations = Integer.parseInt(args[0]);
+
+        long start = System.nanoTime();
+        DCGeant4Factory dcDetector = new DCGeant4Factory(createConstants(), DCGeant4Factory.MINISTAGGERON);
+        DCWireTable     wires      = dcDetector.getWireTable();
+        System.out.println(String.format("geometry build : %8.1f ms", (System.nanoTime()-start)*1e-6));
+
+        Random rand = new Random(12345);
+        int[] sectors = new int[4096];
+        int[] supers  = new int[4096];
+        int[] layers  = new int[4096];
+        int[] wireNbs = new int[4096];
+        for(int i = 0; i < 4096; i++) {
+            sectors[i] = rand.nextInt(6);
+            supers[i]  = rand.nextInt(6);
+            layers[i]  = rand.nextInt(6);
+            wireNbs[i] = rand.nextInt(112);
+        }
+
+        for(int warmup = 0; warmup < 3; warmup++) {
+            double sumVector = 0;
+            double sumTable  = 0;
+
+            long t0 = System.nanoTime();
+            for(int i = 0; i < iterations; i++) {
+                int k = i&4095;
+                sumVector += dcDetector.getWireMidpoint(sectors[k], supers[k], layers[k], wireNbs[k]).z;
+                sumVector += dcDetector.getWireLeftend(sectors[k], supers[k], layers[k], wireNbs[k]).x;
+                sumVector += dcDetector.getWireLeftend(sectors[k], supers[k], layers[k], wireNbs[k]).y;
+                sumVector += dcDetector.getWireRightend(sectors[k], supers[k], layers[k], wireNbs[k]).x;
+                sumVector += dcDetector.getWireRightend(sectors[k], supers[k], layers[k], wireNbs[k]).y;
+            }
+            long t1 = System.nanoTime();
+            for(int i = 0; i < iterations; i++) {
+                int k = i&4095;
+                int id = wires.getWireId(sectors[k], supers[k], layers[k], wireNbs[k]);
+                sumTable += wires.getMidpointZ(id);
+                sumTable += wires.getLeftendX(id);
+                sumTable += wires.getLeftendY(id);
+                sumTable += wires.getRightendX(id);
+                sumTable += wires.getRightendY(id);
+            }
+            long t2 = System.nanoTime();
+
+            System.out.println(String.format("iteration %d : Vector3d = %8.2f ns/hit, table = %8.2f ns/hit, speedup = %6.2f (check %s)",
+                    warmup, (t1-t0)/(double) iterations, (t2-t1)/(double) iterations,
+                    (t1-t0)/(double) (t2-t1), sumVector==sumTable ? "ok" : "MISMATCH"));
+        }
+
+        double[] x = new double[wires.getNWires()];
+        double[] z = new double[wires.getNWires()];
+        int nlayers = iterations/wires.getNWires();
+        double sumLayer = 0;
+        long t0 = System.nanoTime();
+        for(int i = 0; i < nlayers; i++) {
+            int k = i&4095;
+            wires.getMidpoints(sectors[k], supers[k], layers[k], x, null, z);
+            sumLayer += x[wireNbs[k]] + z[wireNbs[k]];
+        }
+        long t1 = System.nanoTime();
+        System.out.println(String.format("layer copy : %8.2f ns/wire (check %.3f)",
+                (t1-t0)/(double) (nlayers*wires.getNWires()), sumLayer));
+    }
+}
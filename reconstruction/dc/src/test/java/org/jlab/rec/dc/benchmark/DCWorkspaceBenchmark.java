@@ -0,0 +1,174 @@
+package org.jlab.rec.dc.benchmark;
+
+import cnuphys.snr.NoiseReductionParameters;
+import cnuphys.snr.clas12.Clas12NoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseResult;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import org.jlab.clas.swimtools.MagFieldsEngine;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataSource;
+import org.jlab.rec.dc.Constants;
+import org.jlab.rec.dc.DCWorkspace;
+import org.jlab.rec.dc.banks.HitReader;
+import org.jlab.rec.dc.banks.RecoBankWriter;
+import org.jlab.rec.dc.cluster.ClusterCleanerUtilities;
+import org.jlab.rec.dc.cluster.ClusterFinder;
+import org.jlab.rec.dc.cluster.ClusterFitter;
+import org.jlab.rec.dc.cross.CrossListFinder;
+import org.jlab.rec.dc.cross.CrossMaker;
+import org.jlab.rec.dc.segment.SegmentFinder;
+import org.jlab.rec.dc.track.TrackCandListFinder;
+import org.jlab.rec.dc.trajectory.RoadFinder;
+import org.jlab.service.dc.DCHBEngine;
+import org.jlab.service.dc.DCTBEngine;
+
+/**
+ * Measures the memory allocated per event by the DC reconstruction.
+ *
+ * Without arguments, compares the allocation of creating the per-event
+ * helpers (as the engines did before using DCWorkspace) with the reset of
+ * the thread's workspace. With a hipo file as first argument (and optionally
+ * the number of events as second), the file is also reconstructed with the
+ * HB and TB engines, reporting the bytes allocated per event, the
+ * allocation rate and the garbage collections.
+ */
+public class DCWorkspaceBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * @return the bytes allocated so far by the calling thread
+     */
+    public static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return the number of collections so far, summed over all collectors
+     */
+    public static long gcCount() {
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * @return the time spent in collections so far in ms, summed over all collectors
+     */
+    public static long gcTime() {
+        long time = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static Object[] createHelpers() {
+        // the helpers the HB engine created for every event, except the swim
+        // which needs the field maps
+        return new Object[] {
+            new Clas12NoiseResult(),
+            new Clas12NoiseAnalysis(),
+            new NoiseReductionParameters(2, Constants.SNR_LEFTSHIFTS, Constants.SNR_RIGHTSHIFTS),
+            new ClusterFitter(),
+            new ClusterCleanerUtilities(),
+            new RecoBankWriter(),
+            new HitReader(),
+            new ClusterFinder(),
+            new SegmentFinder(),
+            new CrossMaker(),
+            new CrossListFinder(),
+            new TrackCandListFinder(Constants.HITBASE),
+            new RoadFinder()
+        };
+    }
+
+    private static void helperSetup(int iterations) {
+        Object[] keep = null;
+        for(int warmup = 0; warmup < 3; warmup++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for(int i = 0; i < iterations; i++) {
+                keep = createHelpers();
+            }
+            double nanos = System.nanoTime()-start;
+            double perEvent = (double) (allocatedBytes()-bytes)/iterations;
+
+            DCWorkspace ws = DCWorkspace.get();
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for(int i = 0; i < iterations; i++) {
+                ws.reset();
+            }
+            double wsNanos = System.nanoTime()-start;
+            double wsPerEvent = (double) (allocatedBytes()-bytes)/iterations;
+
+            System.out.println(String.format("iteration %d : new helpers %10.0f bytes/event %8.2f us/event"
+                    + " | workspace reset %6.0f bytes/event %8.2f us/event (%d)",
+                    warmup, perEvent, nanos*1e-3/iterations, wsPerEvent, wsNanos*1e-3/iterations, keep.length));
+        }
+    }
+
+    private static void reconstruct(String inputFile, int maxEvents) {
+        MagFieldsEngine enf = new MagFieldsEngine();
+        enf.init();
+        DCHBEngine hb = new DCHBEngine();
+        hb.init();
+        DCTBEngine tb = new DCTBEngine();
+        tb.init();
+
+        HipoDataSource reader = new HipoDataSource();
+        reader.open(inputFile);
+
+        int counter = 0;
+        long bytes = 0;
+        long gcs = 0;
+        long gcms = 0;
+        long start = 0;
+        int warmup = Math.min(100, maxEvents/10);
+        while(reader.hasEvent() && counter < maxEvents) {
+            if(counter == warmup) {
+                bytes = allocatedBytes();
+                gcs = gcCount();
+                gcms = gcTime();
+                start = System.nanoTime();
+            }
+            DataEvent event = reader.getNextEvent();
+            enf.processDataEvent(event);
+            hb.processDataEvent(event);
+            tb.processDataEvent(event);
+            counter++;
+        }
+        int nevents = counter - warmup;
+        if(nevents <= 0) {
+            System.out.println("not enough events in " + inputFile);
+            return;
+        }
+        double seconds = (System.nanoTime()-start)*1e-9;
+        double allocated = allocatedBytes()-bytes;
+        System.out.println(String.format("reconstruction : %d events, %10.0f bytes/event, %8.1f MB/s allocated,"
+                + " %d collections (%d ms), %8.1f events/s",
+                nevents, allocated/nevents, allocated/seconds/1e6,
+                gcCount()-gcs, gcTime()-gcms, nevents/seconds));
+    }
+
+    public static void main(String[] args) {
+
+        if(!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("thread allocated memory is not supported by this JVM");
+            return;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        helperSetup(2000);
+
+        if(args.length>0) {
+            int maxEvents = args.length>1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+            reconstruct(args[0], maxEvents);
+        }
+    }
+}
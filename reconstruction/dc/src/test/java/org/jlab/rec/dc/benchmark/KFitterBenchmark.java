@@ -0,0 +1,268 @@
+package org.jlab.rec.dc.benchmark;
+
+import Jama.Matrix;
+import java.util.Random;
+import org.jlab.rec.dc.track.fit.KFilterCore;
+
+/**
+ * Measures the time per track of the Kalman filter measurement updates
+ * done by KFitter, with KFilterCore and with the information form on Jama
+ * matrices used before (two 5x5 inversions per measurement), which is
+ * reproduced here. The tracks are generated in a uniform field along 36
+ * planes at the DC layer positions and transported with the linear
+ * model, so that no field map is needed; the fit loop is the one of
+ * KFitter.runFitter.
+ */
+public class KFitterBenchmark {
+
+    private static final double[] REGIONZ = {228.078, 345.9, 483.7};
+    // dtx/dz per unit q/p
+    private static final double KAPPA = 0.001;
+
+    /**
+     * A synthetic track: measurement planes and measured wire positions
+     */
+    public static class SyntheticTrack {
+        public final double[] z       = new double[36];
+        public final double[] meas    = new double[36];
+        public final double[] var     = new double[36];
+        public final int[]    tilt    = new int[36];
+        public final double[] sag     = new double[36];
+        public final double[] wireLen = new double[36];
+        public final double[] trueState = new double[5];
+        public final double[] initState = new double[5];
+        public final double[][] initCov = new double[5][5];
+    }
+
+    /**
+     * The result of a fit, state and covariance matrix at the last measurement
+     */
+    public static class FitResult {
+        public final double[] state = new double[5];
+        public final double[][] cov = new double[5][5];
+        public double chi2;
+        public int    nfiltered;
+    }
+
+    /**
+     * @param rand random generator
+     * @return a track with smeared measurements and a smeared initial state
+     */
+    public static SyntheticTrack createTrack(Random rand) {
+        SyntheticTrack trk = new SyntheticTrack();
+        for (int sl = 0; sl < 6; sl++) {
+            for (int l = 0; l < 6; l++) {
+                int k = sl * 6 + l;
+                trk.z[k] = REGIONZ[sl / 2] + (sl % 2) * 15.0 + l * 1.3;
+                trk.tilt[k] = (sl % 2 == 0) ? 1 : -1;
+                trk.sag[k] = 0.01 + 0.02 * rand.nextDouble();
+                trk.wireLen[k] = 100 + (sl / 2) * 100 + 50 * rand.nextDouble();
+                double sigma = 0.02 + 0.03 * rand.nextDouble();
+                trk.var[k] = sigma * sigma;
+            }
+        }
+        double p = 1.0 + 6.0 * rand.nextDouble();
+        double q = rand.nextBoolean() ? 1 : -1;
+        double[] s = trk.trueState;
+        s[0] = 10 + 60 * rand.nextDouble();
+        s[1] = -10 + 20 * rand.nextDouble();
+        s[2] = 0.1 + 0.4 * rand.nextDouble();
+        s[3] = -0.05 + 0.1 * rand.nextDouble();
+        s[4] = q / p;
+
+        double[] state = s.clone();
+        for (int k = 0; k < 36; k++) {
+            if (k > 0) {
+                propagate(state, null, trk.z[k] - trk.z[k - 1]);
+            }
+            trk.meas[k] = h(state[0], state[1], trk.tilt[k], trk.sag[k], trk.wireLen[k])
+                    + Math.sqrt(trk.var[k]) * rand.nextGaussian();
+        }
+
+        double ex = 0.5, ey = 5.0, eux = 0.005, euy = 0.05, ep = 0.05 * Math.abs(s[4]);
+        double[] err = {ex, ey, eux, euy, ep};
+        for (int i = 0; i < 5; i++) {
+            trk.initState[i] = s[i] + 0.5 * err[i] * rand.nextGaussian();
+            trk.initCov[i][i] = err[i] * err[i];
+        }
+        return trk;
+    }
+
+    // the projector of MeasVecs
+    private static double h(double x, double y, int s, double w, double l) {
+        return x - Math.tan(Math.toRadians(s * 6.)) * y + w * (1 - y / (l / 2.)) * (1 - y / (l / 2.));
+    }
+
+    private static double Hy(double y, int s, double w, double l) {
+        return -Math.tan(Math.toRadians(s * 6.)) - w * (4. / l) * (1 - y / (l / 2.));
+    }
+
+    /**
+     * transports the state and the covariance matrix (if not null) by dz
+     * in the uniform field, with multiple scattering on the slopes
+     */
+    private static void propagate(double[] s, double[][] C, double dz) {
+        double dxdtx = dz;
+        double dxdq  = 0.5 * KAPPA * dz * dz;
+        double dtxdq = KAPPA * dz;
+        s[0] += s[2] * dz + dxdq * s[4];
+        s[1] += s[3] * dz;
+        s[2] += dtxdq * s[4];
+        if (C == null) {
+            return;
+        }
+        // C = F C F^T, F = 1 + (0,2)dxdtx + (0,4)dxdq + (1,3)dz + (2,4)dtxdq
+        for (int j = 0; j < 5; j++) {
+            C[0][j] += dxdtx * C[2][j] + dxdq * C[4][j];
+            C[1][j] += dz * C[3][j];
+            C[2][j] += dtxdq * C[4][j];
+        }
+        for (int i = 0; i < 5; i++) {
+            C[i][0] += dxdtx * C[i][2] + dxdq * C[i][4];
+            C[i][1] += dz * C[i][3];
+            C[i][2] += dtxdq * C[i][4];
+        }
+        double ms = 1.e-9 * Math.abs(dz) * (1 + s[4] * s[4]);
+        C[2][2] += ms;
+        C[3][3] += ms;
+    }
+
+    /**
+     * the measurement update of KFitter before KFilterCore: information
+     * form with two inversions
+     * @return false if the update was not done
+     */
+    public static boolean legacyFilter(double[][] C, double H0, double H1, double V, double[] K) {
+        double[][] HTGH = new double[][]{
+                {H0 * H0 / V, H0 * H1 / V, 0, 0, 0},
+                {H0 * H1 / V, H1 * H1 / V, 0, 0, 0},
+                {0, 0, 0, 0, 0},
+                {0, 0, 0, 0, 0},
+                {0, 0, 0, 0, 0}
+        };
+        Matrix covMat = new Matrix(C);
+        if (Math.abs(covMat.det()) < 1.e-30) {
+            return false;
+        }
+        Matrix Ci;
+        try {
+            Ci = covMat.inverse();
+        } catch (Exception e) {
+            return false;
+        }
+        Matrix Ca = Ci.plus(new Matrix(HTGH));
+        if (Math.abs(Ca.det()) < 1.e-30) {
+            return false;
+        }
+        Matrix CaInv = Ca.inverse();
+        for (int j = 0; j < 5; j++) {
+            K[j] = (H0 * CaInv.get(j, 0) + H1 * CaInv.get(j, 1)) / V;
+        }
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                C[i][j] = CaInv.get(i, j);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * fits the track with the iterations of KFitter.runFitter
+     * @param trk the track
+     * @param legacy true to use the legacy information form update
+     * @param niter number of iterations
+     * @param core filter core used if legacy is false
+     * @param result the fit result
+     */
+    public static void fit(SyntheticTrack trk, boolean legacy, int niter, KFilterCore core, FitResult result) {
+        double[] s = result.state;
+        double[][] C = result.cov;
+        double[] K = new double[5];
+        System.arraycopy(trk.initState, 0, s, 0, 5);
+        for (int i = 0; i < 5; i++) {
+            System.arraycopy(trk.initCov[i], 0, C[i], 0, 5);
+        }
+        int n = trk.z.length;
+        for (int it = 1; it <= niter; it++) {
+            result.chi2 = 0;
+            result.nfiltered = 0;
+            if (it > 1) {
+                propagate(s, C, trk.z[0] - trk.z[n - 1]);
+            }
+            for (int k = 1; k < n; k++) {
+                propagate(s, C, trk.z[k] - trk.z[k - 1]);
+                double V  = trk.var[k];
+                double H1 = Hy(s[1], trk.tilt[k], trk.sag[k], trk.wireLen[k]);
+                boolean ok;
+                if (legacy) {
+                    ok = legacyFilter(C, 1, H1, V, K);
+                } else {
+                    ok = core.filter(C, 1, H1, V);
+                    for (int j = 0; j < 5; j++) {
+                        K[j] = core.getGain(j);
+                    }
+                }
+                if (!ok) {
+                    continue;
+                }
+                double res = trk.meas[k] - h(s[0], s[1], trk.tilt[k], trk.sag[k], trk.wireLen[k]);
+                for (int j = 0; j < 5; j++) {
+                    s[j] += K[j] * res;
+                }
+                result.chi2 += res * res / V;
+                result.nfiltered++;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+
+        int ntracks = 20000;
+        if (args.length > 0) ntracks = Integer.parseInt(args[0]);
+        int niter = 5;
+
+        Random rand = new Random(2018);
+        SyntheticTrack[] tracks = new SyntheticTrack[1000];
+        for (int i = 0; i < tracks.length; i++) {
+            tracks[i] = createTrack(rand);
+        }
+        KFilterCore core = new KFilterCore();
+        FitResult legacyResult = new FitResult();
+        FitResult coreResult   = new FitResult();
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            double maxDiff = 0;
+            long tLegacy = 0;
+            long tCore   = 0;
+            for (int i = 0; i < ntracks; i++) {
+                SyntheticTrack trk = tracks[i % tracks.length];
+                long t0 = System.nanoTime();
+                fit(trk, true, niter, core, legacyResult);
+                long t1 = System.nanoTime();
+                fit(trk, false, niter, core, coreResult);
+                long t2 = System.nanoTime();
+                tLegacy += t1 - t0;
+                tCore   += t2 - t1;
+                for (int j = 0; j < 5; j++) {
+                    double diff = Math.abs(legacyResult.state[j] - coreResult.state[j])
+                            / Math.sqrt(coreResult.cov[j][j]);
+                    maxDiff = Math.max(maxDiff, diff);
+                }
+            }
+            System.out.println(String.format("iteration %d : Jama = %8.2f us/track, core = %8.2f us/track, speedup = %6.2f, "
+                    + "max state difference = %.2e sigma",
+                    warmup, tLegacy * 1e-3 / ntracks, tCore * 1e-3 / ntracks,
+                    tLegacy / (double) tCore, maxDiff));
+        }
+        System.out.println(String.format("%d iterations of 35 measurements per track, %.0f tracks/s with the core",
+                niter, ntracks / (1e-9 * Math.max(1, timeCore(tracks, ntracks, niter, core, coreResult)))));
+    }
+
+    private static long timeCore(SyntheticTrack[] tracks, int ntracks, int niter, KFilterCore core, FitResult result) {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ntracks; i++) {
+            fit(tracks[i % tracks.length], false, niter, core, result);
+        }
+        return System.nanoTime() - t0;
+    }
+}
@@ -0,0 +1,91 @@
+package org.jlab.rec.dc.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.jlab.clas.physics.Particle;
+import org.jlab.rec.dc.dictionary.RoadDictionary;
+
+/**
+ * Compares the heap used, the lookup time and the loading time of the
+ * compact road dictionary with the HashMap of wire lists and Particles
+ * used before by TrackDictionaryValidation, on random roads.
+ */
+public class RoadDictionaryBenchmark {
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        int nroads = 2000000;
+        if (args.length > 0) nroads = Integer.parseInt(args[0]);
+
+        Random rand = new Random(112);
+        int[][] roads = new int[nroads][6];
+        for (int i = 0; i < nroads; i++) {
+            for (int k = 0; k < 6; k++) roads[i][k] = 1 + rand.nextInt(112);
+        }
+
+        long mem0 = usedMemory();
+        Map<ArrayList<Integer>, Particle> map = new HashMap<ArrayList<Integer>, Particle>();
+        for (int i = 0; i < nroads; i++) {
+            ArrayList<Integer> wires = new ArrayList<Integer>();
+            for (int k = 0; k < 6; k++) wires.add(roads[i][k]);
+            map.put(wires, new Particle(211, 1, 0, 2, 0, 0, 0));
+        }
+        long mem1 = usedMemory();
+        RoadDictionary dictionary = new RoadDictionary(nroads);
+        for (int i = 0; i < nroads; i++) {
+            dictionary.add(RoadDictionary.getKey(roads[i]), 1, 2.0f, 20.0f, 5.0f, 0.0f, 0, 0, 0);
+        }
+        long mem2 = usedMemory();
+        System.out.println(String.format("%d roads : HashMap = %6.1f MB, compact = %6.1f MB",
+                dictionary.size(), (mem1 - mem0) / 1024. / 1024., (mem2 - mem1) / 1024. / 1024.));
+
+        File file = File.createTempFile("roads", ".bin");
+        file.deleteOnExit();
+        long t0 = System.nanoTime();
+        dictionary.save(file.getAbsolutePath());
+        long t1 = System.nanoTime();
+        RoadDictionary mapped = RoadDictionary.read(file.getAbsolutePath());
+        long t2 = System.nanoTime();
+        System.out.println(String.format("save = %8.1f ms, map = %8.3f ms", (t1 - t0) * 1e-6, (t2 - t1) * 1e-6));
+
+        int nlookups = 4 * nroads;
+        for (int iteration = 0; iteration < 3; iteration++) {
+            int foundMap = 0, foundTable = 0, foundMapped = 0;
+            long s0 = System.nanoTime();
+            for (int i = 0; i < nlookups; i++) {
+                int[] road = roads[(int) ((i * 7919L) % nroads)];
+                ArrayList<Integer> wires = new ArrayList<Integer>();
+                for (int k = 0; k < 6; k++) wires.add(road[k] + (i & 1));
+                if (map.containsKey(wires)) foundMap++;
+            }
+            long s1 = System.nanoTime();
+            for (int i = 0; i < nlookups; i++) {
+                int[] road = roads[(int) ((i * 7919L) % nroads)];
+                int w = i & 1;
+                if (dictionary.find(RoadDictionary.getKey(road[0] + w, road[1] + w, road[2] + w,
+                        road[3] + w, road[4] + w, road[5] + w)) >= 0) foundTable++;
+            }
+            long s2 = System.nanoTime();
+            for (int i = 0; i < nlookups; i++) {
+                int[] road = roads[(int) ((i * 7919L) % nroads)];
+                int w = i & 1;
+                if (mapped.find(RoadDictionary.getKey(road[0] + w, road[1] + w, road[2] + w,
+                        road[3] + w, road[4] + w, road[5] + w)) >= 0) foundMapped++;
+            }
+            long s3 = System.nanoTime();
+            System.out.println(String.format("iteration %d : HashMap = %6.1f ns, compact = %6.1f ns, mapped = %6.1f ns per lookup (check %s)",
+                    iteration, (s1 - s0) / (double) nlookups, (s2 - s1) / (double) nlookups, (s3 - s2) / (double) nlookups,
+                    foundMap == foundTable && foundMap == foundMapped ? "ok" : "MISMATCH"));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.jlab.rec.dc.benchmark;
+
+import cnuphys.snr.clas12.Clas12BatchNoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseAnalysis;
+import cnuphys.snr.clas12.Clas12NoiseResult;
+import cnuphys.snr.test.BatchNoiseTest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataSource;
+
+/**
+ * Compares the batched noise reduction (all superlayers at once) with the
+ * superlayer by superlayer one on the DC::tdc banks of a hipo file, and
+ * measures the time per event of both.
+ *
+ * Usage: SNRBenchmark file.hipo [max events]
+ */
+public class SNRBenchmark {
+
+    /**
+     * @param event the event
+     * @return the 1-based sector, superlayer, layer and wire arrays of the
+     * DC::tdc bank as given to the noise analysis by HitReader, null if the
+     * event has no DC::tdc bank
+     */
+    public static BatchNoiseTest.Event readEvent(DataEvent event) {
+        if(!event.hasBank("DC::tdc")) return null;
+        DataBank bank = event.getBank("DC::tdc");
+        int rows = bank.rows();
+        BatchNoiseTest.Event hits = new BatchNoiseTest.Event();
+        hits.sector     = new int[rows];
+        hits.superlayer = new int[rows];
+        hits.layer      = new int[rows];
+        hits.wire       = new int[rows];
+        for(int i = 0; i < rows; i++) {
+            int layer = bank.getByte("layer", i);
+            hits.sector[i]     = bank.getByte("sector", i);
+            hits.superlayer[i] = (layer - 1) / 6 + 1;
+            hits.layer[i]      = layer - (hits.superlayer[i] - 1) * 6;
+            hits.wire[i]       = bank.getShort("component", i);
+        }
+        return hits;
+    }
+
+    private static double time(Clas12NoiseAnalysis analysis, List<BatchNoiseTest.Event> events, Clas12NoiseResult results) {
+        long start = System.nanoTime();
+        for(BatchNoiseTest.Event event : events) {
+            BatchNoiseTest.analyze(analysis, event, results);
+        }
+        return (System.nanoTime()-start)*1e-3/events.size();
+    }
+
+    public static void main(String[] args) {
+
+        if(args.length<1) {
+            System.out.println("usage: SNRBenchmark file.hipo [max events]");
+            return;
+        }
+        int maxEvents = args.length>1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+
+        List<BatchNoiseTest.Event> events = new ArrayList<>();
+        HipoDataSource reader = new HipoDataSource();
+        reader.open(args[0]);
+        while(reader.hasEvent() && events.size() < maxEvents) {
+            BatchNoiseTest.Event hits = readEvent(reader.getNextEvent());
+            if(hits != null) events.add(hits);
+        }
+        if(events.isEmpty()) {
+            System.out.println("no DC::tdc bank in " + args[0]);
+            return;
+        }
+
+        Clas12NoiseAnalysis reference = new Clas12NoiseAnalysis();
+        Clas12NoiseAnalysis batch = new Clas12BatchNoiseAnalysis();
+        Clas12NoiseResult refResults = new Clas12NoiseResult();
+        Clas12NoiseResult batchResults = new Clas12NoiseResult();
+
+        int bad = 0;
+        long hits = 0;
+        long noise = 0;
+        for(BatchNoiseTest.Event event : events) {
+            BatchNoiseTest.analyze(reference, event, refResults);
+            BatchNoiseTest.analyze(batch, event, batchResults);
+            if(!Arrays.equals(refResults.noise, batchResults.noise)) bad++;
+            hits  += event.wire.length;
+            noise += refResults.noiseCount();
+        }
+        System.out.println(String.format("%d events, %.1f hits/event, %.1f noise hits/event, %d events with different results",
+                events.size(), (double) hits/events.size(), (double) noise/events.size(), bad));
+
+        for(int iter = 0; iter < 5; iter++) {
+            double ref = time(reference, events, refResults);
+            double bat = time(batch, events, batchResults);
+            System.out.println(String.format("iteration %d : superlayer by superlayer %8.2f us/event,"
+                    + " batched %8.2f us/event, speed-up %5.2f", iter, ref, bat, ref/bat));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.jlab.rec.dc.benchmark;
+
+import java.util.Random;
+import org.jlab.rec.dc.Constants;
+import org.jlab.rec.dc.timetodistance.T2DTable;
+import org.jlab.rec.dc.timetodistance.TimeToDistanceEstimator;
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * Measures the time to build the time-to-distance grid, to read it from
+ * the cache directory given as second argument and the time per
+ * interpolateOnGrid call, using a time2dist table with typical values
+ * so that no database connection is needed.
+ */
+public class T2DBenchmark {
+
+    private static final double[] WPDIST = {0.386160,0.404220,0.621906,0.658597,0.935140,0.977982};
+    private static final double[] TMAX   = {155.0, 165.0, 300.0, 320.0, 550.0, 590.0};
+
+    /**
+     * sets the wire plane distances (normally set from the geometry) if
+     * they are not set yet.
+     */
+    public static void setWireDistances() {
+        if(Constants.wpdist[0]>0) return;
+        System.arraycopy(WPDIST, 0, Constants.wpdist, 0, WPDIST.length);
+    }
+
+    /**
+     * @param scale scale applied to the drift velocity, to get different tables
+     * @return time2dist table with typical values
+     */
+    public static IndexedTable createTable(double scale) {
+        IndexedTable table = new IndexedTable(3,
+                "v0/D:deltanm/D:tmax/D:distbeta/D:delta_bfield_coefficient/D:b1/D:b2/D:b3/D:b4/D:delta_T0/D");
+        for(int sector = 1; sector <= 6; sector++) {
+            for(int superlayer = 1; superlayer <= 6; superlayer++) {
+                table.addEntry(sector, superlayer, 0);
+                table.setDoubleValue(0.0053*scale, "v0", sector, superlayer, 0);
+                table.setDoubleValue(1.5 + 0.01*sector, "deltanm", sector, superlayer, 0);
+                table.setDoubleValue(TMAX[superlayer-1] + sector, "tmax", sector, superlayer, 0);
+                table.setDoubleValue(0.05, "distbeta", sector, superlayer, 0);
+                table.setDoubleValue(0.15 + 0.05*((superlayer-1)/2), "delta_bfield_coefficient", sector, superlayer, 0);
+                table.setDoubleValue(0.1, "b1", sector, superlayer, 0);
+                table.setDoubleValue(-0.2, "b2", sector, superlayer, 0);
+                table.setDoubleValue(0.3, "b3", sector, superlayer, 0);
+                table.setDoubleValue(-0.1, "b4", sector, superlayer, 0);
+                table.setDoubleValue(0.5*superlayer, "delta_T0", sector, superlayer, 0);
+            }
+        }
+        return table;
+    }
+
+    public static void main(String[] args) {
+
+        int iterations = 5000000;
+        if(args.length>0) iterations = Integer.parseInt(args[0]);
+
+        setWireDistances();
+        IndexedTable tab = createTable(1.0);
+
+        long start = System.nanoTime();
+        T2DTable table = T2DTable.create(0, "default", tab);
+        System.out.println(String.format("grid build : %8.1f ms, %d values",
+                (System.nanoTime()-start)*1e-6, table.getSize()));
+
+        if(args.length>1) {
+            // first load fills the cache directory if needed, second one reads it
+            T2DTable.load(0, "default", tab, args[1]);
+            start = System.nanoTime();
+            T2DTable.load(0, "default", tab, args[1]);
+            System.out.println(String.format("grid read from cache : %8.1f ms",
+                    (System.nanoTime()-start)*1e-6));
+        }
+
+        TimeToDistanceEstimator tde = new TimeToDistanceEstimator(table);
+        Random rand = new Random(12345);
+        int n = 4096;
+        double[] bfield = new double[n];
+        double[] alpha  = new double[n];
+        double[] time   = new double[n];
+        int[]    sector = new int[n];
+        int[]    superlayer = new int[n];
+        for(int i = 0; i < n; i++) {
+            bfield[i]     = rand.nextDouble()*3.0;
+            alpha[i]      = rand.nextDouble()*30.0;
+            superlayer[i] = rand.nextInt(6);
+            sector[i]     = rand.nextInt(6);
+            time[i]       = 0.01 + rand.nextDouble()*TMAX[superlayer[i]];
+        }
+
+        for(int warmup = 0; warmup < 3; warmup++) {
+            double sum = 0;
+            start = System.nanoTime();
+            for(int i = 0; i < iterations; i++) {
+                int k = i&(n-1);
+                sum += tde.interpolateOnGrid(bfield[k], alpha[k], time[k], sector[k], superlayer[k]);
+            }
+            double nanos = (System.nanoTime()-start);
+            System.out.println(String.format("iteration %d : interpolateOnGrid = %8.2f ns/call (check %.6f)",
+                    warmup, nanos/iterations, sum/iterations));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.jlab.rec.dc.dictionary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Fills the concurrent road table with several threads, each taking the
+ * tracks in its own order, and compares it with the first track of each
+ * road in generation order.
+ */
+public class ConcurrentRoadTableTest {
+
+    @Test
+    public void testConcurrentPut() throws Exception {
+        final int ntracks = 200000;
+        Random rand = new Random(17);
+        final long[] keys = new long[ntracks];
+        Map<Long, Integer> first = new HashMap<Long, Integer>();
+        for (int i = 0; i < ntracks; i++) {
+            int w = 1 + rand.nextInt(60);
+            keys[i] = RoadDictionary.getKey(w, w + rand.nextInt(4), w + rand.nextInt(4),
+                    w + rand.nextInt(8), w + rand.nextInt(8), w + rand.nextInt(8));
+            if (!first.containsKey(keys[i])) first.put(keys[i], i);
+        }
+
+        final ConcurrentRoadTable table = new ConcurrentRoadTable(ntracks);
+        final int nthreads = 8;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < nthreads; t++) {
+            final int thread = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    // every thread adds all the tracks, in reverse order for some of them
+                    for (int n = 0; n < ntracks; n++) {
+                        int i = thread % 2 == 0 ? n : ntracks - 1 - n;
+                        table.put(keys[i], ((long) i << 16) | (i & 0xffff));
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(first.size(), table.size());
+        int nentries = 0;
+        for (int slot = 0; slot < table.getCapacity(); slot++) {
+            if (!table.isEntry(slot)) continue;
+            nentries++;
+            int i = first.get(table.getKey(slot));
+            assertEquals(((long) i << 16) | (i & 0xffff), table.getValue(slot));
+            assertEquals(slot, table.find(table.getKey(slot)));
+        }
+        assertEquals(first.size(), nentries);
+        assertEquals(-1, table.find(RoadDictionary.getKey(100, 101, 102, 103, 104, 105)));
+        assertFalse(table.put(0, 0));
+    }
+}
@@ -0,0 +1,137 @@
+package org.jlab.rec.dc.dictionary;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the compact road dictionary with the HashMap of wire lists
+ * used before by TrackDictionaryValidation.
+ */
+public class RoadDictionaryTest {
+
+    private static ArrayList<Integer> toList(int[] wires) {
+        ArrayList<Integer> list = new ArrayList<Integer>();
+        for (int wire : wires) list.add(wire);
+        return list;
+    }
+
+    private static int[] randomRoad(Random rand) {
+        int[] wires = new int[6];
+        int w = 1 + rand.nextInt(40);
+        for (int i = 0; i < 6; i++) {
+            wires[i] = Math.min(112, w + rand.nextInt(6));
+        }
+        return wires;
+    }
+
+    // the road lookup of TrackDictionaryValidation with the HashMap dictionary
+    private static Integer findRoad(Map<ArrayList<Integer>, Integer> dictionary, ArrayList<Integer> wires, int smear) {
+        Integer foundRoad = null;
+        for(int k1=-smear; k1<=smear; k1++) {
+        for(int k2=-smear; k2<=smear; k2++) {
+        for(int k3=-smear; k3<=smear; k3++) {
+        for(int k4=-smear; k4<=smear; k4++) {
+        for(int k5=-smear; k5<=smear; k5++) {
+        for(int k6=-smear; k6<=smear; k6++) {
+            ArrayList<Integer> wiresCopy = new ArrayList<Integer>(wires);
+            wiresCopy.set(0, wires.get(0) + k1);
+            wiresCopy.set(1, wires.get(1) + k2);
+            wiresCopy.set(2, wires.get(2) + k3);
+            wiresCopy.set(3, wires.get(3) + k4);
+            wiresCopy.set(4, wires.get(4) + k5);
+            wiresCopy.set(5, wires.get(5) + k6);
+            if(dictionary.containsKey(wiresCopy)) {
+                foundRoad=dictionary.get(wiresCopy);
+                break;
+            }
+        }}}}}}
+        return foundRoad;
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        Random rand = new Random(36);
+        Map<ArrayList<Integer>, Integer> reference = new HashMap<ArrayList<Integer>, Integer>();
+        // small initial size to test the growth of the table
+        RoadDictionary dictionary = new RoadDictionary(10);
+        for (int i = 0; i < 20000; i++) {
+            int[] wires = randomRoad(rand);
+            boolean isNew = !reference.containsKey(toList(wires));
+            if (isNew) reference.put(toList(wires), i);
+            assertEquals(isNew, dictionary.add(RoadDictionary.getKey(wires), 1, i, 20, 10, 0, 0, 0, 0));
+        }
+        assertEquals(reference.size(), dictionary.size());
+
+        File file = File.createTempFile("roads", ".bin");
+        file.deleteOnExit();
+        dictionary.save(file.getAbsolutePath());
+        assertTrue(RoadDictionary.isDictionaryFile(file.getAbsolutePath()));
+        RoadDictionary mapped = RoadDictionary.read(file.getAbsolutePath());
+        assertTrue(mapped.isReadOnly());
+        assertEquals(dictionary.size(), mapped.size());
+
+        for (int i = 0; i < 5000; i++) {
+            int[] wires = randomRoad(rand);
+            for (int smear = 0; smear <= 1; smear++) {
+                Integer expected = smear == 0 ? reference.get(toList(wires)) : findRoad(reference, toList(wires), smear);
+                for (RoadDictionary dict : new RoadDictionary[]{dictionary, mapped}) {
+                    int slot = dict.findRoad(wires, smear);
+                    if (expected == null) {
+                        assertEquals(-1, slot);
+                    } else {
+                        assertEquals(expected.intValue(), (int) dict.getP(slot));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadText() throws Exception {
+        File file = File.createTempFile("roads", ".txt");
+        file.deleteOnExit();
+        PrintWriter pw = new PrintWriter(file);
+        // TrackDictionaryMaker format
+        pw.printf("%d\t%.1f\t %.1f\t %.1f\t ", -1, 2.5, 15.5, -4.0);
+        for (int i = 0; i < 36; i++) pw.printf("%d\t ", 10 + i / 6 * 3);
+        pw.printf("%d\t %.1f\t\n", 12, -1.0);
+        // TrackDictionaryMakerRNG format, same road
+        pw.printf("%d\t%.2f\t%.2f\t%.2f\t", 1, 3.5, 16.5, -6.0);
+        for (int i = 0; i < 36; i++) pw.printf("%d\t", 10 + i / 6 * 3);
+        pw.printf("%d\t%.2f\t%d\t%d\n", 13, 0.5, 2, 40);
+        // missing wire in the first layer of superlayer 2
+        pw.printf("%d\t%.2f\t%.2f\t%.2f\t", 1, 3.5, 16.5, -6.0);
+        for (int i = 0; i < 36; i++) pw.printf("%d\t", i == 6 ? 0 : 20 + i / 6 * 3);
+        pw.printf("%d\t%.2f\t%d\t%d\n", 13, 0.5, 2, 40);
+        // new road
+        pw.printf("%d\t%.2f\t%.2f\t%.2f\t", 1, 3.5, 16.5, -6.0);
+        for (int i = 0; i < 36; i++) pw.printf("%d\t", 30 + i / 6 * 3);
+        pw.printf("%d\t%.2f\t%d\t%d\n", 13, 0.5, 2, 40);
+        pw.close();
+
+        RoadDictionary dictionary = RoadDictionary.readText(file.getAbsolutePath());
+        assertEquals(2, dictionary.size());
+        int slot = dictionary.find(new int[]{10, 13, 16, 19, 22, 25});
+        assertTrue(slot >= 0);
+        assertEquals(-1, dictionary.getCharge(slot));
+        assertEquals(2.5, dictionary.getP(slot), 1e-6);
+        assertEquals(15.5, dictionary.getTheta(slot), 1e-6);
+        assertEquals(-4.0, dictionary.getPhi(slot), 1e-6);
+        assertEquals(-1.0, dictionary.getVz(slot), 1e-6);
+        assertEquals(12, dictionary.getPaddle1b(slot));
+        assertEquals(0, dictionary.getPcalU(slot));
+        for (int k = 0; k < 6; k++) {
+            assertEquals(10 + 3 * k, RoadDictionary.getWire(dictionary.getKey(slot), k));
+        }
+        slot = dictionary.find(new int[]{30, 33, 36, 39, 42, 45});
+        assertEquals(2, dictionary.getPaddle2(slot));
+        assertEquals(40, dictionary.getPcalU(slot));
+        assertEquals(-1, dictionary.find(new int[]{0, 23, 26, 29, 32, 35}));
+    }
+}
@@ -0,0 +1,272 @@
+package org.jlab.rec.dc.timetodistance;
+
+import java.io.File;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.util.Random;
+import org.jlab.rec.dc.benchmark.T2DBenchmark;
+import org.jlab.utils.groups.IndexedTable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the time-to-distance grid and interpolation with the
+ * original implementation (static 5D grid, DecimalFormat time bins),
+ * which is reproduced below.
+ */
+public class T2DTableTest {
+
+    @Test
+    public void testGoldenInterpolation() {
+        T2DBenchmark.setWireDistances();
+        IndexedTable tab = T2DBenchmark.createTable(1.0);
+
+        LegacyT2D legacy = new LegacyT2D();
+        legacy.fill(tab);
+        T2DTable table = T2DTable.create(1, "default", tab);
+        TimeToDistanceEstimator tde = new TimeToDistanceEstimator(table);
+
+        for(int s = 0; s < 6; s++) {
+            for(int r = 0; r < 6; r++) {
+                for(int ib = 0; ib < 8; ib++) {
+                    for(int ia = 0; ia < 6; ia++) {
+                        assertEquals(legacy.maxBinIdxT[s][r][ib][ia], table.getMaxBinIdxT(s, r, ib, ia));
+                        for(int tb = 0; tb < TableLoader.nBinsT; tb++) {
+                            assertEquals(legacy.DISTFROMTIME[s][r][ib][ia][tb], table.getDistance(s, r, ib, ia, tb), 0.0);
+                        }
+                    }
+                }
+            }
+        }
+
+        Random rand = new Random(4242);
+        for(int i = 0; i < 50000; i++) {
+            double B     = rand.nextDouble()*3.5;
+            double alpha = rand.nextDouble()*30.0;
+            double t     = 0.01 + rand.nextDouble()*700.0;
+            int    s     = rand.nextInt(6);
+            int    r     = rand.nextInt(6);
+            assertEquals(legacy.interpolateOnGrid(B, alpha, t, s, r), tde.interpolateOnGrid(B, alpha, t, s, r), 0.0);
+        }
+    }
+
+    @Test
+    public void testRunCache() {
+        T2DBenchmark.setWireDistances();
+        IndexedTable tab1 = T2DBenchmark.createTable(1.0);
+        IndexedTable tab2 = T2DBenchmark.createTable(1.2);
+
+        T2DTable run1 = TableLoader.getT2DTable(11, "test", tab1);
+        T2DTable run2 = TableLoader.getT2DTable(12, "test", tab2);
+        assertSame(run1, TableLoader.getT2DTable(11, "test", tab1));
+        assertNotSame(run1, run2);
+
+        double d1 = new TimeToDistanceEstimator(run1).interpolateOnGrid(1.0, 10.0, 100.0, 0, 2);
+        double d2 = new TimeToDistanceEstimator(run2).interpolateOnGrid(1.0, 10.0, 100.0, 0, 2);
+        assertTrue(d2 > d1);
+    }
+
+    @Test
+    public void testCacheFile() throws Exception {
+        T2DBenchmark.setWireDistances();
+        IndexedTable tab1 = T2DBenchmark.createTable(1.0);
+        IndexedTable tab2 = T2DBenchmark.createTable(1.2);
+        assertEquals(T2DTable.getHash(tab1), T2DTable.getHash(T2DBenchmark.createTable(1.0)));
+        assertNotEquals(T2DTable.getHash(tab1), T2DTable.getHash(tab2));
+
+        File directory = Files.createTempDirectory("t2d").toFile();
+        T2DTable built  = T2DTable.load(21, "test", tab1, directory.getPath());
+        File file = new File(directory, "t2d-" + T2DTable.getHash(tab1) + ".dat");
+        assertTrue(file.exists());
+        T2DTable cached = T2DTable.load(22, "test", tab1, directory.getPath());
+        assertEquals(22, cached.getRun());
+        assertEquals(built.getSize(), cached.getSize());
+        for(int s = 0; s < 6; s++) {
+            for(int r = 0; r < 6; r++) {
+                assertEquals(built.getDmax(r), cached.getDmax(r), 0.0);
+                for(int ib = 0; ib < 8; ib++) {
+                    for(int ia = 0; ia < 6; ia++) {
+                        assertEquals(built.getMaxBinIdxT(s, r, ib, ia), cached.getMaxBinIdxT(s, r, ib, ia));
+                        for(int tb = 0; tb <= built.getMaxBinIdxT(s, r, ib, ia); tb++) {
+                            assertEquals(built.getDistance(s, r, ib, ia, tb), cached.getDistance(s, r, ib, ia, tb), 0.0);
+                        }
+                    }
+                }
+            }
+        }
+
+        // a corrupted file is rebuilt
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length/2] ^= 0x01;
+        Files.write(file.toPath(), bytes);
+        assertNull(T2DTable.read(file.getPath(), 23, "test"));
+        assertEquals(built.getSize(), T2DTable.load(23, "test", tab1, directory.getPath()).getSize());
+        assertNotNull(T2DTable.read(file.getPath(), 23, "test"));
+
+        file.delete();
+        directory.delete();
+    }
+
+    /**
+     * original grid filling and interpolation code.
+     */
+    private static class LegacyT2D {
+
+        double[][][][][] DISTFROMTIME = new double[6][6][8][6][TableLoader.nBinsT];
+        int[][][][] maxBinIdxT  = new int[6][6][8][6];
+
+        void fill(IndexedTable tab) {
+            double stepSize = 0.0010;
+            DecimalFormat df = new DecimalFormat("#");
+            df.setRoundingMode(RoundingMode.CEILING);
+            for(int s = 0; s<6; s++ ){
+                for(int r = 0; r<6; r++ ){
+                    double dmax = 2.*org.jlab.rec.dc.Constants.wpdist[r];
+                    double tmax = tab.getDoubleValue("tmax", s+1,r+1,0);
+                    for(int ibfield =0; ibfield<8; ibfield++) {
+                        double bfield = (double)ibfield*0.5;
+                        double maxdist =0;
+                        for(int icosalpha =0; icosalpha<6; icosalpha++) {
+                            double cos30minusalpha = Math.cos(Math.toRadians(30.)) + (double) (icosalpha)*(1. - Math.cos(Math.toRadians(30.)))/5.;
+                            double alpha = -(Math.toDegrees(Math.acos(cos30minusalpha)) - 30);
+                            int nxmax = (int) (dmax/stepSize);
+                            for(int idist =0; idist<nxmax; idist++) {
+                                double x = (double)(idist+1)*stepSize;
+                                double timebfield = TableLoader.calc_Time( x,  dmax,  tmax,  alpha, bfield, s, r, tab) ;
+                                if(timebfield<=TableLoader.calc_Time( dmax,  dmax,  tmax,  30, bfield, s, r, tab))
+                                    maxdist=x;
+                                if(timebfield>TableLoader.calc_Time( dmax,  dmax,  tmax,  30, bfield, s, r, tab))
+                                    x=maxdist;
+                                int tbin = Integer.parseInt(df.format(timebfield/2.) ) -1;
+                                if(tbin<0)
+                                    tbin=0;
+                                if(tbin>=TableLoader.nBinsT)
+                                    tbin = TableLoader.nBinsT-1;
+                                if(tbin>maxBinIdxT[s][r][ibfield][icosalpha]) {
+                                    maxBinIdxT[s][r][ibfield][icosalpha] = tbin;
+                                }
+                                if(DISTFROMTIME[s][r][ibfield][icosalpha][tbin]==0) {
+                                    DISTFROMTIME[s][r][ibfield][icosalpha][tbin]=x;
+                                } else {
+                                    DISTFROMTIME[s][r][ibfield][icosalpha][tbin]+=stepSize;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private double interpolateLinear(double x, double xa, double xb, double ya, double yb) {
+            double y = ya*(xb - x)/(xb - xa) + yb*(x - xa)/(xb - xa);
+            if(xb - xa == 0) {
+                y = ya + yb;
+            }
+            return y;
+        }
+
+        double interpolateOnGrid(double B, double alpha, double t,  int SecIdx, int SlyrIdx) {
+            if(B>3.0) {
+                B=3.0;
+            }
+            int binlowB  = this.getBIdx(B);
+            int binhighB = binlowB + 1;
+            if(binhighB > TableLoader.maxBinIdxB-1) {
+                binhighB = TableLoader.maxBinIdxB-1;
+            }
+            double B1 = binlowB*0.5;
+            double B2 = binhighB*0.5;
+            int binlowAlpha  = this.getAlphaIdx(alpha);
+            int binhighAlpha = binlowAlpha + 1;
+            if(binhighAlpha > TableLoader.maxBinIdxAlpha-1) {
+                binhighAlpha = TableLoader.maxBinIdxAlpha-1;
+            }
+            if(binhighAlpha==binlowAlpha) {
+                binlowAlpha=binhighAlpha-1;
+            }
+            double alpha1 = this.getAlphaFromAlphaIdx(binlowAlpha);
+            double alpha2 = this.getAlphaFromAlphaIdx(binhighAlpha);
+            int binlowT = this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha);
+            int binhighT = binlowT + 1;
+            if(binhighT>maxBinIdxT[SecIdx][SlyrIdx][binlowB][binlowAlpha]-1) {
+                binhighT=maxBinIdxT[SecIdx][SlyrIdx][binlowB][binlowAlpha]-1;
+            }
+            double t1 = binlowT*2.;
+            double t2 = binhighT*2.;
+            if(t>t2) {
+                t=t2;
+            }
+            double f_B_alpha1_t1 = interpolateLinear(B*B, B1*B1, B2*B2,
+                        DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)],
+                        DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)]);
+            double f_B_alpha2_t1 = interpolateLinear(B*B, B1*B1, B2*B2,
+                        DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)],
+                        DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)]);
+            double f_B_alpha1_t2 = interpolateLinear(B*B, B1*B1, B2*B2,
+                        DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)+1],
+                        DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)+1]);
+            double f_B_alpha2_t2 = interpolateLinear(B*B, B1*B1, B2*B2,
+                        DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)+1],
+                        DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)+1]);
+            double f_B_alpha1_t = interpolateLinear(t, t1, t2, f_B_alpha1_t1, f_B_alpha1_t2);
+            double f_B_alpha2_t = interpolateLinear(t, t1, t2, f_B_alpha2_t1, f_B_alpha2_t2);
+            double f_B_alpha_t = interpolateLinear(Math.cos(Math.toRadians(30.))-Math.cos(Math.toRadians(alpha)),
+                        Math.cos(Math.toRadians(30.))-Math.cos(Math.toRadians(alpha1)),
+                        Math.cos(Math.toRadians(30.))-Math.cos(Math.toRadians(alpha2)), f_B_alpha1_t, f_B_alpha2_t);
+            if(f_B_alpha_t>2*org.jlab.rec.dc.Constants.wpdist[SlyrIdx]) {
+                f_B_alpha_t = 2*org.jlab.rec.dc.Constants.wpdist[SlyrIdx];
+            }
+            return f_B_alpha_t;
+        }
+
+        private double getAlphaFromAlphaIdx(int binAlpha) {
+            double cos30minusalpha = Math.cos(Math.toRadians(30.)) + (double) (binAlpha)*(1. - Math.cos(Math.toRadians(30.)))/5.;
+            double alpha =  -(Math.toDegrees(Math.acos(cos30minusalpha)) - 30);
+            if(alpha<0) {
+                alpha=0;
+            }
+            if(alpha>30.) {
+                alpha=30.;
+            }
+            return alpha;
+        }
+
+        private int getTimeIdx(double t1, int is, int ir, int ibfield, int icosalpha) {
+            DecimalFormat df = new DecimalFormat("#");
+            df.setRoundingMode(RoundingMode.CEILING);
+            int binIdx = Integer.parseInt(df.format(t1/2.) ) -1;
+            if(binIdx<0) {
+                binIdx = TableLoader.minBinIdxT;
+            }
+            if(binIdx>maxBinIdxT[is][ir][ibfield][icosalpha]) {
+                binIdx = maxBinIdxT[is][ir][ibfield][icosalpha]-1;
+            }
+            return binIdx;
+        }
+
+        private int getBIdx(double b1) {
+            int binIdx = (int) ((1+b1)*2) -2;
+            if(binIdx<0) {
+                binIdx = TableLoader.minBinIdxB;
+            }
+            if(binIdx>TableLoader.maxBinIdxB) {
+                binIdx = TableLoader.maxBinIdxB-1;
+            }
+            return binIdx;
+        }
+
+        private int getAlphaIdx(double alpha) {
+            double Ccos30minusalpha = Math.cos(Math.toRadians(30.-alpha) ) ;
+            double Cicosalpha = (Ccos30minusalpha - Math.cos(Math.toRadians(30.)))/((1. - Math.cos(Math.toRadians(30.)))/5.);
+            int binIdx = (int)  Cicosalpha;
+            if(binIdx<0) {
+                binIdx = TableLoader.minBinIdxAlpha;
+            }
+            if(binIdx>TableLoader.maxBinIdxAlpha) {
+                binIdx = TableLoader.maxBinIdxAlpha-1;
+            }
+            return binIdx;
+        }
+    }
+}
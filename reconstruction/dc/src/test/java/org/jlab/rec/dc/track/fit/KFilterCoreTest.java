@@ -0,0 +1,102 @@
+package org.jlab.rec.dc.track.fit;
+
+import Jama.Matrix;
+import java.util.Random;
+import org.jlab.rec.dc.benchmark.KFitterBenchmark;
+import org.jlab.rec.dc.benchmark.KFitterBenchmark.FitResult;
+import org.jlab.rec.dc.benchmark.KFitterBenchmark.SyntheticTrack;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the Joseph form update of KFilterCore with the information
+ * form update on Jama matrices that KFitter used before (kept in
+ * KFitterBenchmark), for single measurements and for full track fits.
+ */
+public class KFilterCoreTest {
+
+    private static double[][] randomCovariance(Random rand) {
+        double[] scale = {0.3, 3.0, 0.003, 0.03, 0.02};
+        double[][] A = new double[5][5];
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                A[i][j] = scale[i] * (rand.nextGaussian() + (i == j ? 2 : 0));
+            }
+        }
+        // C = A A^T is positive definite
+        return new Matrix(A).times(new Matrix(A).transpose()).getArray();
+    }
+
+    private static double[][] copy(double[][] C) {
+        double[][] c = new double[5][];
+        for (int i = 0; i < 5; i++) {
+            c[i] = C[i].clone();
+        }
+        return c;
+    }
+
+    @Test
+    public void testSingleUpdate() {
+        Random rand = new Random(1234);
+        KFilterCore core = new KFilterCore();
+        double[] K = new double[5];
+        for (int n = 0; n < 10000; n++) {
+            double[][] C = randomCovariance(rand);
+            double[][] legacy = copy(C);
+            double H1 = -0.105 + 0.01 * rand.nextGaussian();
+            double V = Math.pow(0.02 + 0.03 * rand.nextDouble(), 2);
+
+            assertEquals(new Matrix(C).det(), core.det(C), 1e-6 * Math.abs(core.det(C)));
+            assertTrue(KFitterBenchmark.legacyFilter(legacy, 1, H1, V, K));
+            assertTrue(core.filter(C, 1, H1, V));
+            // the tolerance is set by the rounding errors of the two inversions
+            for (int i = 0; i < 5; i++) {
+                assertEquals(K[i], core.getGain(i), 1e-7 * Math.sqrt(C[i][i] / V));
+                for (int j = 0; j < 5; j++) {
+                    assertEquals(legacy[i][j], C[i][j], 1e-6 * Math.sqrt(legacy[i][i] * legacy[j][j]));
+                    assertEquals(C[i][j], C[j][i], 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSingular() {
+        KFilterCore core = new KFilterCore();
+        double[][] C = new double[5][5];
+        for (int i = 0; i < 5; i++) {
+            C[i][i] = 1.e-7;
+        }
+        double[][] legacy = copy(C);
+        assertFalse(KFitterBenchmark.legacyFilter(legacy, 1, -0.1, 0.001, new double[5]));
+        assertFalse(core.filter(C, 1, -0.1, 0.001));
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(legacy[i], C[i], 0.0);
+        }
+    }
+
+    @Test
+    public void testTracks() {
+        Random rand = new Random(2018);
+        KFilterCore core = new KFilterCore();
+        FitResult legacy = new FitResult();
+        FitResult result = new FitResult();
+        for (int n = 0; n < 500; n++) {
+            SyntheticTrack trk = KFitterBenchmark.createTrack(rand);
+            KFitterBenchmark.fit(trk, true, 30, core, legacy);
+            KFitterBenchmark.fit(trk, false, 30, core, result);
+
+            assertEquals(legacy.nfiltered, result.nfiltered);
+            assertEquals(legacy.chi2, result.chi2, 1e-8 * legacy.chi2);
+            for (int i = 0; i < 5; i++) {
+                double sigma = Math.sqrt(legacy.cov[i][i]);
+                assertEquals(legacy.state[i], result.state[i], 1e-6 * sigma);
+                for (int j = 0; j < 5; j++) {
+                    assertEquals(legacy.cov[i][j], result.cov[i][j], 1e-7 * sigma * Math.sqrt(legacy.cov[j][j]));
+                }
+            }
+            // the fit finds the generated momentum
+            assertEquals(trk.trueState[4], result.state[4], 0.05 * Math.abs(trk.trueState[4]));
+        }
+    }
+}
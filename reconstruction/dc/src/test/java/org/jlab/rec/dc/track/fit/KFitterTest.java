@@ -0,0 +1,247 @@
+package org.jlab.rec.dc.track.fit;
+
+import cnuphys.magfield.MagneticFields;
+import cnuphys.magfield.TorusMap;
+import java.io.File;
+import java.util.Random;
+import org.jlab.clas.swimtools.Swim;
+import org.jlab.detector.geant4.v2.DCGeant4Factory;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.rec.dc.benchmark.DCGeometryBenchmark;
+import org.jlab.rec.dc.cluster.Cluster;
+import org.jlab.rec.dc.cluster.FittedCluster;
+import org.jlab.rec.dc.cross.Cross;
+import org.jlab.rec.dc.hit.FittedHit;
+import org.jlab.rec.dc.hit.Hit;
+import org.jlab.rec.dc.segment.Segment;
+import org.jlab.rec.dc.track.Track;
+import org.jlab.rec.dc.trajectory.StateVec;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Runs KFitter on synthetic tracks in a uniform field and compares the
+ * fitted state and chi2 with the output of the KFitter version that used
+ * the information form update on Jama matrices, stored in BASELINE.
+ */
+public class KFitterTest {
+
+    // field along y of the tilted sector frame, in T
+    private static final double BY = -0.8;
+    private static final double V  = 0.0029979245;
+    private static final int    NTRACKS = 20;
+
+    /**
+     * x, y, tx, ty, q/p at the last measurement and chi2 of the fits of
+     * the tracks of createTrack(new Random(2019)), from the KFitter before
+     * KFilterCore.
+     */
+    private static final double[][] BASELINE = {
+        {191.43813023867926, -7.941227803036431, 0.5729816901261965, -0.001100012825922977, 0.2519744326473716, 7.530852942784433},
+        {226.64440830341832, 9.737556558102858, 0.9613119849606261, 0.028250547394008892, 0.6337268548050863, 122.23700451646474},
+        {210.58733383203236, 6.680291746953577, 0.7895404140733601, 0.012192411552647739, 0.5115247638967755, 6.2363041244688455},
+        {140.24476861137842, 8.740697041198963, 0.32312609564908806, 0.028182402485985747, 0.2148433017023144, 7.0597654170482045},
+        {120.1282728146368, -19.740536718239262, 0.3757816904239126, -0.0520448503366042, 0.25049719661184394, 10.78048142062003},
+        {85.41381981923566, -11.30463522238348, 0.01648612222554455, -0.046940614488872726, -0.2919654345661111, 4.897123206155733},
+        {179.74464338053355, -9.469782214108472, 0.5163373689081004, -0.039168183890191374, 0.29993689629187065, 8.764440398388572},
+        {170.72927709539255, 5.33558003474773, 0.45905719705452686, 0.028071617318504685, 0.3161841120058212, 4.636018812621212},
+        {114.63696230278944, -15.23619462179393, 0.12183944331247451, -0.0480701141265404, -0.19462798619080604, 6.330563759593847},
+        {109.25289289168045, -20.998436683292436, 0.05311942420417967, -0.04546299853282756, -0.23494672937077302, 1.1398344379804062},
+        {53.0476087623136, -3.904862453864052, -0.2635439490104664, -0.04375256045894011, -0.6521573540318505, 9.74438311872587},
+        {78.44120761614438, -11.307027956154734, -0.0038861840176716202, -0.01623036320229059, -0.38646333965144336, 1.851990499661073},
+        {145.7041949481627, -0.7602779686174197, 0.1688743297340317, -0.029874188465730638, -0.1906101566708517, 6.1310234595264435},
+        {136.2557705257339, -8.7442222589378, 0.09775111972851767, -0.010087046013071466, -0.36938120015302034, 3.0927739186920893},
+        {81.92208432756718, 11.567369068674104, -0.04351778077444898, 0.009472067102232567, -0.5136953096383964, 3.702598067175315},
+        {168.27916055223764, -9.037509474710397, 0.5277526376429259, -0.036907744636488715, 0.49170617423178853, 9.959883466417482},
+        {127.7451601067248, -18.9959728685832, 0.1178584944243324, -0.04837311968080003, -0.22741795095273618, 8.940599054563021},
+        {93.67209160852524, -8.469262996093379, -0.030152187385369567, -0.0037452816689144443, -0.3625150608272682, 3.656514226793214},
+        {117.64440188371904, -7.695356929104827, 0.08687547502243258, -0.011299323128714019, -0.24009103290722128, 5.037661137971375},
+        {88.18766298298344, -18.912572804522284, 0.08426104643015177, -0.030930155087670885, -0.22035475071148258, 4.9376554662581}
+    };
+
+    private static DCGeant4Factory dcDetector;
+
+    @BeforeClass
+    public static void setUp() {
+        // the swim needs the composite fields, empty if no map is found
+        if (MagneticFields.getInstance().getRotatedCompositeField() == null) {
+            MagneticFields.getInstance().initializeMagneticFields(
+                    new File(System.getProperty("java.io.tmpdir"), "nomaps").getPath(), TorusMap.SYMMETRIC);
+        }
+        dcDetector = new DCGeant4Factory(DCGeometryBenchmark.createConstants(), DCGeant4Factory.MINISTAGGERON);
+    }
+
+    /**
+     * Swim in the uniform field, used for the initial state and the field
+     * lookups of the fit.
+     */
+    private static class UniformFieldSwim extends Swim {
+
+        private final double[] start = new double[6];
+
+        @Override
+        public void SetSwimParameters(int direction, double x0, double y0, double z0, double thx, double thy,
+                double p, int charge) {
+            start[0] = x0;
+            start[1] = y0;
+            start[2] = z0;
+            start[3] = thx;
+            start[4] = thy;
+            start[5] = charge / p;
+        }
+
+        @Override
+        public double[] SwimToPlaneTiltSecSys(int sector, double z_cm) {
+            double[] s = {start[0], start[1], start[3], start[4], start[5]};
+            propagate(s, start[2], z_cm);
+            double pz = 1. / Math.abs(s[4]) / Math.sqrt(1 + s[2] * s[2] + s[3] * s[3]);
+            return new double[]{s[0], s[1], z_cm, s[2] * pz, s[3] * pz, pz, 0, 0};
+        }
+
+        @Override
+        public void Bfield(int sector, double x_cm, double y_cm, double z_cm, float[] result) {
+            result[0] = 0;
+            result[1] = (float) BY;
+            result[2] = 0;
+        }
+    }
+
+    /**
+     * transports x, y, tx, ty, q/p from z0 to z1 in the uniform field.
+     */
+    private static void propagate(double[] s, double z0, double z1) {
+        int nsteps = (int) Math.ceil(Math.abs(z1 - z0) / 0.5);
+        if (nsteps == 0) {
+            return;
+        }
+        double h = (z1 - z0) / nsteps;
+        for (int n = 0; n < nsteps; n++) {
+            double[] k1 = derivatives(s[2], s[3], s[4]);
+            double[] k2 = derivatives(s[2] + 0.5 * h * k1[2], s[3] + 0.5 * h * k1[3], s[4]);
+            double[] k3 = derivatives(s[2] + 0.5 * h * k2[2], s[3] + 0.5 * h * k2[3], s[4]);
+            double[] k4 = derivatives(s[2] + h * k3[2], s[3] + h * k3[3], s[4]);
+            for (int i = 0; i < 4; i++) {
+                s[i] += h * (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]) / 6;
+            }
+        }
+    }
+
+    private static double[] derivatives(double tx, double ty, double q) {
+        double c = Math.sqrt(1 + tx * tx + ty * ty);
+        return new double[]{tx, ty, -q * V * c * (1 + tx * tx) * BY, -q * V * c * tx * ty * BY};
+    }
+
+    /**
+     * @return a track in sector 1 with one 6-hit segment per superlayer,
+     * the hit positions are smeared and the seed differs from the
+     * generated state
+     */
+    private static Track createTrack(Random rand, double[] generated) {
+        double p = 1.5 + 4.0 * rand.nextDouble();
+        int    q = rand.nextBoolean() ? 1 : -1;
+        double[] s = {40 + 40 * rand.nextDouble(), -10 + 20 * rand.nextDouble(),
+            0.1 + 0.3 * rand.nextDouble(), -0.05 + 0.1 * rand.nextDouble(), q / p};
+        double z = dcDetector.getWireMidpoint(0, 0, 55).z;
+        System.arraycopy(s, 0, generated, 0, 5);
+
+        Track trk = new Track();
+        int id = 0;
+        for (int region = 0; region < 3; region++) {
+            Cross cross = new Cross(1, region + 1, region);
+            for (int isl = 0; isl < 2; isl++) {
+                int superlayer = 2 * region + isl + 1;
+                int tilt = superlayer % 2 == 0 ? -1 : 1;
+                double sigma = 0.02 + 0.02 * rand.nextDouble();
+                double sag   = 0.01 + 0.02 * rand.nextDouble();
+                double len   = 150 + 100 * region + 50 * rand.nextDouble();
+                double[] zl = new double[6];
+                double[] xl = new double[6];
+                Cluster cluster = new Cluster(1, superlayer, id);
+                for (int layer = 0; layer < 6; layer++) {
+                    zl[layer] = dcDetector.getWireMidpoint(superlayer - 1, layer, 55).z;
+                    propagate(s, z, zl[layer]);
+                    z = zl[layer];
+                    xl[layer] = s[0] - Math.tan(Math.toRadians(tilt * 6.)) * s[1]
+                            + sag * (1 - s[1] / (len / 2.)) * (1 - s[1] / (len / 2.))
+                            + sigma * rand.nextGaussian();
+                    Hit hit = new Hit(1, superlayer, layer + 1, 56, 0, id++);
+                    hit.set_DocaErr(sigma);
+                    cluster.add(hit);
+                }
+                // straight line fit of the cluster, equal weights
+                double zm = 0, xm = 0, szz = 0, szx = 0;
+                for (int layer = 0; layer < 6; layer++) {
+                    zm += zl[layer] / 6;
+                    xm += xl[layer] / 6;
+                }
+                for (int layer = 0; layer < 6; layer++) {
+                    szz += (zl[layer] - zm) * (zl[layer] - zm);
+                    szx += (zl[layer] - zm) * (xl[layer] - xm);
+                }
+                FittedCluster fcluster = new FittedCluster(cluster);
+                fcluster.set_clusterLineFitSlope(szx / szz);
+                fcluster.set_clusterLineFitIntercept(xm - zm * szx / szz);
+                fcluster.set_clusterLineFitSlopeErr(sigma / Math.sqrt(szz));
+                fcluster.set_clusterLineFitInterceptErr(sigma * Math.sqrt(1. / 6 + zm * zm / szz));
+                fcluster.set_clusterLineFitSlIntCov(-sigma * sigma * zm / szz);
+                for (int layer = 0; layer < 6; layer++) {
+                    FittedHit hit = fcluster.get(layer);
+                    hit.set_Z(zl[layer]);
+                    hit.set_WireLength(len);
+                    hit.set_WireMaxSag(sag);
+                }
+                Segment segment = new Segment(fcluster);
+                cross.add(segment);
+                if (isl == 0) {
+                    cross.set_Segment1(segment);
+                } else {
+                    cross.set_Segment2(segment);
+                    cross.set_Point(new Point3D(s[0], s[1], z));
+                }
+            }
+            trk.add(cross);
+            if (region == 0) {
+                trk.set_StateVecAtReg1MiddlePlane(new StateVec(s[0] + 0.2 * rand.nextGaussian(),
+                        s[1] + 2.0 * rand.nextGaussian(), s[2] + 0.002 * rand.nextGaussian(),
+                        s[3] + 0.02 * rand.nextGaussian()));
+                trk.set_P(1. / Math.abs(s[4]) * (1 + 0.05 * rand.nextGaussian()));
+                trk.set_Q(q);
+            }
+        }
+        return trk;
+    }
+
+    /**
+     * @return x, y, tx, ty, q/p at the last measurement and chi2 of the fits
+     */
+    static double[][] fitTracks(double[][] generated) {
+        Random rand = new Random(2019);
+        Swim swim = new UniformFieldSwim();
+        double[][] results = new double[NTRACKS][];
+        for (int n = 0; n < NTRACKS; n++) {
+            Track trk = createTrack(rand, generated[n]);
+            KFitter kf = new KFitter(trk, dcDetector, false, swim);
+            kf.runFitter(1);
+            assertFalse(kf.setFitFailed);
+            assertNotNull(kf.finalStateVec);
+            results[n] = new double[]{kf.finalStateVec.x, kf.finalStateVec.y, kf.finalStateVec.tx,
+                kf.finalStateVec.ty, kf.finalStateVec.Q, kf.chi2};
+        }
+        return results;
+    }
+
+    @Test
+    public void testBaseline() {
+        double[][] generated = new double[NTRACKS][5];
+        double[][] results = fitTracks(generated);
+        assertEquals(BASELINE.length, results.length);
+        for (int n = 0; n < NTRACKS; n++) {
+            for (int i = 0; i < 6; i++) {
+                assertEquals(BASELINE[n][i], results[n][i], 1e-6 * Math.max(1, Math.abs(BASELINE[n][i])));
+            }
+            // the fit finds the generated momentum
+            assertEquals(generated[n][4], results[n][4], 0.02 * Math.abs(generated[n][4]));
+        }
+    }
+}
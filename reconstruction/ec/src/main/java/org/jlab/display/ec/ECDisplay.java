@@ -59,9 +59,9 @@ public class ECDisplay extends JPanel implements IDataEventListener {
 
 
 
-        List<ECStrip>  ecStrips = ECCommon.initEC(de, ecDetector, detectorEngine.getConstantsManager(), 10);
+        List<ECStrip>  ecStrips = ECCommon.initEC(de, ecDetector, detectorEngine.getConstantsManager(), 10, detectorEngine.getContext());
         List<ECPeak> ecPeaksALL = ECCommon.createPeaks(ecStrips);
-        List<ECPeak> ecPeaks    = ECCommon.processPeaks(ecPeaksALL);
+        List<ECPeak> ecPeaks    = ECCommon.processPeaks(ecPeaksALL, detectorEngine.getContext());
         
         DetectorShape2D shapeP = new DetectorShape2D(DetectorType.ECAL,0,0,0);
         
@@ -85,7 +85,7 @@ public class ECDisplay extends JPanel implements IDataEventListener {
             
         }
         System.out.println("*****************  CLUSTERS ");
-        List<ECCluster> cPCAL  = ECCommon.createClusters(ecPeaks,1);
+        List<ECCluster> cPCAL  = ECCommon.createClusters(ecPeaks,1,detectorEngine.getContext());
         for(ECCluster c : cPCAL){
             System.out.println(c);
         }
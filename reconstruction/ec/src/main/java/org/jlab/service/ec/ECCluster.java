@@ -26,6 +26,24 @@ public class ECCluster {
     public         int WVIEW_ID = -1;
        
     public ECCluster(ECPeak u, ECPeak v, ECPeak w){
+        this.setPeaks(u, v, w);
+        this.intersection();
+    }
+    
+    /**
+     * cluster of three peaks with the midpoint of the U-V distance already
+     * computed, to share it between the clusters of a U-V pair.
+     * @param u U peak
+     * @param v V peak
+     * @param w W peak
+     * @param uvMidpoint midpoint of the line of closest approach of the U and V peak lines
+     */
+    public ECCluster(ECPeak u, ECPeak v, ECPeak w, Point3D uvMidpoint){
+        this.setPeaks(u, v, w);
+        this.intersection(uvMidpoint);
+    }
+    
+    private void setPeaks(ECPeak u, ECPeak v, ECPeak w){
         
         this.clusterPeaks.add(u);
         this.clusterPeaks.add(v);
@@ -38,7 +56,6 @@ public class ECCluster {
         this.clusterMultiplicity = u.getMultiplicity() + 
                                    v.getMultiplicity() + 
                                    w.getMultiplicity();
-        this.intersection();
     }
     
     public ECPeak getPeak(int view){
@@ -181,13 +198,26 @@ public class ECCluster {
     public final void   intersection(){
         Line3D uLine  = this.clusterPeaks.get(0).getLine();
         Line3D vLine  = this.clusterPeaks.get(1).getLine();
+        this.intersection(uvMidpoint(uLine, vLine));
+    }
+    
+    private void intersection(Point3D uvMidpoint){
         Line3D wLine  = this.clusterPeaks.get(2).getLine();
-        Line3D uvLine = uLine.distance(vLine);
-        Line3D uvDistTo_w = wLine.distance(uvLine.midpoint());
+        Line3D uvDistTo_w = wLine.distance(uvMidpoint);
         this.clusterHitPosition.copy(uvDistTo_w.midpoint());
         this.clusterHitPositionError = uvDistTo_w.length();
     }
     
+    /**
+     * @param uLine U peak line
+     * @param vLine V peak line
+     * @return midpoint of the line of closest approach of the two lines
+     */
+    public static Point3D uvMidpoint(Line3D uLine, Line3D vLine){
+        Line3D uvLine = uLine.distance(vLine);
+        return uvLine.midpoint();
+    }
+    
     @Override
     public String toString(){
         StringBuilder str = new StringBuilder();
@@ -4,12 +4,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.jlab.detector.base.DetectorCollection;
 import org.jlab.detector.calib.utils.ConstantsManager;
 import org.jlab.geom.base.Detector;
 import org.jlab.geom.base.Layer;
 import org.jlab.geom.component.ScintillatorPaddle;
-import org.jlab.groot.data.H1F;
+import org.jlab.geom.prim.Point3D;
 import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
 import org.jlab.io.hipo.HipoDataEvent;
@@ -23,82 +22,15 @@ import org.jlab.utils.groups.IndexedTable;
 
 public class ECCommon {
     
-    public static List<ECStrip>     myStrips = new ArrayList<ECStrip>();
-    public static List<ECPeak>       myPeaks = new ArrayList<ECPeak>();
-    public static List<ECCluster> myClusters = new ArrayList<ECCluster>();
+    private static final double[] AtoE  = {15,10,10};   // SCALED ADC to Energy in MeV
+    private static final double[] AtoE5 = {15,5,5};     // For Sector 5 ECAL
     
-    public static int[]  stripThreshold = new int[3];
-    public static int[]   peakThreshold = new int[3]; 
-    public static float[]  clusterError = new float[3];
-	public static float[] clusterDeltaT = new float[3];
-    public static Boolean         debug = false;
-    public static Boolean isSingleThreaded = false;
-    public static Boolean      singleEvent = false;
-    public static Boolean    useNewTimeCal =  true;
-    public static String         variation = "default";
+    static final int ind[]  = {0,0,0,1,1,1,2,2,2}; 
+    static final float  tps = 0.02345f;
     
-    private static double[] AtoE  = {15,10,10};   // SCALED ADC to Energy in MeV
-    private static double[] AtoE5 = {15,5,5};     // For Sector 5 ECAL
-    
-    public static DetectorCollection<H1F> H1_ecEng = new DetectorCollection<H1F>();
-    
-    static int ind[]  = {0,0,0,1,1,1,2,2,2}; 
-    static float               tps = 0.02345f;
-    public static float       veff = 18.1f;
-    
-    public  static void initHistos() {
-       
-        for (int is=1; is<7; is++){
-            for (int il=1; il<4; il++) {             
-                H1_ecEng.add(is,il,0, new H1F("Cluster Errors",55,-10.,100.));
-                H1_ecEng.add(is,il,1, new H1F("Cluster Errors",55,-10.,100.));
-            }
-        }
-    }
-    
-    public static void resetHistos() {
-        
-        for (int is=1; is<7; is++){
-            for (int il=1; il<4; il++) {             
-                H1_ecEng.get(is,il,0).reset();
-                H1_ecEng.get(is,il,1).reset();
-            }
-        }       
-    }
-    
-    public static void setDebug(boolean val) {
-    	debug = val;
-    }
-    
-    public static void setisSingleThreaded(boolean val) {
-        isSingleThreaded = val;
-    }
-    
-    public static void setSingleEvent(boolean val) {
-    	singleEvent = val;
-    }
-    
-    public static void clearMyStructures() {
-    	getMyStrips().clear();
-    	getMyPeaks().clear();
-    	getMyClusters().clear();
-    }
-    
-    public static List<ECStrip> getMyStrips() {
-    	return myStrips;
-    }
-    
-    public static List<ECPeak> getMyPeaks() {
-    	return myPeaks;
-    }
-    
-    public static List<ECCluster> getMyClusters() {
-    	return myClusters;
-    }
-    
-    public static List<ECStrip>  initEC(DataEvent event, Detector detector, ConstantsManager manager, int run){
+    public static List<ECStrip>  initEC(DataEvent event, Detector detector, ConstantsManager manager, int run, ECContext context){
     	
-        manager.setVariation(variation);
+        if(!context.getVariation().equals(manager.getVariation())) manager.setVariation(context.getVariation());
 
         IndexedTable    atten = manager.getConstants(run, "/calibration/ec/attenuation");
         IndexedTable     gain = manager.getConstants(run, "/calibration/ec/gain");
@@ -107,11 +39,11 @@ public class ECCommon {
 		IndexedTable      gtw = manager.getConstants(run, "/calibration/ec/global_time_walk");
 		IndexedTable       ev = manager.getConstants(run, "/calibration/ec/effective_velocity");
     
-        if (singleEvent) resetHistos();        
+        if (context.isSingleEvent()) context.resetHistos();        
         
         List<ECStrip>  ecStrips = null;
         
-        if(event instanceof HipoDataEvent) ecStrips = ECCommon.readStripsHipo(event, run, manager);
+        if(event instanceof HipoDataEvent) ecStrips = ECCommon.readStripsHipo(event, run, manager, context);
         
         if(ecStrips==null) return new ArrayList<ECStrip>();
         
@@ -150,7 +82,7 @@ public class ECCommon {
         return ecStrips;
     }
         
-    public static List<ECStrip>  readStripsHipo(DataEvent event, int run, ConstantsManager manager){ 
+    public static List<ECStrip>  readStripsHipo(DataEvent event, int run, ConstantsManager manager, ECContext context){ 
     	
       	List<ECStrip>  strips = new ArrayList<ECStrip>();
         IndexedList<List<Integer>>  tdcs = new IndexedList<List<Integer>>(3);  
@@ -195,14 +127,14 @@ public class ECCommon {
                 int adc = bank.getInt("ADC", i);
                 float t = bank.getFloat("time", i) + (float) offset.getDoubleValue("offset",is,il,0);
                 
-                ECStrip  strip = new ECStrip(is, il, ip); 
+                ECStrip  strip = new ECStrip(is, il, ip, context.useNewTimeCal()); 
                 
                 strip.setADC(adc);
                 strip.setTriggerPhase(triggerPhase);
                 
                 double sca = (is==5)?AtoE5[ind[il-1]]:AtoE[ind[il-1]]; 
-                if (variation=="clas6") sca = 1.0;               
-                if(strip.getADC()>sca*ECCommon.stripThreshold[ind[il-1]]) strips.add(strip); 
+                if (context.getVariation()=="clas6") sca = 1.0;               
+                if(strip.getADC()>sca*context.getStripThreshold(ind[il-1])) strips.add(strip); 
                 
                 float  tmax = 1000; int tdc = 0;
                 
@@ -243,7 +175,7 @@ public class ECCommon {
         return peakList;
     }   
     
-    public static List<ECPeak>  processPeaks(List<ECPeak> peaks){
+    public static List<ECPeak>  processPeaks(List<ECPeak> peaks, ECContext context){
     	
         List<ECPeak> ecPeaks = new ArrayList<ECPeak>();
         
@@ -252,8 +184,8 @@ public class ECCommon {
             int lay = p.getDescriptor().getLayer();
             int sec = p.getDescriptor().getSector();
             double sca = (sec==5)?AtoE5[ind[lay-1]]:AtoE[ind[lay-1]]; 
-            if (variation=="clas6") sca = 1.0;
-            if(adc>sca*ECCommon.peakThreshold[ind[lay-1]]) ecPeaks.add(p);
+            if (context.getVariation()=="clas6") sca = 1.0;
+            if(adc>sca*context.getPeakThreshold(ind[lay-1])) ecPeaks.add(p);
         }
         
         ECPeakAnalysis.splitPeaks(ecPeaks);
@@ -295,52 +227,56 @@ public class ECCommon {
         }
     }
     
-    public static List<ECCluster>   createClusters(List<ECPeak>  peaks, int startLayer){
+    /**
+     * builds the clusters of a detector from the U, V and W peaks of each
+     * sector. The peak lines are computed once, the U-V intersection once
+     * per U-V pair, and only the W peaks which can be within the cluster
+     * error of the intersection, found with an ECPeakIndex, are tested.
+     * @param peaks peaks of the event
+     * @param startLayer first layer of the detector (1 PCAL, 4 EC inner, 7 EC outer)
+     * @return clusters
+     */
+    public static List<ECCluster>   createClusters(List<ECPeak>  peaks, int startLayer, ECContext context){
 
         List<ECCluster>   clusters = new ArrayList<ECCluster>();
         
         for(int p = 0; p < peaks.size(); p++){
             peaks.get(p).setOrder(p+1);
         }
+        
+        float maxError = context.getClusterError(ind[startLayer-1]);
+        boolean fillHistos = context.isFillHistos();
 
         for(int sector = 1; sector <= 6; sector++){
 
             List<ECPeak>  pU = ECCommon.getPeaks(sector, startLayer,   peaks);
             List<ECPeak>  pV = ECCommon.getPeaks(sector, startLayer+1, peaks);
             List<ECPeak>  pW = ECCommon.getPeaks(sector, startLayer+2, peaks);
-            /*System.out.println("-------->  peaks are found " +
-                    " U " + pU.size() +
-                    " V " + pV.size() +
-                    " W " + pW.size()
-            );*/
             
             if(pU.size()>0&&pV.size()>0&&pW.size()>0){
                 
+                for(ECPeak p : pU) p.redoPeakLine();
+                for(ECPeak p : pV) p.redoPeakLine();
+                for(ECPeak p : pW) p.redoPeakLine();
+                
+                ECPeakIndex indexW = fillHistos ? null : new ECPeakIndex(pW);
+                
                 for(int bU = 0; bU < pU.size();bU++){
                     for(int bV = 0; bV < pV.size();bV++){
-                        for(int bW = 0; bW < pW.size();bW++){
-                            pU.get(bU).redoPeakLine();
-                            pV.get(bV).redoPeakLine();
-                            pW.get(bW).redoPeakLine();
-                            ECCluster cluster = new ECCluster(pU.get(bU),pV.get(bV),pW.get(bW));
-                            if(isSingleThreaded)H1_ecEng.get(sector,ind[startLayer-1]+1,0).fill(cluster.getHitPositionError());
-                            if(cluster.getHitPositionError()<ECCommon.clusterError[ind[startLayer-1]]) {
-                                if(isSingleThreaded)H1_ecEng.get(sector,ind[startLayer-1]+1,1).fill(cluster.getHitPositionError());
-//								double tU = cluster.getTime(0);
-//								double tV = cluster.getTime(1);
-//								double tW = cluster.getTime(2);
-//								double eU = cluster.getEnergy(0)*1e3;
-//								double eV = cluster.getEnergy(1)*1e3;
-//								double eW = cluster.getEnergy(2)*1e3;	
-//								if (sector==2) {
-//								System.out.printf("U %4.1f V %4.1f W %4.1f%n",tU,tV,tW);
-//								System.out.printf("U %4.1f V %4.1f W %4.1f%n%n",eU,eV,eW);
-//                            	    System.out.println(cluster.toString());
-//								}
-								clusters.add(cluster);
-								//if ((Math.abs(tU - tV) < ECCommon.clusterDeltaT[ind[startLayer - 1]]) &&
-								 //   (Math.abs(tU - tW) < ECCommon.clusterDeltaT[ind[startLayer - 1]]) &&
-								 //   (Math.abs(tV - tW) < ECCommon.clusterDeltaT[ind[startLayer - 1]])) clusters.add(cluster);
+                        Point3D uv = ECCluster.uvMidpoint(pU.get(bU).getLine(), pV.get(bV).getLine());
+                        if(fillHistos){
+                            // every combination goes in the cluster error histograms
+                            for(int bW = 0; bW < pW.size();bW++){
+                                ECCluster cluster = new ECCluster(pU.get(bU),pV.get(bV),pW.get(bW),uv);
+                                boolean accepted = cluster.getHitPositionError()<maxError;
+                                context.fillClusterError(sector, ind[startLayer-1]+1, cluster.getHitPositionError(), accepted);
+                                if(accepted) clusters.add(cluster);
+                            }
+                        } else {
+                            int ncandidates = indexW.findCandidates(uv, maxError);
+                            for(int c = 0; c < ncandidates; c++){
+                                ECCluster cluster = new ECCluster(pU.get(bU),pV.get(bV),pW.get(indexW.getCandidate(c)),uv);
+                                if(cluster.getHitPositionError()<maxError) clusters.add(cluster);
                             }
                         }
                     }
@@ -356,5 +292,5 @@ public class ECCommon {
         }  
         
         return clusters;
-    }    
+    }
 }
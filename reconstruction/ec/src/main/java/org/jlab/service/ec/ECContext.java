@@ -0,0 +1,182 @@
+package org.jlab.service.ec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jlab.detector.base.DetectorCollection;
+import org.jlab.groot.data.H1F;
+
+/**
+ * Configuration and monitoring state of one EC reconstruction, owned by an
+ * ECEngine and passed to the ECCommon methods. The configuration is set
+ * before the events are processed and only read while processing them, so
+ * that several threads can process events with the same context and
+ * several engines with different configurations can run in one JVM.
+ *
+ * The strips, peaks and clusters of the last event are kept for each
+ * thread, the cluster error histograms are shared and filled under a lock.
+ */
+public class ECContext {
+
+    private final int[]    stripThreshold = new int[3];
+    private final int[]     peakThreshold = new int[3];
+    private final float[]    clusterError = new float[3];
+    private final float[]   clusterDeltaT = new float[3];
+    private volatile boolean        debug = false;
+    private boolean       histosCreated = false;
+    private volatile boolean   fillHistos = false;
+    private volatile boolean  singleEvent = false;
+    private boolean         useNewTimeCal = true;
+    private String              variation = "default";
+    private float                    veff = 18.1f;
+
+    private final DetectorCollection<H1F> H1_ecEng = new DetectorCollection<H1F>();
+
+    private final ThreadLocal<List<ECStrip>>     lastStrips = new ThreadLocal<List<ECStrip>>(){
+        @Override protected List<ECStrip> initialValue(){ return new ArrayList<ECStrip>();}
+    };
+    private final ThreadLocal<List<ECPeak>>       lastPeaks = new ThreadLocal<List<ECPeak>>(){
+        @Override protected List<ECPeak> initialValue(){ return new ArrayList<ECPeak>();}
+    };
+    private final ThreadLocal<List<ECCluster>> lastClusters = new ThreadLocal<List<ECCluster>>(){
+        @Override protected List<ECCluster> initialValue(){ return new ArrayList<ECCluster>();}
+    };
+
+    public void setStripThresholds(int thr0, int thr1, int thr2){
+        stripThreshold[0] = thr0;
+        stripThreshold[1] = thr1;
+        stripThreshold[2] = thr2;
+    }
+
+    public void setPeakThresholds(int thr0, int thr1, int thr2){
+        peakThreshold[0] = thr0;
+        peakThreshold[1] = thr1;
+        peakThreshold[2] = thr2;
+    }
+
+    public void setClusterCuts(float err0, float err1, float err2){
+        clusterError[0] = err0;
+        clusterError[1] = err1;
+        clusterError[2] = err2;
+    }
+
+    public void setClusterDeltaT(float dt0, float dt1, float dt2){
+        clusterDeltaT[0] = dt0;
+        clusterDeltaT[1] = dt1;
+        clusterDeltaT[2] = dt2;
+    }
+
+    /**
+     * @param index 0 for PCAL, 1 for EC inner, 2 for EC outer
+     * @return strip ADC threshold
+     */
+    public int   getStripThreshold(int index){ return stripThreshold[index];}
+    public int   getPeakThreshold(int index){ return peakThreshold[index];}
+    public float getClusterError(int index){ return clusterError[index];}
+    public float getClusterDeltaT(int index){ return clusterDeltaT[index];}
+
+    public void    setDebug(boolean val){ debug = val;}
+    public boolean isDebug(){ return debug;}
+
+    /**
+     * @param val fill the cluster error histograms, with every U,V,W peak
+     * combination (slow, for monitoring), they are created if needed
+     */
+    public void    setFillHistos(boolean val){
+        if(val) this.initHistos();
+        fillHistos = val;
+    }
+    public boolean isFillHistos(){ return fillHistos;}
+
+    /**
+     * @param val reset the cluster error histograms at each event
+     */
+    public void    setSingleEvent(boolean val){ singleEvent = val;}
+    public boolean isSingleEvent(){ return singleEvent;}
+
+    public void    setUseNewTimeCal(boolean val){ useNewTimeCal = val;}
+    public boolean useNewTimeCal(){ return useNewTimeCal;}
+
+    public void    setVariation(String val){ variation = val;}
+    public String  getVariation(){ return variation;}
+
+    public void    setVeff(float val){ veff = val;}
+    public float   getVeff(){ return veff;}
+
+    public DetectorCollection<H1F> getHistos(){
+        return H1_ecEng;
+    }
+
+    /**
+     * creates the cluster error histograms, once.
+     */
+    public void initHistos() {
+        synchronized(H1_ecEng){
+            if(histosCreated) return;
+            histosCreated = true;
+            for (int is=1; is<7; is++){
+                for (int il=1; il<4; il++) {
+                    H1_ecEng.add(is,il,0, new H1F("Cluster Errors",55,-10.,100.));
+                    H1_ecEng.add(is,il,1, new H1F("Cluster Errors",55,-10.,100.));
+                }
+            }
+        }
+    }
+
+    public void resetHistos() {
+        synchronized(H1_ecEng){
+            if(!histosCreated) return;
+            for (int is=1; is<7; is++){
+                for (int il=1; il<4; il++) {
+                    H1_ecEng.get(is,il,0).reset();
+                    H1_ecEng.get(is,il,1).reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * fills the cluster error histograms of a sector and detector.
+     * @param sector sector
+     * @param detector 1 for PCAL, 2 for EC inner, 3 for EC outer
+     * @param error cluster error
+     * @param accepted true if the cluster passed the error cut
+     */
+    public void fillClusterError(int sector, int detector, double error, boolean accepted){
+        synchronized(H1_ecEng){
+            H1_ecEng.get(sector,detector,0).fill(error);
+            if(accepted) H1_ecEng.get(sector,detector,1).fill(error);
+        }
+    }
+
+    /**
+     * keeps the strips, peaks and clusters of the event processed by the
+     * calling thread.
+     * @param strips strips
+     * @param peaks peaks
+     * @param clusters clusters
+     */
+    public void setLastEvent(List<ECStrip> strips, List<ECPeak> peaks, List<ECCluster> clusters){
+        List<ECStrip>   s = lastStrips.get();
+        List<ECPeak>    p = lastPeaks.get();
+        List<ECCluster> c = lastClusters.get();
+        s.clear(); s.addAll(strips);
+        p.clear(); p.addAll(peaks);
+        c.clear(); c.addAll(clusters);
+    }
+
+    /**
+     * @return strips of the last event processed by the calling thread
+     */
+    public List<ECStrip> getStrips(){
+        return lastStrips.get();
+    }
+
+    public List<ECPeak> getPeaks(){
+        return lastPeaks.get();
+    }
+
+    public List<ECCluster> getClusters(){
+        return lastClusters.get();
+    }
+}
@@ -8,7 +8,7 @@ import org.jlab.clas.reco.ReconstructionEngine;
 import org.jlab.clas.reco.io.EvioHipoEvent;
 import org.jlab.detector.base.DetectorCollection;
 import org.jlab.detector.base.DetectorType;
-import org.jlab.detector.base.GeometryFactory;
+import org.jlab.detector.base.GeometryRegistry;
 import org.jlab.detector.decode.CLASDecoder;
 import org.jlab.geom.base.Detector;
 import org.jlab.groot.data.H1F;
@@ -28,22 +28,17 @@ public class ECEngine extends ReconstructionEngine {
     CLASDecoder     decoder = new CLASDecoder();
     
     Detector        ecDetector = null;
-    public Boolean             debug = false;
-    public Boolean  isSingleThreaded = false;
-    public Boolean       singleEvent = false;
     public Boolean              isMC = false;
     int                       calrun = 2;
     
+    private final ECContext  context = new ECContext();
+    
     public ECEngine(){
         super("EC","gavalian","1.0");
     }
     
     @Override
     public boolean processDataEvent(DataEvent de) {
-           
-        ECCommon.setDebug(debug);
-        ECCommon.setisSingleThreaded(isSingleThreaded);
-        ECCommon.setSingleEvent(singleEvent);
 
         int runNo = 10;
         
@@ -56,16 +51,16 @@ public class ECEngine extends ReconstructionEngine {
             }
         }
                 
-        List<ECStrip>     ecStrips = ECCommon.initEC(de,  ecDetector, this.getConstantsManager(), runNo); // thresholds, ADC/TDC match        
-        List<ECPeak>      ecPeaks  = ECCommon.processPeaks(ECCommon.createPeaks(ecStrips)); // thresholds, split peaks -> update peak-lines          
+        List<ECStrip>     ecStrips = ECCommon.initEC(de,  ecDetector, this.getConstantsManager(), runNo, context); // thresholds, ADC/TDC match        
+        List<ECPeak>      ecPeaks  = ECCommon.processPeaks(ECCommon.createPeaks(ecStrips), context); // thresholds, split peaks -> update peak-lines          
         List<ECCluster> ecClusters = new ArrayList<ECCluster>();
-        ecClusters.addAll(ECCommon.createClusters(ecPeaks,1)); //PCAL
-        ecClusters.addAll(ECCommon.createClusters(ecPeaks,4)); //ECinner 
-        ecClusters.addAll(ECCommon.createClusters(ecPeaks,7)); //ECouter
+        ecClusters.addAll(ECCommon.createClusters(ecPeaks,1,context)); //PCAL
+        ecClusters.addAll(ECCommon.createClusters(ecPeaks,4,context)); //ECinner 
+        ecClusters.addAll(ECCommon.createClusters(ecPeaks,7,context)); //ECouter
         
         ECCommon.shareClustersEnergy(ecClusters);  // Repair 2 clusters which share the same peaks
        
-        if (debug) {
+        if (context.isDebug()) {
             System.out.println(" STRIPS SIZE = " + ecStrips.size());
             for(ECStrip strip : ecStrips) System.out.println(strip);
             System.out.println(" PEAKS  SIZE = " + ecPeaks.size());
@@ -76,26 +71,32 @@ public class ECEngine extends ReconstructionEngine {
 	    
         if(de instanceof HipoDataEvent) this.writeHipoBanks(de,ecStrips,ecPeaks,ecClusters);
         
-        if (isSingleThreaded) {
-        	ECCommon.clearMyStructures();
-        	getStrips().addAll(ecStrips);
-        	getPeaks().addAll(ecPeaks);
-        	getClusters().addAll(ecClusters);
-        }
+        context.setLastEvent(ecStrips, ecPeaks, ecClusters);
         
         return true;
     }
     
+    /**
+     * @return configuration and histograms of this engine, shared by the
+     * threads processing events with it
+     */
+    public ECContext getContext() {
+        return context;
+    }
+    
+    /**
+     * @return strips of the last event processed by the calling thread
+     */
     public List<ECStrip> getStrips() {
-	    return ECCommon.getMyStrips();    		
+	    return context.getStrips();    		
     }
     
     public List<ECPeak> getPeaks() {
-	    return ECCommon.getMyPeaks();    
+	    return context.getPeaks();    
     }
     
     public List<ECCluster> getClusters() {
-	    return ECCommon.getMyClusters();    
+	    return context.getClusters();    
     }    
         
     private void writeHipoBanks(DataEvent de, 
@@ -189,42 +190,55 @@ public class ECEngine extends ReconstructionEngine {
     
     public void setVariation(String variation) {
         System.out.println("ECEngine: Variation = "+variation);
-        ECCommon.variation = variation;
+        context.setVariation(variation);
     } 
     
     public void setVeff(float veff) {
         System.out.println("ECEngine: Veff = "+veff);
-    	    ECCommon.veff = veff;
+    	    context.setVeff(veff);
     }
     
     public void setNewTimeCal(boolean val) {
         System.out.println("ECEngine: useNewTimeCal = "+val);
-    	ECCommon.useNewTimeCal = val;
+    	context.setUseNewTimeCal(val);
     }
     
     public void setStripThresholds(int thr0, int thr1, int thr2) {
         System.out.println("ECEngine: Strip ADC thresholds = "+thr0+" "+thr1+" "+thr2);
-        ECCommon.stripThreshold[0] = thr0;
-        ECCommon.stripThreshold[1] = thr1;
-        ECCommon.stripThreshold[2] = thr2;
+        context.setStripThresholds(thr0, thr1, thr2);
     }
     
     public void setPeakThresholds(int thr0, int thr1, int thr2) {
         System.out.println("ECEngine: Peak ADC thresholds = "+thr0+" "+thr1+" "+thr2);
-        ECCommon.peakThreshold[0] = thr0;
-        ECCommon.peakThreshold[1] = thr1;
-        ECCommon.peakThreshold[2] = thr2;
+        context.setPeakThresholds(thr0, thr1, thr2);
     }   
     
     public void setClusterCuts(float err0, float err1, float err2) {
         System.out.println("ECEngine: Cluster Dalitz Cuts = "+err0+" "+err1+" "+err2);
-        ECCommon.clusterError[0] = err0;
-        ECCommon.clusterError[1] = err1;
-        ECCommon.clusterError[2] = err2;
+        context.setClusterCuts(err0, err1, err2);
+    }
+    
+    public void setDebug(boolean val) {
+        context.setDebug(val);
+    }
+    
+    /**
+     * @param val fill the cluster error histograms of getHist(), the
+     * clusters are then made testing every U,V,W peak combination
+     */
+    public void setSingleThreaded(boolean val) {
+        context.setFillHistos(val);
+    }
+    
+    /**
+     * @param val reset the cluster error histograms at each event
+     */
+    public void setSingleEvent(boolean val) {
+        context.setSingleEvent(val);
     }
     
     public DetectorCollection<H1F>  getHist() {
-        return ECCommon.H1_ecEng;
+        return context.getHistos();
     }
     
     @Override
@@ -244,15 +258,14 @@ public class ECEngine extends ReconstructionEngine {
         
         
         requireConstants(Arrays.asList(ecTables));
-        getConstantsManager().setVariation(ECCommon.variation);
-        ecDetector =  GeometryFactory.getDetector(DetectorType.ECAL);
+        getConstantsManager().setVariation(context.getVariation());
+        ecDetector =  GeometryRegistry.getDetector(DetectorType.ECAL, 10, "default");
 
         setCalRun(2);
         setStripThresholds(10,9,8);
         setPeakThresholds(18,20,15);
         setClusterCuts(7,15,20);
         
-        if (isSingleThreaded) ECCommon.initHistos();
         return true;
     }
     
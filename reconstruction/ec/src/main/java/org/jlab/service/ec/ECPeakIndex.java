@@ -0,0 +1,147 @@
+package org.jlab.service.ec;
+
+import java.util.Arrays;
+import java.util.List;
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+
+/**
+ * Index of the peaks of one view of one sector by their position across the
+ * strips: the peak lines of a view are parallel, so the distance of a point
+ * to a peak line is at least the distance between the point and the line
+ * along the direction perpendicular to the strips. The peaks closer than a
+ * given distance to a point (e.g. the U-V intersection of a cluster) are
+ * then found with a binary search on the sorted coordinates instead of
+ * testing every peak.
+ *
+ * The search never misses a peak: the tolerance is widened by the largest
+ * deviation of the peak lines from the reference direction, and the index
+ * falls back to all peaks when the lines do not define a direction.
+ */
+public class ECPeakIndex {
+
+    private final int       npeaks;
+    private final boolean   indexed;
+    // unit vector perpendicular to the strips
+    private double          tx = 0.0, ty = 0.0, tz = 0.0;
+    // sorted coordinates of the peak lines along it and the peak of each
+    private final double[]  coord;
+    private final int[]     order;
+    // largest |t.d| of the peak directions and distance of the origins to (0,0,0)
+    private double          sinMax = 0.0;
+    private double          rMax   = 0.0;
+
+    private final int[]     candidates;
+    private int             ncandidates = 0;
+
+    /**
+     * @param peaks peaks of one view of one sector, with their lines computed
+     */
+    public ECPeakIndex(List<ECPeak> peaks){
+        npeaks     = peaks.size();
+        coord      = new double[npeaks];
+        order      = new int[npeaks];
+        candidates = new int[npeaks];
+        indexed    = npeaks>1 && this.direction(peaks);
+        if(!indexed) return;
+
+        long[] sorted = new long[npeaks];
+        double[] values = new double[npeaks];
+        for(int i = 0; i < npeaks; i++){
+            Point3D o = peaks.get(i).getLine().origin();
+            values[i] = o.x()*tx + o.y()*ty + o.z()*tz;
+        }
+        Integer[] idx = new Integer[npeaks];
+        for(int i = 0; i < npeaks; i++) idx[i] = i;
+        Arrays.sort(idx, (a,b) -> Double.compare(values[a], values[b]));
+        for(int i = 0; i < npeaks; i++){
+            order[i] = idx[i];
+            coord[i] = values[idx[i]];
+        }
+    }
+
+    /*
+     * sets the direction across the strips from the peak lines, returns
+     * false if it can not be defined.
+     */
+    private boolean direction(List<ECPeak> peaks){
+        Line3D first = peaks.get(0).getLine();
+        double dx = first.end().x() - first.origin().x();
+        double dy = first.end().y() - first.origin().y();
+        double dz = first.end().z() - first.origin().z();
+        double dl = Math.sqrt(dx*dx+dy*dy+dz*dz);
+        if(!(dl>0.0)) return false;
+        dx /= dl; dy /= dl; dz /= dl;
+
+        // the peak furthest from the first one, across the strips
+        double best = 0.0;
+        for(int i = 1; i < npeaks; i++){
+            Point3D o = peaks.get(i).getLine().origin();
+            double wx = o.x() - first.origin().x();
+            double wy = o.y() - first.origin().y();
+            double wz = o.z() - first.origin().z();
+            double along = wx*dx + wy*dy + wz*dz;
+            wx -= along*dx; wy -= along*dy; wz -= along*dz;
+            double wl = Math.sqrt(wx*wx+wy*wy+wz*wz);
+            if(wl>best){
+                best = wl;
+                tx = wx/wl; ty = wy/wl; tz = wz/wl;
+            }
+        }
+        if(!(best>0.0)) return false;
+
+        for(int i = 0; i < npeaks; i++){
+            Line3D line = peaks.get(i).getLine();
+            double lx = line.end().x() - line.origin().x();
+            double ly = line.end().y() - line.origin().y();
+            double lz = line.end().z() - line.origin().z();
+            double ll = Math.sqrt(lx*lx+ly*ly+lz*lz);
+            if(!(ll>0.0)||Double.isInfinite(ll)) return false;
+            sinMax = Math.max(sinMax, Math.abs(lx*tx+ly*ty+lz*tz)/ll);
+            rMax   = Math.max(rMax, line.origin().distance(0.0, 0.0, 0.0));
+        }
+        return !Double.isNaN(sinMax)&&!Double.isInfinite(rMax);
+    }
+
+    /**
+     * finds the peaks whose lines may be closer than the given distance to a
+     * point, a superset of the peaks that are.
+     * @param point point
+     * @param distance distance
+     * @return number of candidates, available with getCandidate() in the
+     * order of the peaks in the list given to the constructor
+     */
+    public int findCandidates(Point3D point, double distance){
+        ncandidates = 0;
+        if(!indexed){
+            for(int i = 0; i < npeaks; i++) candidates[ncandidates++] = i;
+            return ncandidates;
+        }
+        double r = point.distance(0.0, 0.0, 0.0);
+        double c = point.x()*tx + point.y()*ty + point.z()*tz;
+        double tolerance = distance + sinMax*(r + rMax + distance);
+        tolerance += 1.0e-9*(Math.abs(c)+r+rMax+tolerance);
+        // a point too far away for the distance to be computed is not close
+        if(Double.isNaN(tolerance)||Double.isInfinite(tolerance)) return 0;
+        int first = lowerBound(c-tolerance);
+        for(int i = first; i < npeaks && coord[i]<=c+tolerance; i++){
+            candidates[ncandidates++] = order[i];
+        }
+        Arrays.sort(candidates, 0, ncandidates);
+        return ncandidates;
+    }
+
+    public int getCandidate(int i){
+        return candidates[i];
+    }
+
+    private int lowerBound(double value){
+        int lo = 0, hi = npeaks;
+        while(lo<hi){
+            int mid = (lo+hi)>>>1;
+            if(coord[mid]<value) lo = mid+1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
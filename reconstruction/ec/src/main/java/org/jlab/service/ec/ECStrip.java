@@ -48,9 +48,13 @@ public class ECStrip implements Comparable {
     private TimeCorrection        tc = null; 
     
     public ECStrip(int sector, int layer, int component){
+        this(sector, layer, component, true);
+    }
+    
+    public ECStrip(int sector, int layer, int component, boolean useNewTimeCal){
         this.desc.setSectorLayerComponent(sector, layer, component);
-        if( ECCommon.useNewTimeCal) tc = new ExtendedTWCTime();
-        if(!ECCommon.useNewTimeCal) tc = new SimpleTWCTime();
+        if( useNewTimeCal) tc = new ExtendedTWCTime();
+        if(!useNewTimeCal) tc = new SimpleTWCTime();
     }
 	
     public DetectorDescriptor getDescriptor(){
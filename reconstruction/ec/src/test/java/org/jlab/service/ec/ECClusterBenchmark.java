@@ -0,0 +1,168 @@
+package org.jlab.service.ec;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataSource;
+
+/**
+ * Compares the clusters built testing every U, V and W peak combination
+ * (createClustersExhaustive) and with the W peaks indexed
+ * (createClusters) on the events of a file, and measures the time of both.
+ * The strips and peaks of the events are made once with the EC engine
+ * calibration and kept in memory, only the events with at least the given
+ * number of peaks are used, to select high occupancy events.
+ *
+ * Usage: ECClusterBenchmark file.hipo [max events] [min peaks]
+ */
+public class ECClusterBenchmark {
+
+    private static final int[] START_LAYERS = new int[]{1,4,7};
+
+    /**
+     * builds the clusters testing every U, V and W peak combination of each
+     * sector, as ECCommon.createClusters did before the W peaks were
+     * indexed. Gives the same clusters and histogram fills.
+     * @param peaks peaks of the event
+     * @param startLayer first layer of the detector (1 PCAL, 4 EC inner, 7 EC outer)
+     * @param context reconstruction context
+     * @return clusters
+     */
+    public static List<ECCluster> createClustersExhaustive(List<ECPeak> peaks, int startLayer, ECContext context){
+
+        List<ECCluster>   clusters = new ArrayList<ECCluster>();
+
+        for(int p = 0; p < peaks.size(); p++){
+            peaks.get(p).setOrder(p+1);
+        }
+
+        for(int sector = 1; sector <= 6; sector++){
+
+            List<ECPeak>  pU = ECCommon.getPeaks(sector, startLayer,   peaks);
+            List<ECPeak>  pV = ECCommon.getPeaks(sector, startLayer+1, peaks);
+            List<ECPeak>  pW = ECCommon.getPeaks(sector, startLayer+2, peaks);
+
+            if(pU.size()>0&&pV.size()>0&&pW.size()>0){
+
+                for(int bU = 0; bU < pU.size();bU++){
+                    for(int bV = 0; bV < pV.size();bV++){
+                        for(int bW = 0; bW < pW.size();bW++){
+                            pU.get(bU).redoPeakLine();
+                            pV.get(bV).redoPeakLine();
+                            pW.get(bW).redoPeakLine();
+                            ECCluster cluster = new ECCluster(pU.get(bU),pV.get(bV),pW.get(bW));
+                            boolean accepted = cluster.getHitPositionError()<context.getClusterError(ECCommon.ind[startLayer-1]);
+                            if(context.isFillHistos())context.fillClusterError(sector,ECCommon.ind[startLayer-1]+1,cluster.getHitPositionError(),accepted);
+                            if(accepted) clusters.add(cluster);
+                        }
+                    }
+                }
+            }
+        }
+
+        for(int i = 0 ; i < clusters.size(); i++){
+            clusters.get(i).setEnergy(
+            clusters.get(i).getEnergy(0) +
+            clusters.get(i).getEnergy(1) +
+            clusters.get(i).getEnergy(2));
+        }
+
+        return clusters;
+    }
+
+    /**
+     * @param a clusters
+     * @param b clusters
+     * @return true if the clusters are built from the same peaks, in the
+     * same order, with identical errors, energies and positions
+     */
+    public static boolean same(List<ECCluster> a, List<ECCluster> b){
+        if(a.size()!=b.size()) return false;
+        for(int i = 0; i < a.size(); i++){
+            ECCluster ca = a.get(i);
+            ECCluster cb = b.get(i);
+            if(ca.UVIEW_ID!=cb.UVIEW_ID||ca.VVIEW_ID!=cb.VVIEW_ID||ca.WVIEW_ID!=cb.WVIEW_ID) return false;
+            if(Double.compare(ca.getHitPositionError(), cb.getHitPositionError())!=0) return false;
+            if(Double.compare(ca.getEnergy(), cb.getEnergy())!=0) return false;
+            Point3D pa = ca.getHitPosition();
+            Point3D pb = cb.getHitPosition();
+            if(pa.distance(pb)!=0.0) return false;
+        }
+        return true;
+    }
+
+    private static double time(List<List<ECPeak>> events, boolean indexed, ECContext context){
+        long start = System.nanoTime();
+        for(List<ECPeak> peaks : events){
+            for(int layer : START_LAYERS){
+                if(indexed) ECCommon.createClusters(peaks, layer, context);
+                else        createClustersExhaustive(peaks, layer, context);
+            }
+        }
+        return (System.nanoTime()-start)*1e-6;
+    }
+
+    public static void main(String[] args){
+
+        if(args.length<1){
+            System.out.println("usage: ECClusterBenchmark file.hipo [max events] [min peaks]");
+            return;
+        }
+        int maxEvents = args.length>1 ? Integer.parseInt(args[1]) : 10000;
+        int minPeaks  = args.length>2 ? Integer.parseInt(args[2]) : 0;
+
+        ECEngine engine = new ECEngine();
+        engine.init();
+        ECContext context = engine.getContext();
+
+        List<List<ECPeak>> events = new ArrayList<List<ECPeak>>();
+        HipoDataSource reader = new HipoDataSource();
+        reader.open(args[0]);
+        int nread = 0;
+        long npeaks = 0;
+        while(reader.hasEvent()==true && events.size()<maxEvents){
+            DataEvent event = reader.getNextEvent();
+            nread++;
+            int run = 10;
+            if(event.hasBank("RUN::config")==true){
+                DataBank bank = event.getBank("RUN::config");
+                run = bank.getInt("run", 0);
+                if(run<=0) continue;
+            }
+            List<ECStrip> strips = ECCommon.initEC(event, engine.ecDetector, engine.getConstantsManager(), run, context);
+            List<ECPeak>  peaks  = ECCommon.processPeaks(ECCommon.createPeaks(strips), context);
+            if(peaks.size()<minPeaks) continue;
+            events.add(peaks);
+            npeaks += peaks.size();
+        }
+        reader.close();
+        if(events.isEmpty()){
+            System.out.println("no events with at least " + minPeaks + " peaks in " + args[0]);
+            return;
+        }
+
+        int bad = 0;
+        long nclusters = 0;
+        for(List<ECPeak> peaks : events){
+            for(int layer : START_LAYERS){
+                List<ECCluster> reference = createClustersExhaustive(peaks, layer, context);
+                List<ECCluster> clusters  = ECCommon.createClusters(peaks, layer, context);
+                if(!same(reference, clusters)) bad++;
+                nclusters += reference.size();
+            }
+        }
+        System.out.println(String.format("%d events of %d read, %.1f peaks/event, %.2f clusters/event,"
+                + " %d detectors with different clusters", events.size(), nread,
+                (double) npeaks/events.size(), (double) nclusters/events.size(), bad));
+
+        for(int iter = 0; iter < 5; iter++){
+            double exhaustive = time(events, false, context);
+            double indexed    = time(events, true, context);
+            System.out.println(String.format("iteration %d : exhaustive %9.2f ms, indexed %9.2f ms (x%.1f),"
+                    + " %.2f -> %.2f us/event", iter, exhaustive, indexed, exhaustive/indexed,
+                    1e3*exhaustive/events.size(), 1e3*indexed/events.size()));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.jlab.service.ec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.jlab.geom.prim.Line3D;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the clusters of ECCommon.createClusters with the clusters built
+ * testing every U, V and W peak combination on synthetic high occupancy
+ * events, up to 25 showers per sector, with slightly non parallel strips.
+ */
+public class ECClusterTest {
+
+    private static final int    NSTRIP = 68;
+    private static final double WIDTH  = 4.5;
+    private static final double SIDE   = NSTRIP*WIDTH;
+
+    /**
+     * records the cluster error histogram fills.
+     */
+    private static class RecordingContext extends ECContext {
+        final List<Double> fills = new ArrayList<Double>();
+        @Override
+        public void fillClusterError(int sector, int detector, double error, boolean accepted){
+            fills.add(sector*10.0 + detector + (accepted ? 0.5 : 0));
+            fills.add(error);
+        }
+    }
+
+    /*
+     * strip line of a layer and sector, the view rotated by 120 degrees from
+     * layer to layer, with a small perturbation depending on the strip.
+     */
+    private static Line3D strip(int sector, int layer, int component){
+        double angle = Math.toRadians(90 + 120*((layer - 1)%3));
+        double dx = Math.cos(angle), dy = Math.sin(angle);
+        double offset = -SIDE/2 + (component - 0.5)*WIDTH;
+        double z   = 700 + (layer - 1)*1.2;
+        double eps = 1e-7*Math.sin(component*1.3 + layer);
+        double x0 = -offset*dy - SIDE*dx, y0 = offset*dx - SIDE*dy;
+        double x1 = -offset*dy + SIDE*dx + eps*SIDE, y1 = offset*dx + SIDE*dy - eps*SIDE;
+        double[] p0 = rotate(x0, y0, z, sector);
+        double[] p1 = rotate(x1, y1, z + 1e-6*component, sector);
+        return new Line3D(p0[0], p0[1], p0[2], p1[0], p1[1], p1[2]);
+    }
+
+    private static double[] rotate(double x, double y, double z, int sector){
+        double phi  = Math.toRadians(60*(sector - 1));
+        double tilt = Math.toRadians(25);
+        double xr = x*Math.cos(tilt) + z*Math.sin(tilt);
+        double zr = -x*Math.sin(tilt) + z*Math.cos(tilt);
+        return new double[]{xr*Math.cos(phi) - y*Math.sin(phi), xr*Math.sin(phi) + y*Math.cos(phi), zr};
+    }
+
+    private static int component(int layer, double x, double y){
+        double angle = Math.toRadians(90 + 120*((layer - 1)%3));
+        double offset = -x*Math.sin(angle) + y*Math.cos(angle);
+        return (int) Math.floor((offset + SIDE/2)/WIDTH) + 1;
+    }
+
+    private static List<ECPeak> createPeaks(Random rand, int nshowers){
+        List<ECStrip> strips = new ArrayList<ECStrip>();
+        Set<Integer>  used   = new HashSet<Integer>();
+        for(int sector = 1; sector <= 6; sector++){
+            for(int shower = 0; shower < nshowers; shower++){
+                double x = (rand.nextDouble() - 0.5)*SIDE*0.6;
+                double y = (rand.nextDouble() - 0.5)*SIDE*0.6;
+                for(int layer = 1; layer <= 9; layer++){
+                    int center = component(layer, x, y);
+                    int width  = 1 + rand.nextInt(3);
+                    for(int c = center - width/2; c <= center + width/2; c++){
+                        if(c < 1 || c > NSTRIP || !used.add((sector*100 + layer)*1000 + c)) continue;
+                        ECStrip strip = new ECStrip(sector, layer, c);
+                        strip.setADC(100 + rand.nextInt(5000));
+                        strip.getLine().copy(strip(sector, layer, c));
+                        strip.setDistanceEdge(c*WIDTH);
+                        strips.add(strip);
+                    }
+                }
+            }
+        }
+        Collections.sort(strips);
+        List<ECPeak> peaks = ECCommon.createPeaks(strips);
+        for(ECPeak peak : peaks) peak.redoPeakLine();
+        return peaks;
+    }
+
+    @Test
+    public void testSameAsExhaustive() {
+        Random rand = new Random(11);
+        RecordingContext context = new RecordingContext();
+        context.setClusterCuts(7, 15, 20);
+        int nclusters = 0;
+        for(int event = 0; event < 100; event++){
+            List<ECPeak> peaks = createPeaks(rand, 1 + rand.nextInt(event%3 == 0 ? 25 : 6));
+            for(int layer : new int[]{1,4,7}){
+                for(boolean fill : new boolean[]{false,true}){
+                    context.setFillHistos(fill);
+                    context.fills.clear();
+                    List<ECCluster> reference = ECClusterBenchmark.createClustersExhaustive(peaks, layer, context);
+                    List<Double> referenceFills = new ArrayList<Double>(context.fills);
+                    context.fills.clear();
+                    List<ECCluster> clusters = ECCommon.createClusters(peaks, layer, context);
+                    assertTrue(ECClusterBenchmark.same(reference, clusters));
+                    assertEquals(referenceFills, context.fills);
+                    assertEquals(fill, !context.fills.isEmpty());
+                    nclusters += clusters.size();
+                }
+            }
+        }
+        assertTrue(nclusters > 1000);
+    }
+}
@@ -0,0 +1,84 @@
+package org.jlab.service.ec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.jlab.analysis.physics.TestEvent;
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+
+public class ECContextTest {
+
+    private static final String[] CLUSTER_FLOATS = new String[]{"energy","time","x","y","z"};
+    private static final String[] CLUSTER_BYTES  = new String[]{"sector","layer","idU","idV","idW"};
+
+    /*
+     * processes the event with the engine and returns the content of the
+     * clusters bank written to it. Each call gets its own event, built by
+     * TestEvent.getECSector1PhotonEvent().
+     */
+    private static List<Number> process(ECEngine engine, DataEvent event){
+        engine.processDataEvent(event);
+        List<Number> values = new ArrayList<Number>();
+        if(!event.hasBank("ECAL::clusters")) return values;
+        DataBank bank = event.getBank("ECAL::clusters");
+        for(int row = 0; row < bank.rows(); row++){
+            for(String name : CLUSTER_BYTES)  values.add(bank.getByte(name, row));
+            for(String name : CLUSTER_FLOATS) values.add(bank.getFloat(name, row));
+        }
+        assertEquals(bank.rows(), engine.getClusters().size());
+        return values;
+    }
+
+    @Test
+    public void testConcurrentEngines() throws Exception {
+        System.setProperty("CLAS12DIR", "../../");
+
+        ECEngine engine = new ECEngine();
+        engine.init();
+        ECEngine tight = new ECEngine();
+        tight.init();
+        // only the PCAL clusters
+        tight.setClusterCuts(7,0,0);
+
+        // single threaded references, also load the constants
+        final List<Number> reference      = process(engine, TestEvent.getECSector1PhotonEvent());
+        final List<Number> tightReference = process(tight,  TestEvent.getECSector1PhotonEvent());
+        assertEquals(3*(CLUSTER_BYTES.length+CLUSTER_FLOATS.length), reference.size());
+        assertTrue(tightReference.size()<reference.size());
+
+        int nevents = 200;
+        List<DataEvent> events = new ArrayList<DataEvent>();
+        for(int i = 0; i < nevents; i++) events.add(TestEvent.getECSector1PhotonEvent());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<Number>>> results = new ArrayList<Future<List<Number>>>();
+        for(int i = 0; i < nevents; i++){
+            final ECEngine  e     = i%2==0 ? engine : tight;
+            final DataEvent event = events.get(i);
+            results.add(executor.submit(new Callable<List<Number>>(){
+                @Override
+                public List<Number> call(){
+                    return process(e, event);
+                }
+            }));
+        }
+        for(int i = 0; i < nevents; i++){
+            assertEquals(i%2==0 ? reference : tightReference, results.get(i).get());
+        }
+        executor.shutdown();
+
+        // the configuration and the last event of this thread are not changed by the other threads
+        int columns = CLUSTER_BYTES.length+CLUSTER_FLOATS.length;
+        assertEquals(15.0, engine.getContext().getClusterError(1), 0.0);
+        assertEquals(0.0,  tight.getContext().getClusterError(1), 0.0);
+        assertEquals(reference.size()/columns,      engine.getClusters().size());
+        assertEquals(tightReference.size()/columns, tight.getClusters().size());
+    }
+}
@@ -0,0 +1,139 @@
+package org.jlab.service.ec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.jlab.analysis.physics.TestEvent;
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ECPeakIndex.findCandidates returns every peak whose line is
+ * closer than the distance to the point, found testing all the peaks.
+ */
+public class ECPeakIndexTest {
+
+    private static ECPeak createPeak(Line3D line){
+        ECStrip strip = new ECStrip(1, 3, 1);
+        strip.getLine().copy(line);
+        return new ECPeak(strip);
+    }
+
+    private static double[] unit(double x, double y, double z){
+        double l = Math.sqrt(x*x + y*y + z*z);
+        return new double[]{x/l, y/l, z/l};
+    }
+
+    private static double[] cross(double[] a, double[] b){
+        return unit(a[1]*b[2] - a[2]*b[1], a[2]*b[0] - a[0]*b[2], a[0]*b[1] - a[1]*b[0]);
+    }
+
+    /*
+     * checks the candidates of a point against all the peaks, returns the
+     * number of peaks closer than the distance.
+     */
+    private static int check(ECPeakIndex index, List<ECPeak> peaks, Point3D point, double distance){
+        int ncandidates = index.findCandidates(point, distance);
+        boolean[] candidate = new boolean[peaks.size()];
+        for(int c = 0; c < ncandidates; c++){
+            int i = index.getCandidate(c);
+            if(c > 0) assertTrue(i > index.getCandidate(c - 1));
+            candidate[i] = true;
+        }
+        int nclose = 0;
+        for(int i = 0; i < peaks.size(); i++){
+            if(peaks.get(i).getLine().distance(point).length() < distance){
+                assertTrue("peak " + i + " missed", candidate[i]);
+                nclose++;
+            }
+        }
+        return nclose;
+    }
+
+    @Test
+    public void testRandomGeometry() {
+        Random rand = new Random(11);
+        int nclose = 0, nboundary = 0;
+        for(int trial = 0; trial < 2000; trial++){
+            double[] d = unit(rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian());
+            double[] t = cross(d, unit(rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian()));
+            // parallel lines, or directions spread by up to a few degrees
+            double spread = trial%4 == 0 ? 0.0 : Math.pow(10, -1 - 5*rand.nextDouble());
+            double cx = 1000*rand.nextGaussian(), cy = 1000*rand.nextGaussian(), cz = 1000*rand.nextGaussian();
+            int npeaks = 2 + rand.nextInt(40);
+            List<ECPeak> peaks = new ArrayList<ECPeak>();
+            for(int i = 0; i < npeaks; i++){
+                double[] di = unit(d[0] + spread*rand.nextGaussian(), d[1] + spread*rand.nextGaussian(),
+                        d[2] + spread*rand.nextGaussian());
+                double offset = 400*(rand.nextDouble() - 0.5);
+                double along  = 300*rand.nextGaussian();
+                double length = 1 + 800*rand.nextDouble();
+                double ox = cx + offset*t[0] + along*d[0];
+                double oy = cy + offset*t[1] + along*d[1];
+                double oz = cz + offset*t[2] + along*d[2];
+                peaks.add(createPeak(new Line3D(ox, oy, oz, ox + length*di[0], oy + length*di[1], oz + length*di[2])));
+            }
+            ECPeakIndex index = new ECPeakIndex(peaks);
+            for(int p = 0; p < 20; p++){
+                double distance = 0.1 + 30*rand.nextDouble();
+                Point3D point;
+                if(p%2 == 0){
+                    // just inside the distance of a peak line, far along the line
+                    Line3D line = peaks.get(rand.nextInt(npeaks)).getLine();
+                    double[] dl = unit(line.end().x() - line.origin().x(), line.end().y() - line.origin().y(),
+                            line.end().z() - line.origin().z());
+                    double[] u = cross(dl, unit(rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian()));
+                    double s = 1500*rand.nextGaussian();
+                    double r = distance*(1 - 1e-9*rand.nextDouble());
+                    point = new Point3D(line.origin().x() + s*dl[0] + r*u[0],
+                            line.origin().y() + s*dl[1] + r*u[1], line.origin().z() + s*dl[2] + r*u[2]);
+                    nboundary++;
+                } else {
+                    point = new Point3D(cx + 500*rand.nextGaussian(), cy + 500*rand.nextGaussian(),
+                            cz + 500*rand.nextGaussian());
+                }
+                nclose += check(index, peaks, point, distance);
+            }
+        }
+        assertTrue(nclose > nboundary/2);
+    }
+
+    @Test
+    public void testRecordedEvent() {
+        System.setProperty("CLAS12DIR", "../../");
+        ECEngine engine = new ECEngine();
+        engine.init();
+        ECContext context = engine.getContext();
+
+        List<ECStrip> strips = ECCommon.initEC(TestEvent.getECSector1PhotonEvent(), engine.ecDetector,
+                engine.getConstantsManager(), 10, context);
+        List<ECPeak>  peaks  = ECCommon.processPeaks(ECCommon.createPeaks(strips), context);
+        int nclose = 0;
+        for(int startLayer : new int[]{1,4,7}){
+            double maxError = context.getClusterError(ECCommon.ind[startLayer-1]);
+            for(int sector = 1; sector <= 6; sector++){
+                List<ECPeak> pU = ECCommon.getPeaks(sector, startLayer,   peaks);
+                List<ECPeak> pV = ECCommon.getPeaks(sector, startLayer+1, peaks);
+                List<ECPeak> pW = ECCommon.getPeaks(sector, startLayer+2, peaks);
+                if(pU.isEmpty()||pV.isEmpty()||pW.isEmpty()) continue;
+                for(ECPeak p : pU) p.redoPeakLine();
+                for(ECPeak p : pV) p.redoPeakLine();
+                for(ECPeak p : pW) p.redoPeakLine();
+                ECPeakIndex index = new ECPeakIndex(pW);
+                for(ECPeak u : pU){
+                    for(ECPeak v : pV){
+                        Point3D uv = ECCluster.uvMidpoint(u.getLine(), v.getLine());
+                        nclose += check(index, pW, uv, maxError);
+                    }
+                }
+            }
+            context.setFillHistos(false);
+            assertTrue(ECClusterBenchmark.same(ECClusterBenchmark.createClustersExhaustive(peaks, startLayer, context),
+                    ECCommon.createClusters(peaks, startLayer, context)));
+        }
+        // the photon of the event
+        assertTrue(nclose > 0);
+    }
+}
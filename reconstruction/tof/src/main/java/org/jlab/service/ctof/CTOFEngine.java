@@ -9,9 +9,8 @@ import java.util.List;
 import org.jlab.clas.reco.ReconstructionEngine;
 import org.jlab.coda.jevio.EvioException;
 import org.jlab.detector.base.DetectorType;
-import org.jlab.detector.base.GeometryFactory;
+import org.jlab.detector.base.GeometryRegistry;
 import org.jlab.detector.geant4.v2.CTOFGeant4Factory;
-import org.jlab.geom.base.ConstantProvider;
 import org.jlab.geometry.prim.Line3d;
 import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
@@ -66,8 +65,8 @@ public class CTOFEngine extends ReconstructionEngine {
        
        // Get the constants for the correct variation
         this.getConstantsManager().setVariation("default");
-        ConstantProvider cp = GeometryFactory.getConstants(DetectorType.CTOF, 11, "default");
-        geometry = new CTOFGeant4Factory(cp);
+        geometry = GeometryRegistry.getGeometry(DetectorType.CTOF, "CTOFGeant4Factory", 11, "default",
+                cp -> new CTOFGeant4Factory(cp));
         
         return true;
     }
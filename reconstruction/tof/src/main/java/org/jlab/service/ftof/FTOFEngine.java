@@ -6,7 +6,8 @@ import java.util.Collections;
 import java.util.List;
 
 import org.jlab.clas.reco.ReconstructionEngine;
-import org.jlab.detector.calib.utils.DatabaseConstantProvider;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.base.GeometryRegistry;
 import org.jlab.detector.geant4.v2.FTOFGeant4Factory;
 import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
@@ -64,23 +65,9 @@ public class FTOFEngine extends ReconstructionEngine {
        // Get the constants for the correct variation
         this.getConstantsManager().setVariation("default");
         
-        // Get the geometry
-        DatabaseConstantProvider db = new DatabaseConstantProvider( 11, "default");
-        // using
-        // the
-        // new
-        // run
-        // load the geometry tables
-        db.loadTable("/geometry/ftof/panel1a/paddles");
-        db.loadTable("/geometry/ftof/panel1a/panel");
-        db.loadTable("/geometry/ftof/panel1b/paddles");
-        db.loadTable("/geometry/ftof/panel1b/panel");
-        db.loadTable("/geometry/ftof/panel2/paddles");
-        db.loadTable("/geometry/ftof/panel2/panel");
-
-        // disconncect from database. Important to do this after loading tables.
-        db.disconnect();
-        geometry = new FTOFGeant4Factory(db);
+        // Get the geometry, shared with the other engines through the registry
+        geometry = GeometryRegistry.getGeometry(DetectorType.FTOF, "FTOFGeant4Factory", 11, "default",
+                cp -> new FTOFGeant4Factory(cp));
         // Load the Calibration Constants
         // if (CCDBConstantsLoader.CSTLOADED == false) {
         // DatabaseConstantProvider db = CCDBConstantsLoader.Load();